@@ -0,0 +1,314 @@
+package connectivity.fri.sdk.example.LBRAdmittanceControl;
+
+import connectivity.fri.sdk.example.LBRModel.LBRiiwa7Model;
+import connectivity.fri.sdk.example.LBRModel.LinearAlgebra;
+
+/**
+ * Cartesian admittance: external wrench in, joint positions out.
+ * <p>
+ * Every cycle the controller
+ * <ol>
+ * <li>estimates the wrench at the tool centre point from the external joint
+ * torques, <code>F = (J J^T + l^2 I)^-1 J tau_ext</code>,</li>
+ * <li>removes the bias averaged over the first {@link #BIAS_CYCLES} cycles
+ * after {@link #reset} and a dead band,</li>
+ * <li>integrates the virtual mass-damper <code>M v' + D v = F</code> per
+ * Cartesian axis to the tool velocity v, and</li>
+ * <li>maps v to joint velocities with the damped least squares inverse
+ * <code>qd = J^T (J J^T + l^2 I)^-1 v</code> and integrates them to the
+ * commanded joint positions.</li>
+ * </ol>
+ * Both pseudo-inverses share one factorization. The Jacobian is evaluated at
+ * the commanded positions, so the kinematic state is free of sensor noise.
+ * Joint positions stay a margin inside the limits, and the velocities are
+ * scaled down uniformly to respect the Cartesian and joint velocity limits.
+ * <p>
+ * The controller does not allocate. It is not thread-safe apart from the
+ * parameter setters, which may be called from any thread.
+ */
+public class AdmittanceController
+{
+    /** Cycles after a reset whose wrench is averaged to the bias. */
+    public static final int BIAS_CYCLES = 100;
+
+    private static final int N = LBRiiwa7Model.NUMBER_OF_JOINTS;
+    private static final double JOINT_LIMIT_MARGIN = Math.toRadians(5);
+    private static final double JOINT_VELOCITY_SCALE = 0.5;
+
+    private final LBRiiwa7Model _model;
+    private final double _damping2;
+
+    private volatile double _mass;
+    private volatile double _inertia;
+    private volatile double _linearDamping;
+    private volatile double _angularDamping;
+    private volatile double _forceDeadband;
+    private volatile double _torqueDeadband;
+    private volatile double _maxLinearVelocity;
+    private volatile double _maxAngularVelocity;
+
+    private final double[] _q = new double[N];
+    private final double[] _qd = new double[N];
+    private final double[][] _jacobian = new double[6][N];
+    private final double[][] _factor = new double[6][6];
+    private final double[] _jTau = new double[6];
+    private final double[] _wrench = new double[6];
+    private final double[] _bias = new double[6];
+    private final double[] _velocity = new double[6];
+    private final double[] _y = new double[6];
+    private int _biasCycles;
+
+    /**
+     * Constructor with default parameters for guiding by hand.
+     *
+     * @param model
+     *            model of the robot including tool offset, copied
+     * @param singularityDamping
+     *            damping l of the pseudo-inverses
+     */
+    public AdmittanceController(LBRiiwa7Model model, double singularityDamping)
+    {
+        _model = new LBRiiwa7Model(model);
+        _damping2 = singularityDamping * singularityDamping;
+        setAdmittance(10.0, 0.5, 100.0, 5.0);
+        setDeadband(3.0, 0.3);
+        setVelocityLimits(0.25, 0.5);
+    }
+
+    /**
+     * Sets the virtual mass-damper.
+     *
+     * @param mass
+     *            virtual mass (kg)
+     * @param inertia
+     *            virtual rotational inertia (kg m^2)
+     * @param linearDamping
+     *            translational damping (N s/m)
+     * @param angularDamping
+     *            rotational damping (N m s/rad)
+     */
+    public void setAdmittance(double mass, double inertia, double linearDamping, double angularDamping)
+    {
+        _mass = mass;
+        _inertia = inertia;
+        _linearDamping = linearDamping;
+        _angularDamping = angularDamping;
+    }
+
+    /**
+     * Sets the dead band below which the wrench is ignored.
+     *
+     * @param force
+     *            force dead band per axis (N)
+     * @param torque
+     *            torque dead band per axis (N m)
+     */
+    public void setDeadband(double force, double torque)
+    {
+        _forceDeadband = force;
+        _torqueDeadband = torque;
+    }
+
+    /**
+     * Sets the velocity limits of the tool centre point.
+     *
+     * @param linear
+     *            maximum translational velocity (m/s)
+     * @param angular
+     *            maximum rotational velocity (rad/s)
+     */
+    public void setVelocityLimits(double linear, double angular)
+    {
+        _maxLinearVelocity = linear;
+        _maxAngularVelocity = angular;
+    }
+
+    /**
+     * @return force dead band per axis (N)
+     */
+    public double getForceDeadband()
+    {
+        return _forceDeadband;
+    }
+
+    /**
+     * @return translational damping (N s/m)
+     */
+    public double getLinearDamping()
+    {
+        return _linearDamping;
+    }
+
+    /**
+     * @return maximum translational velocity (m/s)
+     */
+    public double getMaxLinearVelocity()
+    {
+        return _maxLinearVelocity;
+    }
+
+    /**
+     * Restarts the controller at rest. The wrench estimated in the first
+     * {@link #BIAS_CYCLES} updates is averaged to the bias of the external
+     * torque estimation, so a single noisy sample does not offset the
+     * admittance; the robot must not be touched and does not move meanwhile.
+     *
+     * @param q
+     *            start joint positions (rad)
+     */
+    public void reset(double[] q)
+    {
+        System.arraycopy(q, 0, _q, 0, N);
+        for (int k = 0; k < 6; k++)
+        {
+            _velocity[k] = 0.0;
+            _wrench[k] = 0.0;
+            _bias[k] = 0.0;
+        }
+        _biasCycles = 0;
+    }
+
+    /**
+     * Runs one cycle.
+     *
+     * @param externalTorque
+     *            external joint torques (Nm)
+     * @param dt
+     *            cycle time (s)
+     * @param q
+     *            output commanded joint positions (rad)
+     */
+    public void update(double[] externalTorque, double dt, double[] q)
+    {
+        _model.jacobian(_q, _jacobian);
+
+        // A = J J^T + l^2 I, factorized once for both pseudo-inverses
+        for (int r = 0; r < 6; r++)
+        {
+            double[] jr = _jacobian[r];
+            for (int c = 0; c <= r; c++)
+            {
+                double[] jc = _jacobian[c];
+                double s = 0.0;
+                for (int i = 0; i < N; i++)
+                {
+                    s += jr[i] * jc[i];
+                }
+                _factor[r][c] = s;
+                _factor[c][r] = s;
+            }
+            _factor[r][r] += _damping2;
+
+            double s = 0.0;
+            for (int i = 0; i < N; i++)
+            {
+                s += jr[i] * externalTorque[i];
+            }
+            _jTau[r] = s;
+        }
+        LinearAlgebra.choleskyDecompose(_factor, 6);
+        LinearAlgebra.choleskySolve(_factor, _jTau, _wrench, 6);
+
+        if (_biasCycles < BIAS_CYCLES)
+        {
+            _biasCycles++;
+            for (int k = 0; k < 6; k++)
+            {
+                _bias[k] += (_wrench[k] - _bias[k]) / _biasCycles;
+            }
+            System.arraycopy(_q, 0, q, 0, N);
+            return;
+        }
+
+        // mass-damper per axis on the wrench without bias and dead band
+        double mass = _mass;
+        double inertia = _inertia;
+        double linearDamping = _linearDamping;
+        double angularDamping = _angularDamping;
+        for (int k = 0; k < 6; k++)
+        {
+            boolean linear = k < 3;
+            double f = deadband(_wrench[k] - _bias[k], linear ? _forceDeadband : _torqueDeadband);
+            double m = linear ? mass : inertia;
+            double d = linear ? linearDamping : angularDamping;
+            _velocity[k] += dt / m * (f - d * _velocity[k]);
+        }
+        limit(0, _maxLinearVelocity);
+        limit(3, _maxAngularVelocity);
+
+        // qd = J^T A^-1 v
+        LinearAlgebra.choleskySolve(_factor, _velocity, _y, 6);
+        double scale = 1.0;
+        for (int i = 0; i < N; i++)
+        {
+            double s = 0.0;
+            for (int r = 0; r < 6; r++)
+            {
+                s += _jacobian[r][i] * _y[r];
+            }
+            _qd[i] = s;
+            double limit = JOINT_VELOCITY_SCALE * LBRiiwa7Model.VELOCITY_LIMITS[i];
+            if (Math.abs(s) * scale > limit)
+            {
+                scale = limit / Math.abs(s);
+            }
+        }
+        for (int i = 0; i < N; i++)
+        {
+            double limit = LBRiiwa7Model.JOINT_LIMITS[i] - JOINT_LIMIT_MARGIN;
+            _q[i] = Math.max(-limit, Math.min(limit, _q[i] + scale * _qd[i] * dt));
+        }
+        if (scale < 1.0)
+        {
+            for (int k = 0; k < 6; k++)
+            {
+                _velocity[k] *= scale;
+            }
+        }
+        System.arraycopy(_q, 0, q, 0, N);
+    }
+
+    /**
+     * @return wrench estimated in the last cycle including the bias, forces
+     *         (N) followed by torques (N m), not a copy
+     */
+    public double[] getWrench()
+    {
+        return _wrench;
+    }
+
+    /**
+     * @return commanded velocity of the tool centre point, linear (m/s)
+     *         followed by angular (rad/s), not a copy
+     */
+    public double[] getVelocity()
+    {
+        return _velocity;
+    }
+
+    private void limit(int offset, double max)
+    {
+        double norm = Math.sqrt(_velocity[offset] * _velocity[offset] + _velocity[offset + 1]
+                * _velocity[offset + 1] + _velocity[offset + 2] * _velocity[offset + 2]);
+        if (norm > max)
+        {
+            double scale = max / norm;
+            _velocity[offset] *= scale;
+            _velocity[offset + 1] *= scale;
+            _velocity[offset + 2] *= scale;
+        }
+    }
+
+    private static double deadband(double value, double band)
+    {
+        if (value > band)
+        {
+            return value - band;
+        }
+        if (value < -band)
+        {
+            return value + band;
+        }
+        return 0.0;
+    }
+}
@@ -0,0 +1,95 @@
+package connectivity.fri.sdk.example.LBRAdmittanceControl;
+
+import java.util.logging.Logger;
+
+import com.kuka.connectivity.fri.clientSDK.clientLBR.LBRClient;
+import com.kuka.connectivity.fri.clientSDK.clientLBR.LBRState;
+
+import connectivity.fri.sdk.example.LBRModel.CycleTimes;
+
+/**
+ * Client that makes the robot compliant to external forces by an
+ * {@link AdmittanceController} in position command mode.
+ * <p>
+ * The controller starts at the interpolator position when the session enters
+ * 'Commanding Active'. Every commanding cycle it turns the external torques
+ * reported by the robot controller into new joint positions; the
+ * interpolator is ignored meanwhile. The computation time of the controller
+ * is measured in every cycle and recorded in {@link CycleTimes} after a
+ * warm-up.
+ */
+public class LBRAdmittanceClient extends LBRClient
+{
+    private final AdmittanceController _controller;
+    private final double[] _jointPosition = new double[LBRState.NUMBER_OF_JOINTS];
+
+    private final CycleTimes _cycleTimes = new CycleTimes();
+    private volatile long _cycles;
+
+    /**
+     * Constructor.
+     *
+     * @param controller
+     *            the admittance controller
+     */
+    public LBRAdmittanceClient(AdmittanceController controller)
+    {
+        _controller = controller;
+
+        Logger.getAnonymousLogger().info("LBRAdmittanceClient initialized\n");
+    }
+
+    /**
+     * @return the admittance controller
+     */
+    public AdmittanceController getController()
+    {
+        return _controller;
+    }
+
+    /**
+     * @return commanding cycles of the current session
+     */
+    public long getCycles()
+    {
+        return _cycles;
+    }
+
+    /**
+     * @return computation times of the controller in the current session;
+     *         read after the session
+     */
+    public CycleTimes getCycleTimes()
+    {
+        return _cycleTimes;
+    }
+
+    @Override
+    public void onStateChange(FRISessionState oldState, FRISessionState newState)
+    {
+        if (newState == FRISessionState.COMMANDING_ACTIVE)
+        {
+            _controller.reset(getRobotState().getIpoJointPosition());
+            _cycles = 0;
+            _cycleTimes.reset();
+        }
+    }
+
+    /**
+     * Callback for the FRI state 'Commanding Active'.
+     */
+    @Override
+    public void command()
+    {
+        double[] externalTorque = getRobotState().getExternalTorque();
+        double dt = getRobotState().getSampleTime();
+
+        long start = System.nanoTime();
+        _controller.update(externalTorque, dt, _jointPosition);
+        long nanos = System.nanoTime() - start;
+
+        getRobotCommand().setJointPosition(_jointPosition);
+        _cycles++;
+        _cycleTimes.record(nanos);
+    }
+}
@@ -0,0 +1,274 @@
+package connectivity.fri.sdk.example.LBRAdmittanceControl;
+
+import java.util.logging.Logger;
+
+import com.kuka.connectivity.fri.clientSDK.base.ClientApplication;
+import com.kuka.connectivity.fri.clientSDK.base.IClient.FRISessionState;
+import com.kuka.connectivity.fri.clientSDK.connection.UdpConnection;
+
+import connectivity.fri.sdk.example.LBRModel.CycleTimes;
+import connectivity.fri.sdk.example.LBRModel.LBRSimulator;
+import connectivity.fri.sdk.example.LBRModel.LBRiiwa7Model;
+
+/**
+ * Implementation of a FRI client application for compliant guiding by
+ * client-side admittance control.
+ * <p>
+ * With the argument <code>simulate</code> the application validates the
+ * {@link LBRAdmittanceClient} on the {@link LBRSimulator} instead: a force is
+ * applied to the flange and released again, and the resulting flange velocity
+ * must match the steady state of the virtual mass-damper, computed from the
+ * dead band, damping and velocity limit of the controller, within
+ * {@link #VELOCITY_TOLERANCE}. The 99.9th percentile of the computation time
+ * per cycle after the warm-up is checked against the budget of
+ * {@link #CYCLE_BUDGET_MICROS}; the scenario runs {@link #WARMUP_RUNS} times
+ * before, so the control loop is compiled when it is judged.
+ *
+ * @see ClientApplication#connect
+ * @see ClientApplication#step()
+ * @see ClientApplication#disconnect
+ */
+public class LBRAdmittanceControlApp
+{
+
+    private static final int DEFAULT_PORTID = 30200;
+    private static final double SINGULARITY_DAMPING = 0.02;
+
+    /** Budget of the controller computation per cycle (us). */
+    public static final double CYCLE_BUDGET_MICROS = 100.0;
+    /** Allowed deviation of the simulated flange velocity, relative to the expected one. */
+    public static final double VELOCITY_TOLERANCE = 0.05;
+    /** Unjudged runs of the simulated scenario before the judged one. */
+    public static final int WARMUP_RUNS = 2;
+
+    private static final double[] SIMULATION_START = {
+        0, Math.toRadians(30), 0, Math.toRadians(-90), 0, Math.toRadians(60), 0 };
+    private static final double[] SIMULATED_FORCE = { 10.0, -8.0, 6.0 };
+    private static final double TORQUE_NOISE = 0.1;
+    private static final double REST_SECONDS = 1.0;
+    private static final double PUSH_SECONDS = 1.0;
+    private static final double MEASURE_SECONDS = 0.4;
+    private static final double RELEASE_SECONDS = 1.0;
+
+    /**
+     * Auto-generated method stub. Do not modify the contents of this method.
+     *
+     * @param argv
+     *            the arguments
+     *
+     *
+     */
+    public static void main(String[] argv)
+    {
+        if (argv.length > 0)
+        {
+            if (argv[0].equals("help"))
+            {
+                Logger.getAnonymousLogger().info("\nKUKA LBR admittance control application\n\n\tCommand line arguments:");
+                Logger.getAnonymousLogger().info("\t1) remote hostname (optional), or simulate");
+                Logger.getAnonymousLogger().info("\t2) port ID (optional)");
+                return;
+            }
+            if (argv[0].equals("simulate"))
+            {
+                simulate();
+                return;
+            }
+        }
+
+        String hostname = (argv.length >= 1) ? argv[0] : null;
+        int port = (argv.length >= 2) ? Integer.valueOf(argv[1]) : DEFAULT_PORTID;
+
+        Logger.getAnonymousLogger().info("Enter LBRAdmittanceControl Client Application");
+
+        /***************************************************************************/
+        /*                                                                         */
+        /* Place user Client Code here */
+        /*                                                                         */
+        /**************************************************************************/
+
+        // create new admittance client
+        LBRAdmittanceClient client = new LBRAdmittanceClient(new AdmittanceController(new LBRiiwa7Model(),
+                SINGULARITY_DAMPING));
+
+        /***************************************************************************/
+        /*                                                                         */
+        /* Standard application structure */
+        /* Configuration */
+        /*                                                                         */
+        /***************************************************************************/
+
+        // create new udp connection
+        UdpConnection connection = new UdpConnection();
+
+        // pass connection and client to a new FRI client application
+        ClientApplication app = new ClientApplication(connection, client);
+
+        // connect client application to KUKA Sunrise controller
+        app.connect(port, hostname);
+
+        /***************************************************************************/
+        /*                                                                         */
+        /* Standard application structure */
+        /* Execution mainloop */
+        /*                                                                         */
+        /***************************************************************************/
+
+        // repeatedly call the step routine to receive and process FRI packets
+        boolean success = true;
+        while (success)
+        {
+            success = app.step();
+        }
+
+        /***************************************************************************/
+        /*                                                                         */
+        /* Standard application structure */
+        /* Dispose */
+        /*                                                                         */
+        /***************************************************************************/
+
+        // disconnect from controller
+        app.disconnect();
+
+        Logger.getAnonymousLogger().info("Controller time per cycle: " + client.getCycleTimes());
+        Logger.getAnonymousLogger().info("Exit LBRAdmittanceControl Client Application");
+    }
+
+    private static void simulate()
+    {
+        for (int run = 0; run < WARMUP_RUNS; run++)
+        {
+            runScenario();
+        }
+        Logger.getAnonymousLogger().info(runScenario());
+    }
+
+    // pushes, measures and releases on a fresh simulator, returns the report
+    private static String runScenario()
+    {
+        int n = LBRiiwa7Model.NUMBER_OF_JOINTS;
+        LBRiiwa7Model plant = new LBRiiwa7Model();
+        LBRSimulator sim = new LBRSimulator(plant, 1, 4711);
+        sim.setSensorNoise(0.0, TORQUE_NOISE);
+        sim.reset(SIMULATION_START);
+
+        AdmittanceController controller = new AdmittanceController(new LBRiiwa7Model(), SINGULARITY_DAMPING);
+        LBRAdmittanceClient client = new LBRAdmittanceClient(controller);
+
+        double dt = sim.getSampleTime();
+        double[] q = new double[n];
+        double[] tauExt = new double[n];
+        double[][] jacobian = new double[6][n];
+        double[] pose = new double[12];
+        double[] start = new double[3];
+        double[] end = new double[3];
+        LBRiiwa7Model kinematics = new LBRiiwa7Model();
+
+        sim.setSessionState(FRISessionState.MONITORING_READY);
+        sim.step(client);
+        sim.setSessionState(FRISessionState.COMMANDING_ACTIVE);
+
+        // at rest the sensor noise must stay inside the dead band
+        run(sim, (int) (REST_SECONDS / dt), null, kinematics, jacobian, q, tauExt, client);
+        sim.getJointPosition(q);
+        kinematics.forwardKinematics(q, pose);
+        double drift = distance(pose, SIMULATION_START, kinematics);
+
+        // push until the velocity settles (time constant M / D, 0.1 s by default), then measure
+        int pushCycles = (int) (PUSH_SECONDS / dt);
+        int measureCycles = (int) (MEASURE_SECONDS / dt);
+        run(sim, pushCycles - measureCycles, SIMULATED_FORCE, kinematics, jacobian, q, tauExt, client);
+        sim.getJointPosition(q);
+        kinematics.forwardKinematics(q, pose);
+        position(pose, start);
+        run(sim, measureCycles, SIMULATED_FORCE, kinematics, jacobian, q, tauExt, client);
+        sim.getJointPosition(q);
+        kinematics.forwardKinematics(q, pose);
+        position(pose, end);
+
+        // release, the flange must come to rest
+        run(sim, (int) (RELEASE_SECONDS / dt), null, kinematics, jacobian, q, tauExt, client);
+        double[] velocity = controller.getVelocity();
+        double residualVelocity = Math.sqrt(velocity[0] * velocity[0] + velocity[1] * velocity[1] + velocity[2]
+                * velocity[2]);
+
+        // steady state F - D v = 0 per axis, after the dead band and within the velocity limit
+        double[] expected = new double[3];
+        double[] measured = new double[3];
+        double expectedNorm = 0.0;
+        for (int k = 0; k < 3; k++)
+        {
+            double f = SIMULATED_FORCE[k];
+            expected[k] = Math.signum(f) * Math.max(0.0, Math.abs(f) - controller.getForceDeadband())
+                    / controller.getLinearDamping();
+            measured[k] = (end[k] - start[k]) / (measureCycles * dt);
+            expectedNorm += expected[k] * expected[k];
+        }
+        expectedNorm = Math.sqrt(expectedNorm);
+        double limitScale = Math.min(1.0, controller.getMaxLinearVelocity() / expectedNorm);
+        double deviation = 0.0;
+        for (int k = 0; k < 3; k++)
+        {
+            expected[k] *= limitScale;
+            deviation += (measured[k] - expected[k]) * (measured[k] - expected[k]);
+        }
+        deviation = Math.sqrt(deviation) / (expectedNorm * limitScale);
+
+        CycleTimes times = client.getCycleTimes();
+        StringBuilder report = new StringBuilder("Simulated admittance control:\n");
+        report.append(String.format("\tdrift at rest: %.2f mm%n", drift * 1000.0));
+        report.append(String.format("\tflange velocity under (%.0f, %.0f, %.0f) N: (%.4f, %.4f, %.4f) m/s, "
+                + "expected (%.4f, %.4f, %.4f) m/s, deviation %.1f %% (tolerance %.0f %%): %s%n",
+                SIMULATED_FORCE[0], SIMULATED_FORCE[1], SIMULATED_FORCE[2], measured[0], measured[1], measured[2],
+                expected[0], expected[1], expected[2], deviation * 100.0, VELOCITY_TOLERANCE * 100.0,
+                deviation <= VELOCITY_TOLERANCE ? "ok" : "FAILED"));
+        report.append(String.format("\tcommanded velocity %.1f s after release: %.5f m/s%n", RELEASE_SECONDS,
+                residualVelocity));
+        report.append(String.format("\tcontroller time per cycle: %s; budget %.0f us for %.1f %% of the cycles: %s",
+                times, CYCLE_BUDGET_MICROS, times.getJudgedFraction() * 100.0,
+                times.isWithin(CYCLE_BUDGET_MICROS) ? "ok" : "EXCEEDED"));
+        return report.toString();
+    }
+
+    // steps the simulator, applying a force at the flange if given
+    private static void run(LBRSimulator sim, int cycles, double[] force, LBRiiwa7Model kinematics,
+            double[][] jacobian, double[] q, double[] tauExt, LBRAdmittanceClient client)
+    {
+        for (int k = 0; k < cycles; k++)
+        {
+            for (int i = 0; i < tauExt.length; i++)
+            {
+                tauExt[i] = 0.0;
+            }
+            if (force != null)
+            {
+                sim.getJointPosition(q);
+                kinematics.jacobian(q, jacobian);
+                for (int i = 0; i < tauExt.length; i++)
+                {
+                    tauExt[i] = jacobian[0][i] * force[0] + jacobian[1][i] * force[1] + jacobian[2][i] * force[2];
+                }
+            }
+            sim.setExternalTorque(tauExt);
+            sim.step(client);
+        }
+    }
+
+    private static double distance(double[] pose, double[] q0, LBRiiwa7Model kinematics)
+    {
+        double[] reference = new double[12];
+        kinematics.forwardKinematics(q0, reference);
+        double dx = pose[3] - reference[3];
+        double dy = pose[7] - reference[7];
+        double dz = pose[11] - reference[11];
+        return Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+    private static void position(double[] pose, double[] position)
+    {
+        position[0] = pose[3];
+        position[1] = pose[7];
+        position[2] = pose[11];
+    }
+}
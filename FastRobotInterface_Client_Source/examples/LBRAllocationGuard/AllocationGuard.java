@@ -0,0 +1,344 @@
+package connectivity.fri.sdk.example.LBRAllocationGuard;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+import com.kuka.connectivity.fri.clientSDK.base.IClient.ClientCommandMode;
+import com.kuka.connectivity.fri.clientSDK.base.IClient.FRISessionState;
+import com.kuka.connectivity.fri.clientSDK.clientLBR.LBRClient;
+import com.kuka.connectivity.fri.clientSDK.clientLBR.LBRCommand;
+import com.kuka.connectivity.fri.clientSDK.protobuf.gen.FRIMessages.FRICommandMessage;
+import com.kuka.connectivity.fri.clientSDK.protobuf.gen.FRIMessages.JointValues;
+
+import connectivity.fri.sdk.example.LBRClientRuntime.FRIClientApplication;
+import connectivity.fri.sdk.example.LBRClientRuntime.IMonitoringMessageListener;
+import connectivity.fri.sdk.example.LBRModel.LBRSimulator;
+import connectivity.fri.sdk.example.LBRModel.LBRiiwa7Model;
+
+/**
+ * Measures the heap allocations of a client in the phases of the FRI cycle.
+ * <p>
+ * The guard runs simulated sessions ('Monitoring Ready', 'Commanding Wait',
+ * 'Commanding Active') through a {@link FRIClientApplication} and accounts the
+ * bytes allocated by the control thread separately for the client callbacks
+ * and for the remainder of {@link FRIClientApplication#step()}. The first
+ * sessions warm up the JIT compiler; the last one is measured. Cycles with a
+ * state transition are not measured, so initialization in
+ * {@link LBRClient#onStateChange} is allowed to allocate.
+ * <p>
+ * The client SDK itself allocates in the getters of {@code LBRState} and the
+ * setters of {@code LBRCommand}. {@link #check} therefore compares each phase
+ * with a reference client that does the least work the SDK requires, and
+ * fails the phases that allocate more.
+ */
+public class AllocationGuard
+{
+    /**
+     * Measured phase of the FRI cycle.
+     */
+    public enum Phase
+    {
+        /** {@link FRIClientApplication#step()} without the client callbacks */
+        STEP("step()"),
+        /** {@link LBRClient#monitor()} */
+        MONITOR("monitor()"),
+        /** {@link LBRClient#waitForCommand()} */
+        WAIT_FOR_COMMAND("waitForCommand()"),
+        /** {@link LBRClient#command()} */
+        COMMAND("command()");
+
+        private final String _methodName;
+
+        private Phase(String methodName)
+        {
+            _methodName = methodName;
+        }
+
+        /**
+         * @return name of the measured method
+         */
+        public String getMethodName()
+        {
+            return _methodName;
+        }
+    }
+
+    private static final int WARMUP_SESSIONS = 2;
+    private static final int SEND_PERIOD = 1;
+    private static final double MOTION_AMPLITUDE = 0.2;
+    private static final double MOTION_FREQUENCY = 0.5;
+    private static final double[] START_POSITION = {
+        0, Math.toRadians(30), 0, Math.toRadians(-60), 0, Math.toRadians(60), 0 };
+
+    private final ClientCommandMode _mode;
+    private final int _cyclesPerState;
+    private IMonitoringMessageListener[] _listeners = new IMonitoringMessageListener[0];
+
+    private final com.sun.management.ThreadMXBean _threadBean;
+    private final long _threadId;
+    private long _overhead;
+    private double[] _escape;
+
+    /**
+     * Constructor.
+     *
+     * @param mode
+     *            client command mode of the simulated sessions
+     * @param cyclesPerState
+     *            cycles per session state and session
+     */
+    public AllocationGuard(ClientCommandMode mode, int cyclesPerState)
+    {
+        _mode = mode;
+        _cyclesPerState = cyclesPerState;
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean))
+        {
+            throw new UnsupportedOperationException("Per-thread allocation accounting is not supported");
+        }
+        _threadBean = (com.sun.management.ThreadMXBean) bean;
+        if (!_threadBean.isThreadAllocatedMemorySupported())
+        {
+            throw new UnsupportedOperationException("Per-thread allocation accounting is not supported");
+        }
+        _threadBean.setThreadAllocatedMemoryEnabled(true);
+        _threadId = Thread.currentThread().getId();
+    }
+
+    /**
+     * Adds a listener to the application of the measured client, but not to
+     * the one of the reference, so that its allocations count for the step.
+     *
+     * @param listener
+     *            the listener
+     */
+    public void addMonitoringMessageListener(IMonitoringMessageListener listener)
+    {
+        IMonitoringMessageListener[] listeners = new IMonitoringMessageListener[_listeners.length + 1];
+        System.arraycopy(_listeners, 0, listeners, 0, _listeners.length);
+        listeners[_listeners.length] = listener;
+        _listeners = listeners;
+    }
+
+    /**
+     * Measures a client and checks it against the SDK reference.
+     *
+     * @param client
+     *            the client to check
+     * @param toleranceBytesPerCycle
+     *            allocation per cycle tolerated above the reference
+     * @return the report
+     * @throws IOException
+     *             if a simulated message cannot be encoded or decoded
+     */
+    public AllocationReport check(LBRClient client, double toleranceBytesPerCycle) throws IOException
+    {
+        AllocationReport reference = measure(new NeutralClient(), false);
+        AllocationReport report = measure(client, true);
+        for (Phase phase : Phase.values())
+        {
+            report.setAllowance(phase, reference.getBytesPerCycle(phase) + toleranceBytesPerCycle);
+        }
+        return report;
+    }
+
+    /**
+     * Measures a client without verdict.
+     *
+     * @param client
+     *            the client to measure
+     * @return the report
+     * @throws IOException
+     *             if a simulated message cannot be encoded or decoded
+     */
+    public AllocationReport measure(LBRClient client) throws IOException
+    {
+        return measure(client, true);
+    }
+
+    private AllocationReport measure(LBRClient client, boolean withListeners) throws IOException
+    {
+        if (Thread.currentThread().getId() != _threadId)
+        {
+            throw new IllegalStateException("The guard must be used by the thread that created it");
+        }
+        calibrate();
+
+        SimulatedConnection connection = new SimulatedConnection();
+        MeasuringApplication app = new MeasuringApplication(connection, client);
+        if (withListeners)
+        {
+            for (IMonitoringMessageListener listener : _listeners)
+            {
+                app.addMonitoringMessageListener(listener);
+            }
+        }
+
+        AllocationReport report = new AllocationReport(client.getClass().getName());
+        LBRSimulator sim = new LBRSimulator(new LBRiiwa7Model(), SEND_PERIOD, 0);
+        sim.setClientCommandMode(_mode);
+        LBRClient commandHolder = new LBRClient();
+        for (int session = 0; session <= WARMUP_SESSIONS; session++)
+        {
+            runSession(sim, app, connection, commandHolder, session == WARMUP_SESSIONS ? report : null);
+        }
+        return report;
+    }
+
+    private void runSession(LBRSimulator sim, MeasuringApplication app, SimulatedConnection connection,
+            LBRClient commandHolder, AllocationReport report) throws IOException
+    {
+        FRISessionState[] schedule = { FRISessionState.MONITORING_READY, FRISessionState.COMMANDING_WAIT,
+            FRISessionState.COMMANDING_ACTIVE };
+        double[] ipo = START_POSITION.clone();
+        sim.reset(START_POSITION);
+        sim.setIpoJointPosition(ipo);
+        double dt = sim.getSampleTime();
+
+        for (FRISessionState state : schedule)
+        {
+            sim.setSessionState(state);
+            for (int k = 0; k < _cyclesPerState; k++)
+            {
+                if (state == FRISessionState.COMMANDING_ACTIVE)
+                {
+                    ipo[3] = START_POSITION[3] + MOTION_AMPLITUDE * Math.sin(2 * Math.PI * MOTION_FREQUENCY * k * dt);
+                    sim.setIpoJointPosition(ipo);
+                }
+                connection.prepare(sim.createMonitoringMessage());
+
+                long before = allocatedBytes();
+                app.step();
+                // the window also holds the outer and both inner accounting calls
+                long stepBytes = allocatedBytes() - before - app._callbackBytes - 3 * _overhead;
+
+                if (report != null && k > 0 && app._callbackPhase != null)
+                {
+                    report.record(Phase.STEP, stepBytes);
+                    report.record(app._callbackPhase, app._callbackBytes);
+                }
+                app._callbackPhase = null;
+                app._callbackBytes = 0;
+
+                applyCommand(sim, connection.takeCommand(), commandHolder.getRobotCommand());
+                sim.integrate();
+            }
+        }
+
+        // end the session
+        sim.setSessionState(FRISessionState.IDLE);
+        connection.prepare(sim.createMonitoringMessage());
+        app.step();
+    }
+
+    private static void applyCommand(LBRSimulator sim, FRICommandMessage message, LBRCommand command)
+    {
+        if (message != null && message.hasCommandData())
+        {
+            if (message.getCommandData().hasJointPosition())
+            {
+                command.setJointPosition(toArray(message.getCommandData().getJointPosition()));
+            }
+            if (message.getCommandData().hasJointTorque())
+            {
+                command.setTorque(toArray(message.getCommandData().getJointTorque()));
+            }
+        }
+        sim.applyCommand(command);
+        command.resetCommandMessage();
+    }
+
+    private static double[] toArray(JointValues values)
+    {
+        double[] array = new double[values.getValueCount()];
+        for (int i = 0; i < array.length; i++)
+        {
+            array[i] = values.getValue(i);
+        }
+        return array;
+    }
+
+    /**
+     * Measures the size of a joint value array, the allocation of one call of
+     * an {@code LBRState} getter. Budgets of clients that read more state
+     * than the reference can be given in multiples of it.
+     *
+     * @return bytes allocated by one array of joint values
+     */
+    public long getJointArrayBytes()
+    {
+        calibrate();
+        long bytes = Long.MAX_VALUE;
+        for (int i = 0; i < 1000; i++)
+        {
+            long before = allocatedBytes();
+            _escape = new double[LBRiiwa7Model.NUMBER_OF_JOINTS];
+            bytes = Math.min(bytes, allocatedBytes() - before - _overhead);
+        }
+        return bytes;
+    }
+
+    private void calibrate()
+    {
+        // the accounting call itself may allocate; use the smallest observed cost
+        long overhead = Long.MAX_VALUE;
+        for (int i = 0; i < 10000; i++)
+        {
+            long before = allocatedBytes();
+            overhead = Math.min(overhead, allocatedBytes() - before);
+        }
+        _overhead = overhead;
+    }
+
+    private long allocatedBytes()
+    {
+        return _threadBean.getThreadAllocatedBytes(_threadId);
+    }
+
+    /**
+     * Application that accounts the allocations of the client callbacks.
+     */
+    private final class MeasuringApplication extends FRIClientApplication
+    {
+        private Phase _callbackPhase;
+        private long _callbackBytes;
+
+        private MeasuringApplication(SimulatedConnection connection, LBRClient client)
+        {
+            super(connection, client);
+        }
+
+        @Override
+        protected boolean callClient(LBRClient client, FRISessionState state)
+        {
+            switch (state)
+            {
+                case MONITORING_WAIT:
+                case MONITORING_READY:
+                {
+                    _callbackPhase = Phase.MONITOR;
+                    break;
+                }
+                case COMMANDING_WAIT:
+                {
+                    _callbackPhase = Phase.WAIT_FOR_COMMAND;
+                    break;
+                }
+                case COMMANDING_ACTIVE:
+                {
+                    _callbackPhase = Phase.COMMAND;
+                    break;
+                }
+                default:
+                {
+                    _callbackPhase = null;
+                    break;
+                }
+            }
+            long before = allocatedBytes();
+            boolean result = super.callClient(client, state);
+            _callbackBytes = allocatedBytes() - before - _overhead;
+            return result;
+        }
+    }
+}
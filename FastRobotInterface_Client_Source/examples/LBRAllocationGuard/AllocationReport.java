@@ -0,0 +1,157 @@
+package connectivity.fri.sdk.example.LBRAllocationGuard;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import connectivity.fri.sdk.example.LBRAllocationGuard.AllocationGuard.Phase;
+
+/**
+ * Allocations per phase of a measured session, and the verdict against the
+ * allowances of a reference.
+ */
+public class AllocationReport
+{
+    private final String _clientName;
+    private final long[] _cycles = new long[Phase.values().length];
+    private final long[] _bytes = new long[Phase.values().length];
+    private final long[] _maxBytes = new long[Phase.values().length];
+    private final long[] _allocatingCycles = new long[Phase.values().length];
+    private final double[] _allowance = new double[Phase.values().length];
+
+    AllocationReport(String clientName)
+    {
+        _clientName = clientName;
+        for (int i = 0; i < _allowance.length; i++)
+        {
+            _allowance[i] = Double.POSITIVE_INFINITY;
+        }
+    }
+
+    void record(Phase phase, long bytes)
+    {
+        int i = phase.ordinal();
+        _cycles[i]++;
+        if (bytes > 0)
+        {
+            _bytes[i] += bytes;
+            _allocatingCycles[i]++;
+            _maxBytes[i] = Math.max(_maxBytes[i], bytes);
+        }
+    }
+
+    void setAllowance(Phase phase, double bytesPerCycle)
+    {
+        _allowance[phase.ordinal()] = bytesPerCycle;
+    }
+
+    /**
+     * @param phase
+     *            the phase
+     * @return measured cycles of the phase
+     */
+    public long getCycles(Phase phase)
+    {
+        return _cycles[phase.ordinal()];
+    }
+
+    /**
+     * @param phase
+     *            the phase
+     * @return mean allocated bytes per cycle
+     */
+    public double getBytesPerCycle(Phase phase)
+    {
+        long cycles = _cycles[phase.ordinal()];
+        return cycles > 0 ? (double) _bytes[phase.ordinal()] / cycles : 0.0;
+    }
+
+    /**
+     * @param phase
+     *            the phase
+     * @return largest allocation of a single cycle (bytes)
+     */
+    public long getMaxBytes(Phase phase)
+    {
+        return _maxBytes[phase.ordinal()];
+    }
+
+    /**
+     * @param phase
+     *            the phase
+     * @return number of cycles that allocated
+     */
+    public long getAllocatingCycles(Phase phase)
+    {
+        return _allocatingCycles[phase.ordinal()];
+    }
+
+    /**
+     * @param phase
+     *            the phase
+     * @return allowed bytes per cycle, infinite if not checked
+     */
+    public double getAllowance(Phase phase)
+    {
+        return _allowance[phase.ordinal()];
+    }
+
+    /**
+     * @return phases that allocate more than allowed
+     */
+    public List<Phase> getOffendingPhases()
+    {
+        List<Phase> phases = new ArrayList<Phase>();
+        for (Phase phase : Phase.values())
+        {
+            if (getBytesPerCycle(phase) > getAllowance(phase))
+            {
+                phases.add(phase);
+            }
+        }
+        return phases;
+    }
+
+    /**
+     * @return true if no phase allocates more than allowed
+     */
+    public boolean isPassed()
+    {
+        return getOffendingPhases().isEmpty();
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder report = new StringBuilder("Allocation report for ").append(_clientName).append(":\n");
+        for (Phase phase : Phase.values())
+        {
+            report.append(String.format("\t%-16s %8.1f bytes/cycle, max %6d bytes, %6d of %6d cycles allocating",
+                    phase.getMethodName(), getBytesPerCycle(phase), getMaxBytes(phase),
+                    getAllocatingCycles(phase), getCycles(phase)));
+            double allowance = getAllowance(phase);
+            if (!Double.isInfinite(allowance))
+            {
+                report.append(String.format(", allowed %.1f", allowance));
+                if (getBytesPerCycle(phase) > allowance)
+                {
+                    report.append("  <-- FAILED");
+                }
+            }
+            report.append('\n');
+        }
+        List<Phase> offending = getOffendingPhases();
+        if (offending.isEmpty())
+        {
+            report.append("\tpassed");
+        }
+        else
+        {
+            report.append("\tFAILED: allocation above the allowance in");
+            for (Phase phase : offending)
+            {
+                report.append(' ').append(phase.getMethodName());
+            }
+        }
+        return report.toString();
+    }
+}
@@ -0,0 +1,172 @@
+package connectivity.fri.sdk.example.LBRAllocationGuard;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import com.kuka.connectivity.fri.clientSDK.base.IClient.ClientCommandMode;
+import com.kuka.connectivity.fri.clientSDK.clientLBR.LBRClient;
+
+import connectivity.fri.sdk.example.LBRAdmittanceControl.AdmittanceController;
+import connectivity.fri.sdk.example.LBRAdmittanceControl.LBRAdmittanceClient;
+import connectivity.fri.sdk.example.LBRClientRuntime.ClientLoader;
+import connectivity.fri.sdk.example.LBRCollisionDetection.LBRCollisionDetectionClient;
+import connectivity.fri.sdk.example.LBRCollisionDetection.LBRCollisionDetectionClient.Reaction;
+import connectivity.fri.sdk.example.LBRCommandArbitration.CommandArbiter;
+import connectivity.fri.sdk.example.LBRCommandArbitration.CommandSource;
+import connectivity.fri.sdk.example.LBRCommandArbitration.LBRArbitratedClient;
+import connectivity.fri.sdk.example.LBRFrictionCompensation.FrictionCompensation;
+import connectivity.fri.sdk.example.LBRFrictionCompensation.LBRFrictionCompensationClient;
+import connectivity.fri.sdk.example.LBRHotSwap.LBRHotSwapSineClient;
+import connectivity.fri.sdk.example.LBRJointImpedance.ImpedanceGains;
+import connectivity.fri.sdk.example.LBRJointImpedance.JointImpedanceController;
+import connectivity.fri.sdk.example.LBRJointImpedance.LBRJointImpedanceClient;
+import connectivity.fri.sdk.example.LBRJointSineOverlay.LBRJointSineOverlayClient;
+import connectivity.fri.sdk.example.LBRModel.JointFrictionModel;
+import connectivity.fri.sdk.example.LBRModel.LBRiiwa7Model;
+import connectivity.fri.sdk.example.LBRPayloadIdentification.LBRExcitationClient;
+import connectivity.fri.sdk.example.LBRPayloadIdentification.SessionRecording;
+import connectivity.fri.sdk.example.LBRTorqueSineOverlay.LBRTorqueSineOverlayClient;
+import connectivity.fri.sdk.example.LBRTrajectoryArchive.ArchiveChannel;
+import connectivity.fri.sdk.example.LBRTrajectoryArchive.ArchiveWriter;
+import connectivity.fri.sdk.example.LBRTrajectoryArchive.LBRArchivingClient;
+
+/**
+ * Allocation regression check of the example clients.
+ * <p>
+ * Every client runs simulated sessions in an {@link AllocationGuard}; a client
+ * fails if a phase of the FRI cycle allocates more per cycle than the SDK
+ * reference plus the tolerance. The application logs a report per client and
+ * exits with status 1 if a client failed, so it can be run as a build step
+ * with the example clients and any client given on the command line.
+ * <p>
+ * Clients that read more robot state than the reference pay for the copies
+ * made by the SDK getters; their budget includes one joint value array per
+ * additional read. Every other client gets no allowance beyond the
+ * tolerance.
+ */
+public class LBRAllocationGuardApp
+{
+
+    private static final int DEFAULT_CYCLES_PER_STATE = 5000;
+    // absorbs one-time allocations such as the lazy initialization of a class
+    private static final double DEFAULT_TOLERANCE = 1.0;
+
+    /**
+     * @param argv
+     *            the arguments
+     */
+    public static void main(String[] argv)
+    {
+        if (argv.length > 0)
+        {
+            if (argv[0].equals("help"))
+            {
+                Logger.getAnonymousLogger().info("\nKUKA LBR allocation guard\n\n\tCommand line arguments:");
+                Logger.getAnonymousLogger().info("\t1) cycles per session state (optional)");
+                Logger.getAnonymousLogger().info("\t2) tolerated bytes per cycle above the SDK reference (optional)");
+                Logger.getAnonymousLogger().info("\t3) class path of an additional client (optional)");
+                Logger.getAnonymousLogger().info("\t4) class name of the additional client (optional)");
+                Logger.getAnonymousLogger().info("\t5) command mode of the additional client (optional)");
+                return;
+            }
+        }
+
+        int cycles = (argv.length >= 1) ? Integer.valueOf(argv[0]) : DEFAULT_CYCLES_PER_STATE;
+        double tolerance = (argv.length >= 2) ? Double.valueOf(argv[1]) : DEFAULT_TOLERANCE;
+        String classPath = (argv.length >= 3) ? argv[2] : null;
+        String className = (argv.length >= 4) ? argv[3] : null;
+        ClientCommandMode mode = ClientCommandMode.valueOf((argv.length >= 5) ? argv[4] : "POSITION");
+
+        List<String> failed = new ArrayList<String>();
+        try
+        {
+            check(new LBRJointSineOverlayClient(0x8, 0.5, 0.1, 0.99), ClientCommandMode.POSITION, cycles,
+                    tolerance, failed);
+            check(new LBRTorqueSineOverlayClient(0x8, 0.5, 1.0), ClientCommandMode.TORQUE, cycles, tolerance,
+                    failed);
+            check(new LBRHotSwapSineClient(0x8, 0.5, 0.1, 0.99), ClientCommandMode.POSITION, cycles, tolerance,
+                    failed);
+            // reads measured position and torque in every callback
+            long arrayBytes = new AllocationGuard(ClientCommandMode.POSITION, cycles).getJointArrayBytes();
+            check(new LBRCollisionDetectionClient(new LBRiiwa7Model(),
+                    LBRCollisionDetectionClient.DEFAULT_OBSERVER_GAINS, LBRCollisionDetectionClient.DEFAULT_THRESHOLDS,
+                    Reaction.HOLD, 200), ClientCommandMode.POSITION, cycles, tolerance + 2 * arrayBytes, failed);
+            check(new LBRArbitratedClient(new CommandArbiter(new CommandSource("planner", 10, 50.0)), 0.2),
+                    ClientCommandMode.POSITION, cycles, tolerance, failed);
+            // reads measured position and external torque in every command
+            check(new LBRJointImpedanceClient(new JointImpedanceController(new LBRiiwa7Model(), new LBRiiwa7Model(),
+                    new ImpedanceGains(new double[] { 300, 300, 200, 200, 100, 50, 5 },
+                            new double[] { 0.7, 0.7, 0.7, 0.7, 0.7, 0.7, 0.7 }), 100.0, 0.05)),
+                    ClientCommandMode.TORQUE, cycles, tolerance + 2 * arrayBytes, failed);
+            // reads the external torque instead of the interpolator
+            check(new LBRAdmittanceClient(new AdmittanceController(new LBRiiwa7Model(), 0.02)),
+                    ClientCommandMode.POSITION, cycles, tolerance, failed);
+            JointFrictionModel friction = new JointFrictionModel(JointFrictionModel.DEFAULT_SMOOTHING_VELOCITY);
+            for (int i = 0; i < LBRiiwa7Model.NUMBER_OF_JOINTS; i++)
+            {
+                friction.setParameters(i, 1.0, 1.5, 0.5, 0.05);
+            }
+            check(new LBRFrictionCompensationClient(new FrictionCompensation(friction, 0.8, 20.0)),
+                    ClientCommandMode.TORQUE, cycles, tolerance, failed);
+            // records measured and commanded position and torque instead of reading the interpolator; the
+            // excitation outlasts the session so that every command records
+            check(new LBRExcitationClient(new double[] { 0.2, 0.2, 0.2, 0.2, 0.2, 0.2, 0.2 }, 0.1, 5, 0.3,
+                    0.002 * cycles + 2.0, 4711, new SessionRecording(0.001, cycles + 1)), ClientCommandMode.POSITION,
+                    cycles, tolerance + 3 * arrayBytes, failed);
+            checkArchivingClient(cycles, tolerance + 4 * arrayBytes, failed);
+            if (className != null)
+            {
+                LBRClient client = new ClientLoader(LBRAllocationGuardApp.class.getClassLoader()).load(classPath,
+                        className, new String[0]);
+                check(client, mode, cycles, tolerance, failed);
+            }
+        }
+        catch (Exception e)
+        {
+            Logger.getAnonymousLogger().severe("Allocation check aborted: " + e);
+            System.exit(2);
+        }
+
+        if (!failed.isEmpty())
+        {
+            Logger.getAnonymousLogger().severe("Allocation check failed for " + failed);
+            System.exit(1);
+        }
+        Logger.getAnonymousLogger().info("Allocation check passed");
+    }
+
+    // records measured and commanded position, measured and external torque in every callback, where the
+    // reference reads at most the interpolator
+    private static void checkArchivingClient(int cycles, double tolerance, List<String> failed) throws Exception
+    {
+        File file = File.createTempFile("LBRAllocationGuard", ".fria");
+        ArchiveWriter writer = new ArchiveWriter(file, ArchiveChannel.createLBRChannels(), 8192, 4096);
+        writer.start();
+        try
+        {
+            check(new LBRArchivingClient(writer), ClientCommandMode.POSITION, cycles, tolerance, failed);
+        }
+        finally
+        {
+            writer.close();
+            file.delete();
+        }
+    }
+
+    private static void check(LBRClient client, ClientCommandMode mode, int cycles, double tolerance,
+            List<String> failed) throws Exception
+    {
+        AllocationReport report = new AllocationGuard(mode, cycles).check(client, tolerance);
+        if (report.isPassed())
+        {
+            Logger.getAnonymousLogger().info(report.toString());
+        }
+        else
+        {
+            Logger.getAnonymousLogger().warning(report.toString());
+            failed.add(client.getClass().getSimpleName());
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package connectivity.fri.sdk.example.LBRAllocationGuard;
+
+import com.kuka.connectivity.fri.clientSDK.clientLBR.LBRClient;
+import com.kuka.connectivity.fri.clientSDK.clientLBR.LBRState;
+
+/**
+ * Reference client with the least work the client SDK requires per cycle:
+ * mirroring the interpolator and, in torque or wrench mode, commanding zero
+ * torques or wrench. Its allocations are those of the SDK itself.
+ */
+class NeutralClient extends LBRClient
+{
+    private final double[] _zeroTorque = new double[LBRState.NUMBER_OF_JOINTS];
+    private final double[] _zeroWrench = new double[6];
+
+    @Override
+    public void waitForCommand()
+    {
+        super.waitForCommand();
+        commandNeutral();
+    }
+
+    @Override
+    public void command()
+    {
+        super.command();
+        commandNeutral();
+    }
+
+    private void commandNeutral()
+    {
+        switch (getRobotState().getClientCommandMode())
+        {
+            case TORQUE:
+            {
+                getRobotCommand().setTorque(_zeroTorque);
+                break;
+            }
+            case WRENCH:
+            {
+                getRobotCommand().setWrench(_zeroWrench);
+                break;
+            }
+            default:
+            {
+                break;
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package connectivity.fri.sdk.example.LBRAllocationGuard;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import com.kuka.connectivity.fri.clientSDK.base.IClient;
+import com.kuka.connectivity.fri.clientSDK.protobuf.gen.FRIMessages.FRICommandMessage;
+import com.kuka.connectivity.fri.clientSDK.protobuf.gen.FRIMessages.FRIMonitoringMessage;
+
+import com.google.protobuf.CodedOutputStream;
+
+import connectivity.fri.sdk.example.LBRClientRuntime.FRIUdpConnection;
+
+/**
+ * In-memory connection that hands a prepared monitoring message to the
+ * application and keeps the command message it sends. Serialization and
+ * parsing happen in {@link #prepare} and {@link #takeCommand()}, outside of the
+ * measured step.
+ */
+class SimulatedConnection extends FRIUdpConnection
+{
+    private final byte[] _receiveBuffer = new byte[IClient.FRI_MONITORING_MSG_MAX_SIZE];
+    private final byte[] _sendBuffer = new byte[IClient.FRI_MONITORING_MSG_MAX_SIZE];
+    private int _receiveLength;
+    private int _sendLength = -1;
+
+    /**
+     * Prepares the message returned by the next reception.
+     *
+     * @param message
+     *            monitoring message
+     * @throws IOException
+     *             if the message does not fit
+     */
+    void prepare(FRIMonitoringMessage message) throws IOException
+    {
+        CodedOutputStream output = CodedOutputStream.newInstance(_receiveBuffer);
+        message.writeTo(output);
+        _receiveLength = message.getSerializedSize();
+        _sendLength = -1;
+    }
+
+    /**
+     * @return the command sent since the last {@link #prepare}, or null
+     * @throws IOException
+     *             if the command cannot be parsed
+     */
+    FRICommandMessage takeCommand() throws IOException
+    {
+        if (_sendLength < 0)
+        {
+            return null;
+        }
+        return FRICommandMessage.parseFrom(Arrays.copyOf(_sendBuffer, _sendLength));
+    }
+
+    @Override
+    public boolean isOpen()
+    {
+        return true;
+    }
+
+    @Override
+    public int receive(long timeoutMillis)
+    {
+        int length = _receiveLength;
+        _receiveLength = 0;
+        return length;
+    }
+
+    @Override
+    public int poll()
+    {
+        return 0;
+    }
+
+    @Override
+    public byte[] getReceiveBuffer()
+    {
+        return _receiveBuffer;
+    }
+
+    @Override
+    public byte[] getSendBuffer()
+    {
+        return _sendBuffer;
+    }
+
+    @Override
+    public boolean send(int length)
+    {
+        _sendLength = length;
+        return true;
+    }
+}
@@ -0,0 +1,159 @@
+package connectivity.fri.sdk.example.LBRAutoReconnect;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Logger;
+
+import com.kuka.connectivity.fri.clientSDK.base.IClient.FRIConnectionQuality;
+import com.kuka.connectivity.fri.clientSDK.clientLBR.LBRClient;
+
+import connectivity.fri.sdk.example.LBRClientRuntime.FRIClientApplication;
+import connectivity.fri.sdk.example.LBRClientRuntime.FRIUdpConnection;
+import connectivity.fri.sdk.example.LBRClientRuntime.ISessionEventListener;
+import connectivity.fri.sdk.example.LBRClientRuntime.SessionEvent;
+import connectivity.fri.sdk.example.LBRClientRuntime.SessionEventBus;
+import connectivity.fri.sdk.example.LBRJointSineOverlay.LBRJointSineOverlayClient;
+
+/**
+ * Implementation of a FRI client application that outlives FRI sessions.
+ * <p>
+ * The application runs the joint sine overlay client in the auto-reconnect
+ * mode of {@link FRIClientApplication}. Socket, buffers and client are kept
+ * over session ends and connection losses, e.g. while a robot application
+ * like <code>DrakeFRIPositionDriver</code> restarts its FRI session, and
+ * reconnect times are reported after every resumed session.
+ * <p>
+ * While the connection quality is below 'Good' the overlay is suspended and
+ * the interpolator positions are commanded by a plain {@link LBRClient}; the
+ * connection quality telemetry is reported at the end of every session.
+ * State, quality and safety changes are logged off the control thread through
+ * a {@link SessionEventBus}.
+ *
+ * @see FRIClientApplication#connect
+ * @see FRIClientApplication#step()
+ * @see FRIClientApplication#disconnect
+ */
+public class LBRAutoReconnectApp
+{
+
+    private static final int DEFAULT_PORTID = 30200;
+    private static final long DEFAULT_TIMEOUT_MILLIS = 100;
+    private static final int JOINT_MASK = 0x8;
+    private static final double FREQUENCY = 0.25;
+    private static final double AMPLITUDE = 0.04;
+    private static final double FILTER_COEFFICIENT = 0.99;
+    private static final int DEGRADE_CYCLES = 5;
+    private static final int RECOVER_CYCLES = 500;
+    private static final int EVENT_CAPACITY = 64;
+
+    /**
+     * @param argv
+     *            the arguments
+     */
+    public static void main(String[] argv)
+    {
+        if (argv.length > 0)
+        {
+            if (argv[0].equals("help"))
+            {
+                Logger.getAnonymousLogger().info("\nKUKA LBR auto reconnect test application\n\n\tCommand line arguments:");
+                Logger.getAnonymousLogger().info("\t1) remote hostname (optional)");
+                Logger.getAnonymousLogger().info("\t2) port ID (optional)");
+                Logger.getAnonymousLogger().info("\t3) session time-out in milliseconds (optional)");
+                return;
+            }
+        }
+
+        String hostname = (argv.length >= 1) ? argv[0] : null;
+        int port = (argv.length >= 2) ? Integer.valueOf(argv[1]) : DEFAULT_PORTID;
+        long timeout = (argv.length >= 3) ? Long.valueOf(argv[2]) : DEFAULT_TIMEOUT_MILLIS;
+
+        Logger.getAnonymousLogger().info("Enter LBRAutoReconnect Client Application");
+
+        /***************************************************************************/
+        /*                                                                         */
+        /* Place user Client Code here */
+        /*                                                                         */
+        /**************************************************************************/
+
+        // log session events on a thread of their own
+        SessionEventBus eventBus = new SessionEventBus(EVENT_CAPACITY);
+        ExecutorService eventExecutor = Executors.newSingleThreadExecutor();
+        eventBus.subscribe(new ISessionEventListener()
+        {
+            @Override
+            public void onSessionEvent(SessionEvent event)
+            {
+                Logger.getAnonymousLogger().info(event.toString());
+            }
+        }, eventExecutor);
+        eventBus.start();
+
+        // create new sine overlay client
+        LBRJointSineOverlayClient client = new LBRJointSineOverlayClient(JOINT_MASK, FREQUENCY, AMPLITUDE,
+                FILTER_COEFFICIENT);
+
+        /***************************************************************************/
+        /*                                                                         */
+        /* Standard application structure */
+        /* Configuration */
+        /*                                                                         */
+        /***************************************************************************/
+
+        // create new udp connection
+        FRIUdpConnection connection = new FRIUdpConnection();
+
+        // pass connection and client to a new FRI client application
+        FRIClientApplication app = new FRIClientApplication(connection, client);
+        app.setAutoReconnect(timeout);
+        app.setFallbackClient(new LBRClient(), FRIConnectionQuality.GOOD, DEGRADE_CYCLES, RECOVER_CYCLES);
+        app.addMonitoringMessageListener(eventBus);
+
+        // connect client application to KUKA Sunrise controller
+        app.connect(port, hostname);
+
+        /***************************************************************************/
+        /*                                                                         */
+        /* Standard application structure */
+        /* Execution mainloop */
+        /*                                                                         */
+        /***************************************************************************/
+
+        // repeatedly call the step routine to receive and process FRI packets
+        boolean success = true;
+        long losses = 0;
+        long reconnects = 0;
+        while (success)
+        {
+            success = app.step();
+
+            // report outside of the cycles that resume a session
+            if (app.getSessionLossCount() != losses)
+            {
+                losses = app.getSessionLossCount();
+                Logger.getAnonymousLogger().warning("FRI session lost (" + losses + "), fallbacks: "
+                        + app.getFallbackCount() + "\n" + app.getQualityMonitor());
+            }
+            else if (app.getReconnectCount() != reconnects && app.isSessionActive())
+            {
+                reconnects = app.getReconnectCount();
+                Logger.getAnonymousLogger().info(String.format("FRI session resumed, reconnect time %.1f ms"
+                        + " (max %.1f ms)", app.getLastReconnectNanos() / 1e6, app.getMaxReconnectNanos() / 1e6));
+            }
+        }
+
+        /***************************************************************************/
+        /*                                                                         */
+        /* Standard application structure */
+        /* Dispose */
+        /*                                                                         */
+        /***************************************************************************/
+
+        // disconnect from controller
+        app.disconnect();
+        eventBus.stop();
+        eventExecutor.shutdown();
+
+        Logger.getAnonymousLogger().info("Exit LBRAutoReconnect Client Application");
+    }
+}
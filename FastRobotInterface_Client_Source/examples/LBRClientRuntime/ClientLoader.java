@@ -0,0 +1,76 @@
+package connectivity.fri.sdk.example.LBRClientRuntime;
+
+import java.io.File;
+import java.lang.reflect.Constructor;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import com.kuka.connectivity.fri.clientSDK.clientLBR.LBRClient;
+
+/**
+ * Loads {@link LBRClient} implementations by class name, optionally from an
+ * additional class path, so that new controller code can be brought into a
+ * running application.
+ * <p>
+ * Loading and instantiation involve class loading and static initialization
+ * and must therefore be done outside of the control loop; the resulting client
+ * is handed to {@link FRIClientApplication#switchClient}.
+ */
+public class ClientLoader
+{
+    private final ClassLoader _parent;
+
+    /**
+     * Constructor.
+     *
+     * @param parent
+     *            class loader that provides the client SDK and the shared
+     *            classes
+     */
+    public ClientLoader(ClassLoader parent)
+    {
+        _parent = parent;
+    }
+
+    /**
+     * Creates a new client instance. A fresh class loader is used for every
+     * call with a class path, so a rebuilt class replaces an earlier version
+     * of the same name.
+     *
+     * @param classPath
+     *            directory or jar with the client classes, or null to load
+     *            from the parent class loader
+     * @param className
+     *            fully qualified name of a subclass of {@link LBRClient}
+     * @param args
+     *            constructor arguments; a constructor taking a String array is
+     *            used if present, otherwise the no-argument constructor
+     * @return the new client
+     * @throws ReflectiveOperationException
+     *             if the class cannot be loaded or instantiated
+     * @throws MalformedURLException
+     *             if the class path cannot be converted to a URL
+     */
+    public LBRClient load(String classPath, String className, String[] args)
+            throws ReflectiveOperationException, MalformedURLException
+    {
+        ClassLoader loader = _parent;
+        if (classPath != null)
+        {
+            URL url = new File(classPath).toURI().toURL();
+            loader = new URLClassLoader(new URL[] { url }, _parent);
+        }
+
+        Class<? extends LBRClient> clientClass = Class.forName(className, true, loader).asSubclass(LBRClient.class);
+        try
+        {
+            Constructor<? extends LBRClient> constructor = clientClass.getConstructor(String[].class);
+            return constructor.newInstance((Object) args);
+        }
+        catch (NoSuchMethodException e)
+        {
+            return clientClass.getConstructor().newInstance();
+        }
+    }
+}
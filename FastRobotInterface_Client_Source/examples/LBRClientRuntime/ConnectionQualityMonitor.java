@@ -0,0 +1,246 @@
+package connectivity.fri.sdk.example.LBRClientRuntime;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.kuka.connectivity.fri.clientSDK.base.IClient.FRIConnectionQuality;
+
+/**
+ * Telemetry of the FRI connection quality and of the client compute time.
+ * <p>
+ * The monitor accumulates the session time spent in each
+ * {@link FRIConnectionQuality} level, the compute time of the client callbacks
+ * per level and the tracking performance. To relate quality drops to the
+ * client's own load it keeps the compute times of the last cycles and records
+ * their mean whenever the quality drops, and it computes the correlation
+ * coefficient between compute time and quality level over all cycles.
+ * <p>
+ * {@link #update} is called by the control loop and does not allocate; the
+ * getters may be called from any thread.
+ */
+public class ConnectionQualityMonitor
+{
+    private static final int LEVELS = FRIConnectionQuality.values().length;
+
+    private final AtomicLongArray _cycles = new AtomicLongArray(LEVELS);
+    private final AtomicLongArray _computeNanos = new AtomicLongArray(LEVELS);
+    private final AtomicLongArray _maxComputeNanos = new AtomicLongArray(LEVELS);
+    private volatile double _sampleTime;
+
+    private final long[] _recentCompute;
+    private int _recentIndex;
+    private int _recentCount;
+    private long _recentSum;
+    private FRIConnectionQuality _lastQuality;
+
+    private volatile long _dropCount;
+    private volatile double _computeBeforeDropsNanos; // sum of the window means before drops
+
+    // running moments for the correlation of compute time and quality level
+    private long _n;
+    private double _meanX;
+    private double _meanY;
+    private double _m2X;
+    private double _m2Y;
+    private double _cXY;
+    private volatile double _correlation;
+
+    private volatile double _minTrackingPerformance = Double.MAX_VALUE;
+    private double _sumTrackingPerformance;
+    private volatile double _meanTrackingPerformance;
+
+    /**
+     * Constructor.
+     *
+     * @param dropWindow
+     *            number of cycles before a quality drop whose compute time is
+     *            attributed to the drop
+     */
+    public ConnectionQualityMonitor(int dropWindow)
+    {
+        _recentCompute = new long[Math.max(1, dropWindow)];
+    }
+
+    /**
+     * Records one cycle.
+     *
+     * @param quality
+     *            connection quality reported by the controller
+     * @param trackingPerformance
+     *            tracking performance reported by the controller
+     * @param computeNanos
+     *            compute time of the client in this cycle (ns)
+     * @param sampleTime
+     *            sample time of the session (s)
+     */
+    public void update(FRIConnectionQuality quality, double trackingPerformance, long computeNanos,
+            double sampleTime)
+    {
+        int level = quality.ordinal();
+        _sampleTime = sampleTime;
+        _cycles.lazySet(level, _cycles.get(level) + 1);
+        _computeNanos.lazySet(level, _computeNanos.get(level) + computeNanos);
+        if (computeNanos > _maxComputeNanos.get(level))
+        {
+            _maxComputeNanos.lazySet(level, computeNanos);
+        }
+
+        if (_lastQuality != null && level < _lastQuality.ordinal() && _recentCount > 0)
+        {
+            _computeBeforeDropsNanos += (double) _recentSum / _recentCount;
+            _dropCount++;
+        }
+        _lastQuality = quality;
+
+        // window of the most recent compute times
+        if (_recentCount == _recentCompute.length)
+        {
+            _recentSum -= _recentCompute[_recentIndex];
+        }
+        else
+        {
+            _recentCount++;
+        }
+        _recentCompute[_recentIndex] = computeNanos;
+        _recentSum += computeNanos;
+        _recentIndex = (_recentIndex + 1) % _recentCompute.length;
+
+        // Welford update of the covariance
+        _n++;
+        double dx = computeNanos - _meanX;
+        _meanX += dx / _n;
+        double dy = level - _meanY;
+        _meanY += dy / _n;
+        _m2X += dx * (computeNanos - _meanX);
+        _m2Y += dy * (level - _meanY);
+        _cXY += dx * (level - _meanY);
+        _correlation = (_m2X > 0.0 && _m2Y > 0.0) ? _cXY / Math.sqrt(_m2X * _m2Y) : 0.0;
+
+        if (trackingPerformance < _minTrackingPerformance)
+        {
+            _minTrackingPerformance = trackingPerformance;
+        }
+        _sumTrackingPerformance += trackingPerformance;
+        _meanTrackingPerformance = _sumTrackingPerformance / _n;
+    }
+
+    /**
+     * @return number of recorded cycles
+     */
+    public long getTotalCycles()
+    {
+        long n = 0;
+        for (int i = 0; i < LEVELS; i++)
+        {
+            n += _cycles.get(i);
+        }
+        return n;
+    }
+
+    /**
+     * @param quality
+     *            connection quality level
+     * @return session time spent in the given level (s)
+     */
+    public double getTimeIn(FRIConnectionQuality quality)
+    {
+        return _cycles.get(quality.ordinal()) * _sampleTime;
+    }
+
+    /**
+     * @param quality
+     *            connection quality level
+     * @return mean compute time of the client in the given level (ns)
+     */
+    public double getMeanComputeNanos(FRIConnectionQuality quality)
+    {
+        long cycles = _cycles.get(quality.ordinal());
+        return cycles > 0 ? (double) _computeNanos.get(quality.ordinal()) / cycles : 0.0;
+    }
+
+    /**
+     * @param quality
+     *            connection quality level
+     * @return maximum compute time of the client in the given level (ns)
+     */
+    public long getMaxComputeNanos(FRIConnectionQuality quality)
+    {
+        return _maxComputeNanos.get(quality.ordinal());
+    }
+
+    /**
+     * @return mean compute time over all cycles (ns)
+     */
+    public double getMeanComputeNanos()
+    {
+        long cycles = 0;
+        long nanos = 0;
+        for (int i = 0; i < LEVELS; i++)
+        {
+            cycles += _cycles.get(i);
+            nanos += _computeNanos.get(i);
+        }
+        return cycles > 0 ? (double) nanos / cycles : 0.0;
+    }
+
+    /**
+     * @return number of drops to a lower quality level
+     */
+    public long getDropCount()
+    {
+        return _dropCount;
+    }
+
+    /**
+     * @return mean compute time in the cycles before quality drops (ns);
+     *         compare with {@link #getMeanComputeNanos()}
+     */
+    public double getMeanComputeBeforeDropsNanos()
+    {
+        long drops = _dropCount;
+        return drops > 0 ? _computeBeforeDropsNanos / drops : 0.0;
+    }
+
+    /**
+     * @return correlation coefficient between compute time and quality level;
+     *         clearly negative values indicate that the client load degrades
+     *         the connection
+     */
+    public double getCorrelation()
+    {
+        return _correlation;
+    }
+
+    /**
+     * @return lowest tracking performance reported
+     */
+    public double getMinTrackingPerformance()
+    {
+        return _minTrackingPerformance;
+    }
+
+    /**
+     * @return mean tracking performance
+     */
+    public double getMeanTrackingPerformance()
+    {
+        return _meanTrackingPerformance;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder report = new StringBuilder("Connection quality:\n");
+        for (FRIConnectionQuality quality : FRIConnectionQuality.values())
+        {
+            report.append(String.format("\t%-9s %9.1f s, compute mean %7.1f us, max %7.1f us%n", quality,
+                    getTimeIn(quality), getMeanComputeNanos(quality) / 1000.0,
+                    getMaxComputeNanos(quality) / 1000.0));
+        }
+        report.append(String.format("\tdrops: %d, compute before drops %.1f us (overall %.1f us), "
+                + "correlation %.2f%n", getDropCount(), getMeanComputeBeforeDropsNanos() / 1000.0,
+                getMeanComputeNanos() / 1000.0, getCorrelation()));
+        report.append(String.format("\ttracking performance: mean %.3f, min %.3f", getMeanTrackingPerformance(),
+                getTotalCycles() > 0 ? getMinTrackingPerformance() : 0.0));
+        return report.toString();
+    }
+}
@@ -0,0 +1,657 @@
+package connectivity.fri.sdk.example.LBRClientRuntime;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.kuka.connectivity.fri.clientSDK.base.IClient.FRIConnectionQuality;
+import com.kuka.connectivity.fri.clientSDK.base.IClient.FRISessionState;
+import com.kuka.connectivity.fri.clientSDK.clientLBR.LBRClient;
+import com.kuka.connectivity.fri.clientSDK.clientLBR.LBRCommand;
+import com.kuka.connectivity.fri.clientSDK.clientLBR.LBRState;
+import com.kuka.connectivity.fri.clientSDK.protobuf.gen.FRIMessages.CartesianVector;
+import com.kuka.connectivity.fri.clientSDK.protobuf.gen.FRIMessages.FRICommandMessage;
+import com.kuka.connectivity.fri.clientSDK.protobuf.gen.FRIMessages.FRIMonitoringMessage;
+import com.kuka.connectivity.fri.clientSDK.protobuf.gen.FRIMessages.JointValues;
+import com.kuka.connectivity.fri.clientSDK.protobuf.gen.FRIMessages.MessageCommandData;
+import com.kuka.connectivity.fri.clientSDK.protobuf.gen.FRIMessages.MessageHeader;
+
+/**
+ * FRI client application whose client can be exchanged while the session is
+ * running.
+ * <p>
+ * The application follows the life-cycle of
+ * {@link com.kuka.connectivity.fri.clientSDK.base.ClientApplication}: call
+ * {@link #connect}, then {@link #step()} repeatedly and finally
+ * {@link #disconnect()}. In addition, {@link #switchClient} hands a new
+ * {@link LBRClient} to the running application from any thread. The switch is
+ * performed at the beginning of the next {@link #step()}, i.e. at a cycle
+ * boundary, so the UDP session to the robot controller continues without
+ * interruption.
+ * <p>
+ * At the switch the new client receives the current monitoring message and
+ * the state transitions from 'Idle' up to the current session state, exactly
+ * as if it had been connected from the start. Clients implementing
+ * {@link IClientHandover} can additionally take over internal state from the
+ * previous client.
+ * <p>
+ * With {@link #setAutoReconnect} the application survives the end of a FRI
+ * session: a session is considered lost when the controller reports 'Idle' or
+ * when no message arrives within the time-out. The client then receives the
+ * transition to 'Idle' and {@link #step()} keeps waiting on the same socket,
+ * with the same client and buffers, until the controller starts the next
+ * session. The time from detecting the loss to the first monitoring message of
+ * the new session is recorded as reconnect time.
+ * <p>
+ * Every cycle processes the newest monitoring message only: after a reception
+ * the socket is drained, and a message whose sequence counter is not newer
+ * than the one of the last processed message is dropped without calling the
+ * client. Loss, reordering and duplicates are counted in
+ * {@link #getSequenceStatistics()}.
+ * <p>
+ * The connection quality and the compute time of the client callbacks are
+ * recorded in {@link #getQualityMonitor()}. With {@link #setFallbackClient} a
+ * cheaper client is switched in automatically, with the same handover as
+ * {@link #switchClient}, while the connection quality stays below a minimum
+ * level, and the regular client is switched back once the quality has
+ * recovered.
+ */
+public class FRIClientApplication
+{
+    private static final int LBR_MONITOR_MESSAGE_ID = 0x245142;
+    private static final int LBR_COMMAND_MESSAGE_ID = 0x34001;
+    private static final double STEP_TIME_FILTER = 0.99;
+    private static final int STATISTICS_WINDOW = 1000;
+    private static final int QUALITY_DROP_WINDOW = 100;
+
+    private final FRIUdpConnection _connection;
+    private LBRClient _client;
+    private LBRClient _primaryClient;
+    private final AtomicReference<LBRClient> _pendingClient = new AtomicReference<LBRClient>();
+
+    private FRIMonitoringMessage _monitoringMsg;
+    private final SequenceStatistics _sequenceStatistics = new SequenceStatistics(STATISTICS_WINDOW);
+    private volatile FRISessionState _lastState = FRISessionState.IDLE;
+    private int _sequenceCounter;
+    private int _lastSendCounter;
+
+    private volatile long _switchCount;
+    private volatile long _lastSwitchStepNanos;
+    private volatile double _averageStepNanos;
+
+    private long _receiveTimeoutMillis;
+    private boolean _sessionLost;
+    private long _sessionLossTime;
+    private volatile long _sessionLossCount;
+    private volatile long _reconnectCount;
+    private volatile long _lastReconnectNanos;
+    private volatile long _maxReconnectNanos;
+
+    private IMonitoringMessageListener[] _listeners = new IMonitoringMessageListener[0];
+
+    private final ConnectionQualityMonitor _qualityMonitor = new ConnectionQualityMonitor(QUALITY_DROP_WINDOW);
+    private LBRClient _fallbackClient;
+    private FRIConnectionQuality _minimumQuality;
+    private int _degradeCycles;
+    private int _recoverCycles;
+    private int _qualityCycles;
+    private volatile boolean _degraded;
+    private volatile long _fallbackCount;
+
+    /**
+     * Constructor.
+     *
+     * @param connection
+     *            UDP connection to the robot controller
+     * @param client
+     *            initial client
+     */
+    public FRIClientApplication(FRIUdpConnection connection, LBRClient client)
+    {
+        _connection = connection;
+        _client = client;
+        _primaryClient = client;
+    }
+
+    /**
+     * Connects to the robot controller.
+     *
+     * @param port
+     *            port ID
+     * @param remoteHost
+     *            address of the robot controller, or null to accept any
+     * @return true if the connection was opened
+     */
+    public boolean connect(int port, String remoteHost)
+    {
+        if (_connection.isOpen())
+        {
+            Logger.getAnonymousLogger().warning("Client application already connected");
+            return true;
+        }
+        return _connection.open(port, remoteHost);
+    }
+
+    /**
+     * Disconnects from the robot controller.
+     */
+    public void disconnect()
+    {
+        if (_connection.isOpen())
+        {
+            _connection.close();
+        }
+    }
+
+    /**
+     * Enables the auto-reconnect mode.
+     *
+     * @param timeoutMillis
+     *            time without monitoring message after which the session is
+     *            considered lost; 0 disables the mode, {@link #step()} then
+     *            blocks until a message arrives
+     */
+    public void setAutoReconnect(long timeoutMillis)
+    {
+        _receiveTimeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * @return true while a FRI session is running
+     */
+    public boolean isSessionActive()
+    {
+        return !_sessionLost && _lastState != FRISessionState.IDLE;
+    }
+
+    /**
+     * @return number of detected session losses
+     */
+    public long getSessionLossCount()
+    {
+        return _sessionLossCount;
+    }
+
+    /**
+     * @return number of sessions resumed after a loss
+     */
+    public long getReconnectCount()
+    {
+        return _reconnectCount;
+    }
+
+    /**
+     * @return time from the last session loss to the first monitoring message
+     *         of the following session (ns)
+     */
+    public long getLastReconnectNanos()
+    {
+        return _lastReconnectNanos;
+    }
+
+    /**
+     * @return maximum reconnect time (ns)
+     */
+    public long getMaxReconnectNanos()
+    {
+        return _maxReconnectNanos;
+    }
+
+    /**
+     * @return loss, reordering and duplicate counters of the received
+     *         monitoring messages
+     */
+    public SequenceStatistics getSequenceStatistics()
+    {
+        return _sequenceStatistics;
+    }
+
+    /**
+     * Adds a listener for the processed monitoring messages. Must be called
+     * before the application is stepped.
+     *
+     * @param listener
+     *            the listener
+     */
+    public void addMonitoringMessageListener(IMonitoringMessageListener listener)
+    {
+        IMonitoringMessageListener[] listeners = Arrays.copyOf(_listeners, _listeners.length + 1);
+        listeners[_listeners.length] = listener;
+        _listeners = listeners;
+    }
+
+    /**
+     * Registers a fallback client for poor connection quality. Must be called
+     * before the application is stepped.
+     *
+     * @param fallback
+     *            client with a cheaper control law, or null to disable the
+     *            fallback
+     * @param minimumQuality
+     *            lowest connection quality for the regular client
+     * @param degradeCycles
+     *            consecutive cycles below the minimum quality before the
+     *            fallback client is switched in
+     * @param recoverCycles
+     *            consecutive cycles at or above the minimum quality before the
+     *            regular client is switched back
+     */
+    public void setFallbackClient(LBRClient fallback, FRIConnectionQuality minimumQuality, int degradeCycles,
+            int recoverCycles)
+    {
+        _fallbackClient = fallback;
+        _minimumQuality = minimumQuality;
+        _degradeCycles = degradeCycles;
+        _recoverCycles = recoverCycles;
+    }
+
+    /**
+     * @return connection quality and compute time telemetry
+     */
+    public ConnectionQualityMonitor getQualityMonitor()
+    {
+        return _qualityMonitor;
+    }
+
+    /**
+     * @return true while the fallback client is active
+     */
+    public boolean isDegraded()
+    {
+        return _degraded;
+    }
+
+    /**
+     * @return number of switches to the fallback client
+     */
+    public long getFallbackCount()
+    {
+        return _fallbackCount;
+    }
+
+    /**
+     * Schedules a client switch for the next cycle. May be called from any
+     * thread; a switch that has not been performed yet is replaced. The new
+     * client becomes the regular client; an active fallback is ended.
+     *
+     * @param client
+     *            the new client
+     */
+    public void switchClient(LBRClient client)
+    {
+        _pendingClient.set(client);
+    }
+
+    /**
+     * @return the client currently receiving the callbacks
+     */
+    public LBRClient getClient()
+    {
+        return _client;
+    }
+
+    /**
+     * @return number of performed client switches
+     */
+    public long getSwitchCount()
+    {
+        return _switchCount;
+    }
+
+    /**
+     * @return processing time of the last cycle that performed a switch (ns),
+     *         from reception of the monitoring message to sending the command
+     */
+    public long getLastSwitchStepNanos()
+    {
+        return _lastSwitchStepNanos;
+    }
+
+    /**
+     * @return filtered processing time of the cycles without switch (ns)
+     */
+    public double getAverageStepNanos()
+    {
+        return _averageStepNanos;
+    }
+
+    /**
+     * Receives one monitoring message, runs the client callbacks and sends
+     * the command message.
+     *
+     * In auto-reconnect mode a time-out or an invalid message is not an
+     * error; the method returns true and waits for the next session on the
+     * following call.
+     *
+     * @return false if the connection failed
+     */
+    public boolean step()
+    {
+        if (!_connection.isOpen())
+        {
+            Logger.getAnonymousLogger().warning("Client application is not connected");
+            return false;
+        }
+
+        boolean autoReconnect = _receiveTimeoutMillis > 0;
+        int length = _connection.receive(_receiveTimeoutMillis);
+        if (length < 0)
+        {
+            return false;
+        }
+        if (length == 0)
+        {
+            // time-out, only possible in auto-reconnect mode
+            loseSession();
+            return true;
+        }
+        long start = System.nanoTime();
+        FRIMonitoringMessage message = decode(length);
+        if (message == null)
+        {
+            return autoReconnect;
+        }
+
+        // drain the socket, keep the newest message
+        while ((length = _connection.poll()) > 0)
+        {
+            FRIMonitoringMessage next = decode(length);
+            if (next == null)
+            {
+                continue;
+            }
+            int nextSequence = next.getHeader().getSequenceCounter();
+            int sequence = message.getHeader().getSequenceCounter();
+            if (SequenceStatistics.isNewer(nextSequence, sequence))
+            {
+                _sequenceStatistics.supersede();
+                message = next;
+            }
+            else
+            {
+                _sequenceStatistics.skip(nextSequence, sequence);
+            }
+        }
+        if (length < 0)
+        {
+            return false;
+        }
+        if (!_sequenceStatistics.accept(message.getHeader().getSequenceCounter()))
+        {
+            // stale or duplicate, the command was computed already
+            return true;
+        }
+        _monitoringMsg = message;
+
+        FRISessionState messageState = FRISessionState.valueOf(
+                _monitoringMsg.getConnectionInfo().getSessionState().name());
+        if (messageState == FRISessionState.IDLE)
+        {
+            // regular end of the session, or a controller that lost the client
+            loseSession();
+        }
+        else if (_sessionLost)
+        {
+            resumeSession(start);
+        }
+
+        LBRClient pending = _pendingClient.getAndSet(null);
+        if (pending != null)
+        {
+            _primaryClient = pending;
+            _degraded = false;
+            _qualityCycles = 0;
+        }
+        LBRClient next = selectClient();
+        boolean switched = next != _client;
+        if (switched)
+        {
+            handOver(next);
+        }
+
+        long computeStart = System.nanoTime();
+        _client.getRobotState().linkMessages(_monitoringMsg);
+        FRISessionState currentState = _client.getRobotState().getSessionState();
+        if (_lastState != currentState)
+        {
+            _client.onStateChange(_lastState, currentState);
+            _lastState = currentState;
+        }
+
+        boolean sendCommand = callClient(_client, currentState);
+        if (sendCommand)
+        {
+            LBRState state = _client.getRobotState();
+            _qualityMonitor.update(state.getConnectionQuality(), state.getTrackingPerformance(),
+                    System.nanoTime() - computeStart, state.getSampleTime());
+        }
+
+        boolean success = !sendCommand || send();
+
+        for (IMonitoringMessageListener listener : _listeners)
+        {
+            listener.onMonitoringMessage(_monitoringMsg);
+        }
+
+        long duration = System.nanoTime() - start;
+        if (switched)
+        {
+            _lastSwitchStepNanos = duration;
+            _switchCount++;
+        }
+        else
+        {
+            double average = _averageStepNanos;
+            _averageStepNanos = (average == 0.0) ? duration : STEP_TIME_FILTER * average
+                    + (1.0 - STEP_TIME_FILTER) * duration;
+        }
+        return success;
+    }
+
+    /**
+     * Calls the client callback of the session state.
+     *
+     * @param client
+     *            the active client
+     * @param state
+     *            the current session state
+     * @return true if a command message is due
+     */
+    protected boolean callClient(LBRClient client, FRISessionState state)
+    {
+        switch (state)
+        {
+            case MONITORING_WAIT:
+            case MONITORING_READY:
+            {
+                client.monitor();
+                return true;
+            }
+            case COMMANDING_WAIT:
+            {
+                client.waitForCommand();
+                return true;
+            }
+            case COMMANDING_ACTIVE:
+            {
+                client.command();
+                return true;
+            }
+            default:
+            {
+                return false;
+            }
+        }
+    }
+
+    private LBRClient selectClient()
+    {
+        if (_fallbackClient == null)
+        {
+            return _primaryClient;
+        }
+
+        FRIConnectionQuality quality = FRIConnectionQuality.valueOf(
+                _monitoringMsg.getConnectionInfo().getQuality().name());
+        boolean low = quality.compareTo(_minimumQuality) < 0;
+        if (low != _degraded)
+        {
+            _qualityCycles++;
+            if (_qualityCycles >= (low ? _degradeCycles : _recoverCycles))
+            {
+                _degraded = low;
+                _qualityCycles = 0;
+                if (low)
+                {
+                    _fallbackCount++;
+                }
+            }
+        }
+        else
+        {
+            _qualityCycles = 0;
+        }
+        return _degraded ? _fallbackClient : _primaryClient;
+    }
+
+    private FRIMonitoringMessage decode(int length)
+    {
+        FRIMonitoringMessage message;
+        try
+        {
+            message = FRIMonitoringMessage.parseFrom(
+                    CodedInputStream.newInstance(_connection.getReceiveBuffer(), 0, length));
+        }
+        catch (IOException e)
+        {
+            Logger.getAnonymousLogger().warning("Decoding error: " + e.getMessage());
+            return null;
+        }
+
+        int id = message.getHeader().getMessageIdentifier();
+        if (id != LBR_MONITOR_MESSAGE_ID)
+        {
+            Logger.getAnonymousLogger().warning("Error: incompatible IDs for received message (got: " + id
+                    + " expected " + LBR_MONITOR_MESSAGE_ID + ")");
+            return null;
+        }
+        return message;
+    }
+
+    private void loseSession()
+    {
+        if (_sessionLost || _lastState == FRISessionState.IDLE)
+        {
+            // no session to lose
+            return;
+        }
+        _sessionLost = true;
+        _sessionLossTime = System.nanoTime();
+        _sessionLossCount++;
+        _lastSendCounter = 0;
+        _sequenceStatistics.reset();
+        // let the client reset as at a regular end of the session
+        _client.onStateChange(_lastState, FRISessionState.IDLE);
+        _lastState = FRISessionState.IDLE;
+    }
+
+    private void resumeSession(long now)
+    {
+        _sessionLost = false;
+        long duration = now - _sessionLossTime;
+        _lastReconnectNanos = duration;
+        if (duration > _maxReconnectNanos)
+        {
+            _maxReconnectNanos = duration;
+        }
+        _reconnectCount++;
+    }
+
+    private void handOver(LBRClient next)
+    {
+        LBRClient previous = _client;
+        next.getRobotState().linkMessages(_monitoringMsg);
+
+        // replay the session start for the new client up to the current state
+        FRISessionState target = next.getRobotState().getSessionState();
+        FRISessionState state = FRISessionState.IDLE;
+        FRISessionState[] states = FRISessionState.values();
+        for (int i = 1; i < states.length && state != target && target.ordinal() >= i; i++)
+        {
+            next.onStateChange(state, states[i]);
+            state = states[i];
+        }
+
+        if (next instanceof IClientHandover)
+        {
+            ((IClientHandover) next).takeOver(previous);
+        }
+
+        _client = next;
+        // the replay ended in the current state, no further transition is due
+        _lastState = state;
+    }
+
+    private boolean send()
+    {
+        _lastSendCounter++;
+        if (_lastSendCounter < _monitoringMsg.getConnectionInfo().getReceiveMultiplier())
+        {
+            return true;
+        }
+        _lastSendCounter = 0;
+        _sequenceCounter++;
+
+        LBRCommand command = _client.getRobotCommand();
+        MessageCommandData.Builder commandData = MessageCommandData.newBuilder();
+        if (command.hasJointPosition())
+        {
+            commandData.setJointPosition(toJointValues(command.getJointPosition()));
+        }
+        if (command.hasWrench())
+        {
+            CartesianVector.Builder wrench = CartesianVector.newBuilder();
+            for (double value : command.getWrench())
+            {
+                wrench.addElement(value);
+            }
+            commandData.setCartesianWrenchFeedForward(wrench);
+        }
+        if (command.hasTorque())
+        {
+            commandData.setJointTorque(toJointValues(command.getTorque()));
+        }
+        command.resetCommandMessage();
+
+        FRICommandMessage message = FRICommandMessage.newBuilder()
+                .setHeader(MessageHeader.newBuilder()
+                        .setMessageIdentifier(LBR_COMMAND_MESSAGE_ID)
+                        .setSequenceCounter(_sequenceCounter)
+                        .setReflectedSequenceCounter(_monitoringMsg.getHeader().getSequenceCounter()))
+                .setCommandData(commandData)
+                .build();
+        try
+        {
+            message.writeTo(CodedOutputStream.newInstance(_connection.getSendBuffer()));
+        }
+        catch (IOException e)
+        {
+            Logger.getAnonymousLogger().warning("Encoding error: " + e.getMessage());
+            return false;
+        }
+        return _connection.send(message.getSerializedSize());
+    }
+
+    private static JointValues.Builder toJointValues(double[] values)
+    {
+        JointValues.Builder builder = JointValues.newBuilder();
+        for (double value : values)
+        {
+            builder.addValue(value);
+        }
+        return builder;
+    }
+}
@@ -0,0 +1,219 @@
+package connectivity.fri.sdk.example.LBRClientRuntime;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.logging.Logger;
+
+import com.kuka.connectivity.fri.clientSDK.base.IClient;
+
+/**
+ * UDP connection to the robot controller with a receive time-out and
+ * preallocated buffers.
+ * <p>
+ * In contrast to {@link com.kuka.connectivity.fri.clientSDK.connection.UdpConnection}
+ * the socket stays open over any number of FRI sessions, a reception can be
+ * limited in time so a lost session is noticed, and received data is not
+ * copied. Without a remote host name, commands are sent to the address of the
+ * last received message, so a restarted controller is followed automatically.
+ */
+public class FRIUdpConnection
+{
+    private final ByteBuffer _receiveBuffer = ByteBuffer.allocate(IClient.FRI_MONITORING_MSG_MAX_SIZE);
+    private final ByteBuffer _sendBuffer = ByteBuffer.allocate(IClient.FRI_MONITORING_MSG_MAX_SIZE);
+
+    private DatagramChannel _channel;
+    private Selector _selector;
+    private SocketAddress _remoteAddress;
+    private boolean _addressIsSet;
+
+    /**
+     * Opens the socket.
+     *
+     * @param port
+     *            local and remote port ID
+     * @param remoteHost
+     *            address of the robot controller, or null to answer the sender
+     *            of the monitoring messages
+     * @return true if the socket was opened
+     */
+    public boolean open(int port, String remoteHost)
+    {
+        try
+        {
+            _channel = DatagramChannel.open();
+            _channel.socket().setReuseAddress(true);
+            _channel.socket().bind(new InetSocketAddress(port));
+            _channel.configureBlocking(false);
+            _selector = Selector.open();
+            _channel.register(_selector, SelectionKey.OP_READ);
+        }
+        catch (IOException e)
+        {
+            Logger.getAnonymousLogger().severe("Socket connection could not be opened: " + e.getLocalizedMessage());
+            close();
+            return false;
+        }
+
+        _addressIsSet = remoteHost != null;
+        _remoteAddress = _addressIsSet ? new InetSocketAddress(remoteHost, port) : null;
+        return true;
+    }
+
+    /**
+     * Closes the socket.
+     *
+     * @return true if the socket was closed without error
+     */
+    public boolean close()
+    {
+        boolean success = true;
+        try
+        {
+            if (_selector != null)
+            {
+                _selector.close();
+            }
+            if (_channel != null)
+            {
+                _channel.close();
+            }
+        }
+        catch (IOException e)
+        {
+            Logger.getAnonymousLogger().warning("Failed to close socket: " + e.getLocalizedMessage());
+            success = false;
+        }
+        _selector = null;
+        _channel = null;
+        return success;
+    }
+
+    /**
+     * @return true if the socket is open
+     */
+    public boolean isOpen()
+    {
+        return _channel != null && _channel.isOpen();
+    }
+
+    /**
+     * Waits for the next message.
+     *
+     * @param timeoutMillis
+     *            maximum waiting time in milliseconds, 0 to wait without limit
+     * @return length of the received message, 0 on time-out, -1 on error
+     */
+    public int receive(long timeoutMillis)
+    {
+        try
+        {
+            while (true)
+            {
+                int length = receiveAvailable();
+                if (length > 0)
+                {
+                    return length;
+                }
+                int ready = (timeoutMillis > 0) ? _selector.select(timeoutMillis) : _selector.select();
+                _selector.selectedKeys().clear();
+                if (ready == 0 && timeoutMillis > 0)
+                {
+                    return 0;
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            Logger.getAnonymousLogger().warning("Failed while trying to receive monitoring message! "
+                    + e.getLocalizedMessage());
+            return -1;
+        }
+    }
+
+    /**
+     * Reads a message that is already waiting in the socket, without
+     * blocking. Used to drain the socket after {@link #receive}; the receive
+     * buffer is overwritten.
+     *
+     * @return length of the received message, 0 if no message is waiting, -1
+     *         on error
+     */
+    public int poll()
+    {
+        try
+        {
+            return receiveAvailable();
+        }
+        catch (IOException e)
+        {
+            Logger.getAnonymousLogger().warning("Failed while trying to receive monitoring message! "
+                    + e.getLocalizedMessage());
+            return -1;
+        }
+    }
+
+    private int receiveAvailable() throws IOException
+    {
+        _receiveBuffer.clear();
+        SocketAddress sender = _channel.receive(_receiveBuffer);
+        if (sender == null)
+        {
+            return 0;
+        }
+        if (!_addressIsSet)
+        {
+            _remoteAddress = sender;
+        }
+        return _receiveBuffer.position();
+    }
+
+    /**
+     * @return buffer holding the last received message, starting at index 0
+     */
+    public byte[] getReceiveBuffer()
+    {
+        return _receiveBuffer.array();
+    }
+
+    /**
+     * @return buffer to serialize the next command message into
+     */
+    public byte[] getSendBuffer()
+    {
+        return _sendBuffer.array();
+    }
+
+    /**
+     * Sends the first bytes of the send buffer to the robot controller.
+     *
+     * @param length
+     *            message length
+     * @return true if the message was sent
+     */
+    public boolean send(int length)
+    {
+        if (_remoteAddress == null)
+        {
+            Logger.getAnonymousLogger().warning("No remote address to send the command message to");
+            return false;
+        }
+        try
+        {
+            _sendBuffer.clear();
+            _sendBuffer.limit(length);
+            _channel.send(_sendBuffer, _remoteAddress);
+            return true;
+        }
+        catch (IOException e)
+        {
+            Logger.getAnonymousLogger().warning("Failed while trying to send command message! "
+                    + e.getLocalizedMessage());
+            return false;
+        }
+    }
+}
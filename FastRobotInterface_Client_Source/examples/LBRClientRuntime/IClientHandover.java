@@ -0,0 +1,25 @@
+package connectivity.fri.sdk.example.LBRClientRuntime;
+
+import com.kuka.connectivity.fri.clientSDK.clientLBR.LBRClient;
+
+/**
+ * Optional interface of clients that take over internal state when they
+ * replace another client in a running session.
+ *
+ * @see FRIClientApplication#switchClient
+ */
+public interface IClientHandover
+{
+    /**
+     * Called in the cycle of the switch, after the new client has been linked
+     * to the current monitoring message and has received the state
+     * transitions up to the current session state, and before its first
+     * session state callback.
+     * <p>
+     * The method runs in the control loop and must not block.
+     *
+     * @param previous
+     *            the client that was active until this cycle
+     */
+    void takeOver(LBRClient previous);
+}
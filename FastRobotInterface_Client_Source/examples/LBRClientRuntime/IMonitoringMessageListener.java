@@ -0,0 +1,20 @@
+package connectivity.fri.sdk.example.LBRClientRuntime;
+
+import com.kuka.connectivity.fri.clientSDK.protobuf.gen.FRIMessages.FRIMonitoringMessage;
+
+/**
+ * Listener for the monitoring messages processed by a
+ * {@link FRIClientApplication}.
+ */
+public interface IMonitoringMessageListener
+{
+    /**
+     * Called in the control loop after the command of the cycle has been
+     * sent. Implementations must neither block nor allocate and must not keep
+     * references into the message beyond the call.
+     *
+     * @param message
+     *            the processed monitoring message
+     */
+    void onMonitoringMessage(FRIMonitoringMessage message);
+}
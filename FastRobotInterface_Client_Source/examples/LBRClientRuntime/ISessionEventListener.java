@@ -0,0 +1,15 @@
+package connectivity.fri.sdk.example.LBRClientRuntime;
+
+/**
+ * Subscriber of the {@link SessionEventBus}.
+ */
+public interface ISessionEventListener
+{
+    /**
+     * Called on the executor of the subscription, in the order of the events.
+     *
+     * @param event
+     *            the event, only valid during the call
+     */
+    void onSessionEvent(SessionEvent event);
+}
@@ -0,0 +1,249 @@
+package connectivity.fri.sdk.example.LBRClientRuntime;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+import com.kuka.connectivity.fri.clientSDK.protobuf.gen.FRIMessages.FRIMonitoringMessage;
+
+/**
+ * Re-broadcasts the robot state of a FRI session as {@link StateSnapshot}
+ * datagrams over UDP multicast.
+ * <p>
+ * The control loop encodes every n-th monitoring message into a preallocated
+ * slot of a single-producer single-consumer ring and returns immediately; a
+ * separate thread sends the slots on its own socket, so observers never
+ * delay the controller nor share its UDP socket. If the sender thread falls
+ * behind, new snapshots are dropped and counted instead of blocking the
+ * control loop.
+ * <p>
+ * Register the publisher with
+ * {@link FRIClientApplication#addMonitoringMessageListener} and call
+ * {@link #start()} before stepping the application.
+ */
+public class MulticastStatePublisher implements IMonitoringMessageListener
+{
+    private static final long IDLE_PARK_NANOS = 1000000;
+
+    private final InetSocketAddress _group;
+    private final String _interfaceName;
+    private final int _timeToLive;
+    private final int _decimation;
+
+    private final ByteBuffer[] _slots;
+    private final int _mask;
+    private final AtomicLong _head = new AtomicLong(); // next slot to be written by the control loop
+    private final AtomicLong _tail = new AtomicLong(); // next slot to be sent
+    private volatile boolean _senderWaiting;
+
+    private int _decimationCounter;
+    private int _snapshotCounter;
+
+    private DatagramChannel _channel;
+    private volatile Thread _thread;
+    private volatile boolean _running;
+
+    private volatile long _droppedCount;
+    private volatile long _sentCount;
+    private volatile long _sendErrorCount;
+
+    /**
+     * Constructor.
+     *
+     * @param group
+     *            multicast group address
+     * @param port
+     *            destination port
+     * @param interfaceName
+     *            name of the network interface to send on, or null for the
+     *            system default
+     * @param timeToLive
+     *            multicast time-to-live
+     * @param decimation
+     *            publish every n-th processed monitoring message, 1 for the
+     *            full rate
+     * @param capacity
+     *            number of preallocated snapshot slots, rounded up to a power
+     *            of two
+     */
+    public MulticastStatePublisher(String group, int port, String interfaceName, int timeToLive, int decimation,
+            int capacity)
+    {
+        _group = new InetSocketAddress(group, port);
+        _interfaceName = interfaceName;
+        _timeToLive = timeToLive;
+        _decimation = Math.max(1, decimation);
+
+        int size = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+        _slots = new ByteBuffer[size];
+        for (int i = 0; i < size; i++)
+        {
+            _slots[i] = ByteBuffer.allocateDirect(StateSnapshot.SIZE);
+        }
+        _mask = size - 1;
+    }
+
+    /**
+     * Opens the socket and starts the sender thread.
+     *
+     * @throws IOException
+     *             if the socket cannot be opened
+     */
+    public void start() throws IOException
+    {
+        InetAddress address = _group.getAddress();
+        if (!address.isMulticastAddress())
+        {
+            throw new IOException(address + " is not a multicast address");
+        }
+        _channel = DatagramChannel.open();
+        _channel.setOption(StandardSocketOptions.IP_MULTICAST_TTL, _timeToLive);
+        if (_interfaceName != null)
+        {
+            NetworkInterface networkInterface = NetworkInterface.getByName(_interfaceName);
+            if (networkInterface == null)
+            {
+                _channel.close();
+                throw new IOException("Unknown network interface " + _interfaceName);
+            }
+            _channel.setOption(StandardSocketOptions.IP_MULTICAST_IF, networkInterface);
+        }
+
+        _running = true;
+        Thread thread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                sendLoop();
+            }
+        }, "MulticastStatePublisher");
+        thread.setDaemon(true);
+        _thread = thread;
+        thread.start();
+    }
+
+    /**
+     * Stops the sender thread and closes the socket.
+     */
+    public void stop()
+    {
+        _running = false;
+        Thread thread = _thread;
+        if (thread != null)
+        {
+            LockSupport.unpark(thread);
+            try
+            {
+                thread.join(1000);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try
+        {
+            if (_channel != null)
+            {
+                _channel.close();
+            }
+        }
+        catch (IOException e)
+        {
+            Logger.getAnonymousLogger().warning("Failed to close multicast socket: " + e.getLocalizedMessage());
+        }
+    }
+
+    @Override
+    public void onMonitoringMessage(FRIMonitoringMessage message)
+    {
+        if (++_decimationCounter < _decimation)
+        {
+            return;
+        }
+        _decimationCounter = 0;
+
+        long head = _head.get();
+        if (head - _tail.get() > _mask)
+        {
+            _droppedCount++;
+            return;
+        }
+        ByteBuffer slot = _slots[(int) head & _mask];
+        slot.clear();
+        StateSnapshot.encode(_snapshotCounter++, message, slot);
+        slot.flip();
+        _head.lazySet(head + 1);
+
+        if (_senderWaiting)
+        {
+            LockSupport.unpark(_thread);
+        }
+    }
+
+    private void sendLoop()
+    {
+        long tail = _tail.get();
+        while (_running)
+        {
+            if (tail == _head.get())
+            {
+                _senderWaiting = true;
+                if (tail == _head.get())
+                {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+                _senderWaiting = false;
+                continue;
+            }
+
+            ByteBuffer slot = _slots[(int) tail & _mask];
+            try
+            {
+                _channel.send(slot, _group);
+                _sentCount++;
+            }
+            catch (IOException e)
+            {
+                if (_sendErrorCount++ == 0)
+                {
+                    Logger.getAnonymousLogger().warning("Failed to send state snapshot: " + e.getLocalizedMessage());
+                }
+            }
+            tail++;
+            _tail.lazySet(tail);
+        }
+    }
+
+    /**
+     * @return snapshots dropped because the sender thread fell behind
+     */
+    public long getDroppedCount()
+    {
+        return _droppedCount;
+    }
+
+    /**
+     * @return snapshots sent
+     */
+    public long getSentCount()
+    {
+        return _sentCount;
+    }
+
+    /**
+     * @return failed send attempts
+     */
+    public long getSendErrorCount()
+    {
+        return _sendErrorCount;
+    }
+}
@@ -0,0 +1,272 @@
+package connectivity.fri.sdk.example.LBRClientRuntime;
+
+/**
+ * Sequence filter and loss statistics for the monitoring messages of a FRI
+ * session.
+ * <p>
+ * The filter accepts a message only if its sequence counter is newer than the
+ * one of the last processed message; duplicates and late messages are
+ * rejected. Messages that were received but replaced by a newer one of the
+ * same cycle are counted as superseded, gaps in the sequence that were not
+ * received up to the processed message as lost. Messages arriving after a
+ * newer one are counted as reordered; if they arrive in a later cycle they
+ * have been counted as lost before.
+ * <p>
+ * The counters are evaluated in windows of a fixed number of processed
+ * messages. The results of the last completed window and the totals can be
+ * read from any thread; all other methods are called by the control loop
+ * only.
+ */
+public class SequenceStatistics
+{
+    /**
+     * Backward jump of the sequence counter that is treated as a restarted
+     * counter instead of a late message.
+     */
+    private static final int RESYNC_DISTANCE = 1000;
+
+    private final int _windowSize;
+
+    private boolean _valid;
+    private int _lastSequence;
+    private int _pendingReceived;
+
+    private int _processed;
+    private int _lost;
+    private int _reordered;
+    private int _duplicates;
+    private int _superseded;
+
+    private volatile long _windowCount;
+    private volatile int _windowLost;
+    private volatile int _windowReordered;
+    private volatile int _windowDuplicates;
+    private volatile int _windowSuperseded;
+
+    private volatile long _totalProcessed;
+    private volatile long _totalLost;
+    private volatile long _totalReordered;
+    private volatile long _totalDuplicates;
+    private volatile long _totalSuperseded;
+
+    /**
+     * Constructor.
+     *
+     * @param windowSize
+     *            number of processed messages per evaluation window
+     */
+    public SequenceStatistics(int windowSize)
+    {
+        _windowSize = windowSize;
+    }
+
+    /**
+     * Compares two sequence counters with respect to overflow.
+     *
+     * @param sequence
+     *            sequence counter to check
+     * @param reference
+     *            reference sequence counter
+     * @return true if sequence is newer than reference
+     */
+    public static boolean isNewer(int sequence, int reference)
+    {
+        return sequence - reference > 0;
+    }
+
+    /**
+     * Forgets the last processed sequence counter, e.g. at the start of a new
+     * session. The counters are kept.
+     */
+    public void reset()
+    {
+        _valid = false;
+        _pendingReceived = 0;
+    }
+
+    /**
+     * Counts a received message that is replaced by a newer message received
+     * later in the same cycle.
+     */
+    public void supersede()
+    {
+        _superseded++;
+        _pendingReceived++;
+    }
+
+    /**
+     * Counts a received message that is not processed because a message with
+     * the same or a newer sequence counter arrived before it in the same
+     * cycle.
+     *
+     * @param sequence
+     *            sequence counter of the message
+     * @param newest
+     *            sequence counter of the newest message of the cycle
+     */
+    public void skip(int sequence, int newest)
+    {
+        if (sequence == newest || (_valid && sequence == _lastSequence))
+        {
+            _duplicates++;
+        }
+        else
+        {
+            _reordered++;
+            if (!_valid || isNewer(sequence, _lastSequence))
+            {
+                // arrived late, but within the cycle: not lost
+                _pendingReceived++;
+            }
+        }
+    }
+
+    /**
+     * Checks the message to be processed.
+     *
+     * @param sequence
+     *            sequence counter of the message
+     * @return true if the message is newer than the last processed one
+     */
+    public boolean accept(int sequence)
+    {
+        int distance = sequence - _lastSequence;
+        if (_valid && distance <= 0 && distance > -RESYNC_DISTANCE)
+        {
+            if (distance == 0)
+            {
+                _duplicates++;
+            }
+            else
+            {
+                _reordered++;
+            }
+            _pendingReceived = 0;
+            return false;
+        }
+
+        if (_valid && distance > 0)
+        {
+            _lost += Math.max(0, distance - 1 - _pendingReceived);
+        }
+        _valid = true;
+        _lastSequence = sequence;
+        _pendingReceived = 0;
+
+        _processed++;
+        if (_processed >= _windowSize)
+        {
+            completeWindow();
+        }
+        return true;
+    }
+
+    private void completeWindow()
+    {
+        _windowLost = _lost;
+        _windowReordered = _reordered;
+        _windowDuplicates = _duplicates;
+        _windowSuperseded = _superseded;
+
+        _totalProcessed += _processed;
+        _totalLost += _lost;
+        _totalReordered += _reordered;
+        _totalDuplicates += _duplicates;
+        _totalSuperseded += _superseded;
+        _windowCount++;
+
+        _processed = 0;
+        _lost = 0;
+        _reordered = 0;
+        _duplicates = 0;
+        _superseded = 0;
+    }
+
+    /**
+     * @return number of processed messages per window
+     */
+    public int getWindowSize()
+    {
+        return _windowSize;
+    }
+
+    /**
+     * @return number of completed windows
+     */
+    public long getWindowCount()
+    {
+        return _windowCount;
+    }
+
+    /**
+     * @return messages lost in the last completed window
+     */
+    public int getWindowLost()
+    {
+        return _windowLost;
+    }
+
+    /**
+     * @return late messages received in the last completed window
+     */
+    public int getWindowReordered()
+    {
+        return _windowReordered;
+    }
+
+    /**
+     * @return duplicate messages received in the last completed window
+     */
+    public int getWindowDuplicates()
+    {
+        return _windowDuplicates;
+    }
+
+    /**
+     * @return superseded messages in the last completed window
+     */
+    public int getWindowSuperseded()
+    {
+        return _windowSuperseded;
+    }
+
+    /**
+     * @return processed messages of all completed windows
+     */
+    public long getTotalProcessed()
+    {
+        return _totalProcessed;
+    }
+
+    /**
+     * @return lost messages of all completed windows
+     */
+    public long getTotalLost()
+    {
+        return _totalLost;
+    }
+
+    /**
+     * @return late messages of all completed windows
+     */
+    public long getTotalReordered()
+    {
+        return _totalReordered;
+    }
+
+    /**
+     * @return duplicate messages of all completed windows
+     */
+    public long getTotalDuplicates()
+    {
+        return _totalDuplicates;
+    }
+
+    /**
+     * @return superseded messages of all completed windows
+     */
+    public long getTotalSuperseded()
+    {
+        return _totalSuperseded;
+    }
+}
@@ -0,0 +1,152 @@
+package connectivity.fri.sdk.example.LBRClientRuntime;
+
+import com.kuka.connectivity.fri.clientSDK.base.IClient.FRIConnectionQuality;
+import com.kuka.connectivity.fri.clientSDK.base.IClient.FRISessionState;
+import com.kuka.connectivity.fri.clientSDK.base.IClient.SafetyState;
+
+/**
+ * Change of the FRI session state, the connection quality or the safety state,
+ * as delivered by the {@link SessionEventBus}.
+ * <p>
+ * Event objects are reused; a listener must copy what it needs before it
+ * returns.
+ */
+public class SessionEvent
+{
+    /**
+     * Kind of change.
+     */
+    public enum Type
+    {
+        /** change of the {@link FRISessionState} */
+        SESSION_STATE,
+        /** change of the {@link FRIConnectionQuality} */
+        CONNECTION_QUALITY,
+        /** change of the {@link SafetyState} */
+        SAFETY_STATE
+    }
+
+    private static final Type[] TYPES = Type.values();
+    private static final FRISessionState[] SESSION_STATES = FRISessionState.values();
+    private static final FRIConnectionQuality[] QUALITIES = FRIConnectionQuality.values();
+    private static final SafetyState[] SAFETY_STATES = SafetyState.values();
+
+    private long _index;
+    private int _type;
+    private int _oldValue;
+    private int _newValue;
+    private int _sequenceCounter;
+    private long _timeNanos;
+
+    void set(long index, int type, int oldValue, int newValue, int sequenceCounter, long timeNanos)
+    {
+        _index = index;
+        _type = type;
+        _oldValue = oldValue;
+        _newValue = newValue;
+        _sequenceCounter = sequenceCounter;
+        _timeNanos = timeNanos;
+    }
+
+    /**
+     * @return running number of the event on the bus
+     */
+    public long getIndex()
+    {
+        return _index;
+    }
+
+    /**
+     * @return kind of change
+     */
+    public Type getType()
+    {
+        return TYPES[_type];
+    }
+
+    /**
+     * @return ordinal of the value before the change
+     */
+    public int getOldValue()
+    {
+        return _oldValue;
+    }
+
+    /**
+     * @return ordinal of the value after the change
+     */
+    public int getNewValue()
+    {
+        return _newValue;
+    }
+
+    /**
+     * @return sequence counter of the monitoring message with the change
+     */
+    public int getSequenceCounter()
+    {
+        return _sequenceCounter;
+    }
+
+    /**
+     * @return time of the change in {@link System#nanoTime()}
+     */
+    public long getTimeNanos()
+    {
+        return _timeNanos;
+    }
+
+    /**
+     * @return the new session state of a {@link Type#SESSION_STATE} event
+     */
+    public FRISessionState getNewSessionState()
+    {
+        return SESSION_STATES[_newValue];
+    }
+
+    /**
+     * @return the new connection quality of a {@link Type#CONNECTION_QUALITY}
+     *         event
+     */
+    public FRIConnectionQuality getNewConnectionQuality()
+    {
+        return QUALITIES[_newValue];
+    }
+
+    /**
+     * @return the new safety state of a {@link Type#SAFETY_STATE} event
+     */
+    public SafetyState getNewSafetyState()
+    {
+        return SAFETY_STATES[_newValue];
+    }
+
+    @Override
+    public String toString()
+    {
+        Object from;
+        Object to;
+        switch (getType())
+        {
+            case SESSION_STATE:
+            {
+                from = SESSION_STATES[_oldValue];
+                to = SESSION_STATES[_newValue];
+                break;
+            }
+            case CONNECTION_QUALITY:
+            {
+                from = QUALITIES[_oldValue];
+                to = QUALITIES[_newValue];
+                break;
+            }
+            default:
+            {
+                from = SAFETY_STATES[_oldValue];
+                to = SAFETY_STATES[_newValue];
+                break;
+            }
+        }
+        return getType() + ": " + from + " -> " + to + " (message " + _sequenceCounter + ")";
+    }
+}
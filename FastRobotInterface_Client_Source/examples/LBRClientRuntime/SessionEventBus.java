@@ -0,0 +1,332 @@
+package connectivity.fri.sdk.example.LBRClientRuntime;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+import com.kuka.connectivity.fri.clientSDK.protobuf.gen.FRIMessages.FRIMonitoringMessage;
+
+/**
+ * Publishes changes of the session state, the connection quality and the
+ * safety state from the control loop to subscribers on other threads.
+ * <p>
+ * As {@link IMonitoringMessageListener} the bus compares every processed
+ * monitoring message with the previous one and writes changes into a
+ * preallocated ring; this neither blocks nor allocates. A dispatcher thread
+ * hands new events to every subscription, which drains the ring on its own
+ * {@link Executor}. A subscriber that falls behind by more than the ring
+ * capacity skips the overwritten events and counts them as lost; it never
+ * holds back the control loop or other subscribers.
+ */
+public class SessionEventBus implements IMonitoringMessageListener
+{
+    private static final long IDLE_PARK_NANOS = 10000000;
+
+    /**
+     * Slot of the ring. All fields are volatile so that a reader can detect a
+     * concurrent overwrite by comparing the index before and after copying.
+     */
+    private static final class Slot
+    {
+        volatile long _index = -1;
+        volatile int _type;
+        volatile int _oldValue;
+        volatile int _newValue;
+        volatile int _sequenceCounter;
+        volatile long _timeNanos;
+    }
+
+    /**
+     * Registration of a listener.
+     */
+    public final class Subscription implements Runnable
+    {
+        private final ISessionEventListener _listener;
+        private final Executor _executor;
+        private final SessionEvent _event = new SessionEvent();
+        private final AtomicBoolean _scheduled = new AtomicBoolean();
+        private volatile long _cursor;
+        private volatile long _deliveredCount;
+        private volatile long _lostCount;
+
+        private Subscription(ISessionEventListener listener, Executor executor, long cursor)
+        {
+            _listener = listener;
+            _executor = executor;
+            _cursor = cursor;
+        }
+
+        /**
+         * @return number of events delivered to the listener
+         */
+        public long getDeliveredCount()
+        {
+            return _deliveredCount;
+        }
+
+        /**
+         * @return number of events the listener missed because it fell behind
+         */
+        public long getLostCount()
+        {
+            return _lostCount;
+        }
+
+        @Override
+        public void run()
+        {
+            do
+            {
+                drain();
+                _scheduled.set(false);
+            }
+            while (_cursor < _head.get() && _scheduled.compareAndSet(false, true));
+        }
+
+        private void drain()
+        {
+            long cursor = _cursor;
+            long head;
+            while (cursor < (head = _head.get()))
+            {
+                if (head - cursor > _slots.length)
+                {
+                    _lostCount += head - _slots.length - cursor;
+                    cursor = head - _slots.length;
+                }
+                Slot slot = _slots[(int) cursor & _mask];
+                long index = slot._index;
+                int type = slot._type;
+                int oldValue = slot._oldValue;
+                int newValue = slot._newValue;
+                int sequenceCounter = slot._sequenceCounter;
+                long timeNanos = slot._timeNanos;
+                if (index == cursor && slot._index == cursor)
+                {
+                    _event.set(index, type, oldValue, newValue, sequenceCounter, timeNanos);
+                    try
+                    {
+                        _listener.onSessionEvent(_event);
+                    }
+                    catch (RuntimeException e)
+                    {
+                        Logger.getAnonymousLogger().warning("Session event listener failed: " + e);
+                    }
+                    _deliveredCount++;
+                }
+                else
+                {
+                    // overwritten while reading
+                    _lostCount++;
+                }
+                cursor++;
+                _cursor = cursor;
+            }
+        }
+
+        private void schedule()
+        {
+            if (_cursor < _head.get() && _scheduled.compareAndSet(false, true))
+            {
+                try
+                {
+                    _executor.execute(this);
+                }
+                catch (RejectedExecutionException e)
+                {
+                    _scheduled.set(false);
+                }
+            }
+        }
+    }
+
+    private final Slot[] _slots;
+    private final int _mask;
+    private final AtomicLong _head = new AtomicLong();
+    private final CopyOnWriteArrayList<Subscription> _subscriptions = new CopyOnWriteArrayList<Subscription>();
+    private volatile boolean _dispatcherWaiting;
+    private volatile Thread _dispatcher;
+    private volatile boolean _running;
+
+    private boolean _valid;
+    private int _sessionState;
+    private int _quality;
+    private int _safetyState;
+
+    /**
+     * Constructor.
+     *
+     * @param capacity
+     *            number of preallocated event slots, rounded up to a power of
+     *            two
+     */
+    public SessionEventBus(int capacity)
+    {
+        int size = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+        _slots = new Slot[size];
+        for (int i = 0; i < size; i++)
+        {
+            _slots[i] = new Slot();
+        }
+        _mask = size - 1;
+    }
+
+    /**
+     * Registers a listener for the events published from now on.
+     *
+     * @param listener
+     *            the listener
+     * @param executor
+     *            executor running the listener; events of one subscription
+     *            are delivered by one task at a time
+     * @return the subscription with its statistics
+     */
+    public Subscription subscribe(ISessionEventListener listener, Executor executor)
+    {
+        Subscription subscription = new Subscription(listener, executor, _head.get());
+        _subscriptions.add(subscription);
+        return subscription;
+    }
+
+    /**
+     * Removes a subscription.
+     *
+     * @param subscription
+     *            the subscription
+     */
+    public void unsubscribe(Subscription subscription)
+    {
+        _subscriptions.remove(subscription);
+    }
+
+    /**
+     * Starts the dispatcher thread.
+     */
+    public void start()
+    {
+        _running = true;
+        Thread thread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                dispatch();
+            }
+        }, "SessionEventBus");
+        thread.setDaemon(true);
+        _dispatcher = thread;
+        thread.start();
+    }
+
+    /**
+     * Stops the dispatcher thread. Events already handed to the executors are
+     * still delivered.
+     */
+    public void stop()
+    {
+        _running = false;
+        Thread thread = _dispatcher;
+        if (thread != null)
+        {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    @Override
+    public void onMonitoringMessage(FRIMonitoringMessage message)
+    {
+        int sequenceCounter = message.getHeader().getSequenceCounter();
+        int sessionState = message.getConnectionInfo().getSessionState().getNumber();
+        int quality = message.getConnectionInfo().getQuality().getNumber();
+        int safetyState = message.getRobotInfo().getSafetyState().getNumber();
+        if (!_valid)
+        {
+            _valid = true;
+            _sessionState = 0;
+            _quality = quality;
+            _safetyState = safetyState;
+        }
+        if (sessionState != _sessionState)
+        {
+            publish(SessionEvent.Type.SESSION_STATE, _sessionState, sessionState, sequenceCounter);
+            _sessionState = sessionState;
+        }
+        if (quality != _quality)
+        {
+            publish(SessionEvent.Type.CONNECTION_QUALITY, _quality, quality, sequenceCounter);
+            _quality = quality;
+        }
+        if (safetyState != _safetyState)
+        {
+            publish(SessionEvent.Type.SAFETY_STATE, _safetyState, safetyState, sequenceCounter);
+            _safetyState = safetyState;
+        }
+    }
+
+    /**
+     * Publishes an event. Must only be called from the control loop.
+     *
+     * @param type
+     *            kind of change
+     * @param oldValue
+     *            ordinal of the value before the change
+     * @param newValue
+     *            ordinal of the value after the change
+     * @param sequenceCounter
+     *            sequence counter of the monitoring message
+     */
+    public void publish(SessionEvent.Type type, int oldValue, int newValue, int sequenceCounter)
+    {
+        long index = _head.get();
+        Slot slot = _slots[(int) index & _mask];
+        slot._index = -1;
+        slot._type = type.ordinal();
+        slot._oldValue = oldValue;
+        slot._newValue = newValue;
+        slot._sequenceCounter = sequenceCounter;
+        slot._timeNanos = System.nanoTime();
+        slot._index = index;
+        _head.set(index + 1);
+
+        if (_dispatcherWaiting)
+        {
+            LockSupport.unpark(_dispatcher);
+        }
+    }
+
+    /**
+     * @return number of published events
+     */
+    public long getPublishedCount()
+    {
+        return _head.get();
+    }
+
+    private void dispatch()
+    {
+        long dispatched = _head.get();
+        while (_running)
+        {
+            long head = _head.get();
+            if (head == dispatched)
+            {
+                _dispatcherWaiting = true;
+                if (head == _head.get())
+                {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+                _dispatcherWaiting = false;
+                continue;
+            }
+            dispatched = head;
+            for (Subscription subscription : _subscriptions)
+            {
+                subscription.schedule();
+            }
+        }
+    }
+}
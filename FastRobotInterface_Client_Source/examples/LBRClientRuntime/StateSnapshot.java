@@ -0,0 +1,261 @@
+package connectivity.fri.sdk.example.LBRClientRuntime;
+
+import java.nio.ByteBuffer;
+
+import com.kuka.connectivity.fri.clientSDK.clientLBR.LBRState;
+import com.kuka.connectivity.fri.clientSDK.protobuf.gen.FRIMessages.FRIMonitoringMessage;
+import com.kuka.connectivity.fri.clientSDK.protobuf.gen.FRIMessages.JointValues;
+
+/**
+ * Compact binary snapshot of the robot state for observers of a FRI session.
+ * <p>
+ * Layout (big endian, {@link #SIZE} bytes):
+ *
+ * <pre>
+ * int    magic ('LBRS')
+ * short  version
+ * short  number of joints
+ * int    snapshot counter of the publisher
+ * int    sequence counter of the monitoring message
+ * int    time stamp seconds
+ * int    time stamp nanoseconds
+ * byte   session state      (ordinal of FRISessionState)
+ * byte   connection quality (ordinal of FRIConnectionQuality)
+ * byte   safety state       (ordinal of SafetyState)
+ * byte   reserved
+ * double tracking performance
+ * double[7] measured joint position (rad)
+ * double[7] commanded joint position (rad)
+ * double[7] interpolator joint position (rad)
+ * double[7] measured torque (Nm)
+ * double[7] commanded torque (Nm)
+ * double[7] external torque (Nm)
+ * </pre>
+ *
+ * Values missing in the monitoring message are transmitted as NaN.
+ */
+public class StateSnapshot
+{
+    /** snapshot identifier */
+    public static final int MAGIC = 0x4C425253;
+    /** layout version */
+    public static final short VERSION = 1;
+
+    private static final int N = LBRState.NUMBER_OF_JOINTS;
+    /** size of an encoded snapshot in bytes */
+    public static final int SIZE = 4 + 2 + 2 + 4 * 4 + 4 + 8 + 6 * N * 8;
+
+    private int _counter;
+    private int _sequenceCounter;
+    private int _timeStampSec;
+    private int _timeStampNanoSec;
+    private int _sessionState;
+    private int _connectionQuality;
+    private int _safetyState;
+    private double _trackingPerformance;
+    private final double[] _measuredJointPosition = new double[N];
+    private final double[] _commandedJointPosition = new double[N];
+    private final double[] _ipoJointPosition = new double[N];
+    private final double[] _measuredTorque = new double[N];
+    private final double[] _commandedTorque = new double[N];
+    private final double[] _externalTorque = new double[N];
+
+    /**
+     * Encodes a monitoring message without allocation.
+     *
+     * @param counter
+     *            snapshot counter of the publisher
+     * @param message
+     *            monitoring message
+     * @param buffer
+     *            target buffer with at least {@link #SIZE} bytes remaining
+     */
+    public static void encode(int counter, FRIMonitoringMessage message, ByteBuffer buffer)
+    {
+        buffer.putInt(MAGIC);
+        buffer.putShort(VERSION);
+        buffer.putShort((short) N);
+        buffer.putInt(counter);
+        buffer.putInt(message.getHeader().getSequenceCounter());
+        buffer.putInt(message.getMonitorData().getTimestamp().getSec());
+        buffer.putInt(message.getMonitorData().getTimestamp().getNanosec());
+        buffer.put((byte) message.getConnectionInfo().getSessionState().getNumber());
+        buffer.put((byte) message.getConnectionInfo().getQuality().getNumber());
+        buffer.put((byte) message.getRobotInfo().getSafetyState().getNumber());
+        buffer.put((byte) 0);
+        buffer.putDouble(message.getIpoData().hasTrackingPerformance()
+                ? message.getIpoData().getTrackingPerformance() : Double.NaN);
+        putJointValues(buffer, message.getMonitorData().hasMeasuredJointPosition(),
+                message.getMonitorData().getMeasuredJointPosition());
+        putJointValues(buffer, message.getMonitorData().hasCommandedJointPosition(),
+                message.getMonitorData().getCommandedJointPosition());
+        putJointValues(buffer, message.getIpoData().hasJointPosition(), message.getIpoData().getJointPosition());
+        putJointValues(buffer, message.getMonitorData().hasMeasuredTorque(),
+                message.getMonitorData().getMeasuredTorque());
+        putJointValues(buffer, message.getMonitorData().hasCommandedTorque(),
+                message.getMonitorData().getCommandedTorque());
+        putJointValues(buffer, message.getMonitorData().hasExternalTorque(),
+                message.getMonitorData().getExternalTorque());
+    }
+
+    private static void putJointValues(ByteBuffer buffer, boolean present, JointValues values)
+    {
+        int count = present ? Math.min(N, values.getValueCount()) : 0;
+        for (int i = 0; i < N; i++)
+        {
+            buffer.putDouble(i < count ? values.getValue(i) : Double.NaN);
+        }
+    }
+
+    /**
+     * Decodes a snapshot into this object.
+     *
+     * @param buffer
+     *            buffer positioned at the start of the snapshot
+     * @return false if the buffer does not hold a snapshot of this layout
+     */
+    public boolean decode(ByteBuffer buffer)
+    {
+        if (buffer.remaining() < SIZE || buffer.getInt() != MAGIC || buffer.getShort() != VERSION
+                || buffer.getShort() != N)
+        {
+            return false;
+        }
+        _counter = buffer.getInt();
+        _sequenceCounter = buffer.getInt();
+        _timeStampSec = buffer.getInt();
+        _timeStampNanoSec = buffer.getInt();
+        _sessionState = buffer.get();
+        _connectionQuality = buffer.get();
+        _safetyState = buffer.get();
+        buffer.get();
+        _trackingPerformance = buffer.getDouble();
+        getJointValues(buffer, _measuredJointPosition);
+        getJointValues(buffer, _commandedJointPosition);
+        getJointValues(buffer, _ipoJointPosition);
+        getJointValues(buffer, _measuredTorque);
+        getJointValues(buffer, _commandedTorque);
+        getJointValues(buffer, _externalTorque);
+        return true;
+    }
+
+    private static void getJointValues(ByteBuffer buffer, double[] values)
+    {
+        for (int i = 0; i < N; i++)
+        {
+            values[i] = buffer.getDouble();
+        }
+    }
+
+    /**
+     * @return snapshot counter of the publisher
+     */
+    public int getCounter()
+    {
+        return _counter;
+    }
+
+    /**
+     * @return sequence counter of the monitoring message
+     */
+    public int getSequenceCounter()
+    {
+        return _sequenceCounter;
+    }
+
+    /**
+     * @return time stamp seconds
+     */
+    public int getTimeStampSec()
+    {
+        return _timeStampSec;
+    }
+
+    /**
+     * @return time stamp nanoseconds
+     */
+    public int getTimeStampNanoSec()
+    {
+        return _timeStampNanoSec;
+    }
+
+    /**
+     * @return ordinal of the FRI session state
+     */
+    public int getSessionState()
+    {
+        return _sessionState;
+    }
+
+    /**
+     * @return ordinal of the connection quality
+     */
+    public int getConnectionQuality()
+    {
+        return _connectionQuality;
+    }
+
+    /**
+     * @return ordinal of the safety state
+     */
+    public int getSafetyState()
+    {
+        return _safetyState;
+    }
+
+    /**
+     * @return tracking performance
+     */
+    public double getTrackingPerformance()
+    {
+        return _trackingPerformance;
+    }
+
+    /**
+     * @return measured joint position (rad), backed by this snapshot
+     */
+    public double[] getMeasuredJointPosition()
+    {
+        return _measuredJointPosition;
+    }
+
+    /**
+     * @return commanded joint position (rad), backed by this snapshot
+     */
+    public double[] getCommandedJointPosition()
+    {
+        return _commandedJointPosition;
+    }
+
+    /**
+     * @return interpolator joint position (rad), backed by this snapshot
+     */
+    public double[] getIpoJointPosition()
+    {
+        return _ipoJointPosition;
+    }
+
+    /**
+     * @return measured torque (Nm), backed by this snapshot
+     */
+    public double[] getMeasuredTorque()
+    {
+        return _measuredTorque;
+    }
+
+    /**
+     * @return commanded torque (Nm), backed by this snapshot
+     */
+    public double[] getCommandedTorque()
+    {
+        return _commandedTorque;
+    }
+
+    /**
+     * @return external torque (Nm), backed by this snapshot
+     */
+    public double[] getExternalTorque()
+    {
+        return _externalTorque;
+    }
+}
@@ -0,0 +1,260 @@
+package connectivity.fri.sdk.example.LBRCollisionDetection;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.logging.Logger;
+
+import com.kuka.connectivity.fri.clientSDK.base.IClient.FRISessionState;
+
+import connectivity.fri.sdk.example.LBRCollisionDetection.LBRCollisionDetectionClient.Reaction;
+import connectivity.fri.sdk.example.LBRModel.LBRSimulator;
+import connectivity.fri.sdk.example.LBRModel.LBRiiwa7Model;
+
+/**
+ * Measures detection latency and false positive rate of
+ * {@link LBRCollisionDetectionClient} on simulated sessions.
+ * <p>
+ * Every session moves all joints along random sine trajectories on a plant
+ * whose inertial parameters deviate from the model of the client. Half of the
+ * sessions run collision free and count false detections; in the other half a
+ * contact force is ramped up at the flange at a random time and the time to
+ * detection is recorded.
+ */
+public class CollisionDetectionBenchmark
+{
+    private static final int DEFAULT_SESSIONS = 40;
+    private static final double DEFAULT_SESSION_SECONDS = 10.0;
+    private static final int DEFAULT_SEND_PERIOD = 1;
+    private static final double DEFAULT_CONTACT_FORCE = 40.0;
+
+    private static final double MODEL_ERROR = 0.05;
+    private static final double COM_ERROR = 0.005;
+    private static final double POSITION_NOISE = 2e-6;
+    private static final double TORQUE_NOISE = 0.1;
+    private static final double CONTACT_RAMP_SECONDS = 0.02;
+    private static final double MAX_LATENCY_SECONDS = 0.2;
+    private static final double WARMUP_SECONDS = 0.5;
+
+    private static final double[] OBSERVER_GAINS = LBRCollisionDetectionClient.DEFAULT_OBSERVER_GAINS;
+    private static final double[] THRESHOLDS = LBRCollisionDetectionClient.DEFAULT_THRESHOLDS;
+    private static double _maxFreeResidualRatio;
+
+    private static final double[] START_POSITION = {
+        0, Math.toRadians(30), 0, Math.toRadians(-60), 0, Math.toRadians(60), 0 };
+
+    /**
+     * @param argv
+     *            the arguments
+     */
+    public static void main(String[] argv)
+    {
+        if (argv.length > 0 && argv[0].equals("help"))
+        {
+            Logger.getAnonymousLogger().info("\nCollision detection benchmark\n\n\tCommand line arguments:");
+            Logger.getAnonymousLogger().info("\t1) number of sessions (optional)");
+            Logger.getAnonymousLogger().info("\t2) session duration in seconds (optional)");
+            Logger.getAnonymousLogger().info("\t3) send period in milliseconds (optional)");
+            Logger.getAnonymousLogger().info("\t4) contact force in N (optional)");
+            return;
+        }
+
+        int sessions = (argv.length >= 1) ? Integer.valueOf(argv[0]) : DEFAULT_SESSIONS;
+        double duration = (argv.length >= 2) ? Double.valueOf(argv[1]) : DEFAULT_SESSION_SECONDS;
+        int sendPeriod = (argv.length >= 3) ? Integer.valueOf(argv[2]) : DEFAULT_SEND_PERIOD;
+        double force = (argv.length >= 4) ? Double.valueOf(argv[3]) : DEFAULT_CONTACT_FORCE;
+
+        Random random = new Random(4711);
+        double[] latencies = new double[sessions];
+        int detected = 0;
+        int missed = 0;
+        int falsePositives = 0;
+        double freeSeconds = 0.0;
+
+        for (int s = 0; s < sessions; s++)
+        {
+            boolean withContact = (s % 2) == 1;
+            double contactTime = withContact ? (0.3 + 0.6 * random.nextDouble()) * duration : -1.0;
+            double result = runSession(random, sendPeriod, duration, contactTime, force);
+            if (!withContact)
+            {
+                freeSeconds += duration;
+                if (result >= 0.0)
+                {
+                    falsePositives++;
+                }
+            }
+            else if (Double.isNaN(result))
+            {
+                // detected before the contact
+                falsePositives++;
+                freeSeconds += contactTime;
+            }
+            else if (result < 0.0 || result > MAX_LATENCY_SECONDS)
+            {
+                missed++;
+                freeSeconds += contactTime;
+            }
+            else
+            {
+                latencies[detected++] = result * 1000.0;
+                freeSeconds += contactTime;
+            }
+        }
+
+        Arrays.sort(latencies, 0, detected);
+        StringBuilder report = new StringBuilder("Collision detection benchmark:\n");
+        report.append("\tsessions: ").append(sessions).append(" x ").append(duration).append(" s, send period ")
+                .append(sendPeriod).append(" ms, contact force ").append(force).append(" N\n");
+        report.append("\tdetected: ").append(detected).append(", missed: ").append(missed).append('\n');
+        if (detected > 0)
+        {
+            report.append("\tlatency (ms): min ").append(format(latencies[0]))
+                    .append(", median ").append(format(latencies[detected / 2]))
+                    .append(", p95 ").append(format(latencies[Math.min(detected - 1, (int) (0.95 * detected))]))
+                    .append(", max ").append(format(latencies[detected - 1])).append('\n');
+        }
+        report.append("\tfalse positives: ").append(falsePositives).append(" in ").append(format(freeSeconds))
+                .append(" s of contact free motion (")
+                .append(format(falsePositives * 3600.0 / Math.max(freeSeconds, 1e-9))).append(" per hour)\n");
+        report.append("\tmax residual / threshold without contact: ").append(format(_maxFreeResidualRatio))
+                .append('\n');
+        report.append("\tobserver update: ").append(format(measureUpdateMicros())).append(" us\n");
+        Logger.getAnonymousLogger().info(report.toString());
+    }
+
+    /**
+     * Runs one simulated session.
+     *
+     * @return detection latency in seconds, a negative value if nothing was
+     *         detected and NaN if the detection came before the contact
+     */
+    private static double runSession(Random random, int sendPeriod, double duration, double contactTime,
+            double force)
+    {
+        LBRiiwa7Model plant = new LBRiiwa7Model();
+        double[] com = new double[3];
+        double[] inertia = new double[6];
+        for (int i = 0; i < LBRiiwa7Model.NUMBER_OF_JOINTS; i++)
+        {
+            double mass = plant.getLinkParameters(i, com, inertia);
+            double scale = 1.0 + MODEL_ERROR * (2.0 * random.nextDouble() - 1.0);
+            for (int k = 0; k < 3; k++)
+            {
+                com[k] += COM_ERROR * (2.0 * random.nextDouble() - 1.0);
+            }
+            for (int k = 0; k < 6; k++)
+            {
+                inertia[k] *= scale;
+            }
+            plant.setLinkParameters(i, mass * scale, com, inertia);
+        }
+        // the client only knows the nominal parameters
+        LBRiiwa7Model model = new LBRiiwa7Model();
+
+        LBRSimulator sim = new LBRSimulator(plant, sendPeriod, random.nextLong());
+        sim.setSensorNoise(POSITION_NOISE, TORQUE_NOISE);
+        sim.reset(START_POSITION);
+
+        LBRCollisionDetectionClient client = new LBRCollisionDetectionClient(model, OBSERVER_GAINS, THRESHOLDS,
+                Reaction.HOLD, 200);
+
+        double dt = sim.getSampleTime();
+        double[] amplitude = new double[LBRiiwa7Model.NUMBER_OF_JOINTS];
+        double[] frequency = new double[LBRiiwa7Model.NUMBER_OF_JOINTS];
+        for (int i = 0; i < amplitude.length; i++)
+        {
+            amplitude[i] = 0.1 + 0.3 * random.nextDouble();
+            frequency[i] = 0.1 + 0.3 * random.nextDouble();
+        }
+        double[] direction = { random.nextGaussian(), random.nextGaussian(), random.nextGaussian() };
+        double norm = Math.sqrt(direction[0] * direction[0] + direction[1] * direction[1] + direction[2]
+                * direction[2]);
+
+        double[] ipo = new double[LBRiiwa7Model.NUMBER_OF_JOINTS];
+        double[] q = new double[LBRiiwa7Model.NUMBER_OF_JOINTS];
+        double[] tauExt = new double[LBRiiwa7Model.NUMBER_OF_JOINTS];
+        double[][] jacobian = new double[6][LBRiiwa7Model.NUMBER_OF_JOINTS];
+        LBRiiwa7Model contactModel = new LBRiiwa7Model(plant);
+
+        int warmup = (int) (WARMUP_SECONDS / dt);
+        int cycles = (int) (duration / dt);
+        sim.setSessionState(FRISessionState.MONITORING_READY);
+        for (int k = 0; k < warmup; k++)
+        {
+            sim.step(client);
+        }
+        sim.setSessionState(FRISessionState.COMMANDING_ACTIVE);
+        for (int k = 0; k < cycles; k++)
+        {
+            double t = k * dt;
+            for (int i = 0; i < ipo.length; i++)
+            {
+                // smooth start of the sine motion
+                double ramp = Math.min(1.0, t / 2.0);
+                ipo[i] = START_POSITION[i] + ramp * ramp * amplitude[i] * Math.sin(2 * Math.PI * frequency[i] * t);
+            }
+            sim.setIpoJointPosition(ipo);
+
+            if (contactTime >= 0.0 && t >= contactTime)
+            {
+                double f = force * Math.min(1.0, (t - contactTime) / CONTACT_RAMP_SECONDS) / norm;
+                sim.getJointPosition(q);
+                contactModel.jacobian(q, jacobian);
+                for (int i = 0; i < tauExt.length; i++)
+                {
+                    tauExt[i] = f * (jacobian[0][i] * direction[0] + jacobian[1][i] * direction[1]
+                            + jacobian[2][i] * direction[2]);
+                }
+                sim.setExternalTorque(tauExt);
+            }
+            sim.step(client);
+
+            if (contactTime < 0.0 || t < contactTime)
+            {
+                double[] residual = client.getObserver().getResidual();
+                for (int i = 0; i < residual.length; i++)
+                {
+                    _maxFreeResidualRatio = Math.max(_maxFreeResidualRatio, Math.abs(residual[i]) / THRESHOLDS[i]);
+                }
+            }
+
+            if (client.getCollisionCycle() >= 0)
+            {
+                double detection = client.getCollisionCycle() * dt;
+                if (contactTime < 0.0)
+                {
+                    return detection;
+                }
+                return detection < contactTime ? Double.NaN : detection - contactTime;
+            }
+        }
+        return -1.0;
+    }
+
+    private static double measureUpdateMicros()
+    {
+        LBRiiwa7Model model = new LBRiiwa7Model();
+        MomentumObserver observer = new MomentumObserver(model, OBSERVER_GAINS, 0.0);
+        observer.reset(0.001);
+        double[] q = START_POSITION.clone();
+        double[] tau = new double[LBRiiwa7Model.NUMBER_OF_JOINTS];
+        model.gravityTorque(q, tau);
+        int runs = 200000;
+        long start = 0;
+        for (int k = 0; k < runs; k++)
+        {
+            if (k == runs / 2)
+            {
+                start = System.nanoTime();
+            }
+            q[0] = START_POSITION[0] + 1e-4 * k;
+            observer.update(q, tau);
+        }
+        return (System.nanoTime() - start) / 1000.0 / (runs - runs / 2);
+    }
+
+    private static String format(double value)
+    {
+        return String.format("%.2f", value);
+    }
+}
@@ -0,0 +1,25 @@
+package connectivity.fri.sdk.example.LBRCollisionDetection;
+
+/**
+ * Callback for collisions detected by {@link LBRCollisionDetectionClient}.
+ * <p>
+ * The callback runs on the FRI thread in the cycle of the detection, after
+ * the reaction has been commanded. Implementations must return quickly and
+ * must not keep references to the passed arrays.
+ */
+public interface ICollisionListener
+{
+    /**
+     * Called once per session when a collision is detected.
+     * 
+     * @param joint
+     *            index of the first joint whose residual exceeded its
+     *            threshold
+     * @param residual
+     *            estimated external joint torques (Nm) in the detection cycle
+     * @param cycle
+     *            number of commanding cycles since 'Commanding Active' was
+     *            entered
+     */
+    void onCollision(int joint, double[] residual, long cycle);
+}
@@ -0,0 +1,121 @@
+package connectivity.fri.sdk.example.LBRCollisionDetection;
+
+import java.util.logging.Logger;
+
+import com.kuka.connectivity.fri.clientSDK.base.ClientApplication;
+import com.kuka.connectivity.fri.clientSDK.connection.UdpConnection;
+
+import connectivity.fri.sdk.example.LBRCollisionDetection.LBRCollisionDetectionClient.Reaction;
+import connectivity.fri.sdk.example.LBRModel.LBRiiwa7Model;
+
+/**
+ * Implementation of a FRI client application with client-side collision
+ * detection.
+ * <p>
+ * The application provides a {@link ClientApplication#connect}, a
+ * {@link ClientApplication#step()} and a {@link ClientApplication#disconnect}
+ * method, which will be called successively in the application life-cycle.
+ *
+ *
+ * @see ClientApplication#connect
+ * @see ClientApplication#step()
+ * @see ClientApplication#disconnect
+ */
+public class LBRCollisionDetectionApp
+{
+
+    private static final int DEFAULT_PORTID = 30200;
+    private static final String DEFAULT_REACTION = "RETRACT";
+    private static final int RETRACT_CYCLES = 200;
+
+    /**
+     * Auto-generated method stub. Do not modify the contents of this method.
+     *
+     * @param argv
+     *            the arguments
+     *
+     *
+     */
+    public static void main(String[] argv)
+    {
+        if (argv.length > 0)
+        {
+            if (argv[0].equals("help"))
+            {
+                Logger.getAnonymousLogger().info("\nKUKA LBR collision detection test application\n\n\tCommand line arguments:");
+                Logger.getAnonymousLogger().info("\t1) remote hostname (optional)");
+                Logger.getAnonymousLogger().info("\t2) port ID (optional)");
+                Logger.getAnonymousLogger().info("\t3) reaction HOLD or RETRACT (optional)");
+                return;
+            }
+        }
+
+        String hostname = (argv.length >= 1) ? argv[0] : null;
+        int port = (argv.length >= 2) ? Integer.valueOf(argv[1]) : DEFAULT_PORTID;
+        Reaction reaction = Reaction.valueOf((argv.length >= 3) ? argv[2] : DEFAULT_REACTION);
+
+        Logger.getAnonymousLogger().info("Enter LBRCollisionDetection Client Application");
+
+        /***************************************************************************/
+        /*                                                                         */
+        /* Place user Client Code here */
+        /*                                                                         */
+        /**************************************************************************/
+
+        // create new collision detection client
+        LBRCollisionDetectionClient client = new LBRCollisionDetectionClient(new LBRiiwa7Model(),
+                LBRCollisionDetectionClient.DEFAULT_OBSERVER_GAINS, LBRCollisionDetectionClient.DEFAULT_THRESHOLDS,
+                reaction, RETRACT_CYCLES);
+        client.setCollisionListener(new ICollisionListener()
+        {
+            @Override
+            public void onCollision(int joint, double[] residual, long cycle)
+            {
+                Logger.getAnonymousLogger().warning("Collision detected at joint A" + (joint + 1)
+                        + " in cycle " + cycle + ": " + residual[joint] + " Nm");
+            }
+        });
+
+        /***************************************************************************/
+        /*                                                                         */
+        /* Standard application structure */
+        /* Configuration */
+        /*                                                                         */
+        /***************************************************************************/
+
+        // create new udp connection
+        UdpConnection connection = new UdpConnection();
+
+        // pass connection and client to a new FRI client application
+        ClientApplication app = new ClientApplication(connection, client);
+
+        // connect client application to KUKA Sunrise controller
+        app.connect(port, hostname);
+
+        /***************************************************************************/
+        /*                                                                         */
+        /* Standard application structure */
+        /* Execution mainloop */
+        /*                                                                         */
+        /***************************************************************************/
+
+        // repeatedly call the step routine to receive and process FRI packets
+        boolean success = true;
+        while (success)
+        {
+            success = app.step();
+        }
+
+        /***************************************************************************/
+        /*                                                                         */
+        /* Standard application structure */
+        /* Dispose */
+        /*                                                                         */
+        /***************************************************************************/
+
+        // disconnect from controller
+        app.disconnect();
+
+        Logger.getAnonymousLogger().info("Exit LBRCollisionDetection Client Application");
+    }
+}
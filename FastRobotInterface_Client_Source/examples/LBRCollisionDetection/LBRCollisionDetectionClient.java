@@ -0,0 +1,254 @@
+package connectivity.fri.sdk.example.LBRCollisionDetection;
+
+import java.util.logging.Logger;
+
+import com.kuka.connectivity.fri.clientSDK.clientLBR.LBRClient;
+import com.kuka.connectivity.fri.clientSDK.clientLBR.LBRState;
+
+import connectivity.fri.sdk.example.LBRModel.LBRiiwa7Model;
+
+/**
+ * Client that detects collisions with a generalized momentum observer and
+ * reacts within the same FRI cycle.
+ * <p>
+ * The observer runs on {@link LBRState#getMeasuredJointPosition()} and
+ * {@link LBRState#getMeasuredTorque()} in every cycle of the session. In
+ * 'Commanding Active' the residual is checked before the command is computed;
+ * once a threshold is exceeded the client stops commanding the nominal
+ * motion of {@link #commandNominal()} and commands the configured
+ * {@link Reaction} instead, until the session leaves 'Commanding Active'.
+ * <p>
+ * Subclasses implement their control law in {@link #commandNominal()}; the
+ * default mirrors the interpolator like {@link LBRClient#command()}.
+ */
+public class LBRCollisionDetectionClient extends LBRClient
+{
+    /**
+     * Reaction commanded after a detected collision.
+     */
+    public enum Reaction
+    {
+        /** hold the measured position of the detection cycle */
+        HOLD,
+        /** move back along the recently travelled path, then hold */
+        RETRACT
+    }
+
+    /** Observer gains (1/s) used by the examples. */
+    public static final double[] DEFAULT_OBSERVER_GAINS = { 40, 40, 40, 40, 40, 40, 40 };
+
+    /**
+     * Thresholds (Nm) used by the examples, tuned with
+     * {@link CollisionDetectionBenchmark} for 5% model error and 0.1 Nm sensor
+     * noise.
+     */
+    public static final double[] DEFAULT_THRESHOLDS = { 8.0, 8.0, 5.0, 5.0, 3.0, 2.0, 2.0 };
+
+    private static final int N = LBRState.NUMBER_OF_JOINTS;
+
+    private final MomentumObserver _observer;
+    private final double[] _thresholds = new double[N];
+    private final Reaction _reaction;
+    private ICollisionListener _listener;
+
+    private final double[][] _history; // ring buffer of measured positions for retraction
+    private int _historyIndex;
+    private int _historyCount;
+    private int _retractStep;
+
+    private final double[] _reactionPosition = new double[N];
+    private boolean _collided;
+    private long _cycle;
+    private volatile long _collisionCycle = -1;
+    private volatile int _collisionJoint = -1;
+
+    /**
+     * Constructor.
+     *
+     * @param model
+     *            dynamic model of the robot including the payload
+     * @param observerGains
+     *            observer gain per joint (1/s)
+     * @param thresholds
+     *            collision thresholds of the estimated external torques (Nm)
+     * @param reaction
+     *            reaction after a collision
+     * @param retractCycles
+     *            number of cycles of the travelled path that are retraced by
+     *            {@link Reaction#RETRACT}
+     */
+    public LBRCollisionDetectionClient(LBRiiwa7Model model, double[] observerGains, double[] thresholds,
+            Reaction reaction, int retractCycles)
+    {
+        _observer = new MomentumObserver(model, observerGains, 0.0);
+        System.arraycopy(thresholds, 0, _thresholds, 0, N);
+        _reaction = reaction;
+        _history = new double[Math.max(1, retractCycles)][N];
+
+        Logger.getAnonymousLogger().info("LBRCollisionDetectionClient initialized:\n"
+                + "\treaction: " + _reaction + "\n"
+                + "\tretract cycles: " + retractCycles + "\n");
+    }
+
+    /**
+     * Registers the collision callback.
+     *
+     * @param listener
+     *            listener, or null to remove it
+     */
+    public void setCollisionListener(ICollisionListener listener)
+    {
+        _listener = listener;
+    }
+
+    /**
+     * @return the momentum observer
+     */
+    public MomentumObserver getObserver()
+    {
+        return _observer;
+    }
+
+    /**
+     * @return commanding cycle of the last detection, or -1 if there was none
+     *         in the current session
+     */
+    public long getCollisionCycle()
+    {
+        return _collisionCycle;
+    }
+
+    /**
+     * @return joint of the last detection, or -1 if there was none in the
+     *         current session
+     */
+    public int getCollisionJoint()
+    {
+        return _collisionJoint;
+    }
+
+    @Override
+    public void onStateChange(FRISessionState oldState, FRISessionState newState)
+    {
+        switch (newState)
+        {
+            case MONITORING_READY:
+            {
+                _observer.reset(getRobotState().getSampleTime());
+                break;
+            }
+            case COMMANDING_ACTIVE:
+            {
+                _collided = false;
+                _cycle = 0;
+                _historyCount = 0;
+                _collisionCycle = -1;
+                _collisionJoint = -1;
+                break;
+            }
+            default:
+            {
+                break;
+            }
+        }
+    }
+
+    @Override
+    public void monitor()
+    {
+        super.monitor();
+        updateObserver();
+    }
+
+    @Override
+    public void waitForCommand()
+    {
+        super.waitForCommand();
+        updateObserver();
+    }
+
+    /**
+     * Callback for the FRI state 'Commanding Active'.
+     */
+    @Override
+    public void command()
+    {
+        double[] q = updateObserver();
+
+        if (_collided)
+        {
+            react();
+        }
+        else
+        {
+            int joint = _observer.findViolation(_thresholds);
+            if (joint >= 0)
+            {
+                startReaction(joint, q);
+            }
+            else
+            {
+                storeHistory(q);
+                commandNominal();
+            }
+        }
+        _cycle++;
+    }
+
+    /**
+     * Computes the command while no collision has been detected. The default
+     * implementation mirrors the interpolator.
+     */
+    protected void commandNominal()
+    {
+        super.command();
+    }
+
+    private double[] updateObserver()
+    {
+        double[] q = getRobotState().getMeasuredJointPosition();
+        _observer.update(q, getRobotState().getMeasuredTorque());
+        return q;
+    }
+
+    private void startReaction(int joint, double[] q)
+    {
+        _collided = true;
+        _retractStep = 0;
+        System.arraycopy(q, 0, _reactionPosition, 0, N);
+        _collisionCycle = _cycle;
+        _collisionJoint = joint;
+        // command the reaction before notifying, the listener must not delay it
+        react();
+        if (_listener != null)
+        {
+            _listener.onCollision(joint, _observer.getResidual(), _cycle);
+        }
+    }
+
+    private void react()
+    {
+        if (_reaction == Reaction.RETRACT && _retractStep < _historyCount)
+        {
+            // step back one sample of the recorded path per cycle
+            int index = _historyIndex - 1 - _retractStep;
+            if (index < 0)
+            {
+                index += _history.length;
+            }
+            System.arraycopy(_history[index], 0, _reactionPosition, 0, N);
+            _retractStep++;
+        }
+        getRobotCommand().setJointPosition(_reactionPosition);
+    }
+
+    private void storeHistory(double[] q)
+    {
+        System.arraycopy(q, 0, _history[_historyIndex], 0, N);
+        _historyIndex = (_historyIndex + 1) % _history.length;
+        if (_historyCount < _history.length)
+        {
+            _historyCount++;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package connectivity.fri.sdk.example.LBRCollisionDetection;
+
+import connectivity.fri.sdk.example.LBRModel.LBRiiwa7Model;
+
+/**
+ * Generalized momentum observer estimating the external joint torques from
+ * measured joint positions and joint torques.
+ * <p>
+ * With the generalized momentum p = M(q) qd the residual
+ *
+ * <pre>
+ * r = K (p - p0 - integral(tau + C(q, qd)^T qd - g(q) + r) dt)
+ * </pre>
+ *
+ * converges to the external torque with the first order dynamics given by the
+ * gain K, without the need for joint accelerations. Joint velocities are
+ * obtained by filtered differentiation of the measured positions and
+ * C(q, qd)^T qd is evaluated as dM/dt qd - C(q, qd) qd.
+ * <p>
+ * The observer does not allocate and can be updated inside the FRI cycle.
+ */
+public class MomentumObserver
+{
+    private static final int N = LBRiiwa7Model.NUMBER_OF_JOINTS;
+
+    private final LBRiiwa7Model _model;
+    private final double[] _gain = new double[N];
+    private double _sampleTime;
+    private double _velocityFilter;
+
+    private final double[] _residual = new double[N];
+    private final double[] _integral = new double[N];
+    private final double[] _lastPosition = new double[N];
+    private final double[] _velocity = new double[N];
+    private final double[] _momentum = new double[N];
+    private final double[] _gravity = new double[N];
+    private final double[] _coriolis = new double[N];
+    private final double[][] _massMatrix = new double[N][N];
+    private final double[][] _lastMassMatrix = new double[N][N];
+    private boolean _initialized;
+
+    /**
+     * Constructor.
+     *
+     * @param model
+     *            dynamic model of the robot including the payload
+     * @param gains
+     *            observer gain per joint (1/s), i.e. the bandwidth of the
+     *            estimate
+     * @param velocityFilter
+     *            coefficient of the velocity low pass between 0 (filter off)
+     *            and 1 (max filter)
+     */
+    public MomentumObserver(LBRiiwa7Model model, double[] gains, double velocityFilter)
+    {
+        _model = model;
+        System.arraycopy(gains, 0, _gain, 0, N);
+        _velocityFilter = velocityFilter;
+    }
+
+    /**
+     * Restarts the observer; the next update initializes it again.
+     *
+     * @param sampleTime
+     *            sample time of the updates in seconds
+     */
+    public void reset(double sampleTime)
+    {
+        _sampleTime = sampleTime;
+        _initialized = false;
+        for (int i = 0; i < N; i++)
+        {
+            _residual[i] = 0.0;
+            _velocity[i] = 0.0;
+        }
+    }
+
+    /**
+     * Processes one sample.
+     *
+     * @param q
+     *            measured joint positions (rad)
+     * @param tau
+     *            measured joint torques (Nm)
+     */
+    public void update(double[] q, double[] tau)
+    {
+        double dt = _sampleTime;
+        if (!_initialized)
+        {
+            // start at rest: p0 = 0, the residual starts at zero
+            System.arraycopy(q, 0, _lastPosition, 0, N);
+            _model.massMatrix(q, _lastMassMatrix);
+            for (int i = 0; i < N; i++)
+            {
+                _integral[i] = 0.0;
+                _velocity[i] = 0.0;
+                _residual[i] = 0.0;
+            }
+            _initialized = true;
+            return;
+        }
+
+        for (int i = 0; i < N; i++)
+        {
+            double raw = (q[i] - _lastPosition[i]) / dt;
+            _velocity[i] = _velocityFilter * _velocity[i] + (1.0 - _velocityFilter) * raw;
+            _lastPosition[i] = q[i];
+        }
+
+        _model.massMatrix(q, _massMatrix);
+        _model.gravityTorque(q, _gravity);
+        _model.coriolisTorque(q, _velocity, _coriolis);
+
+        for (int i = 0; i < N; i++)
+        {
+            double p = 0.0;
+            double mdotQd = 0.0;
+            for (int k = 0; k < N; k++)
+            {
+                p += _massMatrix[i][k] * _velocity[k];
+                mdotQd += (_massMatrix[i][k] - _lastMassMatrix[i][k]) * _velocity[k];
+            }
+            _momentum[i] = p;
+            // C^T qd = dM/dt qd - C qd
+            double coriolisTransposed = mdotQd / dt - _coriolis[i];
+            _integral[i] += (tau[i] + coriolisTransposed - _gravity[i] + _residual[i]) * dt;
+        }
+
+        for (int i = 0; i < N; i++)
+        {
+            _residual[i] = _gain[i] * (_momentum[i] - _integral[i]);
+            System.arraycopy(_massMatrix[i], 0, _lastMassMatrix[i], 0, N);
+        }
+    }
+
+    /**
+     * @return estimated external joint torques (Nm); the array is owned by
+     *         the observer and overwritten by the next update
+     */
+    public double[] getResidual()
+    {
+        return _residual;
+    }
+
+    /**
+     * @return filtered joint velocities (rad/s); the array is owned by the
+     *         observer and overwritten by the next update
+     */
+    public double[] getVelocity()
+    {
+        return _velocity;
+    }
+
+    /**
+     * Checks the residual against joint specific thresholds.
+     *
+     * @param thresholds
+     *            absolute torque thresholds (Nm)
+     * @return index of the first joint exceeding its threshold, or -1
+     */
+    public int findViolation(double[] thresholds)
+    {
+        if (!_initialized)
+        {
+            return -1;
+        }
+        for (int i = 0; i < N; i++)
+        {
+            if (Math.abs(_residual[i]) > thresholds[i])
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,110 @@
+package connectivity.fri.sdk.example.LBRCommandArbitration;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import com.kuka.connectivity.fri.clientSDK.base.IClient.ClientCommandMode;
+
+/**
+ * Selects the command of the highest priority source that holds a fresh
+ * command for the current command mode.
+ * <p>
+ * {@link #arbitrate} runs in the control loop; it neither locks nor
+ * allocates.
+ */
+public class CommandArbiter
+{
+    private final CommandSource[] _sources;
+    private volatile long _noSourceCount;
+
+    /**
+     * Constructor.
+     *
+     * @param sources
+     *            the command sources
+     */
+    public CommandArbiter(CommandSource... sources)
+    {
+        _sources = sources.clone();
+        Arrays.sort(_sources, new Comparator<CommandSource>()
+        {
+            @Override
+            public int compare(CommandSource a, CommandSource b)
+            {
+                return b.getPriority() - a.getPriority();
+            }
+        });
+    }
+
+    /**
+     * Selects the command of this cycle.
+     *
+     * @param nowNanos
+     *            current time in {@link System#nanoTime()}
+     * @param mode
+     *            client command mode of the session
+     * @return the winning command, or null if no source holds a fresh command
+     *         for the mode
+     */
+    public CommandValue arbitrate(long nowNanos, ClientCommandMode mode)
+    {
+        CommandValue winner = null;
+        CommandSource winnerSource = null;
+        for (CommandSource source : _sources)
+        {
+            // evaluate every source to keep the staleness statistics current
+            CommandValue value = source.latest();
+            if (value.getMode() == ClientCommandMode.NO_COMMAND_MODE)
+            {
+                source.recordAge(-1, false);
+                continue;
+            }
+            long age = nowNanos - value.getTimeNanos();
+            boolean stale = age > source.getTimeoutNanos();
+            source.recordAge(age, stale);
+            if (winner == null && !stale && value.getMode() == mode)
+            {
+                winner = value;
+                winnerSource = source;
+            }
+        }
+
+        if (winnerSource != null)
+        {
+            winnerSource.recordWin();
+        }
+        else
+        {
+            _noSourceCount++;
+        }
+        return winner;
+    }
+
+    /**
+     * @return the sources in descending priority
+     */
+    public CommandSource[] getSources()
+    {
+        return _sources.clone();
+    }
+
+    /**
+     * @return number of cycles without a valid source
+     */
+    public long getNoSourceCount()
+    {
+        return _noSourceCount;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder report = new StringBuilder("Command arbitration:\n");
+        for (CommandSource source : _sources)
+        {
+            report.append('\t').append(source).append('\n');
+        }
+        report.append("\tno valid source: ").append(_noSourceCount);
+        return report.toString();
+    }
+}
@@ -0,0 +1,212 @@
+package connectivity.fri.sdk.example.LBRCommandArbitration;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.kuka.connectivity.fri.clientSDK.base.IClient.ClientCommandMode;
+
+/**
+ * Latest-value register of one command source, e.g. teleoperation, a planner
+ * or a safety behaviour.
+ * <p>
+ * The register is a triple buffer: the writer fills its private buffer and
+ * exchanges it atomically with the shared one; the {@link CommandArbiter}
+ * takes the shared buffer in exchange for its own when it is newer. Neither
+ * side locks, waits or allocates, and the control loop always sees a
+ * complete command. Each source must be written by one thread at a time.
+ * <p>
+ * The arbitration statistics of the source can be read from any thread.
+ */
+public class CommandSource
+{
+    private static final int INDEX_MASK = 0x3;
+    private static final int DIRTY = 0x4;
+
+    private final String _name;
+    private final int _priority;
+    private final long _timeoutNanos;
+
+    private final CommandValue[] _buffers = { new CommandValue(), new CommandValue(), new CommandValue() };
+    private final AtomicInteger _shared = new AtomicInteger(1);
+    private int _writeIndex = 0; // owned by the writer
+    private int _readIndex = 2; // owned by the arbiter
+
+    private volatile long _winCount;
+    private volatile long _staleCount;
+    private volatile long _lastAgeNanos = -1;
+
+    /**
+     * Constructor.
+     *
+     * @param name
+     *            name for the statistics
+     * @param priority
+     *            priority, higher values win
+     * @param timeoutMillis
+     *            age after which a command is considered stale and ignored
+     */
+    public CommandSource(String name, int priority, double timeoutMillis)
+    {
+        _name = name;
+        _priority = priority;
+        _timeoutNanos = (long) (timeoutMillis * 1e6);
+    }
+
+    /**
+     * Writes a joint position command.
+     *
+     * @param jointPosition
+     *            joint positions (rad)
+     */
+    public void writePosition(double[] jointPosition)
+    {
+        CommandValue value = _buffers[_writeIndex];
+        value._mode = ClientCommandMode.POSITION;
+        setJointPosition(value, jointPosition);
+        publish(value);
+    }
+
+    /**
+     * Writes a torque command.
+     *
+     * @param jointPosition
+     *            joint positions (rad), or null for the interpolator positions
+     * @param torque
+     *            additional joint torques (Nm)
+     */
+    public void writeTorque(double[] jointPosition, double[] torque)
+    {
+        CommandValue value = _buffers[_writeIndex];
+        value._mode = ClientCommandMode.TORQUE;
+        setJointPosition(value, jointPosition);
+        System.arraycopy(torque, 0, value._torque, 0, value._torque.length);
+        publish(value);
+    }
+
+    /**
+     * Writes a wrench command.
+     *
+     * @param jointPosition
+     *            joint positions (rad), or null for the interpolator positions
+     * @param wrench
+     *            Cartesian wrench (N, Nm)
+     */
+    public void writeWrench(double[] jointPosition, double[] wrench)
+    {
+        CommandValue value = _buffers[_writeIndex];
+        value._mode = ClientCommandMode.WRENCH;
+        setJointPosition(value, jointPosition);
+        System.arraycopy(wrench, 0, value._wrench, 0, value._wrench.length);
+        publish(value);
+    }
+
+    /**
+     * Withdraws the source from the arbitration until the next write.
+     */
+    public void release()
+    {
+        CommandValue value = _buffers[_writeIndex];
+        value._mode = ClientCommandMode.NO_COMMAND_MODE;
+        value._hasJointPosition = false;
+        publish(value);
+    }
+
+    private static void setJointPosition(CommandValue value, double[] jointPosition)
+    {
+        value._hasJointPosition = jointPosition != null;
+        if (jointPosition != null)
+        {
+            System.arraycopy(jointPosition, 0, value._jointPosition, 0, value._jointPosition.length);
+        }
+    }
+
+    private void publish(CommandValue value)
+    {
+        value._timeNanos = System.nanoTime();
+        _writeIndex = _shared.getAndSet(_writeIndex | DIRTY) & INDEX_MASK;
+    }
+
+    /**
+     * Takes the latest command; called by the arbiter only.
+     *
+     * @return the latest command
+     */
+    CommandValue latest()
+    {
+        if ((_shared.get() & DIRTY) != 0)
+        {
+            _readIndex = _shared.getAndSet(_readIndex) & INDEX_MASK;
+        }
+        return _buffers[_readIndex];
+    }
+
+    void recordWin()
+    {
+        _winCount++;
+    }
+
+    void recordAge(long ageNanos, boolean stale)
+    {
+        _lastAgeNanos = ageNanos;
+        if (stale)
+        {
+            _staleCount++;
+        }
+    }
+
+    /**
+     * @return name of the source
+     */
+    public String getName()
+    {
+        return _name;
+    }
+
+    /**
+     * @return priority of the source
+     */
+    public int getPriority()
+    {
+        return _priority;
+    }
+
+    /**
+     * @return staleness time-out (ns)
+     */
+    public long getTimeoutNanos()
+    {
+        return _timeoutNanos;
+    }
+
+    /**
+     * @return number of cycles in which the command of this source was used
+     */
+    public long getWinCount()
+    {
+        return _winCount;
+    }
+
+    /**
+     * @return number of cycles in which the source held a command older than
+     *         its time-out
+     */
+    public long getStaleCount()
+    {
+        return _staleCount;
+    }
+
+    /**
+     * @return age of the command at the last arbitration (ns), -1 if the
+     *         source holds no command
+     */
+    public long getLastAgeNanos()
+    {
+        return _lastAgeNanos;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s (priority %d): wins %d, stale %d, last age %.1f ms", _name, _priority, _winCount,
+                _staleCount, _lastAgeNanos / 1e6);
+    }
+}
@@ -0,0 +1,70 @@
+package connectivity.fri.sdk.example.LBRCommandArbitration;
+
+import com.kuka.connectivity.fri.clientSDK.base.IClient.ClientCommandMode;
+import com.kuka.connectivity.fri.clientSDK.clientLBR.LBRState;
+
+/**
+ * Command written by a {@link CommandSource}: joint positions plus, depending
+ * on the command mode, joint torques or a Cartesian wrench.
+ */
+public class CommandValue
+{
+    private static final int N = LBRState.NUMBER_OF_JOINTS;
+
+    ClientCommandMode _mode = ClientCommandMode.NO_COMMAND_MODE;
+    boolean _hasJointPosition;
+    final double[] _jointPosition = new double[N];
+    final double[] _torque = new double[N];
+    final double[] _wrench = new double[6];
+    long _timeNanos;
+
+    /**
+     * @return command mode of the command, NO_COMMAND_MODE if the source has
+     *         not written a command or released it
+     */
+    public ClientCommandMode getMode()
+    {
+        return _mode;
+    }
+
+    /**
+     * @return true if joint positions are commanded; otherwise the
+     *         interpolator positions are used
+     */
+    public boolean hasJointPosition()
+    {
+        return _hasJointPosition;
+    }
+
+    /**
+     * @return commanded joint positions (rad), backed by this value
+     */
+    public double[] getJointPosition()
+    {
+        return _jointPosition;
+    }
+
+    /**
+     * @return commanded joint torques (Nm) in torque mode, backed by this value
+     */
+    public double[] getTorque()
+    {
+        return _torque;
+    }
+
+    /**
+     * @return commanded wrench (N, Nm) in wrench mode, backed by this value
+     */
+    public double[] getWrench()
+    {
+        return _wrench;
+    }
+
+    /**
+     * @return time of the write in {@link System#nanoTime()}
+     */
+    public long getTimeNanos()
+    {
+        return _timeNanos;
+    }
+}
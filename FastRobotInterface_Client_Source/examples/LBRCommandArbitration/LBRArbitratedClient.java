@@ -0,0 +1,130 @@
+package connectivity.fri.sdk.example.LBRCommandArbitration;
+
+import com.kuka.connectivity.fri.clientSDK.clientLBR.LBRClient;
+import com.kuka.connectivity.fri.clientSDK.clientLBR.LBRState;
+
+/**
+ * Client that commands the result of a {@link CommandArbiter}.
+ * <p>
+ * In every 'Commanding Active' cycle the command of the highest priority
+ * source with a fresh command for the session's client command mode is sent.
+ * Without such a source the client mirrors the interpolator, with zero
+ * additional torque or wrench.
+ * <p>
+ * The commanded joint positions are rate limited, so a change of the winning
+ * source does not cause a jump.
+ */
+public class LBRArbitratedClient extends LBRClient
+{
+    private static final int N = LBRState.NUMBER_OF_JOINTS;
+
+    private final CommandArbiter _arbiter;
+    private final double _maxJointVelocity;
+    private final double[] _jointPosition = new double[N];
+    private final double[] _zeroTorque = new double[N];
+    private final double[] _zeroWrench = new double[6];
+
+    /**
+     * Constructor.
+     *
+     * @param arbiter
+     *            arbiter of the command sources
+     * @param maxJointVelocity
+     *            limit of the commanded joint velocity (rad/s)
+     */
+    public LBRArbitratedClient(CommandArbiter arbiter, double maxJointVelocity)
+    {
+        _arbiter = arbiter;
+        _maxJointVelocity = maxJointVelocity;
+    }
+
+    /**
+     * @return the arbiter
+     */
+    public CommandArbiter getArbiter()
+    {
+        return _arbiter;
+    }
+
+    @Override
+    public void waitForCommand()
+    {
+        // mirror the joint values and send neutral values of the command mode
+        double[] ipo = getRobotState().getIpoJointPosition();
+        System.arraycopy(ipo, 0, _jointPosition, 0, N);
+        getRobotCommand().setJointPosition(_jointPosition);
+        commandNeutral();
+    }
+
+    /**
+     * Callback for the FRI state 'Commanding Active'.
+     */
+    @Override
+    public void command()
+    {
+        CommandValue value = _arbiter.arbitrate(System.nanoTime(), getRobotState().getClientCommandMode());
+        if (value == null || !value.hasJointPosition())
+        {
+            moveTowards(getRobotState().getIpoJointPosition());
+        }
+        else
+        {
+            moveTowards(value.getJointPosition());
+        }
+        getRobotCommand().setJointPosition(_jointPosition);
+
+        if (value == null)
+        {
+            commandNeutral();
+            return;
+        }
+        switch (value.getMode())
+        {
+            case TORQUE:
+            {
+                getRobotCommand().setTorque(value.getTorque());
+                break;
+            }
+            case WRENCH:
+            {
+                getRobotCommand().setWrench(value.getWrench());
+                break;
+            }
+            default:
+            {
+                break;
+            }
+        }
+    }
+
+    private void moveTowards(double[] target)
+    {
+        double maxStep = _maxJointVelocity * getRobotState().getSampleTime();
+        for (int i = 0; i < N; i++)
+        {
+            double step = target[i] - _jointPosition[i];
+            _jointPosition[i] += Math.max(-maxStep, Math.min(maxStep, step));
+        }
+    }
+
+    private void commandNeutral()
+    {
+        switch (getRobotState().getClientCommandMode())
+        {
+            case TORQUE:
+            {
+                getRobotCommand().setTorque(_zeroTorque);
+                break;
+            }
+            case WRENCH:
+            {
+                getRobotCommand().setWrench(_zeroWrench);
+                break;
+            }
+            default:
+            {
+                break;
+            }
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package connectivity.fri.sdk.example.LBRCommandArbitration;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.logging.Logger;
+
+import com.kuka.connectivity.fri.clientSDK.clientLBR.LBRState;
+
+import connectivity.fri.sdk.example.LBRClientRuntime.FRIClientApplication;
+import connectivity.fri.sdk.example.LBRClientRuntime.FRIUdpConnection;
+
+/**
+ * Implementation of a FRI client application with three command sources in
+ * joint position mode.
+ * <ul>
+ * <li>'planner' (lowest priority) moves joint A4 around the start position
+ * along a 0.2 Hz sine, updated at 100 Hz</li>
+ * <li>'teleop' applies joint offsets typed on the standard input as
+ * <code>&lt;joint 1..7&gt; &lt;offset rad&gt;</code>; a typed command expires
+ * after its time-out</li>
+ * <li>'retract' (highest priority) holds the start position for two seconds
+ * after <code>retract</code> was typed</li>
+ * </ul>
+ * The commanded positions are rate limited to 0.2 rad/s, and the arbitration
+ * statistics are reported every five seconds.
+ *
+ * @see FRIClientApplication#connect
+ * @see FRIClientApplication#step()
+ * @see FRIClientApplication#disconnect
+ */
+public class LBRCommandArbitrationApp
+{
+
+    private static final int DEFAULT_PORTID = 30200;
+    private static final int N = LBRState.NUMBER_OF_JOINTS;
+    private static final long PLANNER_PERIOD_MILLIS = 10;
+    private static final double PLANNER_AMPLITUDE = 0.05;
+    private static final double PLANNER_FREQUENCY = 0.2;
+    private static final double MAX_JOINT_VELOCITY = 0.2;
+    private static final long RETRACT_HOLD_MILLIS = 2000;
+    private static final long REPORT_PERIOD_MILLIS = 5000;
+
+    private static volatile double[] _startPosition;
+
+    /**
+     * @param argv
+     *            the arguments
+     */
+    public static void main(String[] argv)
+    {
+        if (argv.length > 0)
+        {
+            if (argv[0].equals("help"))
+            {
+                Logger.getAnonymousLogger().info("\nKUKA LBR command arbitration test application\n\n\tCommand line arguments:");
+                Logger.getAnonymousLogger().info("\t1) remote hostname (optional)");
+                Logger.getAnonymousLogger().info("\t2) port ID (optional)");
+                return;
+            }
+        }
+
+        String hostname = (argv.length >= 1) ? argv[0] : null;
+        int port = (argv.length >= 2) ? Integer.valueOf(argv[1]) : DEFAULT_PORTID;
+
+        Logger.getAnonymousLogger().info("Enter LBRCommandArbitration Client Application");
+
+        /***************************************************************************/
+        /*                                                                         */
+        /* Place user Client Code here */
+        /*                                                                         */
+        /**************************************************************************/
+
+        final CommandSource retract = new CommandSource("retract", 30, 20.0);
+        final CommandSource teleop = new CommandSource("teleop", 20, 500.0);
+        final CommandSource planner = new CommandSource("planner", 10, 50.0);
+        final CommandArbiter arbiter = new CommandArbiter(retract, teleop, planner);
+
+        // the sources command relative to the position at the start of commanding
+        LBRArbitratedClient client = new LBRArbitratedClient(arbiter, MAX_JOINT_VELOCITY)
+        {
+            @Override
+            public void onStateChange(FRISessionState oldState, FRISessionState newState)
+            {
+                if (newState == FRISessionState.COMMANDING_ACTIVE)
+                {
+                    _startPosition = getRobotState().getIpoJointPosition();
+                }
+            }
+        };
+
+        startDaemon("planner", new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                runPlanner(planner);
+            }
+        });
+        startDaemon("console", new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                readCommands(teleop, retract);
+            }
+        });
+        startDaemon("report", new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                while (true)
+                {
+                    sleep(REPORT_PERIOD_MILLIS);
+                    Logger.getAnonymousLogger().info(arbiter.toString());
+                }
+            }
+        });
+
+        /***************************************************************************/
+        /*                                                                         */
+        /* Standard application structure */
+        /* Configuration */
+        /*                                                                         */
+        /***************************************************************************/
+
+        // create new udp connection
+        FRIUdpConnection connection = new FRIUdpConnection();
+
+        // pass connection and client to a new FRI client application
+        FRIClientApplication app = new FRIClientApplication(connection, client);
+
+        // connect client application to KUKA Sunrise controller
+        app.connect(port, hostname);
+
+        /***************************************************************************/
+        /*                                                                         */
+        /* Standard application structure */
+        /* Execution mainloop */
+        /*                                                                         */
+        /***************************************************************************/
+
+        // repeatedly call the step routine to receive and process FRI packets
+        boolean success = true;
+        while (success)
+        {
+            success = app.step();
+        }
+
+        /***************************************************************************/
+        /*                                                                         */
+        /* Standard application structure */
+        /* Dispose */
+        /*                                                                         */
+        /***************************************************************************/
+
+        // disconnect from controller
+        app.disconnect();
+
+        Logger.getAnonymousLogger().info(arbiter.toString());
+        Logger.getAnonymousLogger().info("Exit LBRCommandArbitration Client Application");
+    }
+
+    private static void runPlanner(CommandSource planner)
+    {
+        double[] target = new double[N];
+        long start = System.currentTimeMillis();
+        while (true)
+        {
+            double[] startPosition = _startPosition;
+            if (startPosition != null)
+            {
+                double t = (System.currentTimeMillis() - start) / 1000.0;
+                System.arraycopy(startPosition, 0, target, 0, N);
+                target[3] += PLANNER_AMPLITUDE * Math.sin(2 * Math.PI * PLANNER_FREQUENCY * t);
+                planner.writePosition(target);
+            }
+            sleep(PLANNER_PERIOD_MILLIS);
+        }
+    }
+
+    private static void readCommands(CommandSource teleop, CommandSource retract)
+    {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
+        double[] target = new double[N];
+        try
+        {
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                double[] startPosition = _startPosition;
+                if (startPosition == null)
+                {
+                    Logger.getAnonymousLogger().warning("Not commanding yet");
+                    continue;
+                }
+                String[] tokens = line.trim().split("\\s+");
+                if (tokens[0].equals("retract"))
+                {
+                    // refresh faster than the time-out for the hold duration
+                    long end = System.currentTimeMillis() + RETRACT_HOLD_MILLIS;
+                    while (System.currentTimeMillis() < end)
+                    {
+                        retract.writePosition(startPosition);
+                        sleep(PLANNER_PERIOD_MILLIS);
+                    }
+                    retract.release();
+                }
+                else if (tokens.length == 2)
+                {
+                    try
+                    {
+                        int joint = Integer.parseInt(tokens[0]) - 1;
+                        System.arraycopy(startPosition, 0, target, 0, N);
+                        target[joint] += Double.parseDouble(tokens[1]);
+                        teleop.writePosition(target);
+                    }
+                    catch (RuntimeException e)
+                    {
+                        Logger.getAnonymousLogger().warning("Invalid command: " + line);
+                    }
+                }
+                else if (tokens[0].length() > 0)
+                {
+                    Logger.getAnonymousLogger().warning("Unknown command: " + line);
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            Logger.getAnonymousLogger().warning("Console closed: " + e.getMessage());
+        }
+    }
+
+    private static void startDaemon(String name, Runnable runnable)
+    {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static void sleep(long millis)
+    {
+        try
+        {
+            Thread.sleep(millis);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
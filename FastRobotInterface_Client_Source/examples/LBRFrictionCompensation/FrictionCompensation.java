@@ -0,0 +1,124 @@
+package connectivity.fri.sdk.example.LBRFrictionCompensation;
+
+import connectivity.fri.sdk.example.LBRModel.JointFrictionModel;
+import connectivity.fri.sdk.example.LBRModel.LBRiiwa7Model;
+
+/**
+ * Friction feed-forward stage for torque command mode.
+ * <p>
+ * Every cycle the stage differentiates the given joint positions, low-pass
+ * filters the velocity and adds the friction torque of the model, scaled by a
+ * gain, to a torque command. Feeding the desired positions, e.g. the
+ * interpolator positions, gives a noise-free feed-forward; a gain below one
+ * leaves a margin against overcompensation, which would make the joints
+ * drift. The stage does not allocate.
+ */
+public class FrictionCompensation
+{
+    private static final int N = LBRiiwa7Model.NUMBER_OF_JOINTS;
+
+    private final JointFrictionModel _model;
+    private final double _cutoffFrequency;
+    private volatile double _gain;
+
+    private final double[] _lastPosition = new double[N];
+    private final double[] _velocity = new double[N];
+    private final double[] _feedForward = new double[N];
+    private double _sampleTime;
+    private double _alpha;
+    private boolean _initialized;
+
+    /**
+     * Constructor.
+     *
+     * @param model
+     *            friction model, copied
+     * @param gain
+     *            scale of the feed-forward, usually between 0 and 1
+     * @param cutoffFrequency
+     *            cut-off frequency of the velocity filter (Hz)
+     */
+    public FrictionCompensation(JointFrictionModel model, double gain, double cutoffFrequency)
+    {
+        _model = new JointFrictionModel(model);
+        _gain = gain;
+        _cutoffFrequency = cutoffFrequency;
+    }
+
+    /**
+     * Sets the scale of the feed-forward; may be called from any thread.
+     *
+     * @param gain
+     *            scale of the feed-forward
+     */
+    public void setGain(double gain)
+    {
+        _gain = gain;
+    }
+
+    /**
+     * @return scale of the feed-forward
+     */
+    public double getGain()
+    {
+        return _gain;
+    }
+
+    /**
+     * Restarts the velocity estimation.
+     *
+     * @param sampleTime
+     *            FRI sample time (s)
+     */
+    public void reset(double sampleTime)
+    {
+        _sampleTime = sampleTime;
+        _alpha = 1.0 - Math.exp(-2 * Math.PI * _cutoffFrequency * sampleTime);
+        _initialized = false;
+    }
+
+    /**
+     * Adds the friction feed-forward of the current cycle.
+     *
+     * @param position
+     *            joint positions of the cycle (rad)
+     * @param torque
+     *            torque command, the feed-forward is added in place (Nm)
+     */
+    public void addTo(double[] position, double[] torque)
+    {
+        double gain = _gain;
+        for (int i = 0; i < N; i++)
+        {
+            if (_initialized)
+            {
+                double v = (position[i] - _lastPosition[i]) / _sampleTime;
+                _velocity[i] += _alpha * (v - _velocity[i]);
+            }
+            else
+            {
+                _velocity[i] = 0.0;
+            }
+            _lastPosition[i] = position[i];
+            _feedForward[i] = gain * _model.torque(i, _velocity[i]);
+            torque[i] += _feedForward[i];
+        }
+        _initialized = true;
+    }
+
+    /**
+     * @return estimated joint velocities of the last cycle (rad/s), not a copy
+     */
+    public double[] getVelocity()
+    {
+        return _velocity;
+    }
+
+    /**
+     * @return feed-forward torques of the last cycle (Nm), not a copy
+     */
+    public double[] getFeedForward()
+    {
+        return _feedForward;
+    }
+}
@@ -0,0 +1,260 @@
+package connectivity.fri.sdk.example.LBRFrictionCompensation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import connectivity.fri.sdk.example.LBRModel.JointFrictionModel;
+import connectivity.fri.sdk.example.LBRModel.LBRiiwa7Model;
+import connectivity.fri.sdk.example.LBRModel.LinearAlgebra;
+import connectivity.fri.sdk.example.LBRPayloadIdentification.RecordingFilter;
+import connectivity.fri.sdk.example.LBRPayloadIdentification.SessionRecording;
+import connectivity.fri.sdk.example.LBRPayloadIdentification.SessionRecording.Signal;
+
+/**
+ * Identification of the {@link JointFrictionModel} parameters from a session
+ * recorded in torque command mode.
+ * <p>
+ * The joint torque sensors sit behind the gears, so friction does not appear
+ * in the measured torque. It is the difference between the torque of the
+ * drive, given by the joint impedance law
+ * <code>K (q_cmd - q) - D qd + g(q) + tau_cmd</code>, and the measured torque.
+ * The stiffness K and damping D must be those of the joint impedance control
+ * mode the session ran with.
+ * <p>
+ * For a fixed Stribeck velocity the model is linear in Fc, Fs and Fv, so
+ * every joint is fitted by least squares on a logarithmic grid of Stribeck
+ * velocities, keeping the candidate with the smallest residual. The fits of
+ * all joints and grid ranges run as fork-join tasks.
+ */
+public class FrictionIdentification
+{
+    private static final int N = LBRiiwa7Model.NUMBER_OF_JOINTS;
+    private static final int STRIBECK_CANDIDATES = 40;
+    private static final double MIN_STRIBECK_VELOCITY = 1e-3;
+    private static final double MAX_STRIBECK_VELOCITY = 1.0;
+    private static final int LEAF_CANDIDATES = 5;
+
+    private final LBRiiwa7Model _model;
+    private final double[] _stiffness = new double[N];
+    private final double[] _damping = new double[N];
+    private final double _cutoffFrequency;
+    private final double _smoothingVelocity;
+
+    /**
+     * Constructor.
+     *
+     * @param model
+     *            model of the robot including the payload, used for the
+     *            gravity compensation of the impedance law
+     * @param stiffness
+     *            joint stiffness of the impedance controller (Nm/rad)
+     * @param damping
+     *            joint damping of the impedance controller (Nm s/rad)
+     * @param cutoffFrequency
+     *            cut-off frequency of the low-pass filter (Hz)
+     * @param smoothingVelocity
+     *            smoothing velocity of the identified model (rad/s)
+     */
+    public FrictionIdentification(LBRiiwa7Model model, double[] stiffness, double[] damping,
+            double cutoffFrequency, double smoothingVelocity)
+    {
+        _model = new LBRiiwa7Model(model);
+        System.arraycopy(stiffness, 0, _stiffness, 0, N);
+        System.arraycopy(damping, 0, _damping, 0, N);
+        _cutoffFrequency = cutoffFrequency;
+        _smoothingVelocity = smoothingVelocity;
+    }
+
+    /**
+     * Identifies the friction parameters.
+     *
+     * @param recording
+     *            recording in torque command mode
+     * @param pool
+     *            pool that runs the fits
+     * @param residualRms
+     *            output RMS of the residual per joint (Nm), or null
+     * @return the identified model
+     * @throws IllegalArgumentException
+     *             if the recording is too short
+     */
+    public JointFrictionModel identify(SessionRecording recording, ForkJoinPool pool, double[] residualRms)
+    {
+        int count = recording.getCount();
+        if (count < 5)
+        {
+            throw new IllegalArgumentException("Too few samples: " + count);
+        }
+        double dt = recording.getSampleTime();
+        double[][] q = RecordingFilter.copy(recording, count, Signal.MEASURED_POSITION);
+        double[][] tau = RecordingFilter.copy(recording, count, Signal.MEASURED_TORQUE);
+        double[][] qCommanded = RecordingFilter.copy(recording, count, Signal.COMMANDED_POSITION);
+        double[][] tauCommanded = RecordingFilter.copy(recording, count, Signal.COMMANDED_TORQUE);
+        RecordingFilter.filter(q, _cutoffFrequency, dt);
+        RecordingFilter.filter(tau, _cutoffFrequency, dt);
+        RecordingFilter.filter(qCommanded, _cutoffFrequency, dt);
+        RecordingFilter.filter(tauCommanded, _cutoffFrequency, dt);
+        double[][] qd = RecordingFilter.differentiate(q, dt);
+
+        // friction = drive torque - measured torque, per joint; the edge samples are dropped
+        int samples = count - 2;
+        double[][] velocity = new double[N][samples];
+        double[][] friction = new double[N][samples];
+        double[] gravity = new double[N];
+        for (int k = 0; k < samples; k++)
+        {
+            _model.gravityTorque(q[k + 1], gravity);
+            for (int i = 0; i < N; i++)
+            {
+                double drive = _stiffness[i] * (qCommanded[k + 1][i] - q[k + 1][i]) - _damping[i] * qd[k + 1][i]
+                        + gravity[i] + tauCommanded[k + 1][i];
+                velocity[i][k] = qd[k + 1][i];
+                friction[i][k] = drive - tau[k + 1][i];
+            }
+        }
+
+        List<FitTask> tasks = new ArrayList<FitTask>();
+        for (int i = 0; i < N; i++)
+        {
+            tasks.add(new FitTask(velocity[i], friction[i], 0, STRIBECK_CANDIDATES));
+        }
+        for (FitTask task : tasks)
+        {
+            pool.execute(task);
+        }
+
+        JointFrictionModel result = new JointFrictionModel(_smoothingVelocity);
+        for (int i = 0; i < N; i++)
+        {
+            Fit fit = tasks.get(i).join();
+            result.setParameters(i, fit._coulomb, fit._static, fit._viscous, fit._stribeckVelocity);
+            if (residualRms != null)
+            {
+                residualRms[i] = Math.sqrt(fit._squares / samples);
+            }
+        }
+        return result;
+    }
+
+    private static double candidate(int index)
+    {
+        double ratio = MAX_STRIBECK_VELOCITY / MIN_STRIBECK_VELOCITY;
+        return MIN_STRIBECK_VELOCITY * Math.pow(ratio, (double) index / (STRIBECK_CANDIDATES - 1));
+    }
+
+    /**
+     * Parameters and residual of the fit for one Stribeck velocity.
+     */
+    private static final class Fit
+    {
+        private double _coulomb;
+        private double _static;
+        private double _viscous;
+        private double _stribeckVelocity;
+        private double _squares = Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Fits one joint for a range of Stribeck velocity candidates and returns
+     * the best.
+     */
+    private final class FitTask extends RecursiveTask<Fit>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final double[] _velocity;
+        private final double[] _friction;
+        private final int _from;
+        private final int _to;
+
+        private FitTask(double[] velocity, double[] friction, int from, int to)
+        {
+            _velocity = velocity;
+            _friction = friction;
+            _from = from;
+            _to = to;
+        }
+
+        @Override
+        protected Fit compute()
+        {
+            if (_to - _from > LEAF_CANDIDATES)
+            {
+                int middle = (_from + _to) / 2;
+                FitTask left = new FitTask(_velocity, _friction, _from, middle);
+                left.fork();
+                Fit right = new FitTask(_velocity, _friction, middle, _to).compute();
+                Fit other = left.join();
+                return other._squares <= right._squares ? other : right;
+            }
+            Fit best = new Fit();
+            for (int c = _from; c < _to; c++)
+            {
+                Fit fit = fit(candidate(c));
+                if (fit._squares < best._squares)
+                {
+                    best = fit;
+                }
+            }
+            return best;
+        }
+
+        // linear least squares of f = Fc s (1 - e) + Fs s e + Fv v
+        private Fit fit(double stribeckVelocity)
+        {
+            double[][] a = new double[3][3];
+            double[] b = new double[3];
+            double[] x = new double[3];
+            double ff = 0.0;
+            for (int k = 0; k < _velocity.length; k++)
+            {
+                regressor(_velocity[k], stribeckVelocity, x);
+                double f = _friction[k];
+                for (int r = 0; r < 3; r++)
+                {
+                    for (int c = 0; c < 3; c++)
+                    {
+                        a[r][c] += x[r] * x[c];
+                    }
+                    b[r] += x[r] * f;
+                }
+                ff += f * f;
+            }
+            Fit fit = new Fit();
+            fit._stribeckVelocity = stribeckVelocity;
+            double[][] l = new double[3][3];
+            LinearAlgebra.copy(a, l, 3);
+            if (!LinearAlgebra.choleskyDecompose(l, 3))
+            {
+                // the joint did not move enough
+                return fit;
+            }
+            double[] p = new double[3];
+            LinearAlgebra.choleskySolve(l, b, p, 3);
+            fit._coulomb = p[0];
+            fit._static = p[1];
+            fit._viscous = p[2];
+            // |f - X p|^2 = f'f - 2 p'b + p'A p
+            double squares = ff;
+            for (int r = 0; r < 3; r++)
+            {
+                double ap = a[r][0] * p[0] + a[r][1] * p[1] + a[r][2] * p[2];
+                squares += p[r] * ap - 2 * p[r] * b[r];
+            }
+            fit._squares = Math.max(0.0, squares);
+            return fit;
+        }
+
+        private void regressor(double v, double stribeckVelocity, double[] x)
+        {
+            double s = Math.tanh(v / _smoothingVelocity);
+            double r = v / stribeckVelocity;
+            double e = Math.exp(-r * r);
+            x[0] = s * (1.0 - e);
+            x[1] = s * e;
+            x[2] = v;
+        }
+    }
+}
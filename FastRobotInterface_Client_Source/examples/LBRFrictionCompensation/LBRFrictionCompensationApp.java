@@ -0,0 +1,281 @@
+package connectivity.fri.sdk.example.LBRFrictionCompensation;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Logger;
+
+import com.kuka.connectivity.fri.clientSDK.base.ClientApplication;
+import com.kuka.connectivity.fri.clientSDK.base.IClient.ClientCommandMode;
+import com.kuka.connectivity.fri.clientSDK.base.IClient.FRISessionState;
+import com.kuka.connectivity.fri.clientSDK.clientLBR.LBRClient;
+import com.kuka.connectivity.fri.clientSDK.connection.UdpConnection;
+
+import connectivity.fri.sdk.example.LBRModel.JointFrictionModel;
+import connectivity.fri.sdk.example.LBRModel.LBRSimulator;
+import connectivity.fri.sdk.example.LBRModel.LBRiiwa7Model;
+import connectivity.fri.sdk.example.LBRPayloadIdentification.LBRExcitationClient;
+import connectivity.fri.sdk.example.LBRPayloadIdentification.SessionRecording;
+
+/**
+ * Joint friction identification and compensation in torque command mode.
+ * <p>
+ * The application has four modes:
+ * <ul>
+ * <li><code>record &lt;file&gt; [hostname] [port] [seconds]</code> runs an
+ * excitation trajectory with an {@link LBRExcitationClient} and writes the
+ * recording to a file. The FRI session must be started in torque command
+ * mode with joint impedance control, e.g. by the DrakeFRITorqueDriver robot
+ * application.</li>
+ * <li><code>identify &lt;file&gt; [stiffness] [damping]</code> identifies the
+ * friction parameters of a recording; stiffness (Nm/rad) and damping
+ * (Nm s/rad) of the joint impedance controller apply to all joints.</li>
+ * <li><code>run &lt;file&gt; [gain] [hostname] [port] [stiffness] [damping]</code>
+ * identifies the parameters and runs the
+ * {@link LBRFrictionCompensationClient}.</li>
+ * <li><code>simulate</code> identifies the friction of the
+ * {@link LBRSimulator} and compares the tracking of a slow motion with and
+ * without compensation.</li>
+ * </ul>
+ */
+public class LBRFrictionCompensationApp
+{
+
+    private static final int DEFAULT_PORTID = 30200;
+    private static final double DEFAULT_DURATION = 60.0;
+    private static final double DEFAULT_GAIN = 0.8;
+    private static final double DEFAULT_STIFFNESS = 200.0;
+    private static final double DEFAULT_DAMPING = 10.0;
+    private static final double[] AMPLITUDE = { 0.4, 0.3, 0.4, 0.3, 0.5, 0.5, 0.6 };
+    private static final double BASE_FREQUENCY = 0.05;
+    private static final int HARMONICS = 4;
+    private static final double VELOCITY_SCALE = 0.2;
+    private static final long SEED = 4711;
+    private static final double CUTOFF_FREQUENCY = 10.0;
+    private static final double VELOCITY_CUTOFF_FREQUENCY = 20.0;
+
+    private static final double[] SIMULATION_START = {
+        0, Math.toRadians(30), 0, Math.toRadians(-60), 0, Math.toRadians(60), 0 };
+    private static final double[] SIMULATED_COULOMB = { 1.5, 1.5, 1.0, 1.0, 0.6, 0.4, 0.3 };
+    private static final double[] SIMULATED_STATIC = { 2.2, 2.2, 1.5, 1.5, 0.9, 0.6, 0.45 };
+    private static final double[] SIMULATED_VISCOUS = { 1.0, 1.0, 0.6, 0.6, 0.3, 0.2, 0.1 };
+    private static final double SIMULATED_STRIBECK_VELOCITY = 0.02;
+    private static final double TRACKING_AMPLITUDE = 0.05;
+    private static final double TRACKING_FREQUENCY = 0.2;
+    private static final double TRACKING_SECONDS = 10.0;
+
+    /**
+     * @param argv
+     *            the arguments
+     */
+    public static void main(String[] argv)
+    {
+        if (argv.length == 0 || argv[0].equals("help"))
+        {
+            Logger.getAnonymousLogger().info("\nKUKA LBR friction compensation\n\n\tCommand line arguments:");
+            Logger.getAnonymousLogger().info("\trecord <file> [hostname] [port] [seconds]");
+            Logger.getAnonymousLogger().info("\tidentify <file> [stiffness] [damping]");
+            Logger.getAnonymousLogger().info("\trun <file> [gain] [hostname] [port] [stiffness] [damping]");
+            Logger.getAnonymousLogger().info("\tsimulate");
+            return;
+        }
+
+        ForkJoinPool pool = new ForkJoinPool();
+        try
+        {
+            if (argv[0].equals("record"))
+            {
+                String hostname = (argv.length >= 3) ? argv[2] : null;
+                int port = (argv.length >= 4) ? Integer.valueOf(argv[3]) : DEFAULT_PORTID;
+                double duration = (argv.length >= 5) ? Double.valueOf(argv[4]) : DEFAULT_DURATION;
+                SessionRecording recording = new SessionRecording(0.001, capacity(duration, 0.001));
+                LBRExcitationClient client = new LBRExcitationClient(AMPLITUDE, BASE_FREQUENCY, HARMONICS,
+                        VELOCITY_SCALE, duration, SEED, recording);
+                if (runClient(client, hostname, port))
+                {
+                    recording.write(new File(argv[1]));
+                    Logger.getAnonymousLogger().info(recording.getCount() + " samples written to " + argv[1]);
+                }
+            }
+            else if (argv[0].equals("identify"))
+            {
+                double stiffness = (argv.length >= 3) ? Double.valueOf(argv[2]) : DEFAULT_STIFFNESS;
+                double damping = (argv.length >= 4) ? Double.valueOf(argv[3]) : DEFAULT_DAMPING;
+                identify(SessionRecording.read(new File(argv[1])), stiffness, damping, pool);
+            }
+            else if (argv[0].equals("run"))
+            {
+                double gain = (argv.length >= 3) ? Double.valueOf(argv[2]) : DEFAULT_GAIN;
+                String hostname = (argv.length >= 4) ? argv[3] : null;
+                int port = (argv.length >= 5) ? Integer.valueOf(argv[4]) : DEFAULT_PORTID;
+                double stiffness = (argv.length >= 6) ? Double.valueOf(argv[5]) : DEFAULT_STIFFNESS;
+                double damping = (argv.length >= 7) ? Double.valueOf(argv[6]) : DEFAULT_DAMPING;
+                JointFrictionModel model = identify(SessionRecording.read(new File(argv[1])), stiffness, damping,
+                        pool);
+                runClient(new LBRFrictionCompensationClient(new FrictionCompensation(model, gain,
+                        VELOCITY_CUTOFF_FREQUENCY)), hostname, port);
+            }
+            else if (argv[0].equals("simulate"))
+            {
+                simulate(pool);
+            }
+            else
+            {
+                Logger.getAnonymousLogger().severe("Unknown mode " + argv[0]);
+            }
+        }
+        catch (IOException e)
+        {
+            Logger.getAnonymousLogger().severe("Recording could not be accessed: " + e.getMessage());
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+
+    private static JointFrictionModel identify(SessionRecording recording, double stiffness, double damping,
+            ForkJoinPool pool)
+    {
+        double[] residual = new double[LBRiiwa7Model.NUMBER_OF_JOINTS];
+        JointFrictionModel model = new FrictionIdentification(new LBRiiwa7Model(), uniform(stiffness),
+                uniform(damping), CUTOFF_FREQUENCY, JointFrictionModel.DEFAULT_SMOOTHING_VELOCITY)
+                .identify(recording, pool, residual);
+        Logger.getAnonymousLogger().info("Identified joint friction:\n" + model + "\tresidual RMS (Nm): "
+                + format(residual));
+        return model;
+    }
+
+    private static boolean runClient(LBRClient client, String hostname, int port)
+    {
+        Logger.getAnonymousLogger().info("Enter LBRFrictionCompensation Client Application");
+
+        UdpConnection connection = new UdpConnection();
+        ClientApplication app = new ClientApplication(connection, client);
+        app.connect(port, hostname);
+
+        boolean success = true;
+        while (success && !(client instanceof LBRExcitationClient && ((LBRExcitationClient) client).isFinished()))
+        {
+            success = app.step();
+        }
+
+        app.disconnect();
+
+        Logger.getAnonymousLogger().info("Exit LBRFrictionCompensation Client Application");
+        return success;
+    }
+
+    private static void simulate(ForkJoinPool pool)
+    {
+        JointFrictionModel plantFriction = new JointFrictionModel(JointFrictionModel.DEFAULT_SMOOTHING_VELOCITY);
+        for (int i = 0; i < LBRiiwa7Model.NUMBER_OF_JOINTS; i++)
+        {
+            plantFriction.setParameters(i, SIMULATED_COULOMB[i], SIMULATED_STATIC[i], SIMULATED_VISCOUS[i],
+                    SIMULATED_STRIBECK_VELOCITY);
+        }
+
+        // record the excitation
+        LBRSimulator sim = createSimulator(plantFriction);
+        SessionRecording recording = new SessionRecording(sim.getSampleTime(),
+                capacity(DEFAULT_DURATION, sim.getSampleTime()));
+        LBRExcitationClient excitation = new LBRExcitationClient(AMPLITUDE, BASE_FREQUENCY, HARMONICS,
+                VELOCITY_SCALE, DEFAULT_DURATION, SEED, recording);
+        sim.setSessionState(FRISessionState.MONITORING_READY);
+        sim.step(excitation);
+        sim.setSessionState(FRISessionState.COMMANDING_ACTIVE);
+        while (!excitation.isFinished())
+        {
+            sim.step(excitation);
+        }
+
+        long start = System.nanoTime();
+        JointFrictionModel identified = identify(recording, DEFAULT_STIFFNESS, DEFAULT_DAMPING, pool);
+        long identificationNanos = System.nanoTime() - start;
+
+        StringBuilder report = new StringBuilder("Simulated friction compensation:\n");
+        report.append("\ttrue joint friction:\n").append(plantFriction);
+        report.append(String.format("\tidentification of %d samples: %.1f ms%n", recording.getCount(),
+                identificationNanos / 1e6));
+        double[] uncompensated = track(plantFriction, identified, 0.0);
+        double[] compensated = track(plantFriction, identified, DEFAULT_GAIN);
+        report.append("\tRMS tracking error without compensation (mrad): ").append(format(uncompensated))
+                .append('\n');
+        report.append("\tRMS tracking error with compensation, gain ").append(DEFAULT_GAIN).append(" (mrad): ")
+                .append(format(compensated));
+        Logger.getAnonymousLogger().info(report.toString());
+    }
+
+    // slow sine motion of the interpolator in torque mode, RMS error in mrad
+    private static double[] track(JointFrictionModel plantFriction, JointFrictionModel model, double gain)
+    {
+        LBRSimulator sim = createSimulator(plantFriction);
+        LBRFrictionCompensationClient client = new LBRFrictionCompensationClient(new FrictionCompensation(model,
+                gain, VELOCITY_CUTOFF_FREQUENCY));
+        int n = LBRiiwa7Model.NUMBER_OF_JOINTS;
+        double[] ipo = new double[n];
+        double[] q = new double[n];
+        double[] squares = new double[n];
+        double dt = sim.getSampleTime();
+        int cycles = (int) (TRACKING_SECONDS / dt);
+        sim.setSessionState(FRISessionState.MONITORING_READY);
+        sim.step(client);
+        sim.setSessionState(FRISessionState.COMMANDING_ACTIVE);
+        for (int k = 0; k < cycles; k++)
+        {
+            double offset = TRACKING_AMPLITUDE * Math.sin(2 * Math.PI * TRACKING_FREQUENCY * k * dt);
+            for (int i = 0; i < n; i++)
+            {
+                ipo[i] = SIMULATION_START[i] + offset;
+            }
+            sim.setIpoJointPosition(ipo);
+            sim.step(client);
+            sim.getJointPosition(q);
+            for (int i = 0; i < n; i++)
+            {
+                double e = ipo[i] - q[i];
+                squares[i] += e * e;
+            }
+        }
+        for (int i = 0; i < n; i++)
+        {
+            squares[i] = 1000.0 * Math.sqrt(squares[i] / cycles);
+        }
+        return squares;
+    }
+
+    private static LBRSimulator createSimulator(JointFrictionModel friction)
+    {
+        LBRSimulator sim = new LBRSimulator(new LBRiiwa7Model(), 1, SEED);
+        sim.setClientCommandMode(ClientCommandMode.TORQUE);
+        sim.setImpedance(uniform(DEFAULT_STIFFNESS), uniform(DEFAULT_DAMPING));
+        sim.setJointFriction(friction);
+        sim.reset(SIMULATION_START);
+        return sim;
+    }
+
+    private static double[] uniform(double value)
+    {
+        double[] values = new double[LBRiiwa7Model.NUMBER_OF_JOINTS];
+        for (int i = 0; i < values.length; i++)
+        {
+            values[i] = value;
+        }
+        return values;
+    }
+
+    private static int capacity(double duration, double sampleTime)
+    {
+        return (int) Math.ceil(duration / sampleTime) + 1;
+    }
+
+    private static String format(double[] values)
+    {
+        StringBuilder text = new StringBuilder();
+        for (double value : values)
+        {
+            text.append(String.format(" %.3f", value));
+        }
+        return text.toString();
+    }
+}
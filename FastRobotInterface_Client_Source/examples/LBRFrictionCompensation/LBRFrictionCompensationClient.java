@@ -0,0 +1,97 @@
+package connectivity.fri.sdk.example.LBRFrictionCompensation;
+
+import java.util.logging.Logger;
+
+import com.kuka.connectivity.fri.clientSDK.clientLBR.LBRClient;
+import com.kuka.connectivity.fri.clientSDK.clientLBR.LBRState;
+
+/**
+ * Torque mode client that mirrors the interpolator and adds the friction
+ * feed-forward of a {@link FrictionCompensation} for the interpolator
+ * motion.
+ * <p>
+ * Subclasses compute their own torques in {@link #computeTorque(double[])};
+ * the feed-forward is added on top. In other command modes the client only
+ * mirrors the interpolator.
+ */
+public class LBRFrictionCompensationClient extends LBRClient
+{
+    private final FrictionCompensation _compensation;
+    private final double[] _torque = new double[LBRState.NUMBER_OF_JOINTS];
+
+    /**
+     * Constructor.
+     *
+     * @param compensation
+     *            the compensation stage
+     */
+    public LBRFrictionCompensationClient(FrictionCompensation compensation)
+    {
+        _compensation = compensation;
+
+        Logger.getAnonymousLogger().info("LBRFrictionCompensationClient initialized:\n"
+                + "\tgain: " + compensation.getGain() + "\n");
+    }
+
+    /**
+     * @return the compensation stage
+     */
+    public FrictionCompensation getCompensation()
+    {
+        return _compensation;
+    }
+
+    @Override
+    public void onStateChange(FRISessionState oldState, FRISessionState newState)
+    {
+        if (newState == FRISessionState.COMMANDING_ACTIVE)
+        {
+            _compensation.reset(getRobotState().getSampleTime());
+        }
+    }
+
+    @Override
+    public void waitForCommand()
+    {
+        super.waitForCommand();
+        if (getRobotState().getClientCommandMode() == ClientCommandMode.TORQUE)
+        {
+            for (int i = 0; i < _torque.length; i++)
+            {
+                _torque[i] = 0.0;
+            }
+            getRobotCommand().setTorque(_torque);
+        }
+    }
+
+    /**
+     * Callback for the FRI state 'Commanding Active'.
+     */
+    @Override
+    public void command()
+    {
+        double[] ipo = getRobotState().getIpoJointPosition();
+        getRobotCommand().setJointPosition(ipo);
+        if (getRobotState().getClientCommandMode() == ClientCommandMode.TORQUE)
+        {
+            computeTorque(_torque);
+            _compensation.addTo(ipo, _torque);
+            getRobotCommand().setTorque(_torque);
+        }
+    }
+
+    /**
+     * Computes the torques the feed-forward is added to. The default
+     * implementation commands none.
+     *
+     * @param torque
+     *            output torques (Nm)
+     */
+    protected void computeTorque(double[] torque)
+    {
+        for (int i = 0; i < torque.length; i++)
+        {
+            torque[i] = 0.0;
+        }
+    }
+}
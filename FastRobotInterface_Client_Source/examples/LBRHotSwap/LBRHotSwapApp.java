@@ -0,0 +1,207 @@
+package connectivity.fri.sdk.example.LBRHotSwap;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+import java.util.logging.Logger;
+
+import com.kuka.connectivity.fri.clientSDK.clientLBR.LBRClient;
+
+import connectivity.fri.sdk.example.LBRClientRuntime.ClientLoader;
+import connectivity.fri.sdk.example.LBRClientRuntime.FRIClientApplication;
+import connectivity.fri.sdk.example.LBRClientRuntime.FRIUdpConnection;
+
+/**
+ * Implementation of a FRI client application whose controller can be replaced
+ * while the FRI session keeps running.
+ * <p>
+ * The control loop runs in the main thread. Commands read from the standard
+ * input create new clients in a separate thread and hand them to
+ * {@link FRIClientApplication#switchClient}:
+ * <ul>
+ * <li><code>sine &lt;mask&gt; &lt;freq&gt; &lt;ampl&gt; &lt;filter&gt;</code>
+ * switches to a {@link LBRHotSwapSineClient} with new parameters</li>
+ * <li><code>load &lt;classpath|-&gt; &lt;class&gt; [args]</code> loads a client
+ * class, optionally from a directory or jar</li>
+ * <li><code>stats</code> reports the cycle times</li>
+ * </ul>
+ *
+ * @see FRIClientApplication#connect
+ * @see FRIClientApplication#step()
+ * @see FRIClientApplication#disconnect
+ */
+public class LBRHotSwapApp
+{
+
+    private static final int DEFAULT_PORTID = 30200;
+    private static final int DEFAULT_JOINTMASK = 0x8;
+    private static final double DEFAULT_FREQUENCY = 0.25;
+    private static final double DEFAULT_AMPLITUDE = 0.04;
+    private static final double DEFAULT_FILTER_COEFFICIENT = 0.99;
+    private static final long SWITCH_TIMEOUT_MILLIS = 2000;
+
+    /**
+     * @param argv
+     *            the arguments
+     */
+    public static void main(String[] argv)
+    {
+        if (argv.length > 0)
+        {
+            if (argv[0].equals("help"))
+            {
+                Logger.getAnonymousLogger().info("\nKUKA LBR hot swap test application\n\n\tCommand line arguments:");
+                Logger.getAnonymousLogger().info("\t1) remote hostname (optional)");
+                Logger.getAnonymousLogger().info("\t2) port ID (optional)");
+                Logger.getAnonymousLogger().info("\n\tCommands on standard input:");
+                Logger.getAnonymousLogger().info("\tsine <mask (hex)> <frequency> <amplitude> <filter coefficient>");
+                Logger.getAnonymousLogger().info("\tload <class path or -> <class name> [constructor arguments]");
+                Logger.getAnonymousLogger().info("\tstats");
+                return;
+            }
+        }
+
+        String hostname = (argv.length >= 1) ? argv[0] : null;
+        int port = (argv.length >= 2) ? Integer.valueOf(argv[1]) : DEFAULT_PORTID;
+
+        Logger.getAnonymousLogger().info("Enter LBRHotSwap Client Application");
+
+        /***************************************************************************/
+        /*                                                                         */
+        /* Place user Client Code here */
+        /*                                                                         */
+        /**************************************************************************/
+
+        // initial client
+        LBRClient client = new LBRHotSwapSineClient(DEFAULT_JOINTMASK, DEFAULT_FREQUENCY, DEFAULT_AMPLITUDE,
+                DEFAULT_FILTER_COEFFICIENT);
+
+        /***************************************************************************/
+        /*                                                                         */
+        /* Standard application structure */
+        /* Configuration */
+        /*                                                                         */
+        /***************************************************************************/
+
+        // create new udp connection
+        FRIUdpConnection connection = new FRIUdpConnection();
+
+        // pass connection and client to a new FRI client application
+        final FRIClientApplication app = new FRIClientApplication(connection, client);
+
+        // connect client application to KUKA Sunrise controller
+        app.connect(port, hostname);
+
+        // read switch commands outside of the control loop
+        Thread console = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                readCommands(app);
+            }
+        }, "LBRHotSwapConsole");
+        console.setDaemon(true);
+        console.start();
+
+        /***************************************************************************/
+        /*                                                                         */
+        /* Standard application structure */
+        /* Execution mainloop */
+        /*                                                                         */
+        /***************************************************************************/
+
+        // repeatedly call the step routine to receive and process FRI packets
+        boolean success = true;
+        while (success)
+        {
+            success = app.step();
+        }
+
+        /***************************************************************************/
+        /*                                                                         */
+        /* Standard application structure */
+        /* Dispose */
+        /*                                                                         */
+        /***************************************************************************/
+
+        // disconnect from controller
+        app.disconnect();
+
+        Logger.getAnonymousLogger().info("Exit LBRHotSwap Client Application");
+    }
+
+    private static void readCommands(FRIClientApplication app)
+    {
+        ClientLoader loader = new ClientLoader(LBRHotSwapApp.class.getClassLoader());
+        BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
+        try
+        {
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                String[] tokens = line.trim().split("\\s+");
+                try
+                {
+                    LBRClient next = null;
+                    if (tokens[0].equals("sine") && tokens.length == 5)
+                    {
+                        next = new LBRHotSwapSineClient(Arrays.copyOfRange(tokens, 1, 5));
+                    }
+                    else if (tokens[0].equals("load") && tokens.length >= 3)
+                    {
+                        String classPath = tokens[1].equals("-") ? null : tokens[1];
+                        next = loader.load(classPath, tokens[2], Arrays.copyOfRange(tokens, 3, tokens.length));
+                    }
+                    else if (tokens[0].equals("stats"))
+                    {
+                        logStatistics(app);
+                    }
+                    else if (tokens[0].length() > 0)
+                    {
+                        Logger.getAnonymousLogger().warning("Unknown command: " + line);
+                    }
+
+                    if (next != null)
+                    {
+                        switchAndWait(app, next);
+                    }
+                }
+                catch (Exception e)
+                {
+                    Logger.getAnonymousLogger().warning("Cannot create client: " + e);
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            Logger.getAnonymousLogger().warning("Console closed: " + e.getMessage());
+        }
+    }
+
+    private static void switchAndWait(FRIClientApplication app, LBRClient next) throws InterruptedException
+    {
+        long count = app.getSwitchCount();
+        app.switchClient(next);
+        long deadline = System.currentTimeMillis() + SWITCH_TIMEOUT_MILLIS;
+        while (app.getSwitchCount() == count)
+        {
+            if (System.currentTimeMillis() > deadline)
+            {
+                Logger.getAnonymousLogger().warning("Switch pending, no FRI cycle received");
+                return;
+            }
+            Thread.sleep(1);
+        }
+        logStatistics(app);
+    }
+
+    private static void logStatistics(FRIClientApplication app)
+    {
+        Logger.getAnonymousLogger().info(String.format(
+                "Active client: %s, switches: %d, switch cycle: %.1f us, average cycle: %.1f us",
+                app.getClient().getClass().getSimpleName(), app.getSwitchCount(),
+                app.getLastSwitchStepNanos() / 1000.0, app.getAverageStepNanos() / 1000.0));
+    }
+}
@@ -0,0 +1,136 @@
+package connectivity.fri.sdk.example.LBRHotSwap;
+
+import java.util.logging.Logger;
+
+import com.kuka.connectivity.fri.clientSDK.clientLBR.LBRClient;
+import com.kuka.connectivity.fri.clientSDK.clientLBR.LBRState;
+
+import connectivity.fri.sdk.example.LBRClientRuntime.IClientHandover;
+
+/**
+ * Joint sine overlay client that can replace another client in a running
+ * session without a jump in the commanded positions.
+ * <p>
+ * On {@link #takeOver} the client continues from the last position commanded
+ * by its predecessor: the difference to the interpolator position is kept as
+ * an initial offset per joint and decays with the filter coefficient, while
+ * the sine continues with the phase of a predecessor of the same type.
+ */
+public class LBRHotSwapSineClient extends LBRClient implements IClientHandover
+{
+    private static final int N = LBRState.NUMBER_OF_JOINTS;
+
+    private final int _jointMask; //!< bit mask encoding of joints to be overlaid
+    private final double _freqHz; //!< sine frequency (Hertz)
+    private final double _amplRad; //!< sine amplitude (radians)
+    private final double _filterCoeff; //!< filter coefficient
+    private final double[] _offset = new double[N]; //!< offset per joint for current interpolation step
+    private double _phi; //!< current phase
+    private double _stepWidth; //!< phase step width
+
+    /**
+     * Constructor.
+     *
+     * @param jointMask
+     *            bit mask that encodes the joint indices to be overlaid by sine
+     *            waves
+     * @param freqHz
+     *            sine frequency in Hertz
+     * @param amplRad
+     *            sine amplitude in radians
+     * @param filterCoeff
+     *            filter coefficient between 0 (filter off) and 1 (max filter)
+     */
+    public LBRHotSwapSineClient(int jointMask, double freqHz, double amplRad, double filterCoeff)
+    {
+        _jointMask = jointMask;
+        _freqHz = freqHz;
+        _amplRad = amplRad;
+        _filterCoeff = filterCoeff;
+
+        Logger.getAnonymousLogger().info("LBRHotSwapSineClient initialized:\n"
+                + "\tjoint mask: 0x" + Integer.toHexString(_jointMask) + "\n"
+                + "\tfrequency (Hz): " + _freqHz + "\n"
+                + "\tamplitude (rad): " + _amplRad + "\n"
+                + "\tfilterCoeff: " + _filterCoeff + "\n");
+    }
+
+    /**
+     * Constructor for {@link connectivity.fri.sdk.example.LBRClientRuntime.ClientLoader}.
+     *
+     * @param args
+     *            joint mask (hex), frequency, amplitude and filter coefficient
+     */
+    public LBRHotSwapSineClient(String[] args)
+    {
+        this(Integer.parseInt(args[0], 16), Double.parseDouble(args[1]), Double.parseDouble(args[2]),
+                Double.parseDouble(args[3]));
+    }
+
+    @Override
+    public void onStateChange(FRISessionState oldState, FRISessionState newState)
+    {
+        switch (newState)
+        {
+            case MONITORING_READY:
+            {
+                for (int i = 0; i < N; i++)
+                {
+                    _offset[i] = 0.0;
+                }
+                _phi = 0.0;
+                _stepWidth = 2 * Math.PI * _freqHz * getRobotState().getSampleTime();
+                break;
+            }
+            default:
+            {
+                break;
+            }
+        }
+    }
+
+    @Override
+    public void takeOver(LBRClient previous)
+    {
+        if (previous instanceof LBRHotSwapSineClient)
+        {
+            _phi = ((LBRHotSwapSineClient) previous)._phi;
+        }
+        if (getRobotState().getSessionState() != FRISessionState.COMMANDING_ACTIVE)
+        {
+            return;
+        }
+
+        // start from the last commanded position of the predecessor
+        double[] commanded = getRobotState().getCommandedJointPosition();
+        double[] ipo = getRobotState().getIpoJointPosition();
+        for (int i = 0; i < N; i++)
+        {
+            _offset[i] = commanded[i] - ipo[i];
+        }
+    }
+
+    /**
+     * Callback for the FRI state 'Commanding Active'.
+     */
+    @Override
+    public void command()
+    {
+        double sine = _amplRad * Math.sin(_phi);
+        _phi += _stepWidth;
+        if (_phi >= 2 * Math.PI)
+        {
+            _phi -= 2 * Math.PI;
+        }
+
+        double[] jointPos = getRobotState().getIpoJointPosition();
+        for (int i = 0; i < N; i++)
+        {
+            double target = ((_jointMask & (1 << i)) != 0) ? sine : 0.0;
+            _offset[i] = _offset[i] * _filterCoeff + target * (1.0 - _filterCoeff);
+            jointPos[i] += _offset[i];
+        }
+
+        getRobotCommand().setJointPosition(jointPos);
+    }
+}
@@ -0,0 +1,137 @@
+package connectivity.fri.sdk.example.LBRJointImpedance;
+
+import connectivity.fri.sdk.example.LBRModel.LBRiiwa7Model;
+
+/**
+ * Gain set of a {@link JointImpedanceController}: joint stiffness, damping
+ * ratio and, optionally, the desired joint inertia of inertia shaping.
+ * <p>
+ * Gain sets are plain values; the controller copies them when they are
+ * applied, so an application can prepare its sets once and switch between
+ * them at run time without allocating.
+ */
+public class ImpedanceGains
+{
+    private static final int N = LBRiiwa7Model.NUMBER_OF_JOINTS;
+
+    final double[] _stiffness = new double[N];
+    final double[] _dampingRatio = new double[N];
+    final double[] _inertia = new double[N];
+    boolean _inertiaShaping;
+
+    /**
+     * Creates a gain set without inertia shaping; the damping refers to the
+     * diagonal of the joint space inertia of the robot.
+     *
+     * @param stiffness
+     *            joint stiffness (Nm/rad)
+     * @param dampingRatio
+     *            damping ratio per joint
+     */
+    public ImpedanceGains(double[] stiffness, double[] dampingRatio)
+    {
+        this(stiffness, dampingRatio, null);
+    }
+
+    /**
+     * Creates a gain set.
+     *
+     * @param stiffness
+     *            joint stiffness (Nm/rad)
+     * @param dampingRatio
+     *            damping ratio per joint
+     * @param inertia
+     *            desired joint inertia (kg m^2), or null to keep the inertia
+     *            of the robot
+     */
+    public ImpedanceGains(double[] stiffness, double[] dampingRatio, double[] inertia)
+    {
+        for (int i = 0; i < N; i++)
+        {
+            if (stiffness[i] < 0.0 || dampingRatio[i] < 0.0 || (inertia != null && inertia[i] <= 0.0))
+            {
+                throw new IllegalArgumentException("Invalid gains of joint A" + (i + 1));
+            }
+        }
+        System.arraycopy(stiffness, 0, _stiffness, 0, N);
+        System.arraycopy(dampingRatio, 0, _dampingRatio, 0, N);
+        _inertiaShaping = inertia != null;
+        if (_inertiaShaping)
+        {
+            System.arraycopy(inertia, 0, _inertia, 0, N);
+        }
+    }
+
+    /**
+     * Copy constructor.
+     *
+     * @param other
+     *            gain set to copy
+     */
+    public ImpedanceGains(ImpedanceGains other)
+    {
+        copy(other, this);
+    }
+
+    /**
+     * @return true if the gain set shapes the joint inertia
+     */
+    public boolean isInertiaShaping()
+    {
+        return _inertiaShaping;
+    }
+
+    /**
+     * @param joint
+     *            joint index
+     * @return stiffness of the joint (Nm/rad)
+     */
+    public double getStiffness(int joint)
+    {
+        return _stiffness[joint];
+    }
+
+    /**
+     * @param joint
+     *            joint index
+     * @return damping ratio of the joint
+     */
+    public double getDampingRatio(int joint)
+    {
+        return _dampingRatio[joint];
+    }
+
+    /**
+     * @param joint
+     *            joint index
+     * @return desired inertia of the joint (kg m^2), 0 without inertia shaping
+     */
+    public double getInertia(int joint)
+    {
+        return _inertiaShaping ? _inertia[joint] : 0.0;
+    }
+
+    static void copy(ImpedanceGains src, ImpedanceGains dst)
+    {
+        System.arraycopy(src._stiffness, 0, dst._stiffness, 0, N);
+        System.arraycopy(src._dampingRatio, 0, dst._dampingRatio, 0, N);
+        System.arraycopy(src._inertia, 0, dst._inertia, 0, N);
+        dst._inertiaShaping = src._inertiaShaping;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < N; i++)
+        {
+            text.append(String.format("\tA%d: K %.1f Nm/rad, zeta %.2f", i + 1, _stiffness[i], _dampingRatio[i]));
+            if (_inertiaShaping)
+            {
+                text.append(String.format(", inertia %.3f kg m^2", _inertia[i]));
+            }
+            text.append('\n');
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,342 @@
+package connectivity.fri.sdk.example.LBRJointImpedance;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import connectivity.fri.sdk.example.LBRModel.LBRiiwa7Model;
+
+/**
+ * Joint impedance law for torque command mode, computed on the client.
+ * <p>
+ * Every cycle the controller estimates the joint velocities from the measured
+ * positions and computes
+ * <pre>
+ * tau = K (q_d - q) - D qd + g(q) - g_c(q)
+ * </pre>
+ * with the damping <code>D = 2 zeta sqrt(K m)</code> of each joint, where
+ * <code>m</code> is the diagonal of the joint space inertia M(q). The gravity
+ * term adds what the model of the client, e.g. including an identified
+ * payload, knows beyond the gravity compensation g_c of the robot controller.
+ * With inertia shaping the measured external torques are fed back so that the
+ * joints respond like the desired inertia Md,
+ * <pre>
+ * tau = M Md^-1 (K (q_d - q) - D qd + tau_ext) - tau_ext
+ * </pre>
+ * and the damping refers to Md. The result is limited to the joint torque
+ * limits.
+ * <p>
+ * The law is sampled and acts one cycle late, so each joint can only be made
+ * as stiff as its inertia allows: the stiffness is bounded to keep the
+ * natural frequency below {@link #MAX_NATURAL_FREQUENCY_TIMES_SAMPLE_TIME}
+ * divided by the sample time. The light wrist joints of an arm without tool
+ * therefore need lower stiffness than the base joints, or inertia shaping.
+ * <p>
+ * Gain sets are passed through a triple buffer like the commands of a
+ * {@link connectivity.fri.sdk.example.LBRCommandArbitration.CommandSource}:
+ * {@link #setGains} can be called from any thread, one at a time, and the
+ * control loop picks up the latest set without locking or allocating. A new
+ * set is blended in linearly over the transition time to avoid torque steps;
+ * switching inertia shaping on or off takes effect at once. The controller
+ * itself is not thread-safe and must be updated from the control loop only.
+ */
+public class JointImpedanceController
+{
+    private static final int N = LBRiiwa7Model.NUMBER_OF_JOINTS;
+    private static final int INDEX_MASK = 0x3;
+    private static final int DIRTY = 0x4;
+
+    /** Bound of the natural frequency (rad/s) times the sample time (s). */
+    public static final double MAX_NATURAL_FREQUENCY_TIMES_SAMPLE_TIME = 0.2;
+
+    private final LBRiiwa7Model _model;
+    private final LBRiiwa7Model _controllerModel;
+    private final double _cutoffFrequency;
+    private final double _transitionSeconds;
+
+    private final ImpedanceGains[] _buffers = new ImpedanceGains[3];
+    private final AtomicInteger _shared = new AtomicInteger(1);
+    private int _writeIndex = 0; // owned by the writer
+    private int _readIndex = 2; // owned by the control loop
+
+    private final ImpedanceGains _active;
+    private final ImpedanceGains _previous;
+    private int _transitionCycles;
+    private int _transitionStep;
+
+    private final double[][] _massMatrix = new double[N][N];
+    private final double[] _gravity = new double[N];
+    private final double[] _controllerGravity = new double[N];
+    private final double[] _lastPosition = new double[N];
+    private final double[] _velocity = new double[N];
+    private final double[] _impedanceTorque = new double[N];
+    private final double[] _torque = new double[N];
+    private double _sampleTime;
+    private double _alpha;
+    private double _maxStiffnessPerInertia;
+    private boolean _initialized;
+
+    private volatile long _gainSwitchCount;
+    private volatile long _saturationCount;
+    private volatile long _stiffnessLimitCount;
+
+    /**
+     * Constructor.
+     *
+     * @param model
+     *            dynamic model of the robot including the payload, copied
+     * @param controllerModel
+     *            model of the gravity compensation of the robot controller,
+     *            copied, or null if the controller does not compensate gravity
+     * @param gains
+     *            initial gains
+     * @param cutoffFrequency
+     *            cut-off frequency of the velocity filter (Hz)
+     * @param transitionSeconds
+     *            time over which new gains are blended in (s)
+     */
+    public JointImpedanceController(LBRiiwa7Model model, LBRiiwa7Model controllerModel, ImpedanceGains gains,
+            double cutoffFrequency, double transitionSeconds)
+    {
+        _model = new LBRiiwa7Model(model);
+        _controllerModel = (controllerModel != null) ? new LBRiiwa7Model(controllerModel) : null;
+        _cutoffFrequency = cutoffFrequency;
+        _transitionSeconds = transitionSeconds;
+        for (int b = 0; b < _buffers.length; b++)
+        {
+            _buffers[b] = new ImpedanceGains(gains);
+        }
+        _active = new ImpedanceGains(gains);
+        _previous = new ImpedanceGains(gains);
+    }
+
+    /**
+     * Publishes a new gain set to the control loop; the set is copied. Must
+     * not be called by more than one thread at a time.
+     *
+     * @param gains
+     *            the gains
+     */
+    public void setGains(ImpedanceGains gains)
+    {
+        ImpedanceGains.copy(gains, _buffers[_writeIndex]);
+        _writeIndex = _shared.getAndSet(_writeIndex | DIRTY) & INDEX_MASK;
+    }
+
+    /**
+     * Restarts velocity estimation and applies the latest gains without a
+     * transition; called at the start of commanding.
+     *
+     * @param sampleTime
+     *            FRI sample time (s)
+     */
+    public void reset(double sampleTime)
+    {
+        _sampleTime = sampleTime;
+        _alpha = 1.0 - Math.exp(-2 * Math.PI * _cutoffFrequency * sampleTime);
+        double omega = MAX_NATURAL_FREQUENCY_TIMES_SAMPLE_TIME / sampleTime;
+        _maxStiffnessPerInertia = omega * omega;
+        _transitionCycles = Math.max(1, (int) Math.round(_transitionSeconds / sampleTime));
+        _initialized = false;
+        takeLatest();
+        ImpedanceGains.copy(_buffers[_readIndex], _active);
+        _transitionStep = _transitionCycles;
+    }
+
+    /**
+     * Computes the torque command of the current cycle.
+     *
+     * @param setpoint
+     *            desired joint positions (rad)
+     * @param position
+     *            measured joint positions (rad)
+     * @param externalTorque
+     *            measured external torques (Nm), only used with inertia
+     *            shaping
+     * @param torque
+     *            output torque command (Nm), may be the same array as
+     *            {@link #getTorque()}
+     */
+    public void update(double[] setpoint, double[] position, double[] externalTorque, double[] torque)
+    {
+        updateGains();
+        estimateVelocity(position);
+
+        _model.massMatrix(position, _massMatrix);
+        boolean shaping = _active._inertiaShaping;
+        boolean limited = false;
+        for (int i = 0; i < N; i++)
+        {
+            double inertia = shaping ? _active._inertia[i] : _massMatrix[i][i];
+            double k = _active._stiffness[i];
+            if (k > _maxStiffnessPerInertia * inertia)
+            {
+                k = _maxStiffnessPerInertia * inertia;
+                limited = true;
+            }
+            double d = 2.0 * _active._dampingRatio[i] * Math.sqrt(k * inertia);
+            _impedanceTorque[i] = k * (setpoint[i] - position[i]) - d * _velocity[i];
+        }
+        if (limited)
+        {
+            _stiffnessLimitCount++;
+        }
+        if (shaping)
+        {
+            // accelerations of the desired inertia, mapped through the inertia of the robot
+            for (int i = 0; i < N; i++)
+            {
+                _impedanceTorque[i] = (_impedanceTorque[i] + externalTorque[i]) / _active._inertia[i];
+            }
+            for (int i = 0; i < N; i++)
+            {
+                double sum = -externalTorque[i];
+                for (int j = 0; j < N; j++)
+                {
+                    sum += _massMatrix[i][j] * _impedanceTorque[j];
+                }
+                _torque[i] = sum;
+            }
+        }
+        else
+        {
+            System.arraycopy(_impedanceTorque, 0, _torque, 0, N);
+        }
+
+        _model.gravityTorque(position, _gravity);
+        if (_controllerModel != null)
+        {
+            _controllerModel.gravityTorque(position, _controllerGravity);
+        }
+        boolean saturated = false;
+        for (int i = 0; i < N; i++)
+        {
+            double t = _torque[i] + _gravity[i] - _controllerGravity[i];
+            double limit = LBRiiwa7Model.TORQUE_LIMITS[i];
+            if (t > limit || t < -limit)
+            {
+                t = Math.max(-limit, Math.min(limit, t));
+                saturated = true;
+            }
+            _torque[i] = t;
+        }
+        if (saturated)
+        {
+            _saturationCount++;
+        }
+        if (torque != _torque)
+        {
+            System.arraycopy(_torque, 0, torque, 0, N);
+        }
+    }
+
+    private void updateGains()
+    {
+        if (takeLatest())
+        {
+            // blend from the gains in effect, even if a transition is still running
+            ImpedanceGains.copy(_active, _previous);
+            _active._inertiaShaping = _buffers[_readIndex]._inertiaShaping;
+            _transitionStep = 0;
+            _gainSwitchCount++;
+        }
+        if (_transitionStep < _transitionCycles)
+        {
+            _transitionStep++;
+            double s = (double) _transitionStep / _transitionCycles;
+            ImpedanceGains target = _buffers[_readIndex];
+            boolean blendInertia = _previous._inertiaShaping && target._inertiaShaping;
+            for (int i = 0; i < N; i++)
+            {
+                _active._stiffness[i] = _previous._stiffness[i] + s * (target._stiffness[i] - _previous._stiffness[i]);
+                _active._dampingRatio[i] = _previous._dampingRatio[i] + s
+                        * (target._dampingRatio[i] - _previous._dampingRatio[i]);
+                _active._inertia[i] = blendInertia ? _previous._inertia[i] + s
+                        * (target._inertia[i] - _previous._inertia[i]) : target._inertia[i];
+            }
+        }
+    }
+
+    private boolean takeLatest()
+    {
+        if ((_shared.get() & DIRTY) != 0)
+        {
+            _readIndex = _shared.getAndSet(_readIndex) & INDEX_MASK;
+            return true;
+        }
+        return false;
+    }
+
+    private void estimateVelocity(double[] position)
+    {
+        for (int i = 0; i < N; i++)
+        {
+            if (_initialized)
+            {
+                double v = (position[i] - _lastPosition[i]) / _sampleTime;
+                _velocity[i] += _alpha * (v - _velocity[i]);
+            }
+            else
+            {
+                _velocity[i] = 0.0;
+            }
+            _lastPosition[i] = position[i];
+        }
+        _initialized = true;
+    }
+
+    /**
+     * @return true if the gains in effect shape the joint inertia
+     */
+    public boolean isInertiaShaping()
+    {
+        return _active._inertiaShaping;
+    }
+
+    /**
+     * @return gains in effect in the last cycle, not a copy; read from the
+     *         control loop only
+     */
+    public ImpedanceGains getActiveGains()
+    {
+        return _active;
+    }
+
+    /**
+     * @return torque command of the last cycle (Nm), not a copy
+     */
+    public double[] getTorque()
+    {
+        return _torque;
+    }
+
+    /**
+     * @return estimated joint velocities of the last cycle (rad/s), not a copy
+     */
+    public double[] getVelocity()
+    {
+        return _velocity;
+    }
+
+    /**
+     * @return number of gain sets taken over by the control loop
+     */
+    public long getGainSwitchCount()
+    {
+        return _gainSwitchCount;
+    }
+
+    /**
+     * @return number of cycles in which the stiffness of a joint was bounded
+     */
+    public long getStiffnessLimitCount()
+    {
+        return _stiffnessLimitCount;
+    }
+
+    /**
+     * @return number of cycles in which the torque was limited
+     */
+    public long getSaturationCount()
+    {
+        return _saturationCount;
+    }
+}
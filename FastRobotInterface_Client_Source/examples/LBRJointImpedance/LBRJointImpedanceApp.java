@@ -0,0 +1,418 @@
+package connectivity.fri.sdk.example.LBRJointImpedance;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.util.logging.Logger;
+
+import com.kuka.connectivity.fri.clientSDK.base.ClientApplication;
+import com.kuka.connectivity.fri.clientSDK.base.IClient.ClientCommandMode;
+import com.kuka.connectivity.fri.clientSDK.base.IClient.FRISessionState;
+import com.kuka.connectivity.fri.clientSDK.connection.UdpConnection;
+
+import connectivity.fri.sdk.example.LBRModel.CycleTimes;
+import connectivity.fri.sdk.example.LBRModel.LBRSimulator;
+import connectivity.fri.sdk.example.LBRModel.LBRiiwa7Model;
+
+/**
+ * Implementation of a FRI client application with a client-side joint
+ * impedance controller in torque command mode.
+ * <p>
+ * While the client runs, the gain sets <code>soft</code>, <code>stiff</code>
+ * and <code>shaped</code> can be selected by typing their name on the console;
+ * the control loop takes them over without allocating.
+ * <p>
+ * With the argument <code>simulate</code> the application validates the
+ * controller on the {@link LBRSimulator} instead: it measures the static
+ * stiffness under external torques, the oscillation period with inertia
+ * shaping, the tracking of a fast motion before and after a gain switch, the
+ * allocations of gain switches and the computation time per cycle, judged
+ * on its 99.9th percentile after the warm-up of the last of
+ * {@link #WARMUP_RUNS} + 1 tracking runs.
+ *
+ * @see ClientApplication#connect
+ * @see ClientApplication#step()
+ * @see ClientApplication#disconnect
+ */
+public class LBRJointImpedanceApp
+{
+
+    private static final int DEFAULT_PORTID = 30200;
+    private static final double VELOCITY_CUTOFF_FREQUENCY = 100.0;
+    private static final double TRANSITION_SECONDS = 0.05;
+
+    private static final ImpedanceGains SOFT = new ImpedanceGains(
+            new double[] { 300, 300, 200, 200, 100, 50, 5 },
+            new double[] { 0.7, 0.7, 0.7, 0.7, 0.7, 0.7, 0.7 });
+    private static final ImpedanceGains STIFF = new ImpedanceGains(
+            new double[] { 3000, 3000, 2000, 2000, 800, 350, 15 },
+            new double[] { 0.7, 0.7, 0.7, 0.7, 0.7, 0.7, 0.7 });
+    private static final ImpedanceGains SHAPED = new ImpedanceGains(
+            new double[] { 1000, 1000, 600, 600, 200, 100, 50 },
+            new double[] { 0.2, 0.2, 0.2, 0.2, 0.2, 0.2, 0.2 },
+            new double[] { 2.0, 2.0, 1.0, 1.0, 0.2, 0.1, 0.05 });
+
+    /** Budget of the controller computation per cycle (us). */
+    public static final double CYCLE_BUDGET_MICROS = 100.0;
+    /** Unjudged runs of the simulated tracking before the judged one. */
+    public static final int WARMUP_RUNS = 2;
+
+    private static final double[] SIMULATION_START = {
+        0, Math.toRadians(30), 0, Math.toRadians(-60), 0, Math.toRadians(60), 0 };
+    private static final double[] TEST_TORQUE = { 10, 10, 5, 5, 2, 1, 0.05 };
+    private static final int SHAPED_JOINT = 3;
+    private static final double POSITION_NOISE = 2e-6;
+    private static final double TORQUE_NOISE = 0.05;
+    private static final double SETTLE_SECONDS = 2.0;
+    private static final double OSCILLATION_SECONDS = 2.0;
+    private static final double TRACKING_AMPLITUDE = 0.1;
+    private static final double TRACKING_FREQUENCY = 1.0;
+    private static final double TRACKING_SECONDS = 3.0;
+    private static final int SWITCH_RUNS = 100000;
+
+    /**
+     * Auto-generated method stub. Do not modify the contents of this method.
+     *
+     * @param argv
+     *            the arguments
+     *
+     *
+     */
+    public static void main(String[] argv)
+    {
+        if (argv.length > 0)
+        {
+            if (argv[0].equals("help"))
+            {
+                Logger.getAnonymousLogger().info("\nKUKA LBR joint impedance application\n\n\tCommand line arguments:");
+                Logger.getAnonymousLogger().info("\t1) remote hostname (optional), or simulate");
+                Logger.getAnonymousLogger().info("\t2) port ID (optional)");
+                return;
+            }
+            if (argv[0].equals("simulate"))
+            {
+                simulate();
+                return;
+            }
+        }
+
+        String hostname = (argv.length >= 1) ? argv[0] : null;
+        int port = (argv.length >= 2) ? Integer.valueOf(argv[1]) : DEFAULT_PORTID;
+
+        Logger.getAnonymousLogger().info("Enter LBRJointImpedance Client Application");
+
+        /***************************************************************************/
+        /*                                                                         */
+        /* Place user Client Code here */
+        /*                                                                         */
+        /**************************************************************************/
+
+        // create new joint impedance client, the robot controller compensates the gravity of the nominal model
+        LBRiiwa7Model model = new LBRiiwa7Model();
+        final JointImpedanceController controller = new JointImpedanceController(model, model, SOFT,
+                VELOCITY_CUTOFF_FREQUENCY, TRANSITION_SECONDS);
+        LBRJointImpedanceClient client = new LBRJointImpedanceClient(controller);
+
+        // switch the gain sets from the console
+        Thread console = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                readGains(controller);
+            }
+        }, "JointImpedanceConsole");
+        console.setDaemon(true);
+        console.start();
+
+        /***************************************************************************/
+        /*                                                                         */
+        /* Standard application structure */
+        /* Configuration */
+        /*                                                                         */
+        /***************************************************************************/
+
+        // create new udp connection
+        UdpConnection connection = new UdpConnection();
+
+        // pass connection and client to a new FRI client application
+        ClientApplication app = new ClientApplication(connection, client);
+
+        // connect client application to KUKA Sunrise controller
+        app.connect(port, hostname);
+
+        /***************************************************************************/
+        /*                                                                         */
+        /* Standard application structure */
+        /* Execution mainloop */
+        /*                                                                         */
+        /***************************************************************************/
+
+        // repeatedly call the step routine to receive and process FRI packets
+        boolean success = true;
+        while (success)
+        {
+            success = app.step();
+        }
+
+        /***************************************************************************/
+        /*                                                                         */
+        /* Standard application structure */
+        /* Dispose */
+        /*                                                                         */
+        /***************************************************************************/
+
+        // disconnect from controller
+        app.disconnect();
+
+        Logger.getAnonymousLogger().info(String.format(
+                "Controller time per cycle: %s, stiffness bounded in %d cycles, torque limited in %d cycles",
+                client.getCycleTimes(), controller.getStiffnessLimitCount(), controller.getSaturationCount()));
+        Logger.getAnonymousLogger().info("Exit LBRJointImpedance Client Application");
+    }
+
+    private static void readGains(JointImpedanceController controller)
+    {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
+        try
+        {
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                ImpedanceGains gains = select(line.trim());
+                if (gains != null)
+                {
+                    controller.setGains(gains);
+                    Logger.getAnonymousLogger().info("Gains " + line.trim() + ":\n" + gains);
+                }
+                else if (!line.trim().isEmpty())
+                {
+                    Logger.getAnonymousLogger().warning("Unknown gain set " + line.trim()
+                            + ", use soft, stiff or shaped");
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            Logger.getAnonymousLogger().warning("Console closed: " + e.getMessage());
+        }
+    }
+
+    private static ImpedanceGains select(String name)
+    {
+        if (name.equals("soft"))
+        {
+            return SOFT;
+        }
+        if (name.equals("stiff"))
+        {
+            return STIFF;
+        }
+        if (name.equals("shaped"))
+        {
+            return SHAPED;
+        }
+        return null;
+    }
+
+    private static void simulate()
+    {
+        int n = LBRiiwa7Model.NUMBER_OF_JOINTS;
+        double[] zero = new double[n];
+        double[] q = new double[n];
+        StringBuilder report = new StringBuilder("Simulated joint impedance control:\n");
+
+        // static stiffness: deflection under constant external torques
+        LBRSimulator sim = createSimulator();
+        JointImpedanceController controller = createController(STIFF);
+        LBRJointImpedanceClient client = new LBRJointImpedanceClient(controller);
+        start(sim, client);
+        sim.setExternalTorque(TEST_TORQUE);
+        run(sim, client, (int) (SETTLE_SECONDS / sim.getSampleTime()), null);
+        sim.getJointPosition(q);
+        report.append("\tstatic stiffness (Nm/rad), measured / set:");
+        for (int i = 0; i < n; i++)
+        {
+            report.append(String.format(" %.0f/%.0f", TEST_TORQUE[i] / (q[i] - SIMULATION_START[i]),
+                    STIFF.getStiffness(i)));
+        }
+        report.append('\n');
+
+        // inertia shaping: free oscillation after releasing an external torque
+        sim = createSimulator();
+        controller = createController(SHAPED);
+        client = new LBRJointImpedanceClient(controller);
+        start(sim, client);
+        double[] torque = new double[n];
+        torque[SHAPED_JOINT] = TEST_TORQUE[SHAPED_JOINT];
+        sim.setExternalTorque(torque);
+        run(sim, client, (int) (SETTLE_SECONDS / sim.getSampleTime()), null);
+        sim.setExternalTorque(zero);
+        double period = measurePeriod(sim, client, SHAPED_JOINT);
+        double omega = Math.sqrt(SHAPED.getStiffness(SHAPED_JOINT) / SHAPED.getInertia(SHAPED_JOINT));
+        double zeta = SHAPED.getDampingRatio(SHAPED_JOINT);
+        double expectedPeriod = 2 * Math.PI / (omega * Math.sqrt(1 - zeta * zeta));
+        report.append(String.format("\toscillation period of A%d with inertia %.2f kg m^2: %.1f ms, expected %.1f ms%n",
+                SHAPED_JOINT + 1, SHAPED.getInertia(SHAPED_JOINT), period * 1000.0, expectedPeriod * 1000.0));
+
+        // fast motion, switching from soft to stiff gains half way; the runs
+        // before the last one only compile the control loop
+        double soft = 0.0;
+        double stiff = 0.0;
+        for (int run = 0; run <= WARMUP_RUNS; run++)
+        {
+            sim = createSimulator();
+            controller = createController(SOFT);
+            client = new LBRJointImpedanceClient(controller);
+            start(sim, client);
+            int cycles = (int) (TRACKING_SECONDS / sim.getSampleTime());
+            soft = track(sim, client, cycles, 0);
+            controller.setGains(STIFF);
+            stiff = track(sim, client, cycles, cycles);
+        }
+        report.append(String.format("\tRMS tracking error at %.1f Hz, %.2f rad: soft %.2f mrad, stiff %.2f mrad "
+                + "(%d gain switch)%n", TRACKING_FREQUENCY, TRACKING_AMPLITUDE, soft, stiff,
+                controller.getGainSwitchCount()));
+        report.append(String.format("\tallocated per gain switch and update: %.3f bytes (%d switches)%n",
+                (double) measureSwitchAllocation() / SWITCH_RUNS, SWITCH_RUNS));
+
+        CycleTimes times = client.getCycleTimes();
+        report.append(String.format("\tcontroller time per cycle: %s; budget %.0f us for %.1f %% of the cycles: %s%n",
+                times, CYCLE_BUDGET_MICROS, times.getJudgedFraction() * 100.0,
+                times.isWithin(CYCLE_BUDGET_MICROS) ? "ok" : "EXCEEDED"));
+        report.append("\tstiffness bounded in ").append(controller.getStiffnessLimitCount())
+                .append(" cycles, torque limited in ").append(controller.getSaturationCount()).append(" cycles");
+        Logger.getAnonymousLogger().info(report.toString());
+    }
+
+    private static LBRSimulator createSimulator()
+    {
+        LBRSimulator sim = new LBRSimulator(new LBRiiwa7Model(), 1, 4711);
+        sim.setSensorNoise(POSITION_NOISE, TORQUE_NOISE);
+        sim.setClientCommandMode(ClientCommandMode.TORQUE);
+        // the client defines the whole impedance
+        double[] zero = new double[LBRiiwa7Model.NUMBER_OF_JOINTS];
+        sim.setImpedance(zero, zero);
+        sim.reset(SIMULATION_START);
+        sim.setIpoJointPosition(SIMULATION_START);
+        return sim;
+    }
+
+    private static JointImpedanceController createController(ImpedanceGains gains)
+    {
+        LBRiiwa7Model model = new LBRiiwa7Model();
+        return new JointImpedanceController(model, model, gains, VELOCITY_CUTOFF_FREQUENCY, TRANSITION_SECONDS);
+    }
+
+    private static void start(LBRSimulator sim, LBRJointImpedanceClient client)
+    {
+        sim.setSessionState(FRISessionState.MONITORING_READY);
+        sim.step(client);
+        sim.setSessionState(FRISessionState.COMMANDING_ACTIVE);
+    }
+
+    private static void run(LBRSimulator sim, LBRJointImpedanceClient client, int cycles, double[] ipo)
+    {
+        for (int k = 0; k < cycles; k++)
+        {
+            if (ipo != null)
+            {
+                sim.setIpoJointPosition(ipo);
+            }
+            sim.step(client);
+        }
+    }
+
+    // time between the first and the last of several zero crossings of the deflection
+    private static double measurePeriod(LBRSimulator sim, LBRJointImpedanceClient client, int joint)
+    {
+        double dt = sim.getSampleTime();
+        double[] q = new double[LBRiiwa7Model.NUMBER_OF_JOINTS];
+        int cycles = (int) (OSCILLATION_SECONDS / dt);
+        double last = 0.0;
+        double first = -1.0;
+        double previous = Double.NaN;
+        int crossings = 0;
+        for (int k = 0; k < cycles; k++)
+        {
+            sim.step(client);
+            sim.getJointPosition(q);
+            double e = q[joint] - SIMULATION_START[joint];
+            if (!Double.isNaN(previous) && (previous > 0.0) != (e > 0.0))
+            {
+                // interpolate the crossing inside the cycle
+                double t = (k - 1 + previous / (previous - e)) * dt;
+                if (first < 0.0)
+                {
+                    first = t;
+                }
+                last = t;
+                crossings++;
+            }
+            previous = e;
+        }
+        return crossings > 1 ? 2.0 * (last - first) / (crossings - 1) : Double.NaN;
+    }
+
+    // sine motion of all joints, RMS error in mrad
+    private static double track(LBRSimulator sim, LBRJointImpedanceClient client, int cycles, int offset)
+    {
+        int n = LBRiiwa7Model.NUMBER_OF_JOINTS;
+        double dt = sim.getSampleTime();
+        double[] ipo = new double[n];
+        double[] q = new double[n];
+        double sum = 0.0;
+        for (int k = 0; k < cycles; k++)
+        {
+            double t = (k + offset) * dt;
+            // smooth start of the sine motion
+            double ramp = Math.min(1.0, t);
+            double value = ramp * ramp * TRACKING_AMPLITUDE * Math.sin(2 * Math.PI * TRACKING_FREQUENCY * t);
+            for (int i = 0; i < n; i++)
+            {
+                ipo[i] = SIMULATION_START[i] + value;
+            }
+            sim.setIpoJointPosition(ipo);
+            sim.step(client);
+            sim.getJointPosition(q);
+            for (int i = 0; i < n; i++)
+            {
+                double e = ipo[i] - q[i];
+                sum += e * e;
+            }
+        }
+        return 1000.0 * Math.sqrt(sum / (cycles * n));
+    }
+
+    // allocated bytes of alternating gain switches with one update each, after a warm-up
+    private static long measureSwitchAllocation()
+    {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean))
+        {
+            return -1;
+        }
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+        long threadId = Thread.currentThread().getId();
+
+        JointImpedanceController controller = createController(SOFT);
+        controller.reset(0.001);
+        int n = LBRiiwa7Model.NUMBER_OF_JOINTS;
+        double[] q = SIMULATION_START.clone();
+        double[] externalTorque = new double[n];
+        double[] torque = new double[n];
+        ImpedanceGains[] sets = { SOFT, STIFF, SHAPED };
+        long start = 0;
+        for (int k = 0; k < 2 * SWITCH_RUNS; k++)
+        {
+            if (k == SWITCH_RUNS)
+            {
+                start = threadBean.getThreadAllocatedBytes(threadId);
+            }
+            controller.setGains(sets[k % sets.length]);
+            controller.update(SIMULATION_START, q, externalTorque, torque);
+        }
+        return threadBean.getThreadAllocatedBytes(threadId) - start;
+    }
+}
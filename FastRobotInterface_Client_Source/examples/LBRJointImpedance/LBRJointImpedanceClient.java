@@ -0,0 +1,112 @@
+package connectivity.fri.sdk.example.LBRJointImpedance;
+
+import java.util.logging.Logger;
+
+import com.kuka.connectivity.fri.clientSDK.clientLBR.LBRClient;
+import com.kuka.connectivity.fri.clientSDK.clientLBR.LBRState;
+
+import connectivity.fri.sdk.example.LBRModel.CycleTimes;
+
+/**
+ * Torque mode client that runs a {@link JointImpedanceController} around the
+ * interpolator positions.
+ * <p>
+ * The joint impedance of the robot controller acts on top of the commanded
+ * torques, so the FRI session should be started with zero stiffness, e.g. by
+ * the FRIJointImpedanceTorqueDriver robot application; the client then
+ * defines the whole stiffness and damping of the joints. In other command
+ * modes the client only mirrors the interpolator. The computation time of
+ * the impedance law is recorded in {@link CycleTimes} after a warm-up.
+ */
+public class LBRJointImpedanceClient extends LBRClient
+{
+    private final JointImpedanceController _controller;
+    private final double[] _torque = new double[LBRState.NUMBER_OF_JOINTS];
+
+    private final CycleTimes _cycleTimes = new CycleTimes();
+    private long _cycles;
+
+    /**
+     * Constructor.
+     *
+     * @param controller
+     *            the impedance controller
+     */
+    public LBRJointImpedanceClient(JointImpedanceController controller)
+    {
+        _controller = controller;
+
+        Logger.getAnonymousLogger().info("LBRJointImpedanceClient initialized:\n"
+                + controller.getActiveGains());
+    }
+
+    /**
+     * @return the impedance controller; gains may be set from any thread
+     */
+    public JointImpedanceController getController()
+    {
+        return _controller;
+    }
+
+    @Override
+    public void onStateChange(FRISessionState oldState, FRISessionState newState)
+    {
+        if (newState == FRISessionState.COMMANDING_ACTIVE)
+        {
+            _controller.reset(getRobotState().getSampleTime());
+        }
+    }
+
+    @Override
+    public void waitForCommand()
+    {
+        super.waitForCommand();
+        if (getRobotState().getClientCommandMode() == ClientCommandMode.TORQUE)
+        {
+            for (int i = 0; i < _torque.length; i++)
+            {
+                _torque[i] = 0.0;
+            }
+            getRobotCommand().setTorque(_torque);
+        }
+    }
+
+    /**
+     * Callback for the FRI state 'Commanding Active'.
+     */
+    @Override
+    public void command()
+    {
+        double[] ipo = getRobotState().getIpoJointPosition();
+        getRobotCommand().setJointPosition(ipo);
+        if (getRobotState().getClientCommandMode() == ClientCommandMode.TORQUE)
+        {
+            double[] q = getRobotState().getMeasuredJointPosition();
+            // read every cycle, inertia shaping may be switched on by the next gain set
+            double[] externalTorque = getRobotState().getExternalTorque();
+            long start = System.nanoTime();
+            _controller.update(ipo, q, externalTorque, _torque);
+            long nanos = System.nanoTime() - start;
+            getRobotCommand().setTorque(_torque);
+
+            _cycles++;
+            _cycleTimes.record(nanos);
+        }
+    }
+
+    /**
+     * @return number of computed torque commands
+     */
+    public long getCycles()
+    {
+        return _cycles;
+    }
+
+    /**
+     * @return computation times of the impedance law; read after the session
+     */
+    public CycleTimes getCycleTimes()
+    {
+        return _cycleTimes;
+    }
+}
@@ -0,0 +1,162 @@
+package connectivity.fri.sdk.example.LBRModel;
+
+/**
+ * Histogram of the computation time per FRI cycle with a resolution of one
+ * microsecond, for judging a cycle budget on the tail instead of the mean.
+ * <p>
+ * The first cycles after {@link #reset} are counted as warm-up and not
+ * recorded, so class loading and JIT compilation do not end up in the
+ * percentiles. Recording does not allocate. The histogram is written by the
+ * FRI thread only and should be read after the session.
+ * <p>
+ * A percentile is only meaningful if enough cycles lie beyond it, so
+ * {@link #isWithin} judges p99.9 from {@link #TAIL_SAMPLES} * 1000 recorded
+ * cycles on and p99 below, e.g. in a simulated run of a few seconds.
+ */
+public class CycleTimes
+{
+    /** Cycles after a reset that are not recorded. */
+    public static final int DEFAULT_WARMUP_CYCLES = 1000;
+
+    /** Cycles beyond the judged percentile that {@link #isWithin} requires for p99.9. */
+    public static final int TAIL_SAMPLES = 100;
+
+    private static final int MAX_MICROS = 1000;
+
+    private final int _warmupCycles;
+    private final long[] _counts = new long[MAX_MICROS + 1];
+    private long _skipped;
+    private long _cycles;
+    private long _totalNanos;
+    private long _maxNanos;
+
+    /**
+     * Constructor with {@link #DEFAULT_WARMUP_CYCLES}.
+     */
+    public CycleTimes()
+    {
+        this(DEFAULT_WARMUP_CYCLES);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param warmupCycles
+     *            cycles after a reset that are not recorded
+     */
+    public CycleTimes(int warmupCycles)
+    {
+        _warmupCycles = warmupCycles;
+    }
+
+    /**
+     * Clears the histogram; the next cycles are warm-up again.
+     */
+    public void reset()
+    {
+        for (int i = 0; i < _counts.length; i++)
+        {
+            _counts[i] = 0;
+        }
+        _skipped = 0;
+        _cycles = 0;
+        _totalNanos = 0;
+        _maxNanos = 0;
+    }
+
+    /**
+     * Records the computation time of one cycle.
+     *
+     * @param nanos
+     *            computation time (ns)
+     */
+    public void record(long nanos)
+    {
+        if (_skipped < _warmupCycles)
+        {
+            _skipped++;
+            return;
+        }
+        _counts[(int) Math.min(nanos / 1000, MAX_MICROS)]++;
+        _cycles++;
+        _totalNanos += nanos;
+        if (nanos > _maxNanos)
+        {
+            _maxNanos = nanos;
+        }
+    }
+
+    /**
+     * @return recorded cycles, without the warm-up
+     */
+    public long getCycles()
+    {
+        return _cycles;
+    }
+
+    /**
+     * @return mean computation time after the warm-up (us)
+     */
+    public double getMeanMicros()
+    {
+        return _cycles > 0 ? _totalNanos / 1000.0 / _cycles : 0.0;
+    }
+
+    /**
+     * @return maximum computation time after the warm-up (us)
+     */
+    public double getMaxMicros()
+    {
+        return _maxNanos / 1000.0;
+    }
+
+    /**
+     * @param fraction
+     *            fraction of the cycles, e.g. 0.999
+     * @return upper bound of the computation time of that fraction of the
+     *         cycles after the warm-up (us); the maximum if the bound is
+     *         beyond the histogram
+     */
+    public double getPercentileMicros(double fraction)
+    {
+        long rank = (long) Math.ceil(fraction * _cycles);
+        long seen = 0;
+        for (int i = 0; i < MAX_MICROS; i++)
+        {
+            seen += _counts[i];
+            if (seen >= rank && seen > 0)
+            {
+                return Math.min(i + 1, getMaxMicros());
+            }
+        }
+        return getMaxMicros();
+    }
+
+    /**
+     * @return fraction of the cycles {@link #isWithin} judges: 0.999 if at
+     *         least {@link #TAIL_SAMPLES} cycles lie beyond it, 0.99 otherwise
+     */
+    public double getJudgedFraction()
+    {
+        return _cycles >= TAIL_SAMPLES * 1000L ? 0.999 : 0.99;
+    }
+
+    /**
+     * @param budgetMicros
+     *            budget per cycle (us)
+     * @return true if the {@link #getJudgedFraction judged fraction} of the
+     *         cycles after the warm-up stayed within the budget
+     */
+    public boolean isWithin(double budgetMicros)
+    {
+        return _cycles > 0 && getPercentileMicros(getJudgedFraction()) <= budgetMicros;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("mean %.1f us, p99 %.1f us, p99.9 %.1f us, max %.1f us (%d cycles after %d warm-up)",
+                getMeanMicros(), getPercentileMicros(0.99), getPercentileMicros(0.999), getMaxMicros(), _cycles,
+                _skipped);
+    }
+}
@@ -0,0 +1,193 @@
+package connectivity.fri.sdk.example.LBRModel;
+
+/**
+ * Joint friction model with Coulomb, viscous and Stribeck terms.
+ * <p>
+ * The friction torque of joint i at velocity v is
+ * <code>s(v) (Fc + (Fs - Fc) exp(-(v / vs)^2)) + Fv v</code> with the Coulomb
+ * friction Fc, the static friction Fs, the Stribeck velocity vs and the
+ * viscous coefficient Fv. The sign function is smoothed to
+ * <code>s(v) = tanh(v / v0)</code> with a small velocity v0, which keeps
+ * feed-forward terms from chattering at rest and the simulation integrable.
+ * <p>
+ * The evaluation does not allocate and can be used inside the FRI cycle.
+ */
+public class JointFrictionModel
+{
+    /** Default smoothing velocity of the sign function (rad/s). */
+    public static final double DEFAULT_SMOOTHING_VELOCITY = 0.002;
+
+    private static final int N = LBRiiwa7Model.NUMBER_OF_JOINTS;
+
+    private final double[] _coulomb = new double[N];
+    private final double[] _static = new double[N];
+    private final double[] _viscous = new double[N];
+    private final double[] _stribeckVelocity = new double[N];
+    private final double _smoothingVelocity;
+
+    /**
+     * Constructor, creates a model without friction.
+     *
+     * @param smoothingVelocity
+     *            velocity v0 of the smoothed sign function (rad/s)
+     */
+    public JointFrictionModel(double smoothingVelocity)
+    {
+        _smoothingVelocity = smoothingVelocity;
+        for (int i = 0; i < N; i++)
+        {
+            _stribeckVelocity[i] = 1.0;
+        }
+    }
+
+    /**
+     * Copy constructor.
+     *
+     * @param other
+     *            model whose parameters are copied
+     */
+    public JointFrictionModel(JointFrictionModel other)
+    {
+        this(other._smoothingVelocity);
+        for (int i = 0; i < N; i++)
+        {
+            setParameters(i, other._coulomb[i], other._static[i], other._viscous[i], other._stribeckVelocity[i]);
+        }
+    }
+
+    /**
+     * Sets the parameters of a joint.
+     *
+     * @param joint
+     *            joint index from 0 to 6
+     * @param coulomb
+     *            Coulomb friction Fc (Nm)
+     * @param stiction
+     *            static friction Fs (Nm)
+     * @param viscous
+     *            viscous coefficient Fv (Nm s/rad)
+     * @param stribeckVelocity
+     *            Stribeck velocity vs (rad/s), positive
+     */
+    public void setParameters(int joint, double coulomb, double stiction, double viscous, double stribeckVelocity)
+    {
+        _coulomb[joint] = coulomb;
+        _static[joint] = stiction;
+        _viscous[joint] = viscous;
+        _stribeckVelocity[joint] = stribeckVelocity;
+    }
+
+    /**
+     * @param joint
+     *            joint index from 0 to 6
+     * @return Coulomb friction Fc (Nm)
+     */
+    public double getCoulomb(int joint)
+    {
+        return _coulomb[joint];
+    }
+
+    /**
+     * @param joint
+     *            joint index from 0 to 6
+     * @return static friction Fs (Nm)
+     */
+    public double getStatic(int joint)
+    {
+        return _static[joint];
+    }
+
+    /**
+     * @param joint
+     *            joint index from 0 to 6
+     * @return viscous coefficient Fv (Nm s/rad)
+     */
+    public double getViscous(int joint)
+    {
+        return _viscous[joint];
+    }
+
+    /**
+     * @param joint
+     *            joint index from 0 to 6
+     * @return Stribeck velocity vs (rad/s)
+     */
+    public double getStribeckVelocity(int joint)
+    {
+        return _stribeckVelocity[joint];
+    }
+
+    /**
+     * @return velocity v0 of the smoothed sign function (rad/s)
+     */
+    public double getSmoothingVelocity()
+    {
+        return _smoothingVelocity;
+    }
+
+    /**
+     * Computes the friction torque of a joint.
+     *
+     * @param joint
+     *            joint index from 0 to 6
+     * @param velocity
+     *            joint velocity (rad/s)
+     * @return friction torque opposing the motion (Nm), positive for positive
+     *         velocities
+     */
+    public double torque(int joint, double velocity)
+    {
+        double r = velocity / _stribeckVelocity[joint];
+        double level = _coulomb[joint] + (_static[joint] - _coulomb[joint]) * Math.exp(-r * r);
+        return Math.tanh(velocity / _smoothingVelocity) * level + _viscous[joint] * velocity;
+    }
+
+    /**
+     * Computes the derivative of the friction torque with respect to the
+     * velocity, e.g. for implicit integration.
+     *
+     * @param joint
+     *            joint index from 0 to 6
+     * @param velocity
+     *            joint velocity (rad/s)
+     * @return d torque / d velocity (Nm s/rad)
+     */
+    public double slope(int joint, double velocity)
+    {
+        double vs = _stribeckVelocity[joint];
+        double r = velocity / vs;
+        double e = Math.exp(-r * r);
+        double level = _coulomb[joint] + (_static[joint] - _coulomb[joint]) * e;
+        double dLevel = (_static[joint] - _coulomb[joint]) * e * (-2 * r / vs);
+        double s = Math.tanh(velocity / _smoothingVelocity);
+        return (1 - s * s) / _smoothingVelocity * level + s * dLevel + _viscous[joint];
+    }
+
+    /**
+     * Computes the friction torques of all joints.
+     *
+     * @param velocity
+     *            joint velocities (rad/s)
+     * @param tau
+     *            output friction torques (Nm)
+     */
+    public void torque(double[] velocity, double[] tau)
+    {
+        for (int i = 0; i < N; i++)
+        {
+            tau[i] = torque(i, velocity[i]);
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < N; i++)
+        {
+            text.append(String.format("\tA%d: Fc %.3f Nm, Fs %.3f Nm, Fv %.3f Nm s/rad, vs %.4f rad/s%n", i + 1,
+                    _coulomb[i], _static[i], _viscous[i], _stribeckVelocity[i]));
+        }
+        return text.toString();
+    }
+}
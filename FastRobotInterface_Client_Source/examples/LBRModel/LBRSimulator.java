@@ -0,0 +1,433 @@
+package connectivity.fri.sdk.example.LBRModel;
+
+import java.util.Random;
+
+import com.kuka.connectivity.fri.clientSDK.base.IClient;
+import com.kuka.connectivity.fri.clientSDK.base.IClient.ClientCommandMode;
+import com.kuka.connectivity.fri.clientSDK.base.IClient.FRIConnectionQuality;
+import com.kuka.connectivity.fri.clientSDK.base.IClient.FRISessionState;
+import com.kuka.connectivity.fri.clientSDK.clientLBR.LBRCommand;
+import com.kuka.connectivity.fri.clientSDK.protobuf.gen.FRIMessages;
+import com.kuka.connectivity.fri.clientSDK.protobuf.gen.FRIMessages.FRIMonitoringMessage;
+import com.kuka.connectivity.fri.clientSDK.protobuf.gen.FRIMessages.JointValues;
+
+/**
+ * Local simulator of an LBR iiwa 7 R800 with a running FRI session.
+ * <p>
+ * The simulator integrates the rigid body dynamics of a plant model under the
+ * joint controller of the robot controller (position control in position and
+ * wrench command mode, joint impedance control plus commanded torques in
+ * torque command mode) and produces the monitoring messages the controller
+ * would send. {@link #step(IClient)} drives a client exactly like
+ * {@link com.kuka.connectivity.fri.clientSDK.base.ClientApplication#step()}
+ * does, so clients can be run without a robot.
+ * <p>
+ * The measured torque reported by the simulator is the torque transmitted to
+ * the link behind the joint torque sensor, i.e. M(q) qdd + C(q, qd) qd + g(q)
+ * minus the external torque. Joint friction (see {@link #setJointFriction})
+ * acts between drive and sensor, so it is not part of the measured torque.
+ */
+public class LBRSimulator
+{
+    private static final int LBR_MONITOR_MESSAGE_ID = 0x245142;
+    private static final double INTEGRATION_STEP = 1e-4;
+    private static final int N = LBRiiwa7Model.NUMBER_OF_JOINTS;
+
+    private static final double[] POSITION_STIFFNESS = { 3000, 3000, 1500, 1500, 500, 300, 100 };
+    private static final double[] POSITION_DAMPING = { 80, 80, 40, 40, 10, 6, 0.5 };
+
+    private final LBRiiwa7Model _plant;
+    private final int _sendPeriodMillis;
+    private final Random _random;
+
+    private final double[] _q = new double[N];
+    private final double[] _qd = new double[N];
+    private final double[] _qdd = new double[N];
+    private final double[] _ipo = new double[N];
+    private final double[] _setpoint = new double[N];
+    private final double[] _torqueCommand = new double[N];
+    private final double[] _externalTorque = new double[N];
+    private final double[] _linkTorque = new double[N];
+    private final double[] _motorTorque = new double[N];
+    private final double[] _frictionTorque = new double[N];
+    private final double[] _gravity = new double[N];
+    private final double[] _coriolis = new double[N];
+    private final double[] _rhs = new double[N];
+    private final double[][] _massMatrix = new double[N][N];
+    private final double[] _stiffness = POSITION_STIFFNESS.clone();
+    private final double[] _damping = POSITION_DAMPING.clone();
+    private final double[] _impedanceStiffness = new double[N];
+    private final double[] _impedanceDamping = new double[N];
+
+    private JointFrictionModel _friction;
+    private double _positionNoise;
+    private double _torqueNoise;
+
+    private FRISessionState _sessionState = FRISessionState.MONITORING_READY;
+    private FRIConnectionQuality _quality = FRIConnectionQuality.EXCELLENT;
+    private ClientCommandMode _commandMode = ClientCommandMode.POSITION;
+    private FRISessionState _lastClientState = FRISessionState.IDLE;
+    private int _sequenceCounter;
+    private long _timeNanos;
+
+    /**
+     * Constructor.
+     *
+     * @param plant
+     *            model of the simulated robot; may differ from the model used
+     *            by the client to emulate modelling errors
+     * @param sendPeriodMillis
+     *            FRI send period in milliseconds
+     * @param seed
+     *            seed of the sensor noise generator
+     */
+    public LBRSimulator(LBRiiwa7Model plant, int sendPeriodMillis, long seed)
+    {
+        _plant = plant;
+        _sendPeriodMillis = sendPeriodMillis;
+        _random = new Random(seed);
+        for (int i = 0; i < N; i++)
+        {
+            _impedanceStiffness[i] = 200.0;
+            _impedanceDamping[i] = 0.7 * 2.0 * Math.sqrt(200.0 * 0.5);
+        }
+    }
+
+    /**
+     * Resets the robot to rest at the given joint position.
+     *
+     * @param q
+     *            joint positions (rad)
+     */
+    public void reset(double[] q)
+    {
+        System.arraycopy(q, 0, _q, 0, N);
+        System.arraycopy(q, 0, _ipo, 0, N);
+        System.arraycopy(q, 0, _setpoint, 0, N);
+        for (int i = 0; i < N; i++)
+        {
+            _qd[i] = 0.0;
+            _qdd[i] = 0.0;
+            _torqueCommand[i] = 0.0;
+            _frictionTorque[i] = 0.0;
+        }
+        _lastClientState = FRISessionState.IDLE;
+        _plant.gravityTorque(_q, _motorTorque);
+        updateLinkTorque();
+    }
+
+    /**
+     * @return sample time in seconds
+     */
+    public double getSampleTime()
+    {
+        return _sendPeriodMillis * 0.001;
+    }
+
+    /**
+     * @return simulated time in nanoseconds
+     */
+    public long getTimeNanos()
+    {
+        return _timeNanos;
+    }
+
+    /**
+     * Sets the joint position of the interpolator on the robot controller,
+     * i.e. the motion the client overlays.
+     *
+     * @param ipo
+     *            joint positions (rad)
+     */
+    public void setIpoJointPosition(double[] ipo)
+    {
+        System.arraycopy(ipo, 0, _ipo, 0, N);
+    }
+
+    /**
+     * Sets the torque applied to the joints by the environment.
+     *
+     * @param tau
+     *            external joint torques (Nm)
+     */
+    public void setExternalTorque(double[] tau)
+    {
+        System.arraycopy(tau, 0, _externalTorque, 0, N);
+    }
+
+    /**
+     * Sets the standard deviation of the white sensor noise.
+     *
+     * @param positionStd
+     *            position noise (rad)
+     * @param torqueStd
+     *            torque noise (Nm)
+     */
+    public void setSensorNoise(double positionStd, double torqueStd)
+    {
+        _positionNoise = positionStd;
+        _torqueNoise = torqueStd;
+    }
+
+    /**
+     * Sets the friction of the drives; none by default.
+     *
+     * @param friction
+     *            friction model, or null for none
+     */
+    public void setJointFriction(JointFrictionModel friction)
+    {
+        _friction = friction;
+    }
+
+    /**
+     * Sets the gains of the joint impedance controller used in torque command
+     * mode.
+     *
+     * @param stiffness
+     *            joint stiffness (Nm/rad)
+     * @param damping
+     *            joint damping (Nms/rad)
+     */
+    public void setImpedance(double[] stiffness, double[] damping)
+    {
+        System.arraycopy(stiffness, 0, _impedanceStiffness, 0, N);
+        System.arraycopy(damping, 0, _impedanceDamping, 0, N);
+    }
+
+    /**
+     * @param state
+     *            session state reported to the client
+     */
+    public void setSessionState(FRISessionState state)
+    {
+        _sessionState = state;
+    }
+
+    /**
+     * @param quality
+     *            connection quality reported to the client
+     */
+    public void setConnectionQuality(FRIConnectionQuality quality)
+    {
+        _quality = quality;
+    }
+
+    /**
+     * @param mode
+     *            client command mode of the overlay
+     */
+    public void setClientCommandMode(ClientCommandMode mode)
+    {
+        _commandMode = mode;
+    }
+
+    /**
+     * @param q
+     *            output true joint positions (rad)
+     */
+    public void getJointPosition(double[] q)
+    {
+        System.arraycopy(_q, 0, q, 0, N);
+    }
+
+    /**
+     * @param qd
+     *            output true joint velocities (rad/s)
+     */
+    public void getJointVelocity(double[] qd)
+    {
+        System.arraycopy(_qd, 0, qd, 0, N);
+    }
+
+    /**
+     * Creates the monitoring message of the current sample.
+     *
+     * @return monitoring message as sent by the robot controller
+     */
+    public FRIMonitoringMessage createMonitoringMessage()
+    {
+        _sequenceCounter++;
+        JointValues.Builder measuredPosition = JointValues.newBuilder();
+        JointValues.Builder measuredTorque = JointValues.newBuilder();
+        JointValues.Builder commandedPosition = JointValues.newBuilder();
+        JointValues.Builder commandedTorque = JointValues.newBuilder();
+        JointValues.Builder externalTorque = JointValues.newBuilder();
+        JointValues.Builder ipoPosition = JointValues.newBuilder();
+        for (int i = 0; i < N; i++)
+        {
+            measuredPosition.addValue(_q[i] + _positionNoise * _random.nextGaussian());
+            measuredTorque.addValue(_linkTorque[i] + _torqueNoise * _random.nextGaussian());
+            commandedPosition.addValue(_setpoint[i]);
+            commandedTorque.addValue(_torqueCommand[i]);
+            externalTorque.addValue(_externalTorque[i] + _torqueNoise * _random.nextGaussian());
+            ipoPosition.addValue(_ipo[i]);
+        }
+
+        return FRIMonitoringMessage.newBuilder()
+                .setHeader(FRIMessages.MessageHeader.newBuilder()
+                        .setMessageIdentifier(LBR_MONITOR_MESSAGE_ID)
+                        .setSequenceCounter(_sequenceCounter)
+                        .setReflectedSequenceCounter(0))
+                .setConnectionInfo(FRIMessages.ConnectionInfo.newBuilder()
+                        .setSessionState(FRIMessages.FRISessionState.valueOf(_sessionState.name()))
+                        .setQuality(FRIMessages.FRIConnectionQuality.valueOf(_quality.name()))
+                        .setSendPeriod(_sendPeriodMillis)
+                        .setReceiveMultiplier(1))
+                .setRobotInfo(FRIMessages.RobotInfo.newBuilder()
+                        .setNumberOfJoints(N)
+                        .setSafetyState(FRIMessages.SafetyState.NORMAL_OPERATION)
+                        .setOperationMode(FRIMessages.OperationMode.TEST_MODE_1)
+                        .setControlMode(_commandMode == ClientCommandMode.TORQUE
+                                ? FRIMessages.ControlMode.JOINT_IMPEDANCE_CONTROLMODE
+                                : FRIMessages.ControlMode.POSITION_CONTROLMODE))
+                .setMonitorData(FRIMessages.MessageMonitorData.newBuilder()
+                        .setMeasuredJointPosition(measuredPosition)
+                        .setMeasuredTorque(measuredTorque)
+                        .setCommandedJointPosition(commandedPosition)
+                        .setCommandedTorque(commandedTorque)
+                        .setExternalTorque(externalTorque)
+                        .setTimestamp(FRIMessages.TimeStamp.newBuilder()
+                                .setSec((int) (_timeNanos / 1000000000L))
+                                .setNanosec((int) (_timeNanos % 1000000000L))))
+                .setIpoData(FRIMessages.MessageIpoData.newBuilder()
+                        .setJointPosition(ipoPosition)
+                        .setClientCommandMode(FRIMessages.ClientCommandMode.valueOf(_commandMode.name()))
+                        .setOverlayType(FRIMessages.OverlayType.JOINT)
+                        .setTrackingPerformance(1.0))
+                .build();
+    }
+
+    /**
+     * Takes over the command of the client for the next sample. Without a
+     * valid command in 'Commanding Active' the robot follows the interpolator.
+     *
+     * @param command
+     *            command of the client
+     */
+    public void applyCommand(LBRCommand command)
+    {
+        boolean commanding = _sessionState == FRISessionState.COMMANDING_ACTIVE;
+        if (commanding && command.hasJointPosition())
+        {
+            System.arraycopy(command.getJointPosition(), 0, _setpoint, 0, N);
+        }
+        else
+        {
+            System.arraycopy(_ipo, 0, _setpoint, 0, N);
+        }
+        if (commanding && _commandMode == ClientCommandMode.TORQUE && command.hasTorque())
+        {
+            System.arraycopy(command.getTorque(), 0, _torqueCommand, 0, N);
+        }
+        else
+        {
+            for (int i = 0; i < N; i++)
+            {
+                _torqueCommand[i] = 0.0;
+            }
+        }
+    }
+
+    /**
+     * Integrates the dynamics over one sample time.
+     */
+    public void integrate()
+    {
+        int substeps = (int) Math.ceil(getSampleTime() / INTEGRATION_STEP);
+        double dt = getSampleTime() / substeps;
+        boolean impedance = _commandMode == ClientCommandMode.TORQUE;
+        double[] k = impedance ? _impedanceStiffness : _stiffness;
+        double[] d = impedance ? _impedanceDamping : _damping;
+
+        for (int s = 0; s < substeps; s++)
+        {
+            _plant.gravityTorque(_q, _gravity);
+            _plant.coriolisTorque(_q, _qd, _coriolis);
+            _plant.massMatrix(_q, _massMatrix);
+            for (int i = 0; i < N; i++)
+            {
+                _motorTorque[i] = k[i] * (_setpoint[i] - _q[i]) - d[i] * _qd[i] + _gravity[i] + _torqueCommand[i];
+                _rhs[i] = _motorTorque[i] + _externalTorque[i] - _coriolis[i] - _gravity[i];
+                // controller linearly implicit, the wrist links are too light for explicit damping
+                _massMatrix[i][i] += dt * d[i] + dt * dt * k[i];
+            }
+            if (_friction != null)
+            {
+                // likewise the friction, the smoothed Coulomb term is stiff
+                for (int i = 0; i < N; i++)
+                {
+                    _frictionTorque[i] = _friction.torque(i, _qd[i]);
+                    _rhs[i] -= _frictionTorque[i];
+                    _massMatrix[i][i] += dt * _friction.slope(i, _qd[i]);
+                }
+            }
+            LinearAlgebra.choleskyDecompose(_massMatrix, N);
+            LinearAlgebra.choleskySolve(_massMatrix, _rhs, _qdd, N);
+            for (int i = 0; i < N; i++)
+            {
+                _qd[i] += _qdd[i] * dt;
+                _q[i] += _qd[i] * dt;
+            }
+        }
+        _timeNanos += _sendPeriodMillis * 1000000L;
+        updateLinkTorque();
+    }
+
+    private void updateLinkTorque()
+    {
+        // torque behind the sensor: everything the drive transmits to the link
+        for (int i = 0; i < N; i++)
+        {
+            _linkTorque[i] = _motorTorque[i] - (_friction != null ? _frictionTorque[i] : 0.0);
+        }
+    }
+
+    /**
+     * Runs one FRI cycle of a client, mirroring
+     * {@link com.kuka.connectivity.fri.clientSDK.base.ClientApplication#step()},
+     * and integrates the robot dynamics afterwards.
+     *
+     * @param client
+     *            client to drive
+     */
+    public void step(IClient client)
+    {
+        client.getRobotState().linkMessages(createMonitoringMessage());
+
+        FRISessionState state = client.getRobotState().getSessionState();
+        if (state != _lastClientState)
+        {
+            client.onStateChange(_lastClientState, state);
+            _lastClientState = state;
+        }
+
+        switch (state)
+        {
+            case MONITORING_WAIT:
+            case MONITORING_READY:
+            {
+                client.monitor();
+                break;
+            }
+            case COMMANDING_WAIT:
+            {
+                client.waitForCommand();
+                break;
+            }
+            case COMMANDING_ACTIVE:
+            {
+                client.command();
+                break;
+            }
+            default:
+            {
+                break;
+            }
+        }
+
+        applyCommand(client.getRobotCommand());
+        client.getRobotCommand().resetCommandMessage();
+        integrate();
+    }
+}
@@ -0,0 +1,705 @@
+package connectivity.fri.sdk.example.LBRModel;
+
+import com.kuka.connectivity.fri.clientSDK.clientLBR.LBRState;
+
+/**
+ * Kinematic and dynamic model of the KUKA LBR iiwa 7 R800.
+ * <p>
+ * The kinematics use the standard Denavit-Hartenberg convention, frame 7 being
+ * the media flange. The inertial parameters are nominal values for the bare
+ * robot; they are good enough for observers and feed-forward terms but should
+ * be replaced by identified values (see {@link #setLinkParameters}) for
+ * demanding applications. A payload attached to the flange can be set with
+ * {@link #setPayload}.
+ * <p>
+ * All methods work on preallocated buffers and do not allocate, so the model
+ * can be evaluated inside the FRI cycle. An instance is not thread-safe; use
+ * one instance per thread.
+ */
+public class LBRiiwa7Model
+{
+    /** Number of joints of the model. */
+    public static final int NUMBER_OF_JOINTS = LBRState.NUMBER_OF_JOINTS;
+
+    /** Gravitational acceleration (m/s^2). */
+    public static final double GRAVITY = 9.81;
+
+    /** Joint position limits (rad). */
+    public static final double[] JOINT_LIMITS = {
+        Math.toRadians(170), Math.toRadians(120), Math.toRadians(170), Math.toRadians(120),
+        Math.toRadians(170), Math.toRadians(120), Math.toRadians(175) };
+
+    /** Joint velocity limits (rad/s). */
+    public static final double[] VELOCITY_LIMITS = {
+        Math.toRadians(98), Math.toRadians(98), Math.toRadians(100), Math.toRadians(130),
+        Math.toRadians(140), Math.toRadians(180), Math.toRadians(180) };
+
+    /** Joint torque limits (Nm). */
+    public static final double[] TORQUE_LIMITS = { 176, 176, 110, 110, 110, 40, 40 };
+
+    private static final double[] DH_D = { 0.34, 0.0, 0.4, 0.0, 0.4, 0.0, 0.126 };
+    private static final double[] DH_ALPHA = {
+        -Math.PI / 2, Math.PI / 2, Math.PI / 2, -Math.PI / 2, -Math.PI / 2, Math.PI / 2, 0.0 };
+
+    private static final double[] NOMINAL_MASS = { 3.4525, 3.4821, 4.0562, 3.4822, 2.1633, 2.3466, 0.3130 };
+    private static final double[][] NOMINAL_COM = {
+        { 0.0, 0.0800, -0.0300 },
+        { 0.0, -0.0340, 0.0680 },
+        { 0.0, -0.0900, 0.0300 },
+        { 0.0, 0.0670, 0.0340 },
+        { 0.0, 0.1000, -0.0210 },
+        { 0.0, -0.0004, 0.0200 },
+        { 0.0, 0.0, -0.0150 } };
+    // inertia about the centre of mass in link coordinates: xx, yy, zz, xy, xz, yz
+    private static final double[][] NOMINAL_INERTIA = {
+        { 0.0218, 0.0208, 0.0077, 0, 0, 0 },
+        { 0.0208, 0.0078, 0.0218, 0, 0, 0 },
+        { 0.0320, 0.0304, 0.0097, 0, 0, 0 },
+        { 0.0218, 0.0078, 0.0208, 0, 0, 0 },
+        { 0.0129, 0.0111, 0.0057, 0, 0, 0 },
+        { 0.0065, 0.0045, 0.0063, 0, 0, 0 },
+        { 0.0003, 0.0003, 0.0004, 0, 0, 0 } };
+
+    private final double[] _mass = new double[NUMBER_OF_JOINTS];
+    private final double[][] _com = new double[NUMBER_OF_JOINTS][3];
+    private final double[][] _inertia = new double[NUMBER_OF_JOINTS][6];
+
+    // parameters of the last link without payload, payload is merged into link 7
+    private final double[] _flangeLinkCom = new double[3];
+    private final double[] _flangeLinkInertia = new double[6];
+    private double _flangeLinkMass;
+    private double _payloadMass;
+    private final double[] _payloadCom = new double[3];
+
+    private final double[] _toolOffset = new double[3];
+
+    // per-cycle workspace
+    private final double[][] _rot = new double[NUMBER_OF_JOINTS][9]; // ^{i-1}R_i, row-major
+    private final double[][] _pstar = new double[NUMBER_OF_JOINTS][3];
+    private final double[][] _w = new double[NUMBER_OF_JOINTS][3];
+    private final double[][] _wd = new double[NUMBER_OF_JOINTS][3];
+    private final double[][] _vd = new double[NUMBER_OF_JOINTS][3];
+    private final double[][] _force = new double[NUMBER_OF_JOINTS][3];
+    private final double[][] _moment = new double[NUMBER_OF_JOINTS][3];
+    private final double[] _zeros = new double[NUMBER_OF_JOINTS];
+    private final double[] _unit = new double[NUMBER_OF_JOINTS];
+    private final double[] _column = new double[NUMBER_OF_JOINTS];
+    private final double[] _t1 = new double[3];
+    private final double[] _t2 = new double[3];
+    private final double[] _t3 = new double[3];
+    private final double[] _f = new double[3];
+    private final double[] _n = new double[3];
+    private final double[][] _origins = new double[NUMBER_OF_JOINTS + 1][3];
+    private final double[][] _axes = new double[NUMBER_OF_JOINTS + 1][3];
+    private final double[] _frame = new double[12];
+    private final double[] _next = new double[12];
+
+    /**
+     * Constructor, creates a model with the nominal parameters and no payload.
+     */
+    public LBRiiwa7Model()
+    {
+        for (int i = 0; i < NUMBER_OF_JOINTS; i++)
+        {
+            setLinkParameters(i, NOMINAL_MASS[i], NOMINAL_COM[i], NOMINAL_INERTIA[i]);
+        }
+    }
+
+    /**
+     * Copy constructor.
+     *
+     * @param other
+     *            model whose parameters are copied
+     */
+    public LBRiiwa7Model(LBRiiwa7Model other)
+    {
+        for (int i = 0; i < NUMBER_OF_JOINTS - 1; i++)
+        {
+            setLinkParameters(i, other._mass[i], other._com[i], other._inertia[i]);
+        }
+        setLinkParameters(NUMBER_OF_JOINTS - 1, other._flangeLinkMass, other._flangeLinkCom,
+                other._flangeLinkInertia);
+        setPayload(other._payloadMass, other._payloadCom[0], other._payloadCom[1], other._payloadCom[2]);
+        setToolOffset(other._toolOffset[0], other._toolOffset[1], other._toolOffset[2]);
+    }
+
+    /**
+     * Sets the inertial parameters of a link.
+     *
+     * @param link
+     *            link index from 0 to 6
+     * @param mass
+     *            link mass in kg
+     * @param com
+     *            centre of mass in link coordinates (m)
+     * @param inertia
+     *            inertia about the centre of mass in link coordinates (kg m^2),
+     *            ordered xx, yy, zz, xy, xz, yz
+     */
+    public void setLinkParameters(int link, double mass, double[] com, double[] inertia)
+    {
+        if (link == NUMBER_OF_JOINTS - 1)
+        {
+            _flangeLinkMass = mass;
+            System.arraycopy(com, 0, _flangeLinkCom, 0, 3);
+            System.arraycopy(inertia, 0, _flangeLinkInertia, 0, 6);
+            mergePayload();
+        }
+        else
+        {
+            _mass[link] = mass;
+            System.arraycopy(com, 0, _com[link], 0, 3);
+            System.arraycopy(inertia, 0, _inertia[link], 0, 6);
+        }
+    }
+
+    /**
+     * Returns the inertial parameters of a link without the payload.
+     *
+     * @param link
+     *            link index from 0 to 6
+     * @param com
+     *            output centre of mass in link coordinates (m)
+     * @param inertia
+     *            output inertia about the centre of mass (kg m^2), ordered
+     *            xx, yy, zz, xy, xz, yz
+     * @return link mass in kg
+     */
+    public double getLinkParameters(int link, double[] com, double[] inertia)
+    {
+        if (link == NUMBER_OF_JOINTS - 1)
+        {
+            System.arraycopy(_flangeLinkCom, 0, com, 0, 3);
+            System.arraycopy(_flangeLinkInertia, 0, inertia, 0, 6);
+            return _flangeLinkMass;
+        }
+        System.arraycopy(_com[link], 0, com, 0, 3);
+        System.arraycopy(_inertia[link], 0, inertia, 0, 6);
+        return _mass[link];
+    }
+
+    /**
+     * Sets a point mass payload attached to the flange.
+     *
+     * @param mass
+     *            payload mass in kg
+     * @param comX
+     *            x coordinate of the centre of mass in the flange frame (m)
+     * @param comY
+     *            y coordinate of the centre of mass in the flange frame (m)
+     * @param comZ
+     *            z coordinate of the centre of mass in the flange frame (m)
+     */
+    public void setPayload(double mass, double comX, double comY, double comZ)
+    {
+        _payloadMass = mass;
+        _payloadCom[0] = comX;
+        _payloadCom[1] = comY;
+        _payloadCom[2] = comZ;
+        mergePayload();
+    }
+
+    /**
+     * @return payload mass in kg
+     */
+    public double getPayloadMass()
+    {
+        return _payloadMass;
+    }
+
+    /**
+     * Sets the tool centre point used by {@link #forwardKinematics} and
+     * {@link #jacobian}.
+     *
+     * @param x
+     *            x offset in the flange frame (m)
+     * @param y
+     *            y offset in the flange frame (m)
+     * @param z
+     *            z offset in the flange frame (m)
+     */
+    public void setToolOffset(double x, double y, double z)
+    {
+        _toolOffset[0] = x;
+        _toolOffset[1] = y;
+        _toolOffset[2] = z;
+    }
+
+    private void mergePayload()
+    {
+        int last = NUMBER_OF_JOINTS - 1;
+        double m = _flangeLinkMass + _payloadMass;
+        _mass[last] = m;
+        double[] inertia = _inertia[last];
+        System.arraycopy(_flangeLinkInertia, 0, inertia, 0, 6);
+        if (m <= 0.0)
+        {
+            System.arraycopy(_flangeLinkCom, 0, _com[last], 0, 3);
+            return;
+        }
+        for (int k = 0; k < 3; k++)
+        {
+            _com[last][k] = (_flangeLinkMass * _flangeLinkCom[k] + _payloadMass * _payloadCom[k]) / m;
+        }
+        // parallel axis theorem for both bodies w.r.t. the combined centre of mass
+        addPointMass(inertia, _flangeLinkMass, _flangeLinkCom, _com[last]);
+        addPointMass(inertia, _payloadMass, _payloadCom, _com[last]);
+    }
+
+    private static void addPointMass(double[] inertia, double mass, double[] p, double[] c)
+    {
+        double x = p[0] - c[0];
+        double y = p[1] - c[1];
+        double z = p[2] - c[2];
+        inertia[0] += mass * (y * y + z * z);
+        inertia[1] += mass * (x * x + z * z);
+        inertia[2] += mass * (x * x + y * y);
+        inertia[3] -= mass * x * y;
+        inertia[4] -= mass * x * z;
+        inertia[5] -= mass * y * z;
+    }
+
+    /**
+     * Computes the joint torques for the given motion with the recursive
+     * Newton-Euler algorithm.
+     *
+     * @param q
+     *            joint positions (rad)
+     * @param qd
+     *            joint velocities (rad/s)
+     * @param qdd
+     *            joint accelerations (rad/s^2)
+     * @param withGravity
+     *            whether gravity is included
+     * @param tau
+     *            output joint torques (Nm)
+     */
+    public void inverseDynamics(double[] q, double[] qd, double[] qdd, boolean withGravity, double[] tau)
+    {
+        forwardRecursion(q, qd, qdd, withGravity);
+
+        for (int j = 0; j < NUMBER_OF_JOINTS; j++)
+        {
+            double[] w = _w[j];
+            double[] wd = _wd[j];
+            double[] c = _com[j];
+            double[] f = _force[j];
+            double[] n = _moment[j];
+
+            // acceleration of the centre of mass
+            addAcceleration(w, wd, c, _vd[j], f);
+            f[0] *= _mass[j];
+            f[1] *= _mass[j];
+            f[2] *= _mass[j];
+
+            // n = I wd + w x (I w)
+            double[] in = _inertia[j];
+            double iwx = in[0] * w[0] + in[3] * w[1] + in[4] * w[2];
+            double iwy = in[3] * w[0] + in[1] * w[1] + in[5] * w[2];
+            double iwz = in[4] * w[0] + in[5] * w[1] + in[2] * w[2];
+            n[0] = in[0] * wd[0] + in[3] * wd[1] + in[4] * wd[2] + (w[1] * iwz - w[2] * iwy);
+            n[1] = in[3] * wd[0] + in[1] * wd[1] + in[5] * wd[2] + (w[2] * iwx - w[0] * iwz);
+            n[2] = in[4] * wd[0] + in[5] * wd[1] + in[2] * wd[2] + (w[0] * iwy - w[1] * iwx);
+        }
+
+        double[] fn = _f;
+        double[] nn = _n;
+        fn[0] = fn[1] = fn[2] = 0.0;
+        nn[0] = nn[1] = nn[2] = 0.0;
+        for (int j = NUMBER_OF_JOINTS - 1; j >= 0; j--)
+        {
+            double[] p = _pstar[j];
+            double[] c = _com[j];
+            double[] fm = _force[j];
+
+            if (j < NUMBER_OF_JOINTS - 1)
+            {
+                // nn = R (nn + (R^T p) x f), f = R f with R = ^{j}R_{j+1}
+                double[] r = _rot[j + 1];
+                mulTransposed(r, p[0], p[1], p[2], _t1);
+                double ex = nn[0] + (_t1[1] * fn[2] - _t1[2] * fn[1]);
+                double ey = nn[1] + (_t1[2] * fn[0] - _t1[0] * fn[2]);
+                double ez = nn[2] + (_t1[0] * fn[1] - _t1[1] * fn[0]);
+                mul(r, ex, ey, ez, nn);
+                mul(r, fn[0], fn[1], fn[2], fn);
+            }
+
+            // nn += (p + c) x F + N, f += F
+            double px = p[0] + c[0];
+            double py = p[1] + c[1];
+            double pz = p[2] + c[2];
+            nn[0] += (py * fm[2] - pz * fm[1]) + _moment[j][0];
+            nn[1] += (pz * fm[0] - px * fm[2]) + _moment[j][1];
+            nn[2] += (px * fm[1] - py * fm[0]) + _moment[j][2];
+            fn[0] += fm[0];
+            fn[1] += fm[1];
+            fn[2] += fm[2];
+
+            // joint axis z0 expressed in link frame j is the last row of ^{j-1}R_j
+            double[] r = _rot[j];
+            tau[j] = nn[0] * r[6] + nn[1] * r[7] + nn[2] * r[8];
+        }
+    }
+
+    /**
+     * Computes the regressor of a rigid payload attached to the flange, i.e.
+     * the joint torques caused by a payload are {@code regressor * p} with the
+     * inertial parameters
+     * <code>p = (m, m cx, m cy, m cz, Ixx, Iyy, Izz, Ixy, Ixz, Iyz)</code>.
+     * The centre of mass c and the inertia I refer to the origin of the flange
+     * frame and are given in flange coordinates; the inertia is ordered like
+     * in {@link #setLinkParameters}. Gravity is included.
+     *
+     * @param q
+     *            joint positions (rad)
+     * @param qd
+     *            joint velocities (rad/s)
+     * @param qdd
+     *            joint accelerations (rad/s^2)
+     * @param regressor
+     *            output 7x10 matrix
+     */
+    public void payloadRegressor(double[] q, double[] qd, double[] qdd, double[][] regressor)
+    {
+        forwardRecursion(q, qd, qdd, true);
+        int last = NUMBER_OF_JOINTS - 1;
+        double[] w = _w[last];
+        double[] wd = _wd[last];
+        double[] vd = _vd[last];
+        double[] f = _t2;
+        double[] n = _t3;
+
+        // mass: force m vd, no moment about the origin
+        f[0] = vd[0];
+        f[1] = vd[1];
+        f[2] = vd[2];
+        n[0] = n[1] = n[2] = 0.0;
+        propagateWrench(f, n, 0, regressor);
+
+        // first moment s = m c: force wd x s + w x (w x s), moment s x vd
+        for (int k = 0; k < 3; k++)
+        {
+            _unit[0] = _unit[1] = _unit[2] = 0.0;
+            _unit[k] = 1.0;
+            f[0] = f[1] = f[2] = 0.0;
+            addAcceleration(w, wd, _unit, f, f);
+            n[0] = _unit[1] * vd[2] - _unit[2] * vd[1];
+            n[1] = _unit[2] * vd[0] - _unit[0] * vd[2];
+            n[2] = _unit[0] * vd[1] - _unit[1] * vd[0];
+            propagateWrench(f, n, 1 + k, regressor);
+        }
+        _unit[0] = _unit[1] = _unit[2] = 0.0;
+
+        // inertia: moment I wd + w x (I w), no force
+        f[0] = f[1] = f[2] = 0.0;
+        for (int k = 0; k < 6; k++)
+        {
+            for (int i = 0; i < 6; i++)
+            {
+                _column[i] = 0.0;
+            }
+            _column[k] = 1.0;
+            double[] in = _column;
+            double iwx = in[0] * w[0] + in[3] * w[1] + in[4] * w[2];
+            double iwy = in[3] * w[0] + in[1] * w[1] + in[5] * w[2];
+            double iwz = in[4] * w[0] + in[5] * w[1] + in[2] * w[2];
+            n[0] = in[0] * wd[0] + in[3] * wd[1] + in[4] * wd[2] + (w[1] * iwz - w[2] * iwy);
+            n[1] = in[3] * wd[0] + in[1] * wd[1] + in[5] * wd[2] + (w[2] * iwx - w[0] * iwz);
+            n[2] = in[4] * wd[0] + in[5] * wd[1] + in[2] * wd[2] + (w[0] * iwy - w[1] * iwx);
+            propagateWrench(f, n, 4 + k, regressor);
+        }
+    }
+
+    // velocities and accelerations of all links (Newton-Euler forward pass)
+    private void forwardRecursion(double[] q, double[] qd, double[] qdd, boolean withGravity)
+    {
+        updateRotations(q);
+
+        double[] wPrev = _t1;
+        double[] wdPrev = _t2;
+        double[] vdPrev = _t3;
+        wPrev[0] = wPrev[1] = wPrev[2] = 0.0;
+        wdPrev[0] = wdPrev[1] = wdPrev[2] = 0.0;
+        vdPrev[0] = 0.0;
+        vdPrev[1] = 0.0;
+        vdPrev[2] = withGravity ? GRAVITY : 0.0;
+
+        for (int j = 0; j < NUMBER_OF_JOINTS; j++)
+        {
+            double[] r = _rot[j];
+            double[] w = _w[j];
+            double[] wd = _wd[j];
+            double[] vd = _vd[j];
+            double[] p = _pstar[j];
+
+            // w = R^T (wPrev + z0 qd)
+            double ax = wPrev[0];
+            double ay = wPrev[1];
+            double az = wPrev[2] + qd[j];
+            mulTransposed(r, ax, ay, az, w);
+
+            // wd = R^T (wdPrev + z0 qdd + wPrev x z0 qd)
+            ax = wdPrev[0] + wPrev[1] * qd[j];
+            ay = wdPrev[1] - wPrev[0] * qd[j];
+            az = wdPrev[2] + qdd[j];
+            mulTransposed(r, ax, ay, az, wd);
+
+            // vd = wd x p + w x (w x p) + R^T vdPrev
+            mulTransposed(r, vdPrev[0], vdPrev[1], vdPrev[2], vd);
+            addAcceleration(w, wd, p, vd, vd);
+
+            System.arraycopy(w, 0, wPrev, 0, 3);
+            System.arraycopy(wd, 0, wdPrev, 0, 3);
+            System.arraycopy(vd, 0, vdPrev, 0, 3);
+        }
+    }
+
+    // joint torques of a wrench acting on the last link at the origin of its frame
+    private void propagateWrench(double[] force, double[] moment, int column, double[][] out)
+    {
+        double[] fn = _f;
+        double[] nn = _n;
+        System.arraycopy(force, 0, fn, 0, 3);
+        System.arraycopy(moment, 0, nn, 0, 3);
+        for (int j = NUMBER_OF_JOINTS - 1; j >= 0; j--)
+        {
+            double[] p = _pstar[j];
+            if (j < NUMBER_OF_JOINTS - 1)
+            {
+                double[] r = _rot[j + 1];
+                mulTransposed(r, p[0], p[1], p[2], _t1);
+                double ex = nn[0] + (_t1[1] * fn[2] - _t1[2] * fn[1]);
+                double ey = nn[1] + (_t1[2] * fn[0] - _t1[0] * fn[2]);
+                double ez = nn[2] + (_t1[0] * fn[1] - _t1[1] * fn[0]);
+                mul(r, ex, ey, ez, nn);
+                mul(r, fn[0], fn[1], fn[2], fn);
+            }
+            else
+            {
+                // moment about the origin of the previous frame
+                nn[0] += p[1] * fn[2] - p[2] * fn[1];
+                nn[1] += p[2] * fn[0] - p[0] * fn[2];
+                nn[2] += p[0] * fn[1] - p[1] * fn[0];
+            }
+            double[] r = _rot[j];
+            out[j][column] = nn[0] * r[6] + nn[1] * r[7] + nn[2] * r[8];
+        }
+    }
+
+    /**
+     * Computes the gravity torques.
+     *
+     * @param q
+     *            joint positions (rad)
+     * @param tau
+     *            output gravity torques (Nm)
+     */
+    public void gravityTorque(double[] q, double[] tau)
+    {
+        inverseDynamics(q, _zeros, _zeros, true, tau);
+    }
+
+    /**
+     * Computes the Coriolis and centrifugal torques C(q, qd) qd.
+     *
+     * @param q
+     *            joint positions (rad)
+     * @param qd
+     *            joint velocities (rad/s)
+     * @param tau
+     *            output torques (Nm)
+     */
+    public void coriolisTorque(double[] q, double[] qd, double[] tau)
+    {
+        inverseDynamics(q, qd, _zeros, false, tau);
+    }
+
+    /**
+     * Computes the joint space mass matrix.
+     *
+     * @param q
+     *            joint positions (rad)
+     * @param massMatrix
+     *            output 7x7 mass matrix (kg m^2)
+     */
+    public void massMatrix(double[] q, double[][] massMatrix)
+    {
+        for (int k = 0; k < NUMBER_OF_JOINTS; k++)
+        {
+            _unit[k] = 1.0;
+            inverseDynamics(q, _zeros, _unit, false, _column);
+            _unit[k] = 0.0;
+            for (int i = 0; i < NUMBER_OF_JOINTS; i++)
+            {
+                massMatrix[i][k] = _column[i];
+            }
+        }
+    }
+
+    /**
+     * Computes the pose of the tool centre point in the robot base frame.
+     *
+     * @param q
+     *            joint positions (rad)
+     * @param pose
+     *            output homogeneous transform as 3x4 row-major matrix
+     *            (rotation followed by translation in m per row)
+     */
+    public void forwardKinematics(double[] q, double[] pose)
+    {
+        updateFrames(q);
+        System.arraycopy(_frame, 0, pose, 0, 12);
+    }
+
+    /**
+     * Computes the geometric Jacobian of the tool centre point in the robot
+     * base frame.
+     *
+     * @param q
+     *            joint positions (rad)
+     * @param jacobian
+     *            output 6x7 matrix, rows 0..2 linear and rows 3..5 angular
+     *            velocity
+     */
+    public void jacobian(double[] q, double[][] jacobian)
+    {
+        updateFrames(q);
+        double[] pe = _origins[NUMBER_OF_JOINTS];
+        for (int j = 0; j < NUMBER_OF_JOINTS; j++)
+        {
+            double[] z = _axes[j];
+            double[] o = _origins[j];
+            double dx = pe[0] - o[0];
+            double dy = pe[1] - o[1];
+            double dz = pe[2] - o[2];
+            jacobian[0][j] = z[1] * dz - z[2] * dy;
+            jacobian[1][j] = z[2] * dx - z[0] * dz;
+            jacobian[2][j] = z[0] * dy - z[1] * dx;
+            jacobian[3][j] = z[0];
+            jacobian[4][j] = z[1];
+            jacobian[5][j] = z[2];
+        }
+    }
+
+    /**
+     * Returns the position of the origin of a link frame computed by the last
+     * call of {@link #forwardKinematics} or {@link #jacobian}.
+     *
+     * @param frame
+     *            0 for the base, 1..7 for the link frames
+     * @param position
+     *            output position in the robot base frame (m)
+     */
+    public void getFrameOrigin(int frame, double[] position)
+    {
+        System.arraycopy(_origins[frame], 0, position, 0, 3);
+    }
+
+    private void updateFrames(double[] q)
+    {
+        double[] t = _frame;
+        setIdentity(t);
+        _origins[0][0] = _origins[0][1] = _origins[0][2] = 0.0;
+        _axes[0][0] = _axes[0][1] = 0.0;
+        _axes[0][2] = 1.0;
+        for (int j = 0; j < NUMBER_OF_JOINTS; j++)
+        {
+            double ct = Math.cos(q[j]);
+            double st = Math.sin(q[j]);
+            double ca = Math.cos(DH_ALPHA[j]);
+            double sa = Math.sin(DH_ALPHA[j]);
+            double d = DH_D[j];
+            // A = [ct -st*ca st*sa 0; st ct*ca -ct*sa 0; 0 sa ca d]
+            for (int row = 0; row < 3; row++)
+            {
+                double r0 = t[4 * row];
+                double r1 = t[4 * row + 1];
+                double r2 = t[4 * row + 2];
+                _next[4 * row] = r0 * ct + r1 * st;
+                _next[4 * row + 1] = -r0 * st * ca + r1 * ct * ca + r2 * sa;
+                _next[4 * row + 2] = r0 * st * sa - r1 * ct * sa + r2 * ca;
+                _next[4 * row + 3] = r2 * d + t[4 * row + 3];
+            }
+            System.arraycopy(_next, 0, t, 0, 12);
+            _origins[j + 1][0] = t[3];
+            _origins[j + 1][1] = t[7];
+            _origins[j + 1][2] = t[11];
+            _axes[j + 1][0] = t[2];
+            _axes[j + 1][1] = t[6];
+            _axes[j + 1][2] = t[10];
+        }
+        // apply the tool offset to the flange frame
+        for (int row = 0; row < 3; row++)
+        {
+            t[4 * row + 3] += t[4 * row] * _toolOffset[0] + t[4 * row + 1] * _toolOffset[1]
+                    + t[4 * row + 2] * _toolOffset[2];
+        }
+        _origins[NUMBER_OF_JOINTS][0] = t[3];
+        _origins[NUMBER_OF_JOINTS][1] = t[7];
+        _origins[NUMBER_OF_JOINTS][2] = t[11];
+    }
+
+    private void updateRotations(double[] q)
+    {
+        for (int j = 0; j < NUMBER_OF_JOINTS; j++)
+        {
+            double ct = Math.cos(q[j]);
+            double st = Math.sin(q[j]);
+            double ca = Math.cos(DH_ALPHA[j]);
+            double sa = Math.sin(DH_ALPHA[j]);
+            double[] r = _rot[j];
+            r[0] = ct;
+            r[1] = -st * ca;
+            r[2] = st * sa;
+            r[3] = st;
+            r[4] = ct * ca;
+            r[5] = -ct * sa;
+            r[6] = 0.0;
+            r[7] = sa;
+            r[8] = ca;
+            double[] p = _pstar[j];
+            p[0] = 0.0;
+            p[1] = DH_D[j] * sa;
+            p[2] = DH_D[j] * ca;
+        }
+    }
+
+    private static void setIdentity(double[] t)
+    {
+        for (int i = 0; i < 12; i++)
+        {
+            t[i] = 0.0;
+        }
+        t[0] = 1.0;
+        t[5] = 1.0;
+        t[10] = 1.0;
+    }
+
+    // out = wd x p + w x (w x p) + base, out may alias base
+    private static void addAcceleration(double[] w, double[] wd, double[] p, double[] base, double[] out)
+    {
+        double cx = w[1] * p[2] - w[2] * p[1];
+        double cy = w[2] * p[0] - w[0] * p[2];
+        double cz = w[0] * p[1] - w[1] * p[0];
+        double x = (wd[1] * p[2] - wd[2] * p[1]) + (w[1] * cz - w[2] * cy) + base[0];
+        double y = (wd[2] * p[0] - wd[0] * p[2]) + (w[2] * cx - w[0] * cz) + base[1];
+        double z = (wd[0] * p[1] - wd[1] * p[0]) + (w[0] * cy - w[1] * cx) + base[2];
+        out[0] = x;
+        out[1] = y;
+        out[2] = z;
+    }
+
+    private static void mul(double[] r, double x, double y, double z, double[] out)
+    {
+        out[0] = r[0] * x + r[1] * y + r[2] * z;
+        out[1] = r[3] * x + r[4] * y + r[5] * z;
+        out[2] = r[6] * x + r[7] * y + r[8] * z;
+    }
+
+    private static void mulTransposed(double[] r, double x, double y, double z, double[] out)
+    {
+        out[0] = r[0] * x + r[3] * y + r[6] * z;
+        out[1] = r[1] * x + r[4] * y + r[7] * z;
+        out[2] = r[2] * x + r[5] * y + r[8] * z;
+    }
+}
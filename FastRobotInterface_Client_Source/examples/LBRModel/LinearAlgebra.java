@@ -0,0 +1,103 @@
+package connectivity.fri.sdk.example.LBRModel;
+
+/**
+ * Small dense linear algebra routines working in place on preallocated
+ * arrays, so that they can be used inside the FRI cycle.
+ */
+public final class LinearAlgebra
+{
+    private LinearAlgebra()
+    {
+    }
+
+    /**
+     * Computes the Cholesky factorization A = L L^T of a symmetric positive
+     * definite matrix in place. Only the lower triangle of the result is
+     * valid afterwards.
+     *
+     * @param a
+     *            matrix to factorize, overwritten by L
+     * @param n
+     *            dimension of the matrix
+     * @return false if the matrix is not positive definite
+     */
+    public static boolean choleskyDecompose(double[][] a, int n)
+    {
+        for (int j = 0; j < n; j++)
+        {
+            double d = a[j][j];
+            for (int k = 0; k < j; k++)
+            {
+                d -= a[j][k] * a[j][k];
+            }
+            if (d <= 0.0)
+            {
+                return false;
+            }
+            d = Math.sqrt(d);
+            a[j][j] = d;
+            for (int i = j + 1; i < n; i++)
+            {
+                double s = a[i][j];
+                for (int k = 0; k < j; k++)
+                {
+                    s -= a[i][k] * a[j][k];
+                }
+                a[i][j] = s / d;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Solves L L^T x = b for a factor computed by {@link #choleskyDecompose}.
+     *
+     * @param l
+     *            Cholesky factor
+     * @param b
+     *            right hand side
+     * @param x
+     *            solution, may be the same array as b
+     * @param n
+     *            dimension of the system
+     */
+    public static void choleskySolve(double[][] l, double[] b, double[] x, int n)
+    {
+        for (int i = 0; i < n; i++)
+        {
+            double s = b[i];
+            for (int k = 0; k < i; k++)
+            {
+                s -= l[i][k] * x[k];
+            }
+            x[i] = s / l[i][i];
+        }
+        for (int i = n - 1; i >= 0; i--)
+        {
+            double s = x[i];
+            for (int k = i + 1; k < n; k++)
+            {
+                s -= l[k][i] * x[k];
+            }
+            x[i] = s / l[i][i];
+        }
+    }
+
+    /**
+     * Copies the leading n x n block of a matrix.
+     *
+     * @param src
+     *            source matrix
+     * @param dst
+     *            destination matrix
+     * @param n
+     *            dimension of the block
+     */
+    public static void copy(double[][] src, double[][] dst, int n)
+    {
+        for (int i = 0; i < n; i++)
+        {
+            System.arraycopy(src[i], 0, dst[i], 0, n);
+        }
+    }
+}
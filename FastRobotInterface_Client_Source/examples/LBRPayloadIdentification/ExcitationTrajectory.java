@@ -0,0 +1,121 @@
+package connectivity.fri.sdk.example.LBRPayloadIdentification;
+
+import java.util.Random;
+
+import connectivity.fri.sdk.example.LBRModel.LBRiiwa7Model;
+
+/**
+ * Periodic excitation trajectory for identification, a finite Fourier series
+ * per joint around a start position.
+ * <p>
+ * Each joint moves along a sum of harmonics of a base frequency with random
+ * phases. The motion is faded in and out over {@link #RAMP_SECONDS}, so the
+ * trajectory starts and ends at rest in the start position. The amplitudes
+ * are scaled down where the start position is close to the joint limits or
+ * the velocity would exceed a fraction of the velocity limits.
+ */
+public class ExcitationTrajectory
+{
+    /** Duration of the fade-in and fade-out (s). */
+    public static final double RAMP_SECONDS = 1.0;
+
+    private static final int N = LBRiiwa7Model.NUMBER_OF_JOINTS;
+    private static final double LIMIT_MARGIN = Math.toRadians(5);
+
+    private final double[] _start = new double[N];
+    private final double[][] _amplitude;
+    private final double[][] _phase;
+    private final double _omega;
+    private final double _duration;
+
+    /**
+     * Constructor.
+     *
+     * @param start
+     *            start and end position (rad)
+     * @param amplitude
+     *            maximum deviation per joint from the start position (rad)
+     * @param baseFrequency
+     *            base frequency of the series (Hz)
+     * @param harmonics
+     *            number of harmonics per joint
+     * @param velocityScale
+     *            fraction of the velocity limits the motion may reach
+     * @param duration
+     *            duration including the fades (s)
+     * @param seed
+     *            seed of the phases
+     */
+    public ExcitationTrajectory(double[] start, double[] amplitude, double baseFrequency, int harmonics,
+            double velocityScale, double duration, long seed)
+    {
+        System.arraycopy(start, 0, _start, 0, N);
+        _amplitude = new double[N][harmonics];
+        _phase = new double[N][harmonics];
+        _omega = 2 * Math.PI * baseFrequency;
+        _duration = Math.max(duration, 2 * RAMP_SECONDS);
+
+        Random random = new Random(seed);
+        for (int i = 0; i < N; i++)
+        {
+            // stay inside the joint limits
+            double room = LBRiiwa7Model.JOINT_LIMITS[i] - LIMIT_MARGIN - Math.abs(_start[i]);
+            double a = Math.max(0.0, Math.min(amplitude[i], room));
+            // the velocity bound of the series is a * omega * sum(l) / harmonics
+            double maxVelocity = a / harmonics * _omega * harmonics * (harmonics + 1) / 2.0;
+            double velocityLimit = velocityScale * LBRiiwa7Model.VELOCITY_LIMITS[i];
+            if (maxVelocity > velocityLimit)
+            {
+                a *= velocityLimit / maxVelocity;
+            }
+            for (int l = 0; l < harmonics; l++)
+            {
+                _amplitude[i][l] = a / harmonics;
+                _phase[i][l] = 2 * Math.PI * random.nextDouble();
+            }
+        }
+    }
+
+    /**
+     * @return duration including the fades (s)
+     */
+    public double getDuration()
+    {
+        return _duration;
+    }
+
+    /**
+     * Evaluates the trajectory.
+     *
+     * @param t
+     *            time since the start (s); the start position is returned
+     *            outside of the duration
+     * @param q
+     *            output joint positions (rad)
+     */
+    public void position(double t, double[] q)
+    {
+        double envelope = envelope(t);
+        for (int i = 0; i < N; i++)
+        {
+            double sum = 0.0;
+            double[] amplitude = _amplitude[i];
+            for (int l = 0; l < amplitude.length; l++)
+            {
+                sum += amplitude[l] * Math.sin((l + 1) * _omega * t + _phase[i][l]);
+            }
+            q[i] = _start[i] + envelope * sum;
+        }
+    }
+
+    private double envelope(double t)
+    {
+        if (t <= 0.0 || t >= _duration)
+        {
+            return 0.0;
+        }
+        double s = Math.min(1.0, Math.min(t, _duration - t) / RAMP_SECONDS);
+        // smoothstep, continuous velocity at both ends of the fade
+        return s * s * (3.0 - 2.0 * s);
+    }
+}
@@ -0,0 +1,159 @@
+package connectivity.fri.sdk.example.LBRPayloadIdentification;
+
+import java.util.logging.Logger;
+
+import com.kuka.connectivity.fri.clientSDK.clientLBR.LBRClient;
+import com.kuka.connectivity.fri.clientSDK.clientLBR.LBRState;
+
+/**
+ * Client that moves the robot along an {@link ExcitationTrajectory} and
+ * records the measured joint positions and torques.
+ * <p>
+ * The trajectory starts at the interpolator position when the session enters
+ * 'Commanding Active'. Every commanding cycle up to the end of the trajectory
+ * is recorded; afterwards the client holds the start position and
+ * {@link #isFinished()} returns true. A session that ends before is
+ * discarded, and the next one starts the excitation again; after completion
+ * the client mirrors the interpolator.
+ * <p>
+ * In torque command mode the client commands zero torques, so the robot
+ * follows the trajectory with its joint impedance controller.
+ */
+public class LBRExcitationClient extends LBRClient
+{
+    private final double[] _amplitude;
+    private final double _baseFrequency;
+    private final int _harmonics;
+    private final double _velocityScale;
+    private final double _duration;
+    private final long _seed;
+    private final SessionRecording _recording;
+
+    private ExcitationTrajectory _trajectory;
+    private final double[] _jointPosition = new double[LBRState.NUMBER_OF_JOINTS];
+    private final double[] _zeroTorque = new double[LBRState.NUMBER_OF_JOINTS];
+    private long _cycle;
+    private boolean _full;
+    private volatile boolean _finished;
+
+    /**
+     * Constructor.
+     *
+     * @param amplitude
+     *            maximum deviation per joint from the start position (rad)
+     * @param baseFrequency
+     *            base frequency of the excitation (Hz)
+     * @param harmonics
+     *            number of harmonics per joint
+     * @param velocityScale
+     *            fraction of the velocity limits the motion may reach
+     * @param duration
+     *            duration of the excitation (s)
+     * @param seed
+     *            seed of the phases; equal seeds and start positions give equal
+     *            trajectories
+     * @param recording
+     *            recording to fill, sized for the duration
+     */
+    public LBRExcitationClient(double[] amplitude, double baseFrequency, int harmonics, double velocityScale,
+            double duration, long seed, SessionRecording recording)
+    {
+        _amplitude = amplitude.clone();
+        _baseFrequency = baseFrequency;
+        _harmonics = harmonics;
+        _velocityScale = velocityScale;
+        _duration = duration;
+        _seed = seed;
+        _recording = recording;
+
+        Logger.getAnonymousLogger().info("LBRExcitationClient initialized:\n"
+                + "\tbase frequency (Hz): " + _baseFrequency + "\n"
+                + "\tharmonics: " + _harmonics + "\n"
+                + "\tduration (s): " + _duration + "\n");
+    }
+
+    /**
+     * @return true once the excitation has been completed
+     */
+    public boolean isFinished()
+    {
+        return _finished;
+    }
+
+    /**
+     * @return the recording
+     */
+    public SessionRecording getRecording()
+    {
+        return _recording;
+    }
+
+    @Override
+    public void onStateChange(FRISessionState oldState, FRISessionState newState)
+    {
+        if (newState == FRISessionState.COMMANDING_ACTIVE)
+        {
+            if (_finished)
+            {
+                _trajectory = null;
+                return;
+            }
+            _recording.clear();
+            _full = false;
+            _trajectory = new ExcitationTrajectory(getRobotState().getIpoJointPosition(), _amplitude,
+                    _baseFrequency, _harmonics, _velocityScale, _duration, _seed);
+            _cycle = 0;
+        }
+    }
+
+    @Override
+    public void waitForCommand()
+    {
+        super.waitForCommand();
+        commandTorque();
+    }
+
+    /**
+     * Callback for the FRI state 'Commanding Active'.
+     */
+    @Override
+    public void command()
+    {
+        if (_trajectory == null)
+        {
+            super.command();
+            commandTorque();
+            return;
+        }
+
+        double t = _cycle * getRobotState().getSampleTime();
+        if (t <= _trajectory.getDuration())
+        {
+            if (!_recording.add(getRobotState().getMeasuredJointPosition(), getRobotState().getMeasuredTorque(),
+                    getRobotState().getCommandedJointPosition(), getRobotState().getCommandedTorque())
+                    && !_full)
+            {
+                // keep moving, stopping mid-trajectory would be a jump
+                Logger.getAnonymousLogger().warning("Recording full, the remaining excitation is not recorded");
+                _full = true;
+            }
+        }
+        else
+        {
+            _finished = true;
+        }
+        // the start position after the end
+        _trajectory.position(t, _jointPosition);
+        getRobotCommand().setJointPosition(_jointPosition);
+        commandTorque();
+        _cycle++;
+    }
+
+    private void commandTorque()
+    {
+        if (getRobotState().getClientCommandMode() == ClientCommandMode.TORQUE)
+        {
+            getRobotCommand().setTorque(_zeroTorque);
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package connectivity.fri.sdk.example.LBRPayloadIdentification;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Logger;
+
+import com.kuka.connectivity.fri.clientSDK.base.ClientApplication;
+import com.kuka.connectivity.fri.clientSDK.base.IClient.FRISessionState;
+import com.kuka.connectivity.fri.clientSDK.connection.UdpConnection;
+
+import connectivity.fri.sdk.example.LBRModel.LBRSimulator;
+import connectivity.fri.sdk.example.LBRModel.LBRiiwa7Model;
+
+/**
+ * Payload identification from recorded FRI sessions.
+ * <p>
+ * The application has three modes:
+ * <ul>
+ * <li><code>record &lt;file&gt; [hostname] [port] [seconds]</code> runs the
+ * excitation trajectory with an {@link LBRExcitationClient} on the robot and
+ * writes the recording to a file. The FRI session must be started in
+ * position command mode.</li>
+ * <li><code>identify &lt;file&gt; [reference file]</code> identifies the
+ * payload of a recording, optionally against a recording of the same
+ * excitation without payload, and prints the values for
+ * {@code LoadData} if the estimate is plausible.</li>
+ * <li><code>simulate [mass kg] [x mm] [y mm] [z mm]</code> records the
+ * excitation on the {@link LBRSimulator} with a known payload and a plant
+ * that deviates from the model, identifies it with and without reference and
+ * compares parallel with sequential assembly.</li>
+ * </ul>
+ */
+public class LBRPayloadIdentificationApp
+{
+
+    private static final int DEFAULT_PORTID = 30200;
+    private static final double DEFAULT_DURATION = 60.0;
+    private static final double[] AMPLITUDE = { 0.6, 0.5, 0.6, 0.5, 0.8, 0.8, 1.0 };
+    private static final double BASE_FREQUENCY = 0.1;
+    private static final int HARMONICS = 5;
+    private static final double VELOCITY_SCALE = 0.3;
+    private static final long SEED = 4711;
+    private static final double CUTOFF_FREQUENCY = 5.0;
+
+    private static final double[] SIMULATION_START = {
+        0, Math.toRadians(30), 0, Math.toRadians(-60), 0, Math.toRadians(60), 0 };
+    private static final double MODEL_ERROR = 0.05;
+    private static final double POSITION_NOISE = 2e-6;
+    private static final double TORQUE_NOISE = 0.1;
+
+    /**
+     * @param argv
+     *            the arguments
+     */
+    public static void main(String[] argv)
+    {
+        if (argv.length == 0 || argv[0].equals("help"))
+        {
+            Logger.getAnonymousLogger().info("\nKUKA LBR payload identification\n\n\tCommand line arguments:");
+            Logger.getAnonymousLogger().info("\trecord <file> [hostname] [port] [seconds]");
+            Logger.getAnonymousLogger().info("\tidentify <file> [reference file]");
+            Logger.getAnonymousLogger().info("\tsimulate [mass kg] [x mm] [y mm] [z mm]");
+            return;
+        }
+
+        ForkJoinPool pool = new ForkJoinPool();
+        try
+        {
+            if (argv[0].equals("record"))
+            {
+                String hostname = (argv.length >= 3) ? argv[2] : null;
+                int port = (argv.length >= 4) ? Integer.valueOf(argv[3]) : DEFAULT_PORTID;
+                double duration = (argv.length >= 5) ? Double.valueOf(argv[4]) : DEFAULT_DURATION;
+                record(new File(argv[1]), hostname, port, duration);
+            }
+            else if (argv[0].equals("identify"))
+            {
+                SessionRecording recording = SessionRecording.read(new File(argv[1]));
+                SessionRecording reference = (argv.length >= 3) ? SessionRecording.read(new File(argv[2])) : null;
+                PayloadEstimate estimate = new PayloadIdentification(new LBRiiwa7Model(), CUTOFF_FREQUENCY, 1)
+                        .identify(recording, reference, pool);
+                if (estimate.isPlausible())
+                {
+                    Logger.getAnonymousLogger().info(estimate + "\n" + loadData(estimate));
+                }
+                else
+                {
+                    Logger.getAnonymousLogger().severe("Estimate rejected, do not use it as LoadData:\n" + estimate);
+                }
+            }
+            else if (argv[0].equals("simulate"))
+            {
+                double mass = (argv.length >= 2) ? Double.valueOf(argv[1]) : 2.0;
+                double x = (argv.length >= 3) ? Double.valueOf(argv[2]) : 10.0;
+                double y = (argv.length >= 4) ? Double.valueOf(argv[3]) : -20.0;
+                double z = (argv.length >= 5) ? Double.valueOf(argv[4]) : 80.0;
+                simulate(mass, x * 0.001, y * 0.001, z * 0.001, pool);
+            }
+            else
+            {
+                Logger.getAnonymousLogger().severe("Unknown mode " + argv[0]);
+            }
+        }
+        catch (IOException e)
+        {
+            Logger.getAnonymousLogger().severe("Recording could not be accessed: " + e.getMessage());
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+
+    private static void record(File file, String hostname, int port, double duration) throws IOException
+    {
+        Logger.getAnonymousLogger().info("Enter LBRPayloadIdentification Client Application");
+
+        SessionRecording recording = new SessionRecording(0.001, capacity(duration, 0.001));
+        LBRExcitationClient client = new LBRExcitationClient(AMPLITUDE, BASE_FREQUENCY, HARMONICS,
+                VELOCITY_SCALE, duration, SEED, recording);
+
+        UdpConnection connection = new UdpConnection();
+        ClientApplication app = new ClientApplication(connection, client);
+        app.connect(port, hostname);
+
+        boolean success = true;
+        while (success && !client.isFinished())
+        {
+            success = app.step();
+        }
+
+        app.disconnect();
+
+        if (client.isFinished())
+        {
+            recording.write(file);
+            Logger.getAnonymousLogger().info(recording.getCount() + " samples written to " + file);
+        }
+        else
+        {
+            Logger.getAnonymousLogger().warning("Session ended before the excitation was completed");
+        }
+        Logger.getAnonymousLogger().info("Exit LBRPayloadIdentification Client Application");
+    }
+
+    private static void simulate(double mass, double x, double y, double z, ForkJoinPool pool)
+    {
+        // plant with deviating link parameters, the identification only knows the nominal model
+        Random random = new Random(SEED);
+        LBRiiwa7Model plant = new LBRiiwa7Model();
+        double[] com = new double[3];
+        double[] inertia = new double[6];
+        for (int i = 0; i < LBRiiwa7Model.NUMBER_OF_JOINTS; i++)
+        {
+            double scale = 1.0 + MODEL_ERROR * (2.0 * random.nextDouble() - 1.0);
+            double linkMass = plant.getLinkParameters(i, com, inertia);
+            for (int k = 0; k < 6; k++)
+            {
+                inertia[k] *= scale;
+            }
+            plant.setLinkParameters(i, linkMass * scale, com, inertia);
+        }
+
+        SessionRecording reference = simulateExcitation(new LBRiiwa7Model(plant));
+        plant.setPayload(mass, x, y, z);
+        SessionRecording recording = simulateExcitation(plant);
+
+        PayloadIdentification identification = new PayloadIdentification(new LBRiiwa7Model(), CUTOFF_FREQUENCY, 1);
+        // the first run also warms up the JIT compiler for the timings
+        PayloadEstimate referenceBased = identification.identify(recording, reference, pool);
+        long start = System.nanoTime();
+        PayloadEstimate modelBased = identification.identify(recording, null, pool);
+        long parallelNanos = System.nanoTime() - start;
+        ForkJoinPool single = new ForkJoinPool(1);
+        start = System.nanoTime();
+        identification.identify(recording, null, single);
+        long sequentialNanos = System.nanoTime() - start;
+        single.shutdown();
+
+        StringBuilder report = new StringBuilder("Simulated payload identification:\n");
+        report.append(String.format("\ttrue payload: mass %.3f kg, centre of mass (%.1f, %.1f, %.1f) mm%n", mass,
+                x * 1000, y * 1000, z * 1000));
+        report.append("\tmodel based ").append(modelBased).append('\n');
+        report.append("\treference based ").append(referenceBased).append('\n');
+        report.append(String.format("\tidentification of %d samples: %.1f ms on %d threads, %.1f ms on 1 thread",
+                recording.getCount(), parallelNanos / 1e6, pool.getParallelism(), sequentialNanos / 1e6));
+        Logger.getAnonymousLogger().info(report.toString());
+    }
+
+    private static SessionRecording simulateExcitation(LBRiiwa7Model plant)
+    {
+        LBRSimulator sim = new LBRSimulator(plant, 1, SEED);
+        sim.setSensorNoise(POSITION_NOISE, TORQUE_NOISE);
+        sim.reset(SIMULATION_START);
+        SessionRecording recording = new SessionRecording(sim.getSampleTime(),
+                capacity(DEFAULT_DURATION, sim.getSampleTime()));
+        LBRExcitationClient client = new LBRExcitationClient(AMPLITUDE, BASE_FREQUENCY, HARMONICS,
+                VELOCITY_SCALE, DEFAULT_DURATION, SEED, recording);
+        sim.setSessionState(FRISessionState.MONITORING_READY);
+        sim.step(client);
+        sim.setSessionState(FRISessionState.COMMANDING_ACTIVE);
+        while (!client.isFinished())
+        {
+            sim.step(client);
+        }
+        return recording;
+    }
+
+    private static int capacity(double duration, double sampleTime)
+    {
+        return (int) Math.ceil(Math.max(duration, 2 * ExcitationTrajectory.RAMP_SECONDS) / sampleTime) + 1;
+    }
+
+    private static String loadData(PayloadEstimate estimate)
+    {
+        double[] com = estimate.getCenterOfMassInMillimeter();
+        return String.format("LoadData: setMass(%.3f), setCenterOfMass(%.1f, %.1f, %.1f)", estimate.getMass(),
+                com[0], com[1], com[2]);
+    }
+}
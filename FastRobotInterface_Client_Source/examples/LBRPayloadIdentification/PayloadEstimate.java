@@ -0,0 +1,194 @@
+package connectivity.fri.sdk.example.LBRPayloadIdentification;
+
+import connectivity.fri.sdk.example.LBRModel.LinearAlgebra;
+
+/**
+ * Identified inertial parameters of a payload.
+ * <p>
+ * The centre of mass is given in the flange frame, the inertia about the
+ * centre of mass in flange orientation, in the units used by
+ * {@code com.kuka.roboticsAPI.geometricModel.LoadData}.
+ * <p>
+ * A least squares fit always returns numbers, also when the recording or the
+ * model cannot explain the payload. {@link #isPlausible} tells whether the
+ * estimate describes a physical body and was determined well enough to be
+ * handed to the controller.
+ */
+public class PayloadEstimate
+{
+    /** Largest accepted RMS of the joint torque residual (Nm). */
+    public static final double MAX_RESIDUAL_RMS = 0.5;
+
+    /** Largest accepted condition number of the scaled normal equations. */
+    public static final double MAX_CONDITION_NUMBER = 1e6;
+
+    /**
+     * Tolerance of the inertia checks (kg m^2), so that the inertia of a
+     * compact payload may scatter around zero.
+     */
+    public static final double INERTIA_TOLERANCE = 5e-3;
+
+    private final double[] _parameters;
+    private final double _residualRms;
+    private final double _conditionNumber;
+    private final int _samples;
+
+    PayloadEstimate(double[] parameters, double residualRms, double conditionNumber, int samples)
+    {
+        _parameters = parameters.clone();
+        _residualRms = residualRms;
+        _conditionNumber = conditionNumber;
+        _samples = samples;
+    }
+
+    /**
+     * @return payload mass (kg)
+     */
+    public double getMass()
+    {
+        return _parameters[0];
+    }
+
+    /**
+     * @return centre of mass in the flange frame (mm), zero if the mass is not
+     *         positive
+     */
+    public double[] getCenterOfMassInMillimeter()
+    {
+        double[] com = new double[3];
+        if (getMass() > 0.0)
+        {
+            for (int k = 0; k < 3; k++)
+            {
+                com[k] = 1000.0 * _parameters[1 + k] / getMass();
+            }
+        }
+        return com;
+    }
+
+    /**
+     * @return inertia about the centre of mass (kg m^2), ordered xx, yy, zz,
+     *         xy, xz, yz
+     */
+    public double[] getInertia()
+    {
+        double[] inertia = new double[6];
+        System.arraycopy(_parameters, 4, inertia, 0, 6);
+        double m = getMass();
+        if (m > 0.0)
+        {
+            // parallel axis theorem from the flange origin to the centre of mass
+            double x = _parameters[1] / m;
+            double y = _parameters[2] / m;
+            double z = _parameters[3] / m;
+            inertia[0] -= m * (y * y + z * z);
+            inertia[1] -= m * (x * x + z * z);
+            inertia[2] -= m * (x * x + y * y);
+            inertia[3] += m * x * y;
+            inertia[4] += m * x * z;
+            inertia[5] += m * y * z;
+        }
+        return inertia;
+    }
+
+    /**
+     * @return identified parameters
+     *         <code>(m, m cx, m cy, m cz, Ixx, Iyy, Izz, Ixy, Ixz, Iyz)</code>
+     *         about the flange origin, see
+     *         {@link connectivity.fri.sdk.example.LBRModel.LBRiiwa7Model#payloadRegressor}
+     */
+    public double[] getParameters()
+    {
+        return _parameters.clone();
+    }
+
+    /**
+     * @return RMS of the joint torque residual after the fit (Nm)
+     */
+    public double getResidualRms()
+    {
+        return _residualRms;
+    }
+
+    /**
+     * @return condition number of the normal equations scaled to a unit
+     *         diagonal; large values mean the excitation did not separate the
+     *         parameters
+     */
+    public double getConditionNumber()
+    {
+        return _conditionNumber;
+    }
+
+    /**
+     * @return true if {@link #getImplausibility} finds nothing
+     */
+    public boolean isPlausible()
+    {
+        return getImplausibility() == null;
+    }
+
+    /**
+     * Checks that the mass is positive, that the inertia about the centre of
+     * mass is positive definite and satisfies the triangle inequality, and
+     * that residual and condition number stay below
+     * {@link #MAX_RESIDUAL_RMS} and {@link #MAX_CONDITION_NUMBER}.
+     *
+     * @return the first violated condition, or null if the estimate is
+     *         plausible
+     */
+    public String getImplausibility()
+    {
+        if (!(getMass() > 0.0))
+        {
+            return String.format("mass %.3f kg is not positive", getMass());
+        }
+        double[] inertia = getInertia();
+        double[][] matrix = {
+            { inertia[0] + INERTIA_TOLERANCE, inertia[3], inertia[4] },
+            { inertia[3], inertia[1] + INERTIA_TOLERANCE, inertia[5] },
+            { inertia[4], inertia[5], inertia[2] + INERTIA_TOLERANCE } };
+        if (!LinearAlgebra.choleskyDecompose(matrix, 3))
+        {
+            return "inertia is not positive definite";
+        }
+        // the sum of two moments about perpendicular axes is at least the third
+        for (int k = 0; k < 3; k++)
+        {
+            if (inertia[(k + 1) % 3] + inertia[(k + 2) % 3] < inertia[k] - INERTIA_TOLERANCE)
+            {
+                return "inertia violates the triangle inequality";
+            }
+        }
+        if (!(_residualRms <= MAX_RESIDUAL_RMS))
+        {
+            return String.format("residual %.3f Nm RMS exceeds %.3f Nm", _residualRms, MAX_RESIDUAL_RMS);
+        }
+        if (!(_conditionNumber <= MAX_CONDITION_NUMBER))
+        {
+            return String.format("condition number %.3g exceeds %.3g", _conditionNumber, MAX_CONDITION_NUMBER);
+        }
+        return null;
+    }
+
+    /**
+     * @return number of samples used
+     */
+    public int getSamples()
+    {
+        return _samples;
+    }
+
+    @Override
+    public String toString()
+    {
+        double[] com = getCenterOfMassInMillimeter();
+        double[] inertia = getInertia();
+        String implausibility = getImplausibility();
+        return String.format("payload: mass %.3f kg, centre of mass (%.1f, %.1f, %.1f) mm, "
+                + "inertia (%.4f, %.4f, %.4f) kg m^2, residual %.3f Nm RMS over %d samples, "
+                + "condition number %.3g, %s",
+                getMass(), com[0], com[1], com[2], inertia[0], inertia[1], inertia[2], _residualRms, _samples,
+                _conditionNumber, implausibility == null ? "plausible" : "implausible: " + implausibility);
+    }
+}
@@ -0,0 +1,340 @@
+package connectivity.fri.sdk.example.LBRPayloadIdentification;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import connectivity.fri.sdk.example.LBRModel.LBRiiwa7Model;
+import connectivity.fri.sdk.example.LBRModel.LinearAlgebra;
+import connectivity.fri.sdk.example.LBRPayloadIdentification.SessionRecording.Signal;
+
+/**
+ * Least squares identification of the payload parameters from a
+ * {@link SessionRecording}.
+ * <p>
+ * The measured positions are low-pass filtered without phase lag and
+ * differentiated twice; the measured torques get the same filter. For every
+ * sample the torque the model of the bare robot explains is subtracted from
+ * the measured one, and the remainder is regressed on
+ * {@link LBRiiwa7Model#payloadRegressor}. The joint torque sensors sit behind
+ * the gears, so the measured torques contain no drive friction.
+ * <p>
+ * Instead of the model, a recording of the same excitation without payload
+ * can be given as reference; its torques are then subtracted sample by
+ * sample, which removes the errors of the robot model from the fit.
+ * <p>
+ * The normal equations are assembled in parallel: the samples are split
+ * recursively on a {@link ForkJoinPool}, every leaf sums the products of its
+ * range with its own copy of the model, and the partial sums are added while
+ * the tasks join.
+ * <p>
+ * The estimate is returned even if it is not physically possible, e.g. with
+ * a negative mass or an inertia that is not positive definite; check
+ * {@link PayloadEstimate#isPlausible} before the values are handed to the
+ * controller.
+ */
+public class PayloadIdentification
+{
+    /** Number of payload parameters. */
+    public static final int PARAMETERS = 10;
+
+    private static final int N = LBRiiwa7Model.NUMBER_OF_JOINTS;
+    private static final int LEAF_SAMPLES = 1024;
+    // relative Tikhonov regularization of parameters the excitation does not reach
+    private static final double REGULARIZATION = 1e-9;
+    private static final int EIGEN_ITERATIONS = 200;
+
+    private final LBRiiwa7Model _model;
+    private final double _cutoffFrequency;
+    private final int _stride;
+
+    /**
+     * Constructor.
+     *
+     * @param model
+     *            model of the robot without payload
+     * @param cutoffFrequency
+     *            cut-off frequency of the low-pass filter (Hz)
+     * @param stride
+     *            use every stride-th sample
+     */
+    public PayloadIdentification(LBRiiwa7Model model, double cutoffFrequency, int stride)
+    {
+        _model = new LBRiiwa7Model(model);
+        _cutoffFrequency = cutoffFrequency;
+        _stride = Math.max(1, stride);
+    }
+
+    /**
+     * Identifies the payload.
+     *
+     * @param recording
+     *            recording of an excitation with payload
+     * @param reference
+     *            recording of the same excitation without payload, or null to
+     *            use the model
+     * @param pool
+     *            pool that assembles the normal equations
+     * @return the estimate
+     * @throws IllegalArgumentException
+     *             if the recordings do not match or do not excite the payload
+     */
+    public PayloadEstimate identify(SessionRecording recording, SessionRecording reference, ForkJoinPool pool)
+    {
+        double dt = recording.getSampleTime();
+        int count = recording.getCount();
+        if (reference != null)
+        {
+            if (reference.getSampleTime() != dt)
+            {
+                throw new IllegalArgumentException("The sample times of the recordings differ");
+            }
+            count = Math.min(count, reference.getCount());
+        }
+        if (count < 5)
+        {
+            throw new IllegalArgumentException("Too few samples: " + count);
+        }
+
+        double[][] q = RecordingFilter.copy(recording, count, Signal.MEASURED_POSITION);
+        double[][] tau = RecordingFilter.copy(recording, count, Signal.MEASURED_TORQUE);
+        RecordingFilter.filter(q, _cutoffFrequency, dt);
+        RecordingFilter.filter(tau, _cutoffFrequency, dt);
+        double[][] qd = RecordingFilter.differentiate(q, dt);
+        double[][] qdd = RecordingFilter.differentiate(qd, dt);
+        if (reference != null)
+        {
+            double[][] tauReference = RecordingFilter.copy(reference, count, Signal.MEASURED_TORQUE);
+            RecordingFilter.filter(tauReference, _cutoffFrequency, dt);
+            for (int k = 0; k < count; k++)
+            {
+                for (int i = 0; i < N; i++)
+                {
+                    tau[k][i] -= tauReference[k][i];
+                }
+            }
+        }
+
+        // the edges of the derivatives are not valid
+        NormalEquations sums = pool.invoke(new AssemblyTask(q, qd, qdd, tau, reference == null, 2, count - 2));
+        return solve(sums);
+    }
+
+    private PayloadEstimate solve(NormalEquations sums)
+    {
+        double trace = 0.0;
+        for (int k = 0; k < PARAMETERS; k++)
+        {
+            trace += sums._a[k][k];
+        }
+        if (trace <= 0.0)
+        {
+            throw new IllegalArgumentException("The recording does not excite the payload");
+        }
+        double[][] l = new double[PARAMETERS][PARAMETERS];
+        LinearAlgebra.copy(sums._a, l, PARAMETERS);
+        for (int k = 0; k < PARAMETERS; k++)
+        {
+            l[k][k] += REGULARIZATION * trace;
+        }
+        double condition = conditionNumber(l);
+        if (!LinearAlgebra.choleskyDecompose(l, PARAMETERS))
+        {
+            throw new IllegalArgumentException("The normal equations are singular");
+        }
+        double[] p = new double[PARAMETERS];
+        LinearAlgebra.choleskySolve(l, sums._b, p, PARAMETERS);
+
+        // |y - Y p|^2 = y'y - 2 p'b + p'A p
+        double squares = sums._yy;
+        for (int i = 0; i < PARAMETERS; i++)
+        {
+            double ap = 0.0;
+            for (int k = 0; k < PARAMETERS; k++)
+            {
+                ap += sums._a[i][k] * p[k];
+            }
+            squares += p[i] * ap - 2 * p[i] * sums._b[i];
+        }
+        double rms = Math.sqrt(Math.max(0.0, squares) / (N * Math.max(1, sums._samples)));
+        return new PayloadEstimate(p, rms, condition, sums._samples);
+    }
+
+    /**
+     * Condition number of the normal equations after scaling them to a unit
+     * diagonal, so that the different units of the parameters do not count.
+     * The largest eigenvalue is found by power iteration, the smallest by
+     * inverse iteration on the Cholesky factor.
+     */
+    private static double conditionNumber(double[][] a)
+    {
+        double[][] s = new double[PARAMETERS][PARAMETERS];
+        for (int i = 0; i < PARAMETERS; i++)
+        {
+            for (int k = 0; k < PARAMETERS; k++)
+            {
+                s[i][k] = a[i][k] / Math.sqrt(a[i][i] * a[k][k]);
+            }
+        }
+        double[] v = new double[PARAMETERS];
+        double[] w = new double[PARAMETERS];
+        Arrays.fill(v, 1.0);
+        double largest = 0.0;
+        for (int iteration = 0; iteration < EIGEN_ITERATIONS; iteration++)
+        {
+            for (int i = 0; i < PARAMETERS; i++)
+            {
+                w[i] = 0.0;
+                for (int k = 0; k < PARAMETERS; k++)
+                {
+                    w[i] += s[i][k] * v[k];
+                }
+            }
+            largest = normalize(w, v);
+        }
+        if (!LinearAlgebra.choleskyDecompose(s, PARAMETERS))
+        {
+            return Double.POSITIVE_INFINITY;
+        }
+        Arrays.fill(v, 1.0);
+        double inverseSmallest = 0.0;
+        for (int iteration = 0; iteration < EIGEN_ITERATIONS; iteration++)
+        {
+            LinearAlgebra.choleskySolve(s, v, w, PARAMETERS);
+            inverseSmallest = normalize(w, v);
+        }
+        return largest * inverseSmallest;
+    }
+
+    // v = w / |w|, returns |w|
+    private static double normalize(double[] w, double[] v)
+    {
+        double norm = 0.0;
+        for (int i = 0; i < PARAMETERS; i++)
+        {
+            norm += w[i] * w[i];
+        }
+        norm = Math.sqrt(norm);
+        for (int i = 0; i < PARAMETERS; i++)
+        {
+            v[i] = w[i] / norm;
+        }
+        return norm;
+    }
+
+    /**
+     * Partial sums of the normal equations A p = b.
+     */
+    private static final class NormalEquations
+    {
+        private final double[][] _a = new double[PARAMETERS][PARAMETERS];
+        private final double[] _b = new double[PARAMETERS];
+        private double _yy;
+        private int _samples;
+
+        private void add(NormalEquations other)
+        {
+            for (int i = 0; i < PARAMETERS; i++)
+            {
+                for (int k = 0; k < PARAMETERS; k++)
+                {
+                    _a[i][k] += other._a[i][k];
+                }
+                _b[i] += other._b[i];
+            }
+            _yy += other._yy;
+            _samples += other._samples;
+        }
+    }
+
+    /**
+     * Assembles the normal equations of a range of samples.
+     */
+    private final class AssemblyTask extends RecursiveTask<NormalEquations>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final double[][] _q;
+        private final double[][] _qd;
+        private final double[][] _qdd;
+        private final double[][] _tau;
+        private final boolean _subtractModel;
+        private final int _from;
+        private final int _to;
+
+        private AssemblyTask(double[][] q, double[][] qd, double[][] qdd, double[][] tau, boolean subtractModel,
+                int from, int to)
+        {
+            _q = q;
+            _qd = qd;
+            _qdd = qdd;
+            _tau = tau;
+            _subtractModel = subtractModel;
+            _from = from;
+            _to = to;
+        }
+
+        @Override
+        protected NormalEquations compute()
+        {
+            if ((_to - _from) / _stride > LEAF_SAMPLES)
+            {
+                int middle = _from + (_to - _from) / 2;
+                AssemblyTask left = new AssemblyTask(_q, _qd, _qdd, _tau, _subtractModel, _from, middle);
+                AssemblyTask right = new AssemblyTask(_q, _qd, _qdd, _tau, _subtractModel, middle, _to);
+                left.fork();
+                NormalEquations sums = right.compute();
+                sums.add(left.join());
+                return sums;
+            }
+
+            // the model is not thread-safe
+            LBRiiwa7Model model = new LBRiiwa7Model(_model);
+            NormalEquations sums = new NormalEquations();
+            double[][] regressor = new double[N][PARAMETERS];
+            double[] y = new double[N];
+            // keep the sample grid of the stride independent of the split
+            int first = _from + (_stride - _from % _stride) % _stride;
+            for (int k = first; k < _to; k += _stride)
+            {
+                model.payloadRegressor(_q[k], _qd[k], _qdd[k], regressor);
+                if (_subtractModel)
+                {
+                    model.inverseDynamics(_q[k], _qd[k], _qdd[k], true, y);
+                    for (int i = 0; i < N; i++)
+                    {
+                        y[i] = _tau[k][i] - y[i];
+                    }
+                }
+                else
+                {
+                    System.arraycopy(_tau[k], 0, y, 0, N);
+                }
+                for (int i = 0; i < N; i++)
+                {
+                    double[] row = regressor[i];
+                    for (int a = 0; a < PARAMETERS; a++)
+                    {
+                        double ra = row[a];
+                        for (int b = a; b < PARAMETERS; b++)
+                        {
+                            sums._a[a][b] += ra * row[b];
+                        }
+                        sums._b[a] += ra * y[i];
+                    }
+                    sums._yy += y[i] * y[i];
+                }
+                sums._samples++;
+            }
+            // mirror the upper triangle
+            for (int a = 0; a < PARAMETERS; a++)
+            {
+                for (int b = 0; b < a; b++)
+                {
+                    sums._a[a][b] = sums._a[b][a];
+                }
+            }
+            return sums;
+        }
+    }
+}
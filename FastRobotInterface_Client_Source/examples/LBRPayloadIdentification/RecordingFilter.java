@@ -0,0 +1,97 @@
+package connectivity.fri.sdk.example.LBRPayloadIdentification;
+
+import connectivity.fri.sdk.example.LBRModel.LBRiiwa7Model;
+import connectivity.fri.sdk.example.LBRPayloadIdentification.SessionRecording.Signal;
+
+/**
+ * Offline signal processing of recorded joint values.
+ */
+public final class RecordingFilter
+{
+    private static final int N = LBRiiwa7Model.NUMBER_OF_JOINTS;
+
+    private RecordingFilter()
+    {
+    }
+
+    /**
+     * Low-pass filters joint values without phase lag: a first order filter
+     * is run forwards and backwards, twice.
+     *
+     * @param data
+     *            joint values per sample, filtered in place
+     * @param cutoffFrequency
+     *            cut-off frequency of the first order filter (Hz)
+     * @param sampleTime
+     *            sample time (s)
+     */
+    public static void filter(double[][] data, double cutoffFrequency, double sampleTime)
+    {
+        double alpha = 1.0 - Math.exp(-2 * Math.PI * cutoffFrequency * sampleTime);
+        for (int pass = 0; pass < 2; pass++)
+        {
+            for (int i = 0; i < N; i++)
+            {
+                double y = data[0][i];
+                for (int k = 0; k < data.length; k++)
+                {
+                    y += alpha * (data[k][i] - y);
+                    data[k][i] = y;
+                }
+                y = data[data.length - 1][i];
+                for (int k = data.length - 1; k >= 0; k--)
+                {
+                    y += alpha * (data[k][i] - y);
+                    data[k][i] = y;
+                }
+            }
+        }
+    }
+
+    /**
+     * Differentiates joint values by central differences, one-sided at the
+     * edges.
+     *
+     * @param data
+     *            joint values per sample, at least two samples
+     * @param sampleTime
+     *            sample time (s)
+     * @return the derivative per sample
+     */
+    public static double[][] differentiate(double[][] data, double sampleTime)
+    {
+        int count = data.length;
+        double[][] derivative = new double[count][N];
+        for (int i = 0; i < N; i++)
+        {
+            derivative[0][i] = (data[1][i] - data[0][i]) / sampleTime;
+            derivative[count - 1][i] = (data[count - 1][i] - data[count - 2][i]) / sampleTime;
+            for (int k = 1; k < count - 1; k++)
+            {
+                derivative[k][i] = (data[k + 1][i] - data[k - 1][i]) / (2 * sampleTime);
+            }
+        }
+        return derivative;
+    }
+
+    /**
+     * Copies the first samples of a recorded signal.
+     *
+     * @param recording
+     *            the recording
+     * @param count
+     *            number of samples
+     * @param signal
+     *            the signal
+     * @return joint values per sample
+     */
+    public static double[][] copy(SessionRecording recording, int count, Signal signal)
+    {
+        double[][] data = new double[count][];
+        for (int k = 0; k < count; k++)
+        {
+            data[k] = recording.get(signal, k).clone();
+        }
+        return data;
+    }
+}
@@ -0,0 +1,274 @@
+package connectivity.fri.sdk.example.LBRPayloadIdentification;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import connectivity.fri.sdk.example.LBRModel.LBRiiwa7Model;
+
+/**
+ * Measured and commanded joint positions and torques of an FRI session,
+ * sampled once per FRI cycle. The commanded values are those the robot
+ * controller reports, i.e. the setpoints of its joint controller.
+ * <p>
+ * The buffers are allocated up front, so {@link #add} can be called inside
+ * the FRI cycle. Recordings are stored in a simple binary file format.
+ */
+public class SessionRecording
+{
+    /**
+     * Recorded signal.
+     */
+    public enum Signal
+    {
+        /** measured joint positions (rad) */
+        MEASURED_POSITION,
+        /** measured joint torques (Nm) */
+        MEASURED_TORQUE,
+        /** commanded joint positions (rad) */
+        COMMANDED_POSITION,
+        /** commanded joint torques (Nm) */
+        COMMANDED_TORQUE
+    }
+
+    private static final int MAGIC = 0x4C425252; // 'LBRR'
+    private static final int N = LBRiiwa7Model.NUMBER_OF_JOINTS;
+
+    private final double _sampleTime;
+    private final double[][] _position;
+    private final double[][] _torque;
+    private final double[][] _commandedPosition;
+    private final double[][] _commandedTorque;
+    private int _count;
+
+    /**
+     * Constructor.
+     *
+     * @param sampleTime
+     *            FRI sample time (s)
+     * @param capacity
+     *            maximum number of samples
+     */
+    public SessionRecording(double sampleTime, int capacity)
+    {
+        _sampleTime = sampleTime;
+        _position = new double[capacity][N];
+        _torque = new double[capacity][N];
+        _commandedPosition = new double[capacity][N];
+        _commandedTorque = new double[capacity][N];
+    }
+
+    /**
+     * Appends a sample.
+     *
+     * @param position
+     *            measured joint positions (rad)
+     * @param torque
+     *            measured joint torques (Nm)
+     * @param commandedPosition
+     *            commanded joint positions (rad)
+     * @param commandedTorque
+     *            commanded joint torques (Nm)
+     * @return false if the recording is full
+     */
+    public boolean add(double[] position, double[] torque, double[] commandedPosition, double[] commandedTorque)
+    {
+        if (_count == _position.length)
+        {
+            return false;
+        }
+        System.arraycopy(position, 0, _position[_count], 0, N);
+        System.arraycopy(torque, 0, _torque[_count], 0, N);
+        System.arraycopy(commandedPosition, 0, _commandedPosition[_count], 0, N);
+        System.arraycopy(commandedTorque, 0, _commandedTorque[_count], 0, N);
+        _count++;
+        return true;
+    }
+
+    /**
+     * Removes all samples.
+     */
+    public void clear()
+    {
+        _count = 0;
+    }
+
+    /**
+     * @return sample time (s)
+     */
+    public double getSampleTime()
+    {
+        return _sampleTime;
+    }
+
+    /**
+     * @return number of samples
+     */
+    public int getCount()
+    {
+        return _count;
+    }
+
+    /**
+     * @param sample
+     *            sample index
+     * @return measured joint positions of the sample (rad), not a copy
+     */
+    public double[] getPosition(int sample)
+    {
+        return _position[sample];
+    }
+
+    /**
+     * @param sample
+     *            sample index
+     * @return measured joint torques of the sample (Nm), not a copy
+     */
+    public double[] getTorque(int sample)
+    {
+        return _torque[sample];
+    }
+
+    /**
+     * @param sample
+     *            sample index
+     * @return commanded joint positions of the sample (rad), not a copy
+     */
+    public double[] getCommandedPosition(int sample)
+    {
+        return _commandedPosition[sample];
+    }
+
+    /**
+     * @param sample
+     *            sample index
+     * @return commanded joint torques of the sample (Nm), not a copy
+     */
+    public double[] getCommandedTorque(int sample)
+    {
+        return _commandedTorque[sample];
+    }
+
+    /**
+     * @param signal
+     *            the signal
+     * @param sample
+     *            sample index
+     * @return joint values of the signal in the sample, not a copy
+     */
+    public double[] get(Signal signal, int sample)
+    {
+        switch (signal)
+        {
+            case MEASURED_POSITION:
+            {
+                return _position[sample];
+            }
+            case MEASURED_TORQUE:
+            {
+                return _torque[sample];
+            }
+            case COMMANDED_POSITION:
+            {
+                return _commandedPosition[sample];
+            }
+            default:
+            {
+                return _commandedTorque[sample];
+            }
+        }
+    }
+
+    /**
+     * Writes the recording to a file.
+     *
+     * @param file
+     *            the file
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    public void write(File file) throws IOException
+    {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(N);
+            out.writeDouble(_sampleTime);
+            out.writeInt(_count);
+            for (int k = 0; k < _count; k++)
+            {
+                writeValues(out, _position[k]);
+                writeValues(out, _torque[k]);
+                writeValues(out, _commandedPosition[k]);
+                writeValues(out, _commandedTorque[k]);
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    /**
+     * Reads a recording written by {@link #write}.
+     *
+     * @param file
+     *            the file
+     * @return the recording
+     * @throws IOException
+     *             if the file cannot be read or is no recording
+     */
+    public static SessionRecording read(File file) throws IOException
+    {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try
+        {
+            if (in.readInt() != MAGIC || in.readInt() != N)
+            {
+                throw new IOException(file + " is no LBR session recording");
+            }
+            double sampleTime = in.readDouble();
+            int count = in.readInt();
+            SessionRecording recording = new SessionRecording(sampleTime, count);
+            double[] position = new double[N];
+            double[] torque = new double[N];
+            double[] commandedPosition = new double[N];
+            double[] commandedTorque = new double[N];
+            for (int k = 0; k < count; k++)
+            {
+                readValues(in, position);
+                readValues(in, torque);
+                readValues(in, commandedPosition);
+                readValues(in, commandedTorque);
+                recording.add(position, torque, commandedPosition, commandedTorque);
+            }
+            return recording;
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    private static void writeValues(DataOutputStream out, double[] values) throws IOException
+    {
+        for (int i = 0; i < N; i++)
+        {
+            out.writeDouble(values[i]);
+        }
+    }
+
+    private static void readValues(DataInputStream in, double[] values) throws IOException
+    {
+        for (int i = 0; i < N; i++)
+        {
+            values[i] = in.readDouble();
+        }
+    }
+}
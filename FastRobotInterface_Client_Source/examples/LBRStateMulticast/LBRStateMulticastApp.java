@@ -0,0 +1,138 @@
+package connectivity.fri.sdk.example.LBRStateMulticast;
+
+import java.io.IOException;
+import java.util.logging.Logger;
+
+import connectivity.fri.sdk.example.LBRClientRuntime.FRIClientApplication;
+import connectivity.fri.sdk.example.LBRClientRuntime.FRIUdpConnection;
+import connectivity.fri.sdk.example.LBRClientRuntime.MulticastStatePublisher;
+import connectivity.fri.sdk.example.LBRJointSineOverlay.LBRJointSineOverlayClient;
+
+/**
+ * Implementation of a FRI client application that shares the robot state with
+ * other machines of the cell.
+ * <p>
+ * The application runs the joint sine overlay client and re-broadcasts the
+ * state of every n-th cycle with a {@link MulticastStatePublisher}. Observers
+ * such as {@link LBRStateObserverApp} join the multicast group and never talk
+ * to the robot controller themselves.
+ *
+ * @see FRIClientApplication#connect
+ * @see FRIClientApplication#step()
+ * @see FRIClientApplication#disconnect
+ */
+public class LBRStateMulticastApp
+{
+
+    static final String DEFAULT_GROUP = "239.255.42.99";
+    static final int DEFAULT_GROUP_PORT = 30300;
+
+    private static final int DEFAULT_PORTID = 30200;
+    private static final int DEFAULT_DECIMATION = 1;
+    private static final int TIME_TO_LIVE = 1;
+    private static final int CAPACITY = 64;
+    private static final int JOINT_MASK = 0x8;
+    private static final double FREQUENCY = 0.25;
+    private static final double AMPLITUDE = 0.04;
+    private static final double FILTER_COEFFICIENT = 0.99;
+
+    /**
+     * @param argv
+     *            the arguments
+     */
+    public static void main(String[] argv)
+    {
+        if (argv.length > 0)
+        {
+            if (argv[0].equals("help"))
+            {
+                Logger.getAnonymousLogger().info("\nKUKA LBR state multicast test application\n\n\tCommand line arguments:");
+                Logger.getAnonymousLogger().info("\t1) remote hostname (optional)");
+                Logger.getAnonymousLogger().info("\t2) port ID (optional)");
+                Logger.getAnonymousLogger().info("\t3) multicast group (optional)");
+                Logger.getAnonymousLogger().info("\t4) multicast port (optional)");
+                Logger.getAnonymousLogger().info("\t5) decimation (optional)");
+                Logger.getAnonymousLogger().info("\t6) network interface name (optional)");
+                return;
+            }
+        }
+
+        String hostname = (argv.length >= 1) ? argv[0] : null;
+        int port = (argv.length >= 2) ? Integer.valueOf(argv[1]) : DEFAULT_PORTID;
+        String group = (argv.length >= 3) ? argv[2] : DEFAULT_GROUP;
+        int groupPort = (argv.length >= 4) ? Integer.valueOf(argv[3]) : DEFAULT_GROUP_PORT;
+        int decimation = (argv.length >= 5) ? Integer.valueOf(argv[4]) : DEFAULT_DECIMATION;
+        String interfaceName = (argv.length >= 6) ? argv[5] : null;
+
+        Logger.getAnonymousLogger().info("Enter LBRStateMulticast Client Application");
+
+        /***************************************************************************/
+        /*                                                                         */
+        /* Place user Client Code here */
+        /*                                                                         */
+        /**************************************************************************/
+
+        // create new sine overlay client
+        LBRJointSineOverlayClient client = new LBRJointSineOverlayClient(JOINT_MASK, FREQUENCY, AMPLITUDE,
+                FILTER_COEFFICIENT);
+
+        // create and start the state publisher
+        MulticastStatePublisher publisher = new MulticastStatePublisher(group, groupPort, interfaceName,
+                TIME_TO_LIVE, decimation, CAPACITY);
+        try
+        {
+            publisher.start();
+        }
+        catch (IOException e)
+        {
+            Logger.getAnonymousLogger().severe("Cannot start state publisher: " + e.getMessage());
+            return;
+        }
+
+        /***************************************************************************/
+        /*                                                                         */
+        /* Standard application structure */
+        /* Configuration */
+        /*                                                                         */
+        /***************************************************************************/
+
+        // create new udp connection
+        FRIUdpConnection connection = new FRIUdpConnection();
+
+        // pass connection and client to a new FRI client application
+        FRIClientApplication app = new FRIClientApplication(connection, client);
+        app.addMonitoringMessageListener(publisher);
+
+        // connect client application to KUKA Sunrise controller
+        app.connect(port, hostname);
+
+        /***************************************************************************/
+        /*                                                                         */
+        /* Standard application structure */
+        /* Execution mainloop */
+        /*                                                                         */
+        /***************************************************************************/
+
+        // repeatedly call the step routine to receive and process FRI packets
+        boolean success = true;
+        while (success)
+        {
+            success = app.step();
+        }
+
+        /***************************************************************************/
+        /*                                                                         */
+        /* Standard application structure */
+        /* Dispose */
+        /*                                                                         */
+        /***************************************************************************/
+
+        // disconnect from controller
+        app.disconnect();
+        publisher.stop();
+
+        Logger.getAnonymousLogger().info("State snapshots sent: " + publisher.getSentCount() + ", dropped: "
+                + publisher.getDroppedCount());
+        Logger.getAnonymousLogger().info("Exit LBRStateMulticast Client Application");
+    }
+}
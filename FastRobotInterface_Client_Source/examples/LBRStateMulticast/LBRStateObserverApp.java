@@ -0,0 +1,110 @@
+package connectivity.fri.sdk.example.LBRStateMulticast;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.Arrays;
+import java.util.logging.Logger;
+
+import connectivity.fri.sdk.example.LBRClientRuntime.StateSnapshot;
+
+/**
+ * Observer of the robot state published by {@link LBRStateMulticastApp}.
+ * <p>
+ * Joins the multicast group and reports the snapshot rate, missing snapshots
+ * and the latest measured joint position once per second.
+ */
+public class LBRStateObserverApp
+{
+    private static final long REPORT_INTERVAL_MILLIS = 1000;
+
+    /**
+     * @param argv
+     *            the arguments
+     */
+    public static void main(String[] argv)
+    {
+        if (argv.length > 0 && argv[0].equals("help"))
+        {
+            Logger.getAnonymousLogger().info("\nKUKA LBR state observer\n\n\tCommand line arguments:");
+            Logger.getAnonymousLogger().info("\t1) multicast group (optional)");
+            Logger.getAnonymousLogger().info("\t2) multicast port (optional)");
+            Logger.getAnonymousLogger().info("\t3) network interface name (optional)");
+            return;
+        }
+
+        String group = (argv.length >= 1) ? argv[0] : LBRStateMulticastApp.DEFAULT_GROUP;
+        int port = (argv.length >= 2) ? Integer.valueOf(argv[1]) : LBRStateMulticastApp.DEFAULT_GROUP_PORT;
+        String interfaceName = (argv.length >= 3) ? argv[2] : null;
+
+        DatagramChannel channel = null;
+        try
+        {
+            NetworkInterface networkInterface = (interfaceName != null) ? NetworkInterface.getByName(interfaceName)
+                    : NetworkInterface.getByInetAddress(InetAddress.getLocalHost());
+            if (networkInterface == null)
+            {
+                networkInterface = NetworkInterface.getNetworkInterfaces().nextElement();
+            }
+            channel = DatagramChannel.open(StandardProtocolFamily.INET);
+            channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            channel.bind(new InetSocketAddress(port));
+            channel.join(InetAddress.getByName(group), networkInterface);
+
+            ByteBuffer buffer = ByteBuffer.allocate(StateSnapshot.SIZE);
+            StateSnapshot snapshot = new StateSnapshot();
+            long received = 0;
+            long missing = 0;
+            int lastCounter = 0;
+            long reportTime = System.currentTimeMillis() + REPORT_INTERVAL_MILLIS;
+            while (true)
+            {
+                buffer.clear();
+                channel.receive(buffer);
+                buffer.flip();
+                if (!snapshot.decode(buffer))
+                {
+                    continue;
+                }
+                if (received > 0 && snapshot.getCounter() - lastCounter > 1)
+                {
+                    missing += snapshot.getCounter() - lastCounter - 1;
+                }
+                lastCounter = snapshot.getCounter();
+                received++;
+
+                long now = System.currentTimeMillis();
+                if (now >= reportTime)
+                {
+                    Logger.getAnonymousLogger().info("snapshots: " + received + ", missing: " + missing
+                            + ", sequence: " + snapshot.getSequenceCounter() + ", position: "
+                            + Arrays.toString(snapshot.getMeasuredJointPosition()));
+                    reportTime = now + REPORT_INTERVAL_MILLIS;
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            Logger.getAnonymousLogger().severe("State observer failed: " + e.getMessage());
+        }
+        finally
+        {
+            try
+            {
+                if (channel != null)
+                {
+                    channel.close();
+                }
+            }
+            catch (IOException e)
+            {
+                Logger.getAnonymousLogger().warning("Failed to close socket: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package connectivity.fri.sdk.example.LBRTrajectoryArchive;
+
+import connectivity.fri.sdk.example.LBRModel.LBRiiwa7Model;
+
+/**
+ * Description of one column of a trajectory archive.
+ * <p>
+ * Values are stored as integer multiples of the resolution, so the archive is
+ * lossy by at most half the resolution. Smooth signals such as positions
+ * compress best with second order differences, noisy signals such as torques
+ * with first order differences.
+ */
+public class ArchiveChannel
+{
+    /** Resolution of joint positions (rad), below the encoder resolution. */
+    public static final double POSITION_RESOLUTION = 1e-7;
+
+    /** Resolution of joint torques (Nm), below the sensor noise. */
+    public static final double TORQUE_RESOLUTION = 1e-3;
+
+    private final String _name;
+    private final double _resolution;
+    private final int _order;
+
+    /**
+     * Constructor.
+     *
+     * @param name
+     *            name of the channel
+     * @param resolution
+     *            quantization step (unit of the channel)
+     * @param order
+     *            order of the differences stored, 1 or 2
+     */
+    public ArchiveChannel(String name, double resolution, int order)
+    {
+        if (resolution <= 0.0 || order < 1 || order > 2)
+        {
+            throw new IllegalArgumentException("Invalid channel " + name);
+        }
+        _name = name;
+        _resolution = resolution;
+        _order = order;
+    }
+
+    /**
+     * Creates the channels recorded by {@link LBRArchivingClient}: measured
+     * and commanded joint positions, measured and external joint torques.
+     *
+     * @return the channels
+     */
+    public static ArchiveChannel[] createLBRChannels()
+    {
+        int n = LBRiiwa7Model.NUMBER_OF_JOINTS;
+        ArchiveChannel[] channels = new ArchiveChannel[4 * n];
+        for (int i = 0; i < n; i++)
+        {
+            channels[i] = new ArchiveChannel("q" + (i + 1), POSITION_RESOLUTION, 2);
+            channels[n + i] = new ArchiveChannel("qCmd" + (i + 1), POSITION_RESOLUTION, 2);
+            channels[2 * n + i] = new ArchiveChannel("tau" + (i + 1), TORQUE_RESOLUTION, 1);
+            channels[3 * n + i] = new ArchiveChannel("tauExt" + (i + 1), TORQUE_RESOLUTION, 1);
+        }
+        return channels;
+    }
+
+    /**
+     * @return name of the channel
+     */
+    public String getName()
+    {
+        return _name;
+    }
+
+    /**
+     * @return quantization step
+     */
+    public double getResolution()
+    {
+        return _resolution;
+    }
+
+    /**
+     * @return order of the stored differences
+     */
+    public int getOrder()
+    {
+        return _order;
+    }
+
+    @Override
+    public String toString()
+    {
+        return _name + " (" + _resolution + ", order " + _order + ")";
+    }
+}
@@ -0,0 +1,451 @@
+package connectivity.fri.sdk.example.LBRTrajectoryArchive;
+
+import java.io.DataInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Reads archives written by {@link ArchiveWriter}.
+ * <p>
+ * Opening an archive reads only header, index and footer. Samples are
+ * located by time through the first and last timestamp of every chunk in the
+ * index; a {@link #read} fetches only the columns that are asked for and
+ * decodes every column of every chunk as a task of a fork-join pool. The
+ * file is accessed with positional reads, so a reader can serve concurrent
+ * requests.
+ */
+public class ArchiveReader
+{
+    private final RandomAccessFile _file;
+    private final FileChannel _channel;
+    private final ArchiveChannel[] _channels;
+    private final int _chunkSamples;
+    private final long _sampleCount;
+
+    // per chunk: offset, first sample, sample count, first and last time, column offsets
+    private final long[] _chunkOffset;
+    private final long[] _chunkFirstSample;
+    private final int[] _chunkCount;
+    private final long[] _chunkFirstTime;
+    private final long[] _chunkLastTime;
+    private final long[][] _columnOffset;
+    private final int[][] _columnLength;
+
+    /**
+     * Result of a {@link ArchiveReader#read}.
+     */
+    public static class Columns
+    {
+        private final long[] _time;
+        private final double[][] _values;
+        private final int[] _channels;
+
+        Columns(int count, int[] channels)
+        {
+            _time = new long[count];
+            _values = new double[channels.length][count];
+            _channels = channels.clone();
+        }
+
+        /**
+         * @return number of samples
+         */
+        public int getCount()
+        {
+            return _time.length;
+        }
+
+        /**
+         * @return time of every sample (us), not a copy
+         */
+        public long[] getTime()
+        {
+            return _time;
+        }
+
+        /**
+         * @param column
+         *            index into the requested channels
+         * @return values of the column, not a copy
+         */
+        public double[] getValues(int column)
+        {
+            return _values[column];
+        }
+
+        /**
+         * @param column
+         *            index into the requested channels
+         * @return archive channel index of the column
+         */
+        public int getChannel(int column)
+        {
+            return _channels[column];
+        }
+    }
+
+    /**
+     * Opens an archive.
+     *
+     * @param file
+     *            the archive
+     * @throws IOException
+     *             if the file cannot be read or is no complete archive
+     */
+    public ArchiveReader(File file) throws IOException
+    {
+        _file = new RandomAccessFile(file, "r");
+        boolean opened = false;
+        try
+        {
+            _channel = _file.getChannel();
+            DataInputStream header = new DataInputStream(new ByteArrayInputStream(readBytes(0,
+                    (int) Math.min(_channel.size(), 1 << 16))));
+            if (header.readInt() != ArchiveWriter.MAGIC)
+            {
+                throw new IOException(file + " is no trajectory archive");
+            }
+            int version = header.readInt();
+            if (version != ArchiveWriter.VERSION)
+            {
+                throw new IOException("Unsupported archive version " + version);
+            }
+            _chunkSamples = header.readInt();
+            _channels = new ArchiveChannel[header.readInt()];
+            for (int c = 0; c < _channels.length; c++)
+            {
+                _channels[c] = new ArchiveChannel(header.readUTF(), header.readDouble(), header.readByte());
+            }
+
+            long size = _channel.size();
+            if (size < ArchiveWriter.FOOTER_BYTES)
+            {
+                throw new EOFException(file + " has no footer, the writer was not closed");
+            }
+            ByteBuffer footer = ByteBuffer.wrap(readBytes(size - ArchiveWriter.FOOTER_BYTES,
+                    ArchiveWriter.FOOTER_BYTES));
+            long indexOffset = footer.getLong();
+            int chunks = footer.getInt();
+            _sampleCount = footer.getLong();
+            if (footer.getInt() != ArchiveWriter.MAGIC)
+            {
+                throw new IOException(file + " has no footer, the writer was not closed");
+            }
+
+            int columns = _channels.length + 1;
+            ByteBuffer index = ByteBuffer.wrap(readBytes(indexOffset, chunks * 8 * (4 + columns)));
+            _chunkOffset = new long[chunks];
+            _chunkFirstSample = new long[chunks];
+            _chunkCount = new int[chunks];
+            _chunkFirstTime = new long[chunks];
+            _chunkLastTime = new long[chunks];
+            _columnOffset = new long[chunks][columns];
+            _columnLength = new int[chunks][columns];
+            long sample = 0;
+            for (int k = 0; k < chunks; k++)
+            {
+                _chunkOffset[k] = index.getLong();
+                _chunkCount[k] = (int) index.getLong();
+                _chunkFirstTime[k] = index.getLong();
+                _chunkLastTime[k] = index.getLong();
+                _chunkFirstSample[k] = sample;
+                sample += _chunkCount[k];
+                long offset = _chunkOffset[k];
+                for (int c = 0; c < columns; c++)
+                {
+                    _columnOffset[k][c] = offset;
+                    _columnLength[k][c] = (int) index.getLong();
+                    offset += _columnLength[k][c];
+                }
+            }
+            opened = true;
+        }
+        finally
+        {
+            if (!opened)
+            {
+                _file.close();
+            }
+        }
+    }
+
+    /**
+     * Closes the file.
+     *
+     * @throws IOException
+     *             if closing failed
+     */
+    public void close() throws IOException
+    {
+        _file.close();
+    }
+
+    /**
+     * @return the channels of the archive
+     */
+    public ArchiveChannel[] getChannels()
+    {
+        return _channels.clone();
+    }
+
+    /**
+     * @return number of samples
+     */
+    public long getSampleCount()
+    {
+        return _sampleCount;
+    }
+
+    /**
+     * @return number of chunks
+     */
+    public int getChunkCount()
+    {
+        return _chunkCount.length;
+    }
+
+    /**
+     * @return number of samples per full chunk
+     */
+    public int getChunkSamples()
+    {
+        return _chunkSamples;
+    }
+
+    /**
+     * @return time of the first sample (us)
+     */
+    public long getStartMicros()
+    {
+        return _chunkFirstTime.length > 0 ? _chunkFirstTime[0] : 0;
+    }
+
+    /**
+     * @return time of the last sample (us)
+     */
+    public long getEndMicros()
+    {
+        return _chunkLastTime.length > 0 ? _chunkLastTime[_chunkLastTime.length - 1] : 0;
+    }
+
+    /**
+     * @return size of the file (bytes)
+     * @throws IOException
+     *             if the size cannot be read
+     */
+    public long getFileSize() throws IOException
+    {
+        return _channel.size();
+    }
+
+    /**
+     * Finds the first sample at or after a time; decodes the time column of
+     * one chunk.
+     *
+     * @param timeMicros
+     *            the time (us)
+     * @return sample index, {@link #getSampleCount()} if all samples are
+     *         earlier
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    public long findSample(long timeMicros) throws IOException
+    {
+        // first chunk whose last sample is not earlier
+        int low = 0;
+        int high = _chunkLastTime.length;
+        while (low < high)
+        {
+            int middle = (low + high) >>> 1;
+            if (_chunkLastTime[middle] < timeMicros)
+            {
+                low = middle + 1;
+            }
+            else
+            {
+                high = middle;
+            }
+        }
+        if (low == _chunkLastTime.length)
+        {
+            return _sampleCount;
+        }
+        if (_chunkFirstTime[low] >= timeMicros)
+        {
+            return _chunkFirstSample[low];
+        }
+        long[] time = new long[_chunkCount[low]];
+        ColumnCodec.decode(readBytes(_columnOffset[low][0], _columnLength[low][0]), 0, time.length, 2, time, 0);
+        int k = 0;
+        while (time[k] < timeMicros)
+        {
+            k++;
+        }
+        return _chunkFirstSample[low] + k;
+    }
+
+    /**
+     * Reads samples of selected channels; columns are decoded in parallel.
+     *
+     * @param from
+     *            index of the first sample
+     * @param count
+     *            number of samples
+     * @param channels
+     *            archive channel indices to read
+     * @param pool
+     *            pool decoding the columns
+     * @return time and values of the samples
+     * @throws IOException
+     *             if the file cannot be read
+     */
+    public Columns read(long from, int count, int[] channels, ForkJoinPool pool) throws IOException
+    {
+        if (from < 0 || count < 0 || from + count > _sampleCount)
+        {
+            throw new IndexOutOfBoundsException("Samples " + from + " + " + count + " of " + _sampleCount);
+        }
+        Columns result = new Columns(count, channels);
+        List<DecodeTask> tasks = new ArrayList<DecodeTask>();
+        int chunk = chunkOf(from);
+        while (chunk < _chunkCount.length && _chunkFirstSample[chunk] < from + count)
+        {
+            // time column and the requested channels of the chunk
+            tasks.add(new DecodeTask(chunk, -1, from, count, result));
+            for (int c = 0; c < channels.length; c++)
+            {
+                tasks.add(new DecodeTask(chunk, c, from, count, result));
+            }
+            chunk++;
+        }
+        try
+        {
+            pool.invoke(new DecodeAll(tasks));
+        }
+        catch (RuntimeException e)
+        {
+            if (e.getCause() instanceof IOException)
+            {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        }
+        return result;
+    }
+
+    private int chunkOf(long sample)
+    {
+        int low = 0;
+        int high = _chunkFirstSample.length - 1;
+        while (low < high)
+        {
+            int middle = (low + high + 1) >>> 1;
+            if (_chunkFirstSample[middle] <= sample)
+            {
+                low = middle;
+            }
+            else
+            {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    private byte[] readBytes(long position, int length) throws IOException
+    {
+        byte[] bytes = new byte[length];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining())
+        {
+            if (_channel.read(buffer, position + buffer.position()) < 0)
+            {
+                throw new EOFException("Archive ends at " + (position + buffer.position()));
+            }
+        }
+        return bytes;
+    }
+
+    private static class DecodeAll extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final List<DecodeTask> _tasks;
+
+        DecodeAll(List<DecodeTask> tasks)
+        {
+            _tasks = tasks;
+        }
+
+        @Override
+        protected void compute()
+        {
+            invokeAll(_tasks);
+        }
+    }
+
+    private class DecodeTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final int _chunk;
+        private final int _column;
+        private final long _from;
+        private final int _count;
+        private final Columns _result;
+
+        DecodeTask(int chunk, int column, long from, int count, Columns result)
+        {
+            _chunk = chunk;
+            _column = column;
+            _from = from;
+            _count = count;
+            _result = result;
+        }
+
+        @Override
+        protected void compute()
+        {
+            int archiveColumn = (_column < 0) ? 0 : _result._channels[_column] + 1;
+            int order = (_column < 0) ? 2 : _channels[archiveColumn - 1].getOrder();
+            long[] values = new long[_chunkCount[_chunk]];
+            try
+            {
+                ColumnCodec.decode(readBytes(_columnOffset[_chunk][archiveColumn],
+                        _columnLength[_chunk][archiveColumn]), 0, values.length, order, values, 0);
+            }
+            catch (IOException e)
+            {
+                throw new RuntimeException(e);
+            }
+
+            // copy the part of the chunk inside the requested range
+            long chunkFirst = _chunkFirstSample[_chunk];
+            int begin = (int) Math.max(0, _from - chunkFirst);
+            int end = (int) Math.min(values.length, _from + _count - chunkFirst);
+            int target = (int) (chunkFirst + begin - _from);
+            if (_column < 0)
+            {
+                System.arraycopy(values, begin, _result._time, target, end - begin);
+            }
+            else
+            {
+                double resolution = _channels[archiveColumn - 1].getResolution();
+                double[] out = _result._values[_column];
+                for (int k = begin; k < end; k++)
+                {
+                    out[target + k - begin] = values[k] * resolution;
+                }
+            }
+        }
+    }
+}
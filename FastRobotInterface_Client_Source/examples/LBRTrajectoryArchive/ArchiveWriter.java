@@ -0,0 +1,332 @@
+package connectivity.fri.sdk.example.LBRTrajectoryArchive;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+/**
+ * Writes samples into a chunked columnar trajectory archive on a background
+ * thread.
+ * <p>
+ * The control loop hands samples to {@link #offer}, which copies them into a
+ * preallocated single-producer ring and returns at once; it neither blocks
+ * nor allocates. If the ring is full the sample is dropped and counted; the
+ * timestamps stored with every sample keep the time axis intact. The writer
+ * thread collects {@link #getChunkSamples()} samples per chunk, encodes every
+ * column with {@link ColumnCodec} and appends the chunk to the file.
+ * <p>
+ * File layout (big endian):
+ * <pre>
+ * header: magic, version, chunk samples, channel count,
+ *         per channel: name (UTF), resolution, order
+ * chunks: per column the encoded bytes, time column first
+ * index:  per chunk: offset, sample count, first and last time,
+ *         byte length per column
+ * footer: index offset, chunk count, sample count, magic
+ * </pre>
+ * Time is stored in microseconds with second order differences, so a
+ * constant sample period costs one byte per sample.
+ */
+public class ArchiveWriter
+{
+    static final int MAGIC = 0x46524941; // "FRIA"
+    static final int VERSION = 1;
+    static final int FOOTER_BYTES = 8 + 4 + 8 + 4;
+
+    private static final long IDLE_PARK_NANOS = 1000000;
+
+    private final File _file;
+    private final ArchiveChannel[] _channels;
+    private final int _chunkSamples;
+
+    // single-producer single-consumer ring
+    private final long[] _ringTime;
+    private final double[][] _ringValues;
+    private final int _mask;
+    private final AtomicLong _head = new AtomicLong();
+    private final AtomicLong _tail = new AtomicLong();
+    private volatile boolean _writerWaiting;
+
+    // chunk being collected, owned by the writer thread
+    private final long[] _time;
+    private final long[][] _columns;
+    private int _fill;
+    private final ColumnCodec.Buffer[] _encoded;
+    private final List<long[]> _index = new ArrayList<long[]>();
+
+    private DataOutputStream _out;
+    private long _offset;
+    private Thread _thread;
+    private volatile boolean _running;
+    private volatile IOException _failure;
+
+    private volatile long _droppedCount;
+    private volatile long _writtenCount;
+    private volatile long _bytesWritten;
+
+    /**
+     * Constructor.
+     *
+     * @param file
+     *            archive file, overwritten
+     * @param channels
+     *            the channels of every sample
+     * @param chunkSamples
+     *            number of samples per chunk
+     * @param queueCapacity
+     *            number of samples buffered for the writer thread, rounded up
+     *            to a power of two
+     */
+    public ArchiveWriter(File file, ArchiveChannel[] channels, int chunkSamples, int queueCapacity)
+    {
+        _file = file;
+        _channels = channels.clone();
+        _chunkSamples = chunkSamples;
+
+        int size = Integer.highestOneBit(Math.max(2, queueCapacity) * 2 - 1);
+        _ringTime = new long[size];
+        _ringValues = new double[size][channels.length];
+        _mask = size - 1;
+
+        _time = new long[chunkSamples];
+        _columns = new long[channels.length][chunkSamples];
+        _encoded = new ColumnCodec.Buffer[channels.length + 1];
+        for (int c = 0; c < _encoded.length; c++)
+        {
+            _encoded[c] = new ColumnCodec.Buffer();
+        }
+    }
+
+    /**
+     * Opens the file, writes the header and starts the writer thread.
+     *
+     * @throws IOException
+     *             if the file cannot be created
+     */
+    public void start() throws IOException
+    {
+        _out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(_file), 1 << 16));
+        _out.writeInt(MAGIC);
+        _out.writeInt(VERSION);
+        _out.writeInt(_chunkSamples);
+        _out.writeInt(_channels.length);
+        for (ArchiveChannel channel : _channels)
+        {
+            _out.writeUTF(channel.getName());
+            _out.writeDouble(channel.getResolution());
+            _out.writeByte(channel.getOrder());
+        }
+        _offset = _out.size();
+
+        _running = true;
+        _thread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                drainLoop();
+            }
+        }, "ArchiveWriter");
+        _thread.setDaemon(true);
+        _thread.start();
+    }
+
+    /**
+     * Queues a sample; called by one thread, usually the control loop.
+     *
+     * @param timeMicros
+     *            time of the sample (us), increasing
+     * @param values
+     *            one value per channel
+     * @return false if the queue was full and the sample was dropped
+     */
+    public boolean offer(long timeMicros, double[] values)
+    {
+        long head = _head.get();
+        if (head - _tail.get() > _mask)
+        {
+            _droppedCount++;
+            return false;
+        }
+        int slot = (int) head & _mask;
+        _ringTime[slot] = timeMicros;
+        System.arraycopy(values, 0, _ringValues[slot], 0, _channels.length);
+        _head.lazySet(head + 1);
+        if (_writerWaiting)
+        {
+            LockSupport.unpark(_thread);
+        }
+        return true;
+    }
+
+    /**
+     * Writes the queued samples, the index and the footer, and closes the
+     * file.
+     *
+     * @throws IOException
+     *             if writing failed
+     */
+    public void close() throws IOException
+    {
+        _running = false;
+        LockSupport.unpark(_thread);
+        try
+        {
+            _thread.join();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while closing the archive");
+        }
+        try
+        {
+            if (_failure != null)
+            {
+                throw _failure;
+            }
+            if (_fill > 0)
+            {
+                writeChunk();
+            }
+            long indexOffset = _offset;
+            for (long[] entry : _index)
+            {
+                for (long value : entry)
+                {
+                    _out.writeLong(value);
+                }
+            }
+            _out.writeLong(indexOffset);
+            _out.writeInt(_index.size());
+            _out.writeLong(_writtenCount);
+            _out.writeInt(MAGIC);
+            _bytesWritten = indexOffset + 8L * _index.size() * (4 + _encoded.length) + FOOTER_BYTES;
+        }
+        finally
+        {
+            _out.close();
+        }
+    }
+
+    private void drainLoop()
+    {
+        try
+        {
+            while (true)
+            {
+                long tail = _tail.get();
+                long head = _head.get();
+                if (tail == head)
+                {
+                    if (!_running)
+                    {
+                        return;
+                    }
+                    _writerWaiting = true;
+                    if (_head.get() == tail && _running)
+                    {
+                        LockSupport.parkNanos(IDLE_PARK_NANOS);
+                    }
+                    _writerWaiting = false;
+                    continue;
+                }
+                for (; tail < head; tail++)
+                {
+                    int slot = (int) tail & _mask;
+                    _time[_fill] = _ringTime[slot];
+                    double[] values = _ringValues[slot];
+                    for (int c = 0; c < _channels.length; c++)
+                    {
+                        _columns[c][_fill] = Math.round(values[c] / _channels[c].getResolution());
+                    }
+                    _fill++;
+                    if (_fill == _chunkSamples)
+                    {
+                        // release the slots before the file is written
+                        _tail.lazySet(tail + 1);
+                        writeChunk();
+                    }
+                }
+                _tail.lazySet(tail);
+            }
+        }
+        catch (IOException e)
+        {
+            _failure = e;
+            Logger.getAnonymousLogger().severe("Archive write failed: " + e.getMessage());
+            // keep draining so that the producer does not see a full queue forever
+            while (_running)
+            {
+                _tail.lazySet(_head.get());
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    private void writeChunk() throws IOException
+    {
+        long[] entry = new long[4 + _encoded.length];
+        entry[0] = _offset;
+        entry[1] = _fill;
+        entry[2] = _time[0];
+        entry[3] = _time[_fill - 1];
+
+        _encoded[0].clear();
+        ColumnCodec.encode(_time, _fill, 2, _encoded[0]);
+        for (int c = 0; c < _channels.length; c++)
+        {
+            _encoded[c + 1].clear();
+            ColumnCodec.encode(_columns[c], _fill, _channels[c].getOrder(), _encoded[c + 1]);
+        }
+        for (int c = 0; c < _encoded.length; c++)
+        {
+            _out.write(_encoded[c]._bytes, 0, _encoded[c]._length);
+            entry[4 + c] = _encoded[c]._length;
+            _offset += _encoded[c]._length;
+        }
+        _index.add(entry);
+        _writtenCount += _fill;
+        _bytesWritten = _offset;
+        _fill = 0;
+    }
+
+    /**
+     * @return number of samples per chunk
+     */
+    public int getChunkSamples()
+    {
+        return _chunkSamples;
+    }
+
+    /**
+     * @return number of samples dropped because the queue was full
+     */
+    public long getDroppedCount()
+    {
+        return _droppedCount;
+    }
+
+    /**
+     * @return number of samples written to the file
+     */
+    public long getWrittenCount()
+    {
+        return _writtenCount;
+    }
+
+    /**
+     * @return number of bytes written to the file
+     */
+    public long getBytesWritten()
+    {
+        return _bytesWritten;
+    }
+}
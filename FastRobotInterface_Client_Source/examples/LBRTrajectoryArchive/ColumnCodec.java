@@ -0,0 +1,119 @@
+package connectivity.fri.sdk.example.LBRTrajectoryArchive;
+
+import java.util.Arrays;
+
+/**
+ * Encoding of one column of a chunk: first or second order differences of
+ * the quantized values, zigzag mapped and written as variable length
+ * integers of 7 bits per byte. The first values of each chunk are stored
+ * with the same scheme against zero, so every chunk decodes on its own.
+ */
+final class ColumnCodec
+{
+    private ColumnCodec()
+    {
+    }
+
+    /**
+     * Output buffer that grows as needed.
+     */
+    static final class Buffer
+    {
+        byte[] _bytes = new byte[1024];
+        int _length;
+
+        void clear()
+        {
+            _length = 0;
+        }
+
+        private void ensure(int extra)
+        {
+            if (_length + extra > _bytes.length)
+            {
+                _bytes = Arrays.copyOf(_bytes, Math.max(2 * _bytes.length, _length + extra));
+            }
+        }
+    }
+
+    /**
+     * Encodes a column.
+     *
+     * @param values
+     *            quantized values
+     * @param count
+     *            number of values
+     * @param order
+     *            order of the differences, 1 or 2
+     * @param out
+     *            buffer the encoded bytes are appended to
+     */
+    static void encode(long[] values, int count, int order, Buffer out)
+    {
+        // at most 10 bytes per value
+        out.ensure(10 * count);
+        byte[] bytes = out._bytes;
+        int position = out._length;
+        long previous = 0;
+        long previousDelta = 0;
+        for (int k = 0; k < count; k++)
+        {
+            long delta = values[k] - previous;
+            long residual = (order == 2) ? delta - previousDelta : delta;
+            previous = values[k];
+            previousDelta = delta;
+
+            long zigzag = (residual << 1) ^ (residual >> 63);
+            while ((zigzag & ~0x7fL) != 0)
+            {
+                bytes[position++] = (byte) ((zigzag & 0x7f) | 0x80);
+                zigzag >>>= 7;
+            }
+            bytes[position++] = (byte) zigzag;
+        }
+        out._length = position;
+    }
+
+    /**
+     * Decodes a column.
+     *
+     * @param bytes
+     *            encoded bytes
+     * @param offset
+     *            offset of the column in the bytes
+     * @param count
+     *            number of values
+     * @param order
+     *            order of the differences, 1 or 2
+     * @param values
+     *            output quantized values
+     * @param start
+     *            index of the first output value
+     * @return offset behind the column
+     */
+    static int decode(byte[] bytes, int offset, int count, int order, long[] values, int start)
+    {
+        int position = offset;
+        long previous = 0;
+        long previousDelta = 0;
+        for (int k = 0; k < count; k++)
+        {
+            long zigzag = 0;
+            int shift = 0;
+            byte b;
+            do
+            {
+                b = bytes[position++];
+                zigzag |= (long) (b & 0x7f) << shift;
+                shift += 7;
+            }
+            while (b < 0);
+            long residual = (zigzag >>> 1) ^ -(zigzag & 1);
+            long delta = (order == 2) ? previousDelta + residual : residual;
+            previous += delta;
+            previousDelta = delta;
+            values[start + k] = previous;
+        }
+        return position;
+    }
+}
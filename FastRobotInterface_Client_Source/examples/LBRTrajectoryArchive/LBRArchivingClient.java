@@ -0,0 +1,79 @@
+package connectivity.fri.sdk.example.LBRTrajectoryArchive;
+
+import java.util.logging.Logger;
+
+import com.kuka.connectivity.fri.clientSDK.clientLBR.LBRClient;
+import com.kuka.connectivity.fri.clientSDK.clientLBR.LBRState;
+
+/**
+ * Client that mirrors the interpolator and records every received state into
+ * an {@link ArchiveWriter}.
+ * <p>
+ * The samples carry the timestamp of the FRI message. Recording copies the
+ * state into the queue of the writer; encoding and file access happen on the
+ * writer thread, so the cycle of the client is not delayed by the disk.
+ */
+public class LBRArchivingClient extends LBRClient
+{
+    private static final int N = LBRState.NUMBER_OF_JOINTS;
+
+    private final ArchiveWriter _writer;
+    private final double[] _sample = new double[4 * N];
+
+    /**
+     * Constructor.
+     *
+     * @param writer
+     *            started writer with the channels of
+     *            {@link ArchiveChannel#createLBRChannels()}
+     */
+    public LBRArchivingClient(ArchiveWriter writer)
+    {
+        _writer = writer;
+
+        Logger.getAnonymousLogger().info("LBRArchivingClient initialized");
+    }
+
+    @Override
+    public void monitor()
+    {
+        super.monitor();
+        record();
+    }
+
+    @Override
+    public void waitForCommand()
+    {
+        super.waitForCommand();
+        record();
+    }
+
+    /**
+     * Callback for the FRI state 'Commanding Active'.
+     */
+    @Override
+    public void command()
+    {
+        super.command();
+        record();
+    }
+
+    private void record()
+    {
+        LBRState state = getRobotState();
+        long timeMicros = state.getTimeStampSec() * 1000000L + state.getTimeStampNanoSec() / 1000;
+        System.arraycopy(state.getMeasuredJointPosition(), 0, _sample, 0, N);
+        System.arraycopy(state.getCommandedJointPosition(), 0, _sample, N, N);
+        System.arraycopy(state.getMeasuredTorque(), 0, _sample, 2 * N, N);
+        System.arraycopy(state.getExternalTorque(), 0, _sample, 3 * N, N);
+        _writer.offer(timeMicros, _sample);
+    }
+
+    /**
+     * @return the writer
+     */
+    public ArchiveWriter getWriter()
+    {
+        return _writer;
+    }
+}
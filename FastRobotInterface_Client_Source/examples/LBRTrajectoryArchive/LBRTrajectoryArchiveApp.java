@@ -0,0 +1,502 @@
+package connectivity.fri.sdk.example.LBRTrajectoryArchive;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Logger;
+
+import com.kuka.connectivity.fri.clientSDK.base.ClientApplication;
+import com.kuka.connectivity.fri.clientSDK.base.IClient.FRISessionState;
+import com.kuka.connectivity.fri.clientSDK.connection.UdpConnection;
+
+import connectivity.fri.sdk.example.LBRModel.LBRSimulator;
+import connectivity.fri.sdk.example.LBRModel.LBRiiwa7Model;
+
+/**
+ * Recording and analysis of FRI sessions in a chunked columnar archive.
+ * <p>
+ * The application has four modes:
+ * <ul>
+ * <li><code>record &lt;file&gt; [hostname] [port]</code> runs an
+ * {@link LBRArchivingClient} and records every FRI cycle until the session
+ * ends.</li>
+ * <li><code>info &lt;file&gt;</code> prints channels, duration and size of an
+ * archive.</li>
+ * <li><code>export &lt;file&gt; &lt;from s&gt; &lt;to s&gt;</code> prints the
+ * samples of a time range as text, one line per sample.</li>
+ * <li><code>benchmark [minutes]</code> writes a synthetic recording at 1 kHz,
+ * compares its size with raw doubles and a text log, checks the quantization
+ * error, and measures scan throughput and seek latency of the reader; it also
+ * records a short session of the {@link LBRSimulator} through the client.</li>
+ * </ul>
+ *
+ * @see ClientApplication#connect
+ * @see ClientApplication#step()
+ * @see ClientApplication#disconnect
+ */
+public class LBRTrajectoryArchiveApp
+{
+
+    private static final int DEFAULT_PORTID = 30200;
+    private static final int CHUNK_SAMPLES = 8192;
+    private static final int QUEUE_CAPACITY = 4096;
+
+    private static final double DEFAULT_BENCHMARK_MINUTES = 60.0;
+    private static final long SAMPLE_MICROS = 1000;
+    private static final int GAP_PERIOD = 100000;
+    private static final double POSITION_NOISE = 2e-6;
+    private static final double TORQUE_NOISE = 0.05;
+    private static final int TEXT_SAMPLES = 10000;
+    private static final int SCAN_CHUNKS = 16;
+    private static final int SEEKS = 1000;
+    private static final int SEEK_SAMPLES = 1000;
+    private static final double SIMULATION_SECONDS = 10.0;
+    private static final double[] SIMULATION_START = {
+        0, Math.toRadians(30), 0, Math.toRadians(-60), 0, Math.toRadians(60), 0 };
+    private static final long SEED = 4711;
+
+    /**
+     * Auto-generated method stub. Do not modify the contents of this method.
+     *
+     * @param argv
+     *            the arguments
+     *
+     *
+     */
+    public static void main(String[] argv)
+    {
+        if (argv.length == 0 || argv[0].equals("help"))
+        {
+            Logger.getAnonymousLogger().info("\nKUKA LBR trajectory archive\n\n\tCommand line arguments:");
+            Logger.getAnonymousLogger().info("\trecord <file> [hostname] [port]");
+            Logger.getAnonymousLogger().info("\tinfo <file>");
+            Logger.getAnonymousLogger().info("\texport <file> <from s> <to s>");
+            Logger.getAnonymousLogger().info("\tbenchmark [minutes]");
+            return;
+        }
+
+        try
+        {
+            if (argv[0].equals("record") && argv.length >= 2)
+            {
+                String hostname = (argv.length >= 3) ? argv[2] : null;
+                int port = (argv.length >= 4) ? Integer.valueOf(argv[3]) : DEFAULT_PORTID;
+                record(new File(argv[1]), hostname, port);
+            }
+            else if (argv[0].equals("info") && argv.length >= 2)
+            {
+                info(new File(argv[1]));
+            }
+            else if (argv[0].equals("export") && argv.length >= 4)
+            {
+                export(new File(argv[1]), Double.valueOf(argv[2]), Double.valueOf(argv[3]));
+            }
+            else if (argv[0].equals("benchmark"))
+            {
+                double minutes = (argv.length >= 2) ? Double.valueOf(argv[1]) : DEFAULT_BENCHMARK_MINUTES;
+                benchmark(minutes);
+            }
+            else
+            {
+                Logger.getAnonymousLogger().severe("Unknown mode " + argv[0]);
+            }
+        }
+        catch (IOException e)
+        {
+            Logger.getAnonymousLogger().severe("Archive access failed: " + e.getMessage());
+        }
+    }
+
+    private static void record(File file, String hostname, int port) throws IOException
+    {
+        Logger.getAnonymousLogger().info("Enter LBRTrajectoryArchive Client Application");
+
+        /***************************************************************************/
+        /*                                                                         */
+        /* Place user Client Code here */
+        /*                                                                         */
+        /**************************************************************************/
+
+        // create the writer and the recording client
+        ArchiveWriter writer = new ArchiveWriter(file, ArchiveChannel.createLBRChannels(), CHUNK_SAMPLES,
+                QUEUE_CAPACITY);
+        writer.start();
+        LBRArchivingClient client = new LBRArchivingClient(writer);
+
+        /***************************************************************************/
+        /*                                                                         */
+        /* Standard application structure */
+        /* Configuration */
+        /*                                                                         */
+        /***************************************************************************/
+
+        // create new udp connection
+        UdpConnection connection = new UdpConnection();
+
+        // pass connection and client to a new FRI client application
+        ClientApplication app = new ClientApplication(connection, client);
+
+        // connect client application to KUKA Sunrise controller
+        app.connect(port, hostname);
+
+        /***************************************************************************/
+        /*                                                                         */
+        /* Standard application structure */
+        /* Execution mainloop */
+        /*                                                                         */
+        /***************************************************************************/
+
+        // repeatedly call the step routine to receive and process FRI packets
+        boolean success = true;
+        while (success)
+        {
+            success = app.step();
+
+            // check if we are in IDLE because the FRI session was closed
+            if (client.getRobotState().getSessionState() == FRISessionState.IDLE)
+            {
+                // In this demo application we simply quit.
+                // Waiting for a new FRI session would be another possibility.
+                break;
+            }
+        }
+
+        /***************************************************************************/
+        /*                                                                         */
+        /* Standard application structure */
+        /* Dispose */
+        /*                                                                         */
+        /***************************************************************************/
+
+        // disconnect from controller
+        app.disconnect();
+
+        writer.close();
+        Logger.getAnonymousLogger().info(String.format("Recorded %d samples into %d bytes, %d dropped",
+                writer.getWrittenCount(), writer.getBytesWritten(), writer.getDroppedCount()));
+        Logger.getAnonymousLogger().info("Exit LBRTrajectoryArchive Client Application");
+    }
+
+    private static void info(File file) throws IOException
+    {
+        ArchiveReader reader = new ArchiveReader(file);
+        try
+        {
+            StringBuilder report = new StringBuilder(file.getPath()).append(":\n");
+            report.append(String.format("\t%d samples in %d chunks, %.3f s from %.6f s%n", reader.getSampleCount(),
+                    reader.getChunkCount(), (reader.getEndMicros() - reader.getStartMicros()) / 1e6,
+                    reader.getStartMicros() / 1e6));
+            report.append(String.format("\t%d bytes, %.1f bytes per sample%n", reader.getFileSize(),
+                    (double) reader.getFileSize() / Math.max(1, reader.getSampleCount())));
+            for (ArchiveChannel channel : reader.getChannels())
+            {
+                report.append('\t').append(channel).append('\n');
+            }
+            Logger.getAnonymousLogger().info(report.toString());
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+
+    private static void export(File file, double fromSeconds, double toSeconds) throws IOException
+    {
+        ArchiveReader reader = new ArchiveReader(file);
+        ForkJoinPool pool = new ForkJoinPool();
+        try
+        {
+            ArchiveChannel[] channels = reader.getChannels();
+            int[] all = new int[channels.length];
+            StringBuilder line = new StringBuilder("time");
+            for (int c = 0; c < channels.length; c++)
+            {
+                all[c] = c;
+                line.append(' ').append(channels[c].getName());
+            }
+            System.out.println(line);
+
+            long from = reader.findSample(reader.getStartMicros() + (long) (fromSeconds * 1e6));
+            long to = reader.findSample(reader.getStartMicros() + (long) (toSeconds * 1e6));
+            while (from < to)
+            {
+                int count = (int) Math.min(to - from, reader.getChunkSamples());
+                ArchiveReader.Columns columns = reader.read(from, count, all, pool);
+                for (int k = 0; k < count; k++)
+                {
+                    line.setLength(0);
+                    line.append(columns.getTime()[k]);
+                    for (int c = 0; c < channels.length; c++)
+                    {
+                        line.append(' ').append(format(columns.getValues(c)[k], channels[c].getResolution()));
+                    }
+                    System.out.println(line);
+                }
+                from += count;
+            }
+        }
+        finally
+        {
+            pool.shutdown();
+            reader.close();
+        }
+    }
+
+    private static void benchmark(double minutes) throws IOException
+    {
+        ArchiveChannel[] channels = ArchiveChannel.createLBRChannels();
+        int sampleCount = (int) Math.round(minutes * 60e6 / SAMPLE_MICROS);
+        SyntheticSession session = new SyntheticSession(channels.length);
+        File file = File.createTempFile("LBRTrajectoryArchive", ".fria");
+        file.deleteOnExit();
+        StringBuilder report = new StringBuilder("Trajectory archive benchmark:\n");
+        report.append(String.format("\t%d samples of %d channels (%.1f min at 1 kHz)%n", sampleCount,
+                channels.length, minutes));
+
+        // write as fast as the writer thread takes the samples
+        ArchiveWriter writer = new ArchiveWriter(file, channels, CHUNK_SAMPLES, QUEUE_CAPACITY);
+        double[] values = new double[channels.length];
+        long retries = 0;
+        long start = System.nanoTime();
+        writer.start();
+        for (int k = 0; k < sampleCount; k++)
+        {
+            long time = session.fill(k, values);
+            while (!writer.offer(time, values))
+            {
+                retries++;
+                Thread.yield();
+            }
+        }
+        writer.close();
+        double writeSeconds = (System.nanoTime() - start) / 1e9;
+        long rawBytes = (long) sampleCount * (8 + 8 * channels.length);
+        long textBytes = textBytes(session, channels, sampleCount);
+        report.append(String.format("\twritten in %.2f s (%.1f M samples/s, %.0f MB/s of doubles), "
+                + "queue full %d times%n", writeSeconds, sampleCount / writeSeconds / 1e6, rawBytes / writeSeconds
+                / 1e6, retries));
+        report.append(String.format("\t%d bytes, %.2f bytes per value: %.1fx smaller than raw doubles, "
+                + "%.1fx smaller than a text log%n", writer.getBytesWritten(), (double) writer.getBytesWritten()
+                / sampleCount / (channels.length + 1), (double) rawBytes / writer.getBytesWritten(),
+                (double) textBytes / writer.getBytesWritten()));
+
+        ArchiveReader reader = new ArchiveReader(file);
+        ForkJoinPool single = new ForkJoinPool(1);
+        ForkJoinPool pool = new ForkJoinPool();
+        try
+        {
+            int[] all = new int[channels.length];
+            for (int c = 0; c < all.length; c++)
+            {
+                all[c] = c;
+            }
+
+            // quantization error and timestamps of the whole recording
+            double maxError = 0.0;
+            double maxRelativeError = 0.0;
+            long wrongTimes = 0;
+            int window = SCAN_CHUNKS * CHUNK_SAMPLES;
+            for (long from = 0; from < sampleCount; from += window)
+            {
+                int count = (int) Math.min(window, sampleCount - from);
+                ArchiveReader.Columns columns = reader.read(from, count, all, pool);
+                for (int k = 0; k < count; k++)
+                {
+                    if (session.fill((int) from + k, values) != columns.getTime()[k])
+                    {
+                        wrongTimes++;
+                    }
+                    for (int c = 0; c < channels.length; c++)
+                    {
+                        double error = Math.abs(columns.getValues(c)[k] - values[c]);
+                        maxError = Math.max(maxError, error);
+                        maxRelativeError = Math.max(maxRelativeError, error / channels[c].getResolution());
+                    }
+                }
+            }
+            boolean exact = wrongTimes == 0 && reader.getSampleCount() == sampleCount
+                    && maxRelativeError <= 0.5 + 1e-6;
+            report.append(String.format("\tmax error %.2g (%.3f of the resolution), %d wrong timestamps%s%n",
+                    maxError, maxRelativeError, wrongTimes, exact ? "" : " UNEXPECTED"));
+
+            // full scans; the first pass warms up both pools
+            scan(reader, all, single);
+            scan(reader, all, pool);
+            start = System.nanoTime();
+            scan(reader, all, single);
+            double sequentialSeconds = (System.nanoTime() - start) / 1e9;
+            start = System.nanoTime();
+            scan(reader, all, pool);
+            double parallelSeconds = (System.nanoTime() - start) / 1e9;
+            report.append(String.format("\tscan of all channels: sequential %.2f s, parallel %.2f s on %d threads "
+                    + "(%.1fx), %.2f GB/s decoded, %.0f MB/s of file%n", sequentialSeconds, parallelSeconds,
+                    pool.getParallelism(), sequentialSeconds / parallelSeconds, rawBytes / parallelSeconds / 1e9,
+                    reader.getFileSize() / parallelSeconds / 1e6));
+
+            // random seeks by time, one second of the joint positions each
+            int[] positions = new int[LBRiiwa7Model.NUMBER_OF_JOINTS];
+            for (int i = 0; i < positions.length; i++)
+            {
+                positions[i] = i;
+            }
+            Random random = new Random(SEED);
+            long wrongSeeks = 0;
+            start = System.nanoTime();
+            for (int s = 0; s < SEEKS; s++)
+            {
+                int target = random.nextInt(sampleCount - SEEK_SAMPLES);
+                long sample = reader.findSample(session.fill(target, values));
+                ArchiveReader.Columns columns = reader.read(sample, SEEK_SAMPLES, positions, pool);
+                if (sample != target || Math.abs(columns.getValues(0)[0] - values[0]) > channels[0].getResolution())
+                {
+                    wrongSeeks++;
+                }
+            }
+            double seekMicros = (System.nanoTime() - start) / 1e3 / SEEKS;
+            report.append(String.format("\tseek by time and read of %d samples of %d channels: %.0f us, %d wrong%s",
+                    SEEK_SAMPLES, positions.length, seekMicros, wrongSeeks, wrongSeeks == 0 ? "" : " UNEXPECTED"));
+        }
+        finally
+        {
+            single.shutdown();
+            pool.shutdown();
+            reader.close();
+            file.delete();
+        }
+        Logger.getAnonymousLogger().info(report.toString());
+
+        simulate();
+    }
+
+    // records a session of the simulator through the client in real-time steps
+    private static void simulate() throws IOException
+    {
+        File file = File.createTempFile("LBRTrajectoryArchive", ".fria");
+        file.deleteOnExit();
+        ArchiveWriter writer = new ArchiveWriter(file, ArchiveChannel.createLBRChannels(), CHUNK_SAMPLES,
+                QUEUE_CAPACITY);
+        writer.start();
+        LBRArchivingClient client = new LBRArchivingClient(writer);
+        LBRSimulator simulator = new LBRSimulator(new LBRiiwa7Model(), 1, SEED);
+        simulator.reset(SIMULATION_START);
+        simulator.setSensorNoise(POSITION_NOISE, TORQUE_NOISE);
+        simulator.setSessionState(FRISessionState.COMMANDING_ACTIVE);
+
+        int steps = (int) Math.round(SIMULATION_SECONDS / simulator.getSampleTime());
+        double[] ipo = SIMULATION_START.clone();
+        long totalNanos = 0;
+        for (int k = 0; k < steps; k++)
+        {
+            ipo[0] = SIMULATION_START[0] + 0.5 * Math.sin(2 * Math.PI * 0.2 * k * simulator.getSampleTime());
+            simulator.setIpoJointPosition(ipo);
+            long start = System.nanoTime();
+            simulator.step(client);
+            totalNanos += System.nanoTime() - start;
+        }
+        writer.close();
+
+        ArchiveReader reader = new ArchiveReader(file);
+        try
+        {
+            boolean ok = reader.getSampleCount() == steps && writer.getDroppedCount() == 0
+                    && reader.getEndMicros() - reader.getStartMicros() == (steps - 1) * SAMPLE_MICROS;
+            Logger.getAnonymousLogger().info(String.format("Simulated session of %.0f s: %d samples recorded, "
+                    + "%d dropped, %.1f bytes per sample, mean cycle %.1f us including the simulation%s",
+                    SIMULATION_SECONDS, reader.getSampleCount(), writer.getDroppedCount(),
+                    (double) reader.getFileSize() / reader.getSampleCount(), totalNanos / 1e3 / steps, ok ? ""
+                            : " UNEXPECTED"));
+        }
+        finally
+        {
+            reader.close();
+            file.delete();
+        }
+    }
+
+    private static void scan(ArchiveReader reader, int[] channels, ForkJoinPool pool) throws IOException
+    {
+        int window = SCAN_CHUNKS * reader.getChunkSamples();
+        for (long from = 0; from < reader.getSampleCount(); from += window)
+        {
+            reader.read(from, (int) Math.min(window, reader.getSampleCount() - from), channels, pool);
+        }
+    }
+
+    // size of a text log with the same resolution, extrapolated from a prefix
+    private static long textBytes(SyntheticSession session, ArchiveChannel[] channels, int sampleCount)
+    {
+        double[] values = new double[channels.length];
+        StringBuilder line = new StringBuilder();
+        long bytes = 0;
+        int count = Math.min(TEXT_SAMPLES, sampleCount);
+        for (int k = 0; k < count; k++)
+        {
+            line.setLength(0);
+            line.append(session.fill(k, values));
+            for (int c = 0; c < channels.length; c++)
+            {
+                line.append(' ').append(format(values[c], channels[c].getResolution()));
+            }
+            bytes += line.length() + 1;
+        }
+        return bytes * sampleCount / count;
+    }
+
+    private static String format(double value, double resolution)
+    {
+        int digits = Math.max(0, (int) Math.ceil(-Math.log10(resolution) - 1e-9));
+        return String.format(Locale.ROOT, "%." + digits + "f", value);
+    }
+
+    /**
+     * Deterministic recording of a slow joint motion with sensor noise, so
+     * that every sample can be generated again for the comparison.
+     */
+    private static class SyntheticSession
+    {
+        private static final double[] AMPLITUDE = { 0.8, 0.3, 0.8, 0.4, 0.8, 0.5, 1.0 };
+        private static final double[] FREQUENCY = { 0.05, 0.07, 0.11, 0.13, 0.17, 0.19, 0.23 };
+        private static final double[] TORQUE_AMPLITUDE = { 5, 40, 5, 20, 2, 2, 0.5 };
+
+        private final int _channels;
+
+        SyntheticSession(int channels)
+        {
+            _channels = channels;
+        }
+
+        /**
+         * Computes sample k; a sample is missing every GAP_PERIOD samples.
+         *
+         * @return time of the sample (us)
+         */
+        long fill(int k, double[] values)
+        {
+            int n = LBRiiwa7Model.NUMBER_OF_JOINTS;
+            long time = (k + k / GAP_PERIOD) * SAMPLE_MICROS;
+            double t = time / 1e6;
+            for (int i = 0; i < n; i++)
+            {
+                double phase = 2 * Math.PI * FREQUENCY[i] * t;
+                double commanded = SIMULATION_START[i] + AMPLITUDE[i] * Math.sin(phase);
+                values[n + i] = commanded;
+                values[i] = commanded + POSITION_NOISE * noise(k, i);
+                values[2 * n + i] = TORQUE_AMPLITUDE[i] * Math.cos(phase) + TORQUE_NOISE * noise(k, n + i);
+                values[3 * n + i] = TORQUE_NOISE * noise(k, 2 * n + i);
+            }
+            return time;
+        }
+
+        // uniform in [-sqrt(3), sqrt(3)], i.e. unit variance, from a hash of sample and channel
+        private double noise(int k, int channel)
+        {
+            long x = (long) k * _channels + channel + SEED;
+            x = (x ^ (x >>> 33)) * 0xff51afd7ed558ccdL;
+            x = (x ^ (x >>> 33)) * 0xc4ceb9fe1a85ec53L;
+            x ^= x >>> 33;
+            return ((x >>> 11) * 0x1.0p-53 * 2.0 - 1.0) * Math.sqrt(3.0);
+        }
+    }
+}
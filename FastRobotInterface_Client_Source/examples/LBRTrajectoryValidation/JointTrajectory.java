@@ -0,0 +1,233 @@
+package connectivity.fri.sdk.example.LBRTrajectoryValidation;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+
+import connectivity.fri.sdk.example.LBRModel.LBRiiwa7Model;
+
+/**
+ * Table of joint positions sampled at a fixed rate, as streamed to the robot
+ * one sample per FRI cycle.
+ * <p>
+ * The samples are stored in one flat array so that hour-long trajectories at
+ * 1 kHz stay compact. The text format has one sample per line with the joint
+ * positions in rad separated by white space; empty lines and lines starting
+ * with '#' are ignored.
+ */
+public class JointTrajectory
+{
+    private static final int N = LBRiiwa7Model.NUMBER_OF_JOINTS;
+
+    private final double _sampleTime;
+    private double[] _positions;
+    private int _count;
+
+    /**
+     * Constructor.
+     *
+     * @param sampleTime
+     *            time between two samples (s)
+     * @param capacity
+     *            initial number of samples, the table grows as needed
+     */
+    public JointTrajectory(double sampleTime, int capacity)
+    {
+        _sampleTime = sampleTime;
+        _positions = new double[Math.max(1, capacity) * N];
+    }
+
+    /**
+     * Appends a sample.
+     *
+     * @param position
+     *            joint positions (rad)
+     */
+    public void add(double[] position)
+    {
+        if ((_count + 1) * N > _positions.length)
+        {
+            _positions = Arrays.copyOf(_positions, 2 * _positions.length);
+        }
+        System.arraycopy(position, 0, _positions, _count * N, N);
+        _count++;
+    }
+
+    /**
+     * Overwrites a sample.
+     *
+     * @param sample
+     *            sample index
+     * @param position
+     *            joint positions (rad)
+     */
+    public void set(int sample, double[] position)
+    {
+        checkIndex(sample);
+        System.arraycopy(position, 0, _positions, sample * N, N);
+    }
+
+    /**
+     * @return time between two samples (s)
+     */
+    public double getSampleTime()
+    {
+        return _sampleTime;
+    }
+
+    /**
+     * @return number of samples
+     */
+    public int getCount()
+    {
+        return _count;
+    }
+
+    /**
+     * @return duration of the trajectory (s)
+     */
+    public double getDuration()
+    {
+        return _count * _sampleTime;
+    }
+
+    /**
+     * @param sample
+     *            sample index
+     * @return time of the sample relative to the start (s)
+     */
+    public double getTime(int sample)
+    {
+        return sample * _sampleTime;
+    }
+
+    /**
+     * Copies a sample.
+     *
+     * @param sample
+     *            sample index
+     * @param position
+     *            output joint positions (rad)
+     */
+    public void get(int sample, double[] position)
+    {
+        checkIndex(sample);
+        System.arraycopy(_positions, sample * N, position, 0, N);
+    }
+
+    /**
+     * @param sample
+     *            sample index
+     * @param joint
+     *            joint index
+     * @return position of the joint (rad)
+     */
+    public double get(int sample, int joint)
+    {
+        return _positions[sample * N + joint];
+    }
+
+    private void checkIndex(int sample)
+    {
+        if (sample < 0 || sample >= _count)
+        {
+            throw new IndexOutOfBoundsException("Sample " + sample + " of " + _count);
+        }
+    }
+
+    /**
+     * Writes the trajectory in the text format.
+     *
+     * @param file
+     *            target file
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    public void write(File file) throws IOException
+    {
+        BufferedWriter writer = new BufferedWriter(new FileWriter(file));
+        try
+        {
+            writer.write("# joint positions (rad), sample time " + _sampleTime + " s");
+            writer.newLine();
+            StringBuilder line = new StringBuilder();
+            for (int k = 0; k < _count; k++)
+            {
+                line.setLength(0);
+                for (int i = 0; i < N; i++)
+                {
+                    if (i > 0)
+                    {
+                        line.append(' ');
+                    }
+                    line.append(_positions[k * N + i]);
+                }
+                writer.write(line.toString());
+                writer.newLine();
+            }
+        }
+        finally
+        {
+            writer.close();
+        }
+    }
+
+    /**
+     * Reads a trajectory in the text format.
+     *
+     * @param file
+     *            source file
+     * @param sampleTime
+     *            time between two samples (s)
+     * @return the trajectory
+     * @throws IOException
+     *             if the file cannot be read or a line has not one value per
+     *             joint
+     */
+    public static JointTrajectory read(File file, double sampleTime) throws IOException
+    {
+        JointTrajectory trajectory = new JointTrajectory(sampleTime, 1 << 16);
+        double[] position = new double[N];
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try
+        {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null)
+            {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#"))
+                {
+                    continue;
+                }
+                String[] values = line.split("[\\s,;]+");
+                if (values.length != N)
+                {
+                    throw new IOException("Line " + lineNumber + " has " + values.length + " values instead of " + N);
+                }
+                try
+                {
+                    for (int i = 0; i < N; i++)
+                    {
+                        position[i] = Double.parseDouble(values[i]);
+                    }
+                }
+                catch (NumberFormatException e)
+                {
+                    throw new IOException("Line " + lineNumber + ": " + e.getMessage());
+                }
+                trajectory.add(position);
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+        return trajectory;
+    }
+}
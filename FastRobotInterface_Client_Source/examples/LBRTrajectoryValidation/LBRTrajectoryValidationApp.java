@@ -0,0 +1,216 @@
+package connectivity.fri.sdk.example.LBRTrajectoryValidation;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Logger;
+
+import connectivity.fri.sdk.example.LBRModel.LBRiiwa7Model;
+
+/**
+ * Pre-flight validation of joint trajectories before they are streamed
+ * through FRI.
+ * <p>
+ * The application has two modes:
+ * <ul>
+ * <li><code>validate &lt;file&gt; [sample time ms] [tool z m]</code> reads a
+ * trajectory in the text format of {@link JointTrajectory} and reports the
+ * first violation of the default {@link TrajectoryLimits}; the exit status is
+ * 1 if there is one.</li>
+ * <li><code>benchmark [minutes]</code> generates a smooth trajectory at 1 kHz,
+ * validates it sequentially and in parallel, and checks that faults injected
+ * at known samples are reported with their timestamps.</li>
+ * </ul>
+ */
+public class LBRTrajectoryValidationApp
+{
+
+    private static final double DEFAULT_SAMPLE_MILLIS = 1.0;
+    private static final double DEFAULT_BENCHMARK_MINUTES = 60.0;
+
+    private static final double[] BENCHMARK_START = {
+        0, Math.toRadians(30), 0, Math.toRadians(-60), 0, Math.toRadians(60), 0 };
+    private static final double[] BENCHMARK_AMPLITUDE = { 0.8, 0.3, 0.8, 0.4, 0.8, 0.5, 1.0 };
+    private static final double[] BENCHMARK_FREQUENCIES = { 0.011, 0.037, 0.071 };
+    private static final double RAMP_SECONDS = 2.0;
+    private static final double STRETCHED_ELBOW = Math.toRadians(-1);
+    private static final double STRETCH_SECONDS = 4.0;
+    private static final long SEED = 4711;
+
+    /**
+     * @param argv
+     *            the arguments
+     */
+    public static void main(String[] argv)
+    {
+        if (argv.length == 0 || argv[0].equals("help"))
+        {
+            Logger.getAnonymousLogger().info("\nKUKA LBR trajectory validation\n\n\tCommand line arguments:");
+            Logger.getAnonymousLogger().info("\tvalidate <file> [sample time ms] [tool z m]");
+            Logger.getAnonymousLogger().info("\tbenchmark [minutes]");
+            return;
+        }
+
+        ForkJoinPool pool = new ForkJoinPool();
+        try
+        {
+            if (argv[0].equals("validate") && argv.length >= 2)
+            {
+                double sampleMillis = (argv.length >= 3) ? Double.valueOf(argv[2]) : DEFAULT_SAMPLE_MILLIS;
+                LBRiiwa7Model model = new LBRiiwa7Model();
+                if (argv.length >= 4)
+                {
+                    model.setToolOffset(0, 0, Double.valueOf(argv[3]));
+                }
+                JointTrajectory trajectory = JointTrajectory.read(new File(argv[1]), sampleMillis / 1000.0);
+                long start = System.nanoTime();
+                TrajectoryViolation violation = new TrajectoryValidator(model, new TrajectoryLimits()).validate(
+                        trajectory, pool);
+                long nanos = System.nanoTime() - start;
+                Logger.getAnonymousLogger().info(String.format("%d samples (%.1f s) checked in %.1f ms: %s",
+                        trajectory.getCount(), trajectory.getDuration(), nanos / 1e6,
+                        violation != null ? violation : "within the limits"));
+                if (violation != null)
+                {
+                    System.exit(1);
+                }
+            }
+            else if (argv[0].equals("benchmark"))
+            {
+                double minutes = (argv.length >= 2) ? Double.valueOf(argv[1]) : DEFAULT_BENCHMARK_MINUTES;
+                benchmark(minutes, pool);
+            }
+            else
+            {
+                Logger.getAnonymousLogger().severe("Unknown mode " + argv[0]);
+            }
+        }
+        catch (IOException e)
+        {
+            Logger.getAnonymousLogger().severe("Trajectory could not be read: " + e.getMessage());
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+
+    private static void benchmark(double minutes, ForkJoinPool pool)
+    {
+        JointTrajectory trajectory = generate(minutes * 60.0, DEFAULT_SAMPLE_MILLIS / 1000.0);
+        TrajectoryValidator validator = new TrajectoryValidator(new LBRiiwa7Model(), new TrajectoryLimits());
+        ForkJoinPool single = new ForkJoinPool(1);
+
+        StringBuilder report = new StringBuilder("Trajectory validation benchmark:\n");
+        report.append(String.format("\t%d samples (%.1f min at %.0f Hz)%n", trajectory.getCount(), minutes,
+                1.0 / trajectory.getSampleTime()));
+        try
+        {
+            // warm up both paths on a prefix
+            validator.validate(generate(60.0, trajectory.getSampleTime()), single);
+            validator.validate(generate(60.0, trajectory.getSampleTime()), pool);
+
+            long start = System.nanoTime();
+            TrajectoryViolation sequential = validator.validate(trajectory, single);
+            double sequentialSeconds = (System.nanoTime() - start) / 1e9;
+            start = System.nanoTime();
+            TrajectoryViolation parallel = validator.validate(trajectory, pool);
+            double parallelSeconds = (System.nanoTime() - start) / 1e9;
+            report.append(String.format("\tclean trajectory: %s%n", parallel != null ? parallel
+                    : "within the limits"));
+            report.append(String.format("\tsequential %.2f s, parallel %.2f s on %d threads (%.1fx, %.1f M samples/s)"
+                    + "%n", sequentialSeconds, parallelSeconds, pool.getParallelism(), sequentialSeconds
+                    / parallelSeconds, trajectory.getCount() / parallelSeconds / 1e6));
+            if ((sequential == null) != (parallel == null))
+            {
+                report.append("\tMISMATCH between sequential and parallel result\n");
+            }
+
+            // faults at known samples, the earliest must be reported
+            double[] q = new double[LBRiiwa7Model.NUMBER_OF_JOINTS];
+            int late = (int) (0.8 * trajectory.getCount());
+            int early = (int) (0.6 * trajectory.getCount());
+            stretchElbow(trajectory, late);
+            TrajectoryViolation singularity = validator.validate(trajectory, pool);
+            report.append("\tsmooth elbow stretch centred at ").append(format(trajectory.getTime(late)))
+                    .append(" s: ").append(singularity)
+                    .append(singularity != null && singularity.getType() == TrajectoryViolation.Type.SINGULARITY
+                            ? "" : " UNEXPECTED").append('\n');
+            trajectory.get(early, q);
+            q[6] += 0.01; // step of 10 mrad within one cycle
+            trajectory.set(early, q);
+            start = System.nanoTime();
+            TrajectoryViolation first = validator.validate(trajectory, pool);
+            double faultSeconds = (System.nanoTime() - start) / 1e9;
+            report.append("\tadditional step at ").append(format(trajectory.getTime(early))).append(" s: ")
+                    .append(first).append(String.format(" (%.2f s)", faultSeconds));
+            boolean ok = first != null && first.getSample() == early
+                    && first.getType() == TrajectoryViolation.Type.VELOCITY;
+            report.append(ok ? "" : " UNEXPECTED");
+        }
+        finally
+        {
+            single.shutdown();
+        }
+        Logger.getAnonymousLogger().info(report.toString());
+    }
+
+    // moves the elbow smoothly into the stretched position and back around a sample
+    private static void stretchElbow(JointTrajectory trajectory, int center)
+    {
+        double[] q = new double[LBRiiwa7Model.NUMBER_OF_JOINTS];
+        int halfWidth = (int) (STRETCH_SECONDS / 2 / trajectory.getSampleTime());
+        trajectory.get(center, q);
+        double offset = STRETCHED_ELBOW - q[3];
+        for (int k = center - halfWidth; k <= center + halfWidth; k++)
+        {
+            // cos^4 bump, continuous up to the jerk at both ends
+            double c = Math.cos(0.5 * Math.PI * (k - center) / halfWidth);
+            trajectory.get(k, q);
+            q[3] += offset * c * c * c * c;
+            trajectory.set(k, q);
+        }
+    }
+
+    // sum of slow sines per joint, faded in and out with continuous acceleration
+    private static JointTrajectory generate(double duration, double sampleTime)
+    {
+        int n = LBRiiwa7Model.NUMBER_OF_JOINTS;
+        int count = (int) Math.round(duration / sampleTime);
+        Random random = new Random(SEED);
+        double[][] phase = new double[n][BENCHMARK_FREQUENCIES.length];
+        for (int i = 0; i < n; i++)
+        {
+            for (int h = 0; h < BENCHMARK_FREQUENCIES.length; h++)
+            {
+                phase[i][h] = 2 * Math.PI * random.nextDouble();
+            }
+        }
+
+        JointTrajectory trajectory = new JointTrajectory(sampleTime, count);
+        double[] q = new double[n];
+        for (int k = 0; k < count; k++)
+        {
+            double t = k * sampleTime;
+            double s = Math.max(0.0, Math.min(1.0, Math.min(t, duration - t) / RAMP_SECONDS));
+            double envelope = s * s * s * (10.0 + s * (-15.0 + 6.0 * s));
+            for (int i = 0; i < n; i++)
+            {
+                double sum = 0.0;
+                for (int h = 0; h < BENCHMARK_FREQUENCIES.length; h++)
+                {
+                    sum += Math.sin(2 * Math.PI * BENCHMARK_FREQUENCIES[h] * t + phase[i][h]);
+                }
+                q[i] = BENCHMARK_START[i] + envelope * BENCHMARK_AMPLITUDE[i] * sum / BENCHMARK_FREQUENCIES.length;
+            }
+            trajectory.add(q);
+        }
+        return trajectory;
+    }
+
+    private static String format(double value)
+    {
+        return String.format("%.3f", value);
+    }
+}
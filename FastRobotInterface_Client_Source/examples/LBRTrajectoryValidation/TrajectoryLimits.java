@@ -0,0 +1,114 @@
+package connectivity.fri.sdk.example.LBRTrajectoryValidation;
+
+import connectivity.fri.sdk.example.LBRModel.LBRiiwa7Model;
+
+/**
+ * Limits checked by the {@link TrajectoryValidator}.
+ * <p>
+ * The defaults keep a margin to the joint limits of {@link LBRiiwa7Model},
+ * use its velocity limits and conservative acceleration and jerk limits for
+ * streamed motion. Self-collision is checked on capsules around upper arm,
+ * forearm and hand; singularity proximity on the manipulability
+ * sqrt(det(J J^T)) of the geometric Jacobian.
+ */
+public class TrajectoryLimits
+{
+    private static final int N = LBRiiwa7Model.NUMBER_OF_JOINTS;
+
+    /** Default margin to the joint limits (rad). */
+    public static final double DEFAULT_POSITION_MARGIN = Math.toRadians(2);
+
+    /** Default acceleration limits (rad/s^2). */
+    public static final double[] DEFAULT_ACCELERATION_LIMITS = { 5, 5, 8, 8, 10, 15, 15 };
+
+    /** Default jerk limits (rad/s^3). */
+    public static final double[] DEFAULT_JERK_LIMITS = { 100, 100, 160, 160, 200, 300, 300 };
+
+    /** Default minimum distance between non-adjacent link capsules (m). */
+    public static final double DEFAULT_MIN_DISTANCE = 0.02;
+
+    /** Default minimum manipulability. */
+    public static final double DEFAULT_MIN_MANIPULABILITY = 0.01;
+
+    final double[] _position = new double[N];
+    final double[] _velocity = new double[N];
+    final double[] _acceleration = new double[N];
+    final double[] _jerk = new double[N];
+    double _minDistance = DEFAULT_MIN_DISTANCE;
+    double _minManipulability = DEFAULT_MIN_MANIPULABILITY;
+
+    /**
+     * Creates the default limits.
+     */
+    public TrajectoryLimits()
+    {
+        for (int i = 0; i < N; i++)
+        {
+            _position[i] = LBRiiwa7Model.JOINT_LIMITS[i] - DEFAULT_POSITION_MARGIN;
+        }
+        System.arraycopy(LBRiiwa7Model.VELOCITY_LIMITS, 0, _velocity, 0, N);
+        System.arraycopy(DEFAULT_ACCELERATION_LIMITS, 0, _acceleration, 0, N);
+        System.arraycopy(DEFAULT_JERK_LIMITS, 0, _jerk, 0, N);
+    }
+
+    /**
+     * Copy constructor.
+     *
+     * @param other
+     *            limits to copy
+     */
+    public TrajectoryLimits(TrajectoryLimits other)
+    {
+        System.arraycopy(other._position, 0, _position, 0, N);
+        System.arraycopy(other._velocity, 0, _velocity, 0, N);
+        System.arraycopy(other._acceleration, 0, _acceleration, 0, N);
+        System.arraycopy(other._jerk, 0, _jerk, 0, N);
+        _minDistance = other._minDistance;
+        _minManipulability = other._minManipulability;
+    }
+
+    /**
+     * @param position
+     *            symmetric joint position limits (rad)
+     */
+    public void setPositionLimits(double[] position)
+    {
+        System.arraycopy(position, 0, _position, 0, N);
+    }
+
+    /**
+     * Scales the velocity, acceleration and jerk limits, e.g. to validate
+     * against a fraction of the capabilities of the robot.
+     *
+     * @param velocity
+     *            velocity limits (rad/s)
+     * @param acceleration
+     *            acceleration limits (rad/s^2)
+     * @param jerk
+     *            jerk limits (rad/s^3)
+     */
+    public void setDerivativeLimits(double[] velocity, double[] acceleration, double[] jerk)
+    {
+        System.arraycopy(velocity, 0, _velocity, 0, N);
+        System.arraycopy(acceleration, 0, _acceleration, 0, N);
+        System.arraycopy(jerk, 0, _jerk, 0, N);
+    }
+
+    /**
+     * @param minDistance
+     *            minimum distance between non-adjacent link capsules (m)
+     */
+    public void setMinDistance(double minDistance)
+    {
+        _minDistance = minDistance;
+    }
+
+    /**
+     * @param minManipulability
+     *            minimum manipulability
+     */
+    public void setMinManipulability(double minManipulability)
+    {
+        _minManipulability = minManipulability;
+    }
+}
@@ -0,0 +1,334 @@
+package connectivity.fri.sdk.example.LBRTrajectoryValidation;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import connectivity.fri.sdk.example.LBRModel.LBRiiwa7Model;
+import connectivity.fri.sdk.example.LBRModel.LinearAlgebra;
+
+/**
+ * Pre-flight check of a {@link JointTrajectory} before it is streamed to the
+ * robot.
+ * <p>
+ * Every sample is checked against the {@link TrajectoryLimits}: joint
+ * positions, the velocity, acceleration and jerk of backward differences (the
+ * robot is assumed to rest at the first sample), the distance between
+ * non-adjacent link capsules and the manipulability. The sample table is split
+ * into ranges that a fork-join pool checks in parallel, each with its own copy
+ * of the model. Ranges behind a violation that has already been found are
+ * skipped, and the violation with the lowest sample index is returned, so the
+ * result does not depend on the parallelism.
+ */
+public class TrajectoryValidator
+{
+    private static final int N = LBRiiwa7Model.NUMBER_OF_JOINTS;
+    private static final int LEAF_SAMPLES = 8192;
+
+    // frame origins of base, shoulder, elbow, wrist and tool centre point
+    private static final int[] POINT_FRAMES = { 0, 1, 3, 5, 7 };
+    // capsules between these points and the pairs that are not adjacent
+    private static final String[] CAPSULE_NAMES = { "base", "upper arm", "forearm", "hand" };
+    private static final int[][] CAPSULE_POINTS = { { 0, 1 }, { 1, 2 }, { 2, 3 }, { 3, 4 } };
+    private static final double[] CAPSULE_RADII = { 0.09, 0.075, 0.07, 0.06 };
+    private static final int[][] CAPSULE_PAIRS = { { 0, 2 }, { 0, 3 }, { 1, 3 } };
+
+    private final LBRiiwa7Model _model;
+    private final TrajectoryLimits _limits;
+
+    /**
+     * Constructor.
+     *
+     * @param model
+     *            kinematic model including the tool offset, copied per task
+     * @param limits
+     *            the limits, copied
+     */
+    public TrajectoryValidator(LBRiiwa7Model model, TrajectoryLimits limits)
+    {
+        _model = new LBRiiwa7Model(model);
+        _limits = new TrajectoryLimits(limits);
+    }
+
+    /**
+     * Checks all samples of a trajectory.
+     *
+     * @param trajectory
+     *            the trajectory
+     * @param pool
+     *            pool running the checks
+     * @return the violation with the lowest sample index, or null if the
+     *         trajectory is within the limits
+     */
+    public TrajectoryViolation validate(JointTrajectory trajectory, ForkJoinPool pool)
+    {
+        AtomicInteger bound = new AtomicInteger(Integer.MAX_VALUE);
+        return pool.invoke(new CheckTask(trajectory, 0, trajectory.getCount(), bound));
+    }
+
+    /**
+     * @param pair
+     *            index of a capsule pair as reported in a self-collision
+     *            violation
+     * @return names of the two capsules
+     */
+    public static String describeCapsulePair(int pair)
+    {
+        return CAPSULE_NAMES[CAPSULE_PAIRS[pair][0]] + " / " + CAPSULE_NAMES[CAPSULE_PAIRS[pair][1]];
+    }
+
+    private class CheckTask extends RecursiveTask<TrajectoryViolation>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final JointTrajectory _trajectory;
+        private final int _from;
+        private final int _to;
+        private final AtomicInteger _bound;
+
+        CheckTask(JointTrajectory trajectory, int from, int to, AtomicInteger bound)
+        {
+            _trajectory = trajectory;
+            _from = from;
+            _to = to;
+            _bound = bound;
+        }
+
+        @Override
+        protected TrajectoryViolation compute()
+        {
+            if (_from >= _bound.get())
+            {
+                return null;
+            }
+            if (_to - _from <= LEAF_SAMPLES)
+            {
+                TrajectoryViolation violation = new SampleChecker(_trajectory).check(_from, _to, _bound);
+                if (violation != null)
+                {
+                    lowerBound(violation.getSample());
+                }
+                return violation;
+            }
+            int middle = (_from + _to) >>> 1;
+            CheckTask right = new CheckTask(_trajectory, middle, _to, _bound);
+            right.fork();
+            TrajectoryViolation left = new CheckTask(_trajectory, _from, middle, _bound).compute();
+            // the right half sees the lowered bound and returns early
+            TrajectoryViolation result = right.join();
+            return (left != null) ? left : result;
+        }
+
+        private void lowerBound(int sample)
+        {
+            int current = _bound.get();
+            while (sample < current && !_bound.compareAndSet(current, sample))
+            {
+                current = _bound.get();
+            }
+        }
+    }
+
+    // per-task state, the model is not thread-safe
+    private class SampleChecker
+    {
+        private final JointTrajectory _trajectory;
+        private final LBRiiwa7Model _kinematics = new LBRiiwa7Model(_model);
+        private final double[] _q = new double[N];
+        private final double[][] _jacobian = new double[6][N];
+        private final double[][] _product = new double[6][6];
+        private final double[][] _points = new double[POINT_FRAMES.length][3];
+        private final double _dt;
+
+        SampleChecker(JointTrajectory trajectory)
+        {
+            _trajectory = trajectory;
+            _dt = trajectory.getSampleTime();
+        }
+
+        TrajectoryViolation check(int from, int to, AtomicInteger bound)
+        {
+            for (int k = from; k < to; k++)
+            {
+                if ((k & 0xff) == 0 && k >= bound.get())
+                {
+                    // an earlier violation is known
+                    return null;
+                }
+                TrajectoryViolation violation = checkJoints(k);
+                if (violation == null)
+                {
+                    violation = checkKinematics(k);
+                }
+                if (violation != null)
+                {
+                    return violation;
+                }
+            }
+            return null;
+        }
+
+        private TrajectoryViolation checkJoints(int k)
+        {
+            // backward differences, the samples before the start repeat the first one
+            int k1 = Math.max(0, k - 1);
+            int k2 = Math.max(0, k - 2);
+            int k3 = Math.max(0, k - 3);
+            for (int i = 0; i < N; i++)
+            {
+                double q0 = _trajectory.get(k, i);
+                double q1 = _trajectory.get(k1, i);
+                double q2 = _trajectory.get(k2, i);
+                double q3 = _trajectory.get(k3, i);
+                if (Math.abs(q0) > _limits._position[i])
+                {
+                    return violation(TrajectoryViolation.Type.JOINT_LIMIT, k, i, q0, _limits._position[i]);
+                }
+                double v = (q0 - q1) / _dt;
+                if (Math.abs(v) > _limits._velocity[i])
+                {
+                    return violation(TrajectoryViolation.Type.VELOCITY, k, i, v, _limits._velocity[i]);
+                }
+                double a = (q0 - 2 * q1 + q2) / (_dt * _dt);
+                if (Math.abs(a) > _limits._acceleration[i])
+                {
+                    return violation(TrajectoryViolation.Type.ACCELERATION, k, i, a, _limits._acceleration[i]);
+                }
+                double j = (q0 - 3 * q1 + 3 * q2 - q3) / (_dt * _dt * _dt);
+                if (Math.abs(j) > _limits._jerk[i])
+                {
+                    return violation(TrajectoryViolation.Type.JERK, k, i, j, _limits._jerk[i]);
+                }
+            }
+            return null;
+        }
+
+        private TrajectoryViolation checkKinematics(int k)
+        {
+            _trajectory.get(k, _q);
+            _kinematics.jacobian(_q, _jacobian);
+            for (int p = 0; p < POINT_FRAMES.length; p++)
+            {
+                _kinematics.getFrameOrigin(POINT_FRAMES[p], _points[p]);
+            }
+
+            for (int pair = 0; pair < CAPSULE_PAIRS.length; pair++)
+            {
+                int a = CAPSULE_PAIRS[pair][0];
+                int b = CAPSULE_PAIRS[pair][1];
+                double distance = segmentDistance(_points[CAPSULE_POINTS[a][0]], _points[CAPSULE_POINTS[a][1]],
+                        _points[CAPSULE_POINTS[b][0]], _points[CAPSULE_POINTS[b][1]])
+                        - CAPSULE_RADII[a] - CAPSULE_RADII[b];
+                if (distance < _limits._minDistance)
+                {
+                    return violation(TrajectoryViolation.Type.SELF_COLLISION, k, pair, distance, _limits._minDistance);
+                }
+            }
+
+            double manipulability = manipulability();
+            if (manipulability < _limits._minManipulability)
+            {
+                return violation(TrajectoryViolation.Type.SINGULARITY, k, -1, manipulability,
+                        _limits._minManipulability);
+            }
+            return null;
+        }
+
+        // sqrt(det(J J^T)) as the product of the diagonal of the Cholesky factor
+        private double manipulability()
+        {
+            for (int r = 0; r < 6; r++)
+            {
+                for (int c = 0; c <= r; c++)
+                {
+                    double sum = 0.0;
+                    for (int i = 0; i < N; i++)
+                    {
+                        sum += _jacobian[r][i] * _jacobian[c][i];
+                    }
+                    _product[r][c] = sum;
+                    _product[c][r] = sum;
+                }
+            }
+            if (!LinearAlgebra.choleskyDecompose(_product, 6))
+            {
+                return 0.0;
+            }
+            double result = 1.0;
+            for (int r = 0; r < 6; r++)
+            {
+                result *= _product[r][r];
+            }
+            return result;
+        }
+
+        private TrajectoryViolation violation(TrajectoryViolation.Type type, int k, int joint, double value,
+                double limit)
+        {
+            return new TrajectoryViolation(type, k, _trajectory.getTime(k), joint, value, limit);
+        }
+    }
+
+    // distance between the segments p0-p1 and q0-q1
+    static double segmentDistance(double[] p0, double[] p1, double[] q0, double[] q1)
+    {
+        double ux = p1[0] - p0[0];
+        double uy = p1[1] - p0[1];
+        double uz = p1[2] - p0[2];
+        double vx = q1[0] - q0[0];
+        double vy = q1[1] - q0[1];
+        double vz = q1[2] - q0[2];
+        double wx = p0[0] - q0[0];
+        double wy = p0[1] - q0[1];
+        double wz = p0[2] - q0[2];
+        double a = ux * ux + uy * uy + uz * uz;
+        double b = ux * vx + uy * vy + uz * vz;
+        double c = vx * vx + vy * vy + vz * vz;
+        double d = ux * wx + uy * wy + uz * wz;
+        double e = vx * wx + vy * wy + vz * wz;
+        double denominator = a * c - b * b;
+
+        double s;
+        double t;
+        if (a < 1e-12 && c < 1e-12)
+        {
+            s = 0.0;
+            t = 0.0;
+        }
+        else if (a < 1e-12)
+        {
+            s = 0.0;
+            t = clamp(e / c);
+        }
+        else if (c < 1e-12)
+        {
+            t = 0.0;
+            s = clamp(-d / a);
+        }
+        else
+        {
+            // closest points of the lines, clamped to the segments
+            s = (denominator > 1e-12) ? clamp((b * e - c * d) / denominator) : 0.0;
+            t = (b * s + e) / c;
+            if (t < 0.0)
+            {
+                t = 0.0;
+                s = clamp(-d / a);
+            }
+            else if (t > 1.0)
+            {
+                t = 1.0;
+                s = clamp((b - d) / a);
+            }
+        }
+        double dx = wx + s * ux - t * vx;
+        double dy = wy + s * uy - t * vy;
+        double dz = wz + s * uz - t * vz;
+        return Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+    private static double clamp(double value)
+    {
+        return Math.max(0.0, Math.min(1.0, value));
+    }
+}
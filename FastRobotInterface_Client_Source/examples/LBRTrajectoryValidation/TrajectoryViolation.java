@@ -0,0 +1,126 @@
+package connectivity.fri.sdk.example.LBRTrajectoryValidation;
+
+/**
+ * First sample of a trajectory that violates a limit.
+ */
+public class TrajectoryViolation
+{
+    /**
+     * Checked limits.
+     */
+    public enum Type
+    {
+        /** joint position outside the limits */
+        JOINT_LIMIT,
+        /** joint velocity above the limit */
+        VELOCITY,
+        /** joint acceleration above the limit */
+        ACCELERATION,
+        /** joint jerk above the limit */
+        JERK,
+        /** distance of two link capsules below the minimum */
+        SELF_COLLISION,
+        /** manipulability below the minimum */
+        SINGULARITY
+    }
+
+    private final Type _type;
+    private final int _sample;
+    private final double _time;
+    private final int _joint;
+    private final double _value;
+    private final double _limit;
+
+    /**
+     * Constructor.
+     *
+     * @param type
+     *            violated limit
+     * @param sample
+     *            sample index
+     * @param time
+     *            time of the sample (s)
+     * @param joint
+     *            joint index, the capsule pair of a self-collision (see
+     *            {@link TrajectoryValidator#describeCapsulePair}), -1 for a
+     *            singularity
+     * @param value
+     *            value at the sample
+     * @param limit
+     *            the violated limit
+     */
+    public TrajectoryViolation(Type type, int sample, double time, int joint, double value, double limit)
+    {
+        _type = type;
+        _sample = sample;
+        _time = time;
+        _joint = joint;
+        _value = value;
+        _limit = limit;
+    }
+
+    /**
+     * @return violated limit
+     */
+    public Type getType()
+    {
+        return _type;
+    }
+
+    /**
+     * @return sample index
+     */
+    public int getSample()
+    {
+        return _sample;
+    }
+
+    /**
+     * @return time of the sample relative to the start of the trajectory (s)
+     */
+    public double getTime()
+    {
+        return _time;
+    }
+
+    /**
+     * @return joint index, capsule pair for self-collisions, -1 for
+     *         singularities
+     */
+    public int getJoint()
+    {
+        return _joint;
+    }
+
+    /**
+     * @return value at the sample
+     */
+    public double getValue()
+    {
+        return _value;
+    }
+
+    /**
+     * @return the violated limit
+     */
+    public double getLimit()
+    {
+        return _limit;
+    }
+
+    @Override
+    public String toString()
+    {
+        String where;
+        if (_type == Type.SELF_COLLISION)
+        {
+            where = " of " + TrajectoryValidator.describeCapsulePair(_joint);
+        }
+        else
+        {
+            where = (_joint >= 0) ? " at joint A" + (_joint + 1) : "";
+        }
+        return String.format("%s%s at t = %.3f s (sample %d): %.5g, limit %.5g", _type, where, _time, _sample,
+                _value, _limit);
+    }
+}
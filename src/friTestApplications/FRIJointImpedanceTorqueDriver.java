@@ -0,0 +1,95 @@
+package friTestApplications;
+
+import static com.kuka.roboticsAPI.motionModel.BasicMotions.ptp;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.kuka.connectivity.fri.ClientCommandMode;
+import com.kuka.connectivity.fri.FRIConfiguration;
+import com.kuka.connectivity.fri.FRIJointOverlay;
+import com.kuka.connectivity.fri.FRISession;
+import com.kuka.roboticsAPI.applicationModel.RoboticsAPIApplication;
+import com.kuka.roboticsAPI.controllerModel.Controller;
+import com.kuka.roboticsAPI.deviceModel.LBR;
+import com.kuka.roboticsAPI.motionModel.PositionHold;
+import com.kuka.roboticsAPI.motionModel.controlModeModel.JointImpedanceControlMode;
+
+/**
+ * Creates a FRI Session in torque command mode for the client-side joint
+ * impedance controller (LBRJointImpedance example).
+ * <p>
+ * The joint impedance of the robot controller runs with zero stiffness, so
+ * the torques commanded by the client define stiffness and damping of the
+ * joints; the robot controller only compensates gravity.
+ */
+public class FRIJointImpedanceTorqueDriver extends RoboticsAPIApplication
+{
+    private Controller _lbrController;
+    private LBR _lbr;
+    private String _clientName;
+
+    @Override
+    public void initialize()
+    {
+        _lbrController = (Controller) getContext().getControllers().toArray()[0];
+        _lbr = (LBR) _lbrController.getDevices().toArray()[0];
+        // **********************************************************************
+        // *** change next line to the FRIClient's IP address                 ***
+        // **********************************************************************
+        _clientName = "172.31.1.100";
+    }
+
+    @Override
+    public void run()
+    {
+        _lbr.move(ptp(0, Math.toRadians(30), 0, Math.toRadians(-60), 0, Math.toRadians(60), 0)
+                .setJointVelocityRel(0.2));
+        // configure and start FRI session
+        FRIConfiguration friConfiguration = FRIConfiguration.createRemoteConfiguration(_lbr, _clientName);
+        friConfiguration.setSendPeriodMilliSec(1);
+
+        getLogger().info("Creating FRI connection to " + friConfiguration.getHostName());
+        getLogger().info("SendPeriod: " + friConfiguration.getSendPeriodMilliSec() + "ms |"
+                + " ReceiveMultiplier: " + friConfiguration.getReceiveMultiplier());
+
+        FRISession friSession = new FRISession(friConfiguration);
+        FRIJointOverlay jointOverlay = new FRIJointOverlay(friSession, ClientCommandMode.TORQUE);
+
+        // wait until FRI session is ready to switch to command mode
+        try
+        {
+            friSession.await(10, TimeUnit.SECONDS);
+        }
+        catch (final TimeoutException e)
+        {
+            getLogger().error(e.getLocalizedMessage());
+            friSession.close();
+            return;
+        }
+
+        getLogger().info("FRI connection established.");
+
+        // start PositionHold with overlay, the client commands the whole impedance
+        JointImpedanceControlMode ctrMode = new JointImpedanceControlMode(0, 0, 0, 0, 0, 0, 0);
+        PositionHold posHold = new PositionHold(ctrMode, -1, TimeUnit.SECONDS);
+
+        _lbr.move(posHold.addMotionOverlay(jointOverlay));
+
+        // done
+        friSession.close();
+    }
+
+    /**
+     * main.
+     *
+     * @param args
+     *            args
+     */
+    public static void main(final String[] args)
+    {
+        final FRIJointImpedanceTorqueDriver app = new FRIJointImpedanceTorqueDriver();
+        app.runApplication();
+    }
+
+}
@@ -0,0 +1,206 @@
+package myApplications;
+
+import static com.kuka.roboticsAPI.motionModel.BasicMotions.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.kuka.roboticsAPI.applicationModel.IApplicationData;
+import com.kuka.roboticsAPI.geometricModel.ObjectFrame;
+import com.kuka.roboticsAPI.motionModel.RobotMotion;
+
+/**
+ * Turns text commands of the clients into motions.
+ * <p>
+ * A command names the motion type, a frame of the application data and
+ * optionally the velocity, e.g. <code>move to /P3 at 10%</code> or
+ * <code>lin /base1/P2 100 mm/s</code>; the motion type is PTP if none is
+ * given, a velocity in % is relative to the joint velocity limits. Cell
+ * programs send the same few commands over and over, so every distinct
+ * command is parsed and its frame resolved once; the result is kept in an
+ * LRU cache of bounded size and repeated commands only create the motion
+ * from it. The cache is keyed on the normalized command, so e.g.
+ * <code>MOVE TO /P3 AT 10 %</code> and <code>/P3 10%</code> share an entry;
+ * frame paths stay case-sensitive. Not thread-safe, used by the thread of the application.
+ */
+public class CommandInterpreter {
+	/** Default number of cached commands. */
+	public static final int DEFAULT_CAPACITY = 256;
+
+	private static final int PTP = 0;
+	private static final int LIN = 1;
+
+	private final IApplicationData data;
+	private final Map<String, PreparedMotion> cache;
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	/**
+	 * A parsed command with its resolved frame.
+	 */
+	private static class PreparedMotion {
+		final int type;
+		final ObjectFrame frame;
+		final double jointVelocityRel;
+		final double cartVelocity;
+
+		PreparedMotion(int type, ObjectFrame frame, double jointVelocityRel, double cartVelocity) {
+			this.type = type;
+			this.frame = frame;
+			this.jointVelocityRel = jointVelocityRel;
+			this.cartVelocity = cartVelocity;
+		}
+
+		// a new motion for every execution, the controller owns the old one
+		RobotMotion<?> create() {
+			if (type == LIN) {
+				if (cartVelocity > 0) {
+					return lin(frame).setCartVelocity(cartVelocity);
+				}
+				return (jointVelocityRel > 0) ? lin(frame).setJointVelocityRel(jointVelocityRel) : lin(frame);
+			}
+			return (jointVelocityRel > 0) ? ptp(frame).setJointVelocityRel(jointVelocityRel) : ptp(frame);
+		}
+	}
+
+	/**
+	 * @param data
+	 *            application data the frames are taken from
+	 * @param capacity
+	 *            number of commands cached at most
+	 */
+	public CommandInterpreter(IApplicationData data, final int capacity) {
+		this.data = data;
+		cache = new LinkedHashMap<String, PreparedMotion>(2 * capacity, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, PreparedMotion> eldest) {
+				if (size() > capacity) {
+					evictions++;
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Creates the motion of a command.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the command is invalid or names an unknown frame
+	 */
+	public RobotMotion<?> motionOf(String command) {
+		String key = normalize(command);
+		PreparedMotion prepared = cache.get(key);
+		if (prepared != null) {
+			hits++;
+		} else {
+			misses++;
+			prepared = prepare(key);
+			cache.put(key, prepared);
+		}
+		return prepared.create();
+	}
+
+	public long getHits() {
+		return hits;
+	}
+
+	public long getMisses() {
+		return misses;
+	}
+
+	public long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * @return share of commands found in the cache, 0 before the first one
+	 */
+	public double getHitRate() {
+		long total = hits + misses;
+		return (total == 0) ? 0 : (double) hits / total;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d hits, %d misses (%.1f%% hit rate), %d cached, %d evicted", hits, misses,
+				100 * getHitRate(), cache.size(), evictions);
+	}
+
+	// [move] [ptp|lin] [to] <frame> [at] [<n>% | <n> mm/s] to "ptp|lin <frame> [<velocity>]", so
+	// commands that differ only in optional words, blanks or case share a cache entry
+	private static String normalize(String command) {
+		String[] tokens = command.trim().split("\\s+");
+		int i = 0;
+		if (is(tokens, i, "move")) {
+			i++;
+		}
+		String type = "ptp";
+		if (is(tokens, i, "ptp")) {
+			i++;
+		} else if (is(tokens, i, "lin")) {
+			type = "lin";
+			i++;
+		}
+		if (is(tokens, i, "to")) {
+			i++;
+		}
+		if (i >= tokens.length || !tokens[i].startsWith("/")) {
+			throw new IllegalArgumentException("Frame path expected in \"" + command.trim() + "\"");
+		}
+		StringBuilder key = new StringBuilder(type).append(' ').append(tokens[i]);
+		i++;
+		if (is(tokens, i, "at")) {
+			i++;
+		}
+		if (i < tokens.length) {
+			key.append(' ');
+			for (; i < tokens.length; i++) {
+				key.append(tokens[i].toLowerCase());
+			}
+		}
+		return key.toString();
+	}
+
+	// resolves the frame and checks the velocity of a normalized command
+	private PreparedMotion prepare(String key) {
+		String[] parts = key.split(" ");
+		int type = parts[0].equals("lin") ? LIN : PTP;
+		ObjectFrame frame = data.tryGetFrame(parts[1]);
+		if (frame == null) {
+			throw new IllegalArgumentException("Unknown frame " + parts[1]);
+		}
+		double jointVelocityRel = 0;
+		double cartVelocity = 0;
+		if (parts.length > 2) {
+			String value = parts[2];
+			try {
+				if (value.endsWith("%")) {
+					jointVelocityRel = Double.parseDouble(value.substring(0, value.length() - 1)) / 100;
+					if (!(jointVelocityRel > 0 && jointVelocityRel <= 1)) {
+						throw new IllegalArgumentException("Velocity " + value + " out of range");
+					}
+				} else if (value.endsWith("mm/s") && type == LIN) {
+					cartVelocity = Double.parseDouble(value.substring(0, value.length() - 4));
+					if (!(cartVelocity > 0) || Double.isInfinite(cartVelocity)) {
+						throw new IllegalArgumentException("Velocity " + value + " out of range");
+					}
+				} else {
+					throw new IllegalArgumentException("Velocity in % or, for LIN, mm/s expected in \"" + key
+							+ "\"");
+				}
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid velocity " + value);
+			}
+		}
+		return new PreparedMotion(type, frame, jointVelocityRel, cartVelocity);
+	}
+
+	private static boolean is(String[] tokens, int index, String keyword) {
+		return index < tokens.length && tokens[index].equalsIgnoreCase(keyword);
+	}
+}
@@ -0,0 +1,283 @@
+package myApplications;
+
+import static com.kuka.roboticsAPI.motionModel.BasicMotions.*;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import myApplications.server.CommandQueue;
+import myApplications.server.CommandQueue.Command;
+import myApplications.server.LatencyHistogram;
+import myApplications.server.Message;
+import myApplications.server.MotionSegments;
+
+import com.kuka.roboticsAPI.applicationModel.RoboticsAPIApplication;
+import com.kuka.roboticsAPI.deviceModel.JointPosition;
+import com.kuka.roboticsAPI.deviceModel.LBR;
+import com.kuka.roboticsAPI.geometricModel.Frame;
+import com.kuka.roboticsAPI.geometricModel.ObjectFrame;
+import com.kuka.roboticsAPI.geometricModel.World;
+import com.kuka.roboticsAPI.motionModel.IMotionContainer;
+import com.kuka.roboticsAPI.motionModel.MotionBatch;
+import com.kuka.roboticsAPI.motionModel.RobotMotion;
+import com.kuka.roboticsAPI.motionModel.SplineMotionCP;
+
+/**
+ * Implementation of a robot application.
+ * <p>
+ * The application executes the motions clients of the
+ * {@link TcpServerBackground} queue with <code>MOVE_JOINT</code> and
+ * <code>MOVE_CARTESIAN</code> requests, in the order they arrived. Clients
+ * do not wait for a reply before they send the next motion: up to
+ * {@link #MAX_MOTIONS_IN_FLIGHT} motions are passed to the controller with
+ * <code>moveAsync()</code>, so the next motion is planned while the current
+ * one runs and no network round trip lies between two motions. When a
+ * motion has finished, its client gets a <code>DONE</code> reply, or an
+ * <code>ERROR</code> reply, with the id of the request.
+ * <p>
+ * A <code>MOVE_BATCH</code> request carries a whole cycle, e.g. the approach,
+ * pick and retract of a pick-and-place, as {@link MotionSegments}. A batch
+ * with SPL segments runs as one <code>Spline</code>, any other batch as one
+ * <code>MotionBatch</code> whose motions blend into each other with the
+ * given radii, so the robot does not stop at the intermediate points.
+ * <p>
+ * Cartesian targets are flange poses in the world. A LIN or SPL target of a
+ * batch carries the redundancy (status, turn, E1) of the last PTP target
+ * before it in the same batch; other Cartesian targets carry none, so the
+ * motion keeps the arm configuration the preceding motion ends in. The
+ * redundancy is never taken from the current pose, which belongs to a motion
+ * that may still be running.
+ * <p>
+ * The text of a <code>COMMAND</code> request is turned into a motion by the
+ * {@link CommandInterpreter}, which caches every distinct command.
+ * <p>
+ * Position queries queued behind motions are answered once those motions
+ * have finished. Motions of clients that disconnected are skipped. The
+ * application ends when no request arrived for {@link #IDLE_TIMEOUT_MILLIS}.
+ *
+ * @see UseRoboticsAPIContext
+ * @see #initialize()
+ * @see #run()
+ * @see #dispose()
+ */
+public class RemoteMotionApplication extends RoboticsAPIApplication {
+	private static final int MAX_MOTIONS_IN_FLIGHT = 2;
+	private static final long POLL_MILLIS = 5;
+	private static final long IDLE_TIMEOUT_MILLIS = 300000;
+	private static final double DEFAULT_JOINT_VELOCITY_REL = 0.2;
+	private static final double DEFAULT_CARTESIAN_VELOCITY = 100;
+
+	private LBR lbr;
+	private RobotStateSampler sampler;
+	private CommandInterpreter interpreter;
+	private final Message reply = new Message();
+	private final LatencyHistogram queueWait = new LatencyHistogram();
+	private int doneCount;
+	private int errorCount;
+
+	/**
+	 * A motion passed to the controller.
+	 */
+	private static class Motion {
+		final Command command;
+		final IMotionContainer container;
+
+		Motion(Command command, IMotionContainer container) {
+			this.command = command;
+			this.container = container;
+		}
+	}
+
+	@Override
+	public void initialize() {
+		// initialize your application here
+		lbr = getContext().getDeviceFromType(LBR.class);
+		sampler = new RobotStateSampler(lbr);
+		interpreter = new CommandInterpreter(getApplicationData(), CommandInterpreter.DEFAULT_CAPACITY);
+	}
+
+	@Override
+	public void run() {
+		// your application execution starts here
+		CommandQueue queue = RemoteTargets.MOTIONS;
+		for (Command command : queue.drain()) {
+			// left over from an earlier run
+			fail(queue, command, "RemoteMotionApplication restarted");
+		}
+		LinkedList<Motion> inFlight = new LinkedList<Motion>();
+		Command command = null;
+		queue.setActive(true);
+		getLogger().info("Waiting for queued motions");
+
+		long idleTimeout = TimeUnit.MILLISECONDS.toNanos(IDLE_TIMEOUT_MILLIS);
+		long lastRequest = System.nanoTime();
+		try {
+			while (command != null || !inFlight.isEmpty() || System.nanoTime() - lastRequest < idleTimeout) {
+				finishMotions(queue, inFlight);
+				if (command == null && inFlight.size() < MAX_MOTIONS_IN_FLIGHT) {
+					command = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+					if (command != null) {
+						lastRequest = System.nanoTime();
+					}
+				} else {
+					Thread.sleep(POLL_MILLIS);
+				}
+				if (command == null) {
+					continue;
+				}
+				Message request = command.getRequest();
+				if (!command.getClient().isOpen()) {
+					queue.complete(command);
+				} else if (isMotion(request)) {
+					queueWait.record(System.nanoTime() - command.getQueuedNanos());
+					try {
+						inFlight.add(new Motion(command, startMotion(request)));
+					} catch (RuntimeException e) {
+						fail(queue, command, "Motion rejected: " + e.getMessage());
+					}
+				} else if (inFlight.isEmpty()) {
+					answer(queue, command);
+				} else {
+					// a query waits for the motions before it
+					continue;
+				}
+				command = null;
+			}
+			getLogger().info("No request for " + IDLE_TIMEOUT_MILLIS + " ms");
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			queue.setActive(false);
+			for (Motion motion : inFlight) {
+				motion.container.cancel();
+				fail(queue, motion.command, "RemoteMotionApplication stopped");
+			}
+			if (command != null) {
+				fail(queue, command, "RemoteMotionApplication stopped");
+			}
+			for (Command left : queue.drain()) {
+				fail(queue, left, "RemoteMotionApplication stopped");
+			}
+			getLogger().info(String.format("Motions: %d done, %d failed, queue wait %s", doneCount, errorCount,
+					queueWait));
+			getLogger().info("Commands: " + interpreter);
+		}
+	}
+
+	private static boolean isMotion(Message request) {
+		int type = request.getType();
+		return type == Message.MOVE_JOINT || type == Message.MOVE_CARTESIAN || type == Message.MOVE_BATCH
+				|| type == Message.COMMAND;
+	}
+
+	private IMotionContainer startMotion(Message request) {
+		switch (request.getType()) {
+		case Message.MOVE_JOINT:
+			double jointVelocity = (request.getValueCount() > RemoteTargets.JOINT_COUNT) ? request
+					.getValue(RemoteTargets.JOINT_COUNT) : DEFAULT_JOINT_VELOCITY_REL;
+			return lbr.moveAsync(ptp(joints(request, 0)).setJointVelocityRel(jointVelocity));
+		case Message.MOVE_CARTESIAN:
+			double cartVelocity = (request.getValueCount() > 6) ? request.getValue(6) : DEFAULT_CARTESIAN_VELOCITY;
+			return lbr.moveAsync(lin(frame(request, 0, null)).setCartVelocity(cartVelocity));
+		case Message.COMMAND:
+			return lbr.moveAsync(interpreter.motionOf(request.getText()));
+		default:
+			return startBatch(request);
+		}
+	}
+
+	// one Spline if the batch has SPL segments, a blended MotionBatch otherwise
+	private IMotionContainer startBatch(Message request) {
+		List<RobotMotion<?>> motions = new ArrayList<RobotMotion<?>>();
+		boolean spline = false;
+		double[] lastJoints = null;
+		Frame reference = null;
+		for (int offset = 0; offset < request.getValueCount();) {
+			int kind = (int) request.getValue(offset);
+			double velocity = request.getValue(offset + 1);
+			double blending = request.getValue(offset + 2);
+			int target = offset + MotionSegments.HEADER;
+			RobotMotion<?> motion;
+			if (kind == MotionSegments.PTP) {
+				lastJoints = joints(request, target);
+				reference = null;
+				motion = ptp(lastJoints).setJointVelocityRel((velocity > 0) ? velocity : DEFAULT_JOINT_VELOCITY_REL)
+						.setBlendingCart(blending);
+			} else {
+				if (reference == null && lastJoints != null) {
+					reference = lbr.getForwardKinematic(new JointPosition(lastJoints));
+				}
+				Frame frame = frame(request, target, reference);
+				SplineMotionCP<?> cp = (kind == MotionSegments.SPL) ? spl(frame) : lin(frame);
+				motion = cp.setCartVelocity((velocity > 0) ? velocity : DEFAULT_CARTESIAN_VELOCITY).setBlendingCart(
+						blending);
+				spline |= kind == MotionSegments.SPL;
+			}
+			motions.add(motion);
+			offset = target + MotionSegments.targetCount(kind);
+		}
+		if (spline) {
+			SplineMotionCP<?>[] segments = new SplineMotionCP<?>[motions.size()];
+			return lbr.moveAsync(spline(motions.toArray(segments)));
+		}
+		// the last motion stops at its point
+		motions.get(motions.size() - 1).setBlendingCart(0);
+		return lbr.moveAsync(new MotionBatch(motions.toArray(new RobotMotion<?>[motions.size()])));
+	}
+
+	private static double[] joints(Message request, int offset) {
+		double[] joints = new double[RemoteTargets.JOINT_COUNT];
+		for (int i = 0; i < joints.length; i++) {
+			joints[i] = request.getValue(offset + i);
+		}
+		return joints;
+	}
+
+	// flange pose in the world, with the redundancy of the reference if there is one
+	private static Frame frame(Message request, int offset, Frame reference) {
+		ObjectFrame world = World.Current.getRootFrame();
+		Frame frame = (reference != null) ? reference.copyWithRedundancy(world) : new Frame(world);
+		frame.setX(request.getValue(offset));
+		frame.setY(request.getValue(offset + 1));
+		frame.setZ(request.getValue(offset + 2));
+		frame.setAlphaRad(request.getValue(offset + 3));
+		frame.setBetaRad(request.getValue(offset + 4));
+		frame.setGammaRad(request.getValue(offset + 5));
+		return frame;
+	}
+
+	// replies to the motions that finished, in order
+	private void finishMotions(CommandQueue queue, LinkedList<Motion> inFlight) {
+		while (!inFlight.isEmpty() && inFlight.getFirst().container.isFinished()) {
+			Motion motion = inFlight.removeFirst();
+			if (motion.container.hasError()) {
+				fail(queue, motion.command, "Motion failed: " + motion.container.getErrorMessage());
+			} else {
+				reply.set(Message.DONE, motion.command.getRequest().getId());
+				motion.command.getClient().send(reply);
+				queue.complete(motion.command);
+				doneCount++;
+			}
+		}
+	}
+
+	private void answer(CommandQueue queue, Command command) {
+		int id = command.getRequest().getId();
+		if (command.getRequest().getType() == Message.GET_JOINT_POSITION) {
+			sampler.refresh().addJoints(reply.set(Message.JOINT_POSITION, id));
+		} else {
+			sampler.refresh().addPose(reply.set(Message.CARTESIAN_POSITION, id));
+		}
+		command.getClient().send(reply);
+		queue.complete(command);
+	}
+
+	private void fail(CommandQueue queue, Command command, String reason) {
+		reply.set(Message.ERROR, command.getRequest().getId()).setText(reason);
+		command.getClient().send(reply);
+		queue.complete(command);
+		errorCount++;
+	}
+}
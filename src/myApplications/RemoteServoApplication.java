@@ -0,0 +1,107 @@
+package myApplications;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import myApplications.server.LatencyHistogram;
+import myApplications.server.TargetSlot;
+
+import com.kuka.roboticsAPI.applicationModel.RoboticsAPIApplication;
+import com.kuka.roboticsAPI.deviceModel.JointPosition;
+import com.kuka.roboticsAPI.deviceModel.LBR;
+import com.kuka.roboticsAPI.motionModel.ISmartServoRuntime;
+import com.kuka.roboticsAPI.motionModel.SmartServo;
+
+/**
+ * Implementation of a robot application.
+ * <p>
+ * The application runs a SmartServo motion that follows the joint targets
+ * clients stream to the {@link TcpServerBackground} as
+ * <code>JOINT_TARGET</code> messages. The server only puts each target into
+ * {@link RemoteTargets#JOINT}; the thread of this application updates the
+ * motion at its own cadence with the newest target and skips the ones that
+ * were superseded in between, so a burst of network traffic never builds up
+ * a queue of outdated targets.
+ * <p>
+ * The age of every target from its arrival at the server to
+ * <code>setDestination()</code> is recorded and logged periodically. The
+ * motion stops when no target arrived for {@link #TARGET_TIMEOUT_MILLIS}.
+ *
+ * @see UseRoboticsAPIContext
+ * @see #initialize()
+ * @see #run()
+ * @see #dispose()
+ */
+public class RemoteServoApplication extends RoboticsAPIApplication {
+	private static final long SERVO_PERIOD_MILLIS = 5;
+	private static final double MIN_TRAJECTORY_EXECUTION_TIME = 20e-3;
+	private static final double VELOCITY_REL = 0.2;
+	private static final long TARGET_TIMEOUT_MILLIS = 30000;
+	private static final int REPORT_CYCLES = 2000;
+
+	private LBR lbr;
+	private final LatencyHistogram targetAge = new LatencyHistogram();
+
+	@Override
+	public void initialize() {
+		// initialize your application here
+		lbr = getContext().getDeviceFromType(LBR.class);
+	}
+
+	@Override
+	public void run() {
+		// your application execution starts here
+		TargetSlot slot = RemoteTargets.JOINT;
+		double[] target = new double[slot.getSize()];
+		JointPosition destination = new JointPosition(lbr.getCurrentJointPosition());
+		slot.take(target); // drop a target left over from an earlier run
+
+		SmartServo servo = new SmartServo(destination);
+		servo.setJointAccelerationRel(VELOCITY_REL);
+		servo.setJointVelocityRel(VELOCITY_REL);
+		servo.setMinimumTrajectoryExecutionTime(MIN_TRAJECTORY_EXECUTION_TIME);
+		lbr.moveAsync(servo);
+		ISmartServoRuntime runtime = servo.getRuntime();
+		getLogger().info("SmartServo motion waits for joint targets");
+
+		slot.setActive(true);
+		long published = slot.getPublishedCount();
+		long superseded = slot.getSupersededCount();
+		long lastTarget = System.nanoTime();
+		long timeout = TimeUnit.MILLISECONDS.toNanos(TARGET_TIMEOUT_MILLIS);
+		long period = TimeUnit.MILLISECONDS.toNanos(SERVO_PERIOD_MILLIS);
+		long next = System.nanoTime();
+		try {
+			for (int cycle = 1; System.nanoTime() - lastTarget < timeout; cycle++) {
+				runtime.updateWithRealtimeSystem();
+				if (slot.take(target)) {
+					destination.set(target);
+					runtime.setDestination(destination);
+					lastTarget = System.nanoTime();
+					targetAge.record(lastTarget - slot.getTakenStamp());
+				}
+				if (cycle % REPORT_CYCLES == 0 && targetAge.getCount() > 0) {
+					report(slot, published, superseded);
+				}
+
+				next += period;
+				long wait = next - System.nanoTime();
+				if (wait > 0) {
+					LockSupport.parkNanos(wait);
+				} else {
+					next = System.nanoTime();
+				}
+			}
+			getLogger().info("No joint target for " + TARGET_TIMEOUT_MILLIS + " ms");
+		} finally {
+			slot.setActive(false);
+			runtime.stopMotion();
+			report(slot, published, superseded);
+		}
+	}
+
+	private void report(TargetSlot slot, long published, long superseded) {
+		getLogger().info(String.format("Joint targets: %d received, %d superseded, age %s",
+				slot.getPublishedCount() - published, slot.getSupersededCount() - superseded, targetAge));
+	}
+}
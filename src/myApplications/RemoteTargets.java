@@ -0,0 +1,26 @@
+package myApplications;
+
+import myApplications.server.CommandQueue;
+import myApplications.server.TargetSlot;
+
+/**
+ * Targets streamed and motions queued by the clients of the
+ * {@link TcpServerBackground} for the robot applications.
+ * <p>
+ * Background task and applications run in the same virtual machine; the
+ * server publishes into these slots and queues and the application that runs
+ * the matching motion takes the targets.
+ */
+public final class RemoteTargets {
+	/** Number of joints of the LBR. */
+	public static final int JOINT_COUNT = 7;
+
+	/** Joint targets for the {@link RemoteServoApplication}. */
+	public static final TargetSlot JOINT = new TargetSlot(JOINT_COUNT);
+
+	/** Motions and queries for the {@link RemoteMotionApplication}. */
+	public static final CommandQueue MOTIONS = new CommandQueue(256);
+
+	private RemoteTargets() {
+	}
+}
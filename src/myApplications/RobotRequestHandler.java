@@ -0,0 +1,179 @@
+package myApplications;
+
+import myApplications.server.Client;
+import myApplications.server.CommandQueue;
+import myApplications.server.Message;
+import myApplications.server.MotionSegments;
+import myApplications.server.RequestHandler;
+import myApplications.server.RobotState;
+import myApplications.server.TargetSlot;
+
+/**
+ * Answers the requests of the clients of the {@link TcpServerBackground}
+ * with the state of the LBR.
+ * <p>
+ * Position requests are answered from the snapshot of the
+ * {@link RobotStateSampler}, so the controller is queried once per cycle of
+ * the background task no matter how many clients ask. The handler runs on
+ * the server thread and never samples the robot itself: if the snapshot is
+ * older than the staleness bound because the background task fell behind,
+ * the request gets an <code>ERROR</code> reply and may be repeated.
+ * <p>
+ * Echo requests are answered with the prefix the server always replied with,
+ * so text clients see the old behavior. A background task cannot move the
+ * robot, so joint targets are handed to the {@link RemoteServoApplication}
+ * through {@link RemoteTargets#JOINT} and rejected while it does not run.
+ * <p>
+ * <code>MOVE_JOINT</code>, <code>MOVE_CARTESIAN</code>,
+ * <code>MOVE_BATCH</code> and <code>COMMAND</code> requests are queued in
+ * {@link RemoteTargets#MOTIONS} for the {@link RemoteMotionApplication},
+ * which replies <code>DONE</code> when the motion has finished. A position query of a client with queued motions is
+ * queued behind them, so it returns the position the motions reached.
+ */
+public class RobotRequestHandler implements RequestHandler {
+	private static final String STALE = "Robot state is stale, retry";
+
+	private final RobotStateSampler sampler;
+	private final long maxAgeNanos;
+	private final double[] target = new double[RemoteTargets.JOINT_COUNT];
+
+	/**
+	 * @param sampler
+	 *            sampler refreshed by the background task
+	 * @param maxAgeNanos
+	 *            maximum age of the state in a reply (ns)
+	 */
+	public RobotRequestHandler(RobotStateSampler sampler, long maxAgeNanos) {
+		this.sampler = sampler;
+		this.maxAgeNanos = maxAgeNanos;
+	}
+
+	@Override
+	public boolean handle(Client client, Message request, Message reply) {
+		int id = request.getId();
+		switch (request.getType()) {
+		case Message.PING:
+			reply.set(Message.PONG, id);
+			break;
+		case Message.ECHO:
+			reply.set(Message.ECHO, id).setText(Message.ECHO_PREFIX).appendText(request);
+			break;
+		case Message.GET_JOINT_POSITION:
+			if (RemoteTargets.MOTIONS.hasPending(client)) {
+				return queue(client, request, reply);
+			}
+			RobotState joints = snapshot(reply, id);
+			if (joints != null) {
+				joints.addJoints(reply.set(Message.JOINT_POSITION, id));
+			}
+			break;
+		case Message.GET_CARTESIAN_POSITION:
+			if (RemoteTargets.MOTIONS.hasPending(client)) {
+				return queue(client, request, reply);
+			}
+			RobotState pose = snapshot(reply, id);
+			if (pose != null) {
+				pose.addPose(reply.set(Message.CARTESIAN_POSITION, id));
+			}
+			break;
+		case Message.JOINT_TARGET:
+			handleJointTarget(request, reply);
+			break;
+		case Message.MOVE_JOINT:
+			if (!checkValues(request, reply, RemoteTargets.JOINT_COUNT, 1.0)) {
+				break;
+			}
+			return queue(client, request, reply);
+		case Message.MOVE_CARTESIAN:
+			if (!checkValues(request, reply, 6, Double.MAX_VALUE)) {
+				break;
+			}
+			return queue(client, request, reply);
+		case Message.MOVE_BATCH:
+			String reason = MotionSegments.check(request);
+			if (reason != null) {
+				reply.set(Message.ERROR, id).setText(reason);
+				break;
+			}
+			return queue(client, request, reply);
+		case Message.COMMAND:
+			if (request.getTextLength() == 0) {
+				reply.set(Message.ERROR, id).setText("Command has no text");
+				break;
+			}
+			return queue(client, request, reply);
+		case Message.CARTESIAN_TARGET:
+			reply.set(Message.ERROR, id).setText("No motion takes Cartesian targets");
+			break;
+		default:
+			reply.set(Message.ERROR, id).setText("Unknown request type " + request.getType());
+			break;
+		}
+		return true;
+	}
+
+	// the snapshot of the background task, or null with an error reply
+	private RobotState snapshot(Message reply, int id) {
+		RobotState state = sampler.get(maxAgeNanos);
+		if (state == null) {
+			reply.set(Message.ERROR, id).setText(STALE);
+		}
+		return state;
+	}
+
+	// hands the request to the RemoteMotionApplication, which replies later
+	private boolean queue(Client client, Message request, Message reply) {
+		CommandQueue queue = RemoteTargets.MOTIONS;
+		if (!queue.isActive()) {
+			reply.set(Message.ERROR, request.getId()).setText("RemoteMotionApplication does not run");
+			return true;
+		}
+		if (!queue.offer(client, request)) {
+			reply.set(Message.ERROR, request.getId()).setText("Motion queue is full");
+			return true;
+		}
+		return false;
+	}
+
+	// a target and an optional velocity, all finite
+	private boolean checkValues(Message request, Message reply, int count, double maxVelocity) {
+		int n = request.getValueCount();
+		if (n != count && n != count + 1) {
+			reply.set(Message.ERROR, request.getId()).setText(
+					Message.nameOf(request.getType()) + " needs " + count + " values and an optional velocity");
+			return false;
+		}
+		for (int i = 0; i < n; i++) {
+			double value = request.getValue(i);
+			if (Double.isNaN(value) || Double.isInfinite(value)) {
+				reply.set(Message.ERROR, request.getId()).setText("Motion target is not finite");
+				return false;
+			}
+		}
+		if (n > count && (request.getValue(count) <= 0 || request.getValue(count) > maxVelocity)) {
+			reply.set(Message.ERROR, request.getId()).setText("Velocity out of range");
+			return false;
+		}
+		return true;
+	}
+
+	private void handleJointTarget(Message request, Message reply) {
+		TargetSlot slot = RemoteTargets.JOINT;
+		if (request.getValueCount() != slot.getSize()) {
+			reply.set(Message.ERROR, request.getId()).setText("Joint target needs " + slot.getSize() + " values");
+			return;
+		}
+		request.getValues(target);
+		for (double value : target) {
+			if (Double.isNaN(value) || Double.isInfinite(value)) {
+				reply.set(Message.ERROR, request.getId()).setText("Joint target is not finite");
+				return;
+			}
+		}
+		if (!slot.isActive()) {
+			reply.set(Message.ERROR, request.getId()).setText("RemoteServoApplication does not run");
+			return;
+		}
+		slot.publish(target, System.nanoTime());
+	}
+}
@@ -0,0 +1,107 @@
+package myApplications;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import myApplications.server.RobotState;
+
+import com.kuka.roboticsAPI.deviceModel.LBR;
+import com.kuka.roboticsAPI.geometricModel.Frame;
+import com.kuka.roboticsAPI.geometricModel.math.Vector;
+import com.kuka.roboticsAPI.sensorModel.ForceSensorData;
+
+/**
+ * Samples the state of the LBR and shares it as a {@link RobotState}.
+ * <p>
+ * The {@link TcpServerBackground} calls {@link #refresh()} once per cycle;
+ * the snapshot is published through a volatile reference, so readers on any
+ * thread get the latest state without a lock and without a query to the
+ * controller. {@link #get} never samples: a reader that must not block, like
+ * the server thread, gets no state if the snapshot is too old, which only
+ * happens when the cyclic task is late. Threads that may block call
+ * {@link #refresh()} themselves.
+ */
+public class RobotStateSampler {
+	private final LBR lbr;
+	private final long startNanos = System.nanoTime();
+	private final double[] pose = new double[6];
+	private final double[] force = new double[3];
+	private final double[] torque = new double[3];
+	private int sample;
+
+	private volatile RobotState latest;
+	private final AtomicLong cachedReads = new AtomicLong();
+	private final AtomicLong staleReads = new AtomicLong();
+
+	public RobotStateSampler(LBR lbr) {
+		this.lbr = lbr;
+	}
+
+	/**
+	 * Samples the robot and publishes the snapshot.
+	 *
+	 * @return the new snapshot
+	 */
+	public synchronized RobotState refresh() {
+		long nanos = System.nanoTime();
+		double[] joints = lbr.getCurrentJointPosition().getInternalArray();
+		Frame flange = lbr.getCurrentCartesianPosition(lbr.getFlange());
+		ForceSensorData wrench = lbr.getExternalForceTorque(lbr.getFlange());
+		pose[0] = flange.getX();
+		pose[1] = flange.getY();
+		pose[2] = flange.getZ();
+		pose[3] = flange.getAlphaRad();
+		pose[4] = flange.getBetaRad();
+		pose[5] = flange.getGammaRad();
+		copy(wrench.getForce(), force);
+		copy(wrench.getTorque(), torque);
+
+		RobotState state = new RobotState(sample++, nanos, (nanos - startNanos) / 1e9, joints, pose, force, torque);
+		latest = state;
+		return state;
+	}
+
+	/**
+	 * @return the latest snapshot, null before the first sample
+	 */
+	public RobotState getLatest() {
+		return latest;
+	}
+
+	/**
+	 * Returns the latest snapshot if it is not older than the given age;
+	 * does not block.
+	 *
+	 * @param maxAgeNanos
+	 *            staleness the reader accepts (ns)
+	 * @return the snapshot, null if there is none that fresh
+	 */
+	public RobotState get(long maxAgeNanos) {
+		RobotState state = latest;
+		if (state != null && state.getAgeNanos() <= maxAgeNanos) {
+			cachedReads.incrementAndGet();
+			return state;
+		}
+		staleReads.incrementAndGet();
+		return null;
+	}
+
+	/**
+	 * @return number of reads served by the snapshot
+	 */
+	public long getCachedReads() {
+		return cachedReads.get();
+	}
+
+	/**
+	 * @return number of reads that found no fresh snapshot
+	 */
+	public long getStaleReads() {
+		return staleReads.get();
+	}
+
+	private static void copy(Vector vector, double[] destination) {
+		destination[0] = vector.getX();
+		destination[1] = vector.getY();
+		destination[2] = vector.getZ();
+	}
+}
@@ -1,63 +1,137 @@
-package myApplications;
-
-import java.io.IOException;
-import java.net.ServerSocket;
-import java.net.Socket;
-
-import com.kuka.roboticsAPI.applicationModel.tasks.RoboticsAPIBackgroundTask;
-import com.kuka.roboticsAPI.controllerModel.Controller;
-
-/**
- * Implementation of a cyclic background task.
- * <p>
- * It provides the {@link RoboticsAPICyclicBackgroundTask#runCyclic} method 
- * which will be called cyclically with the specified period.<br>
- * Cycle period and initial delay can be set by calling 
- * {@link RoboticsAPICyclicBackgroundTask#initializeCyclic} method in the 
- * {@link RoboticsAPIBackgroundTask#initialize()} method of the inheriting 
- * class.<br>
- * The cyclic background task can be terminated via 
- * {@link RoboticsAPICyclicBackgroundTask#getCyclicFuture()#cancel()} method or 
- * stopping of the task.
- * @see UseRoboticsAPIContext
- * 
- */
-public class TcpServerBackground extends RoboticsAPIBackgroundTask {
-	Controller kUKA_Sunrise_Cabinet_1;
-	
-	ServerSocket ss = null;
-
-	@Override
-	public void initialize() {
-		// initialize your task here
-		kUKA_Sunrise_Cabinet_1 = (Controller) getContext().getControllers().toArray()[0];
-		try {
-			ss = new ServerSocket(30002);	
-			getLogger().info("Server is running on 30002 port");
-			
-		} catch (IOException e) {
-			// Auto-generated catch block
-			e.printStackTrace();
-		}
-		
-//		initializeCyclic(0, 500, TimeUnit.MILLISECONDS,
-//				CycleBehavior.BestEffort);
-	}
-	
-	@Override
-	public void run() {
-		// your task execution starts here
-		try {
-			while(true) {
-				Socket socket = ss.accept();
-				getLogger().info("connect from" + socket.getRemoteSocketAddress());
-				
-				Thread t = new Handler(socket);
-				t.start();
-			}
-		} catch (IOException e) {
-			// Auto-generated catch block
-			e.printStackTrace();
-		}
-	}
-}
\ No newline at end of file
+package myApplications;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import myApplications.server.Message;
+import myApplications.server.NioServer;
+import myApplications.server.RobotState;
+import myApplications.server.UdpEndpoint;
+
+import com.kuka.roboticsAPI.applicationModel.tasks.CycleBehavior;
+import com.kuka.roboticsAPI.applicationModel.tasks.RoboticsAPIBackgroundTask;
+import com.kuka.roboticsAPI.applicationModel.tasks.RoboticsAPICyclicBackgroundTask;
+import com.kuka.roboticsAPI.controllerModel.Controller;
+import com.kuka.roboticsAPI.deviceModel.LBR;
+import com.kuka.roboticsAPI.persistenceModel.processDataModel.IProcessData;
+
+/**
+ * Implementation of a cyclic background task.
+ * <p>
+ * It provides the {@link RoboticsAPICyclicBackgroundTask#runCyclic} method 
+ * which will be called cyclically with the specified period.<br>
+ * Cycle period and initial delay can be set by calling 
+ * {@link RoboticsAPICyclicBackgroundTask#initializeCyclic} method in the 
+ * {@link RoboticsAPIBackgroundTask#initialize()} method of the inheriting 
+ * class.<br>
+ * The cyclic background task can be terminated via 
+ * {@link RoboticsAPICyclicBackgroundTask#getCyclicFuture()#cancel()} method or 
+ * stopping of the task.
+ * <p>
+ * The task serves the clients on port 30002 with a {@link NioServer}: one
+ * thread and a selector handle all connections, so HMI, MES and monitoring
+ * clients can connect without a thread per socket. Clients use the binary
+ * protocol of {@link myApplications.server.BinaryCodec} or lines of text,
+ * where requests start with <code>!</code> and any other line is echoed.
+ * <p>
+ * Every cycle samples joint position, flange pose and external force and
+ * torque once into the {@link RobotStateSampler}, whether clients are
+ * connected or not, so a client finds a fresh snapshot with its first
+ * request. Requests are answered from that snapshot, and subscribed clients
+ * get it streamed as a <code>STATE</code> message. The period is the process
+ * data <code>state_period_ms</code>; a reply is never older than
+ * {@link #MAX_STATE_AGE_PERIODS} periods. The server thread never samples,
+ * so only if this task falls behind by more than that is a query rejected
+ * as stale.
+ * <p>
+ * If the process data <code>udp_port</code> is set to a port, e.g. 30003,
+ * the server also streams the state as datagrams and takes joint targets as
+ * datagrams on that port, see {@link myApplications.server.UdpEndpoint}. It
+ * is 0 (off) by default, because anyone who can reach the port can send
+ * joint targets.
+ * @see UseRoboticsAPIContext
+ * 
+ */
+public class TcpServerBackground extends RoboticsAPICyclicBackgroundTask {
+	private static final long DEFAULT_STATE_PERIOD_MILLIS = 10;
+	private static final int MAX_STATE_AGE_PERIODS = 2;
+	private static final int DEFAULT_UDP_PORT = 0;
+
+	Controller kUKA_Sunrise_Cabinet_1;
+	LBR lbr;
+
+	NioServer server = null;
+	Thread serverThread = null;
+	RobotStateSampler sampler;
+
+	private final Message state = new Message();
+
+	@Override
+	public void initialize() {
+		// initialize your task here
+		kUKA_Sunrise_Cabinet_1 = (Controller) getContext().getControllers().toArray()[0];
+		lbr = getContext().getDeviceFromType(LBR.class);
+		sampler = new RobotStateSampler(lbr);
+
+		long period = DEFAULT_STATE_PERIOD_MILLIS;
+		IProcessData periodData = getApplicationData().tryGetProcessData("state_period_ms");
+		if (periodData != null) {
+			period = ((Number) periodData.getValue()).longValue();
+		}
+		long maxAge = TimeUnit.MILLISECONDS.toNanos(MAX_STATE_AGE_PERIODS * period);
+		try {
+			server = new NioServer(30002, new RobotRequestHandler(sampler, maxAge));
+			int udpPort = DEFAULT_UDP_PORT;
+			IProcessData udpData = getApplicationData().tryGetProcessData("udp_port");
+			if (udpData != null) {
+				udpPort = ((Number) udpData.getValue()).intValue();
+			}
+			if (udpPort != 0) {
+				server.openUdp(udpPort);
+				getLogger().info("UDP endpoint is open on " + udpPort + " port");
+			}
+			serverThread = new Thread(server, "TcpServer");
+			serverThread.setDaemon(true);
+			serverThread.start();
+			getLogger().info("Server is running on 30002 port");
+
+		} catch (IOException e) {
+			// Auto-generated catch block
+			e.printStackTrace();
+		}
+
+		initializeCyclic(0, period, TimeUnit.MILLISECONDS,
+				CycleBehavior.BestEffort);
+	}
+
+	@Override
+	public void runCyclic() {
+		if (server == null) {
+			return;
+		}
+		// sample once for all clients, at a fixed rate
+		RobotState snapshot = sampler.refresh();
+		if (server.getSubscriberCount() > 0) {
+			server.publish(snapshot.toState(state));
+		}
+	}
+
+	@Override
+	public void dispose() {
+		if (server != null) {
+			server.stop();
+			getLogger().info("Request latency: " + server.getLatency());
+			getLogger().info("State frames: " + server.getPublishedCount() + " published, "
+					+ server.getDroppedCount() + " dropped for slow subscribers");
+			getLogger().info("State reads: " + sampler.getCachedReads() + " from the snapshot, "
+					+ sampler.getStaleReads() + " rejected as stale");
+			UdpEndpoint udp = server.getUdp();
+			if (udp != null) {
+				getLogger().info("UDP: " + udp.getReceivedCount() + " datagrams received, " + udp.getStaleCount()
+						+ " stale targets dropped, " + udp.getInvalidCount() + " invalid, " + udp.getSendDroppedCount()
+						+ " state datagrams not sent");
+			}
+		}
+		super.dispose();
+	}
+}
@@ -0,0 +1,101 @@
+package myApplications.server;
+
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+
+/**
+ * Binary framing of {@link Message}s.
+ * <p>
+ * Frame layout, big endian:
+ * <pre>
+ * int    length of the rest of the frame
+ * byte   type
+ * int    id
+ * short  number of values
+ * double values
+ * byte   text, up to the end of the frame
+ * </pre>
+ * The first byte of a frame is always 0, which no text request starts with;
+ * the server uses it to tell binary from text clients. Frames are decoded
+ * from and encoded into {@link ByteBuffer}s directly, without strings or
+ * other allocations.
+ */
+public final class BinaryCodec {
+	/** Bytes of a frame without values and text. */
+	public static final int HEADER_BYTES = 4 + 1 + 4 + 2;
+	/** Maximum length of a frame. */
+	public static final int MAX_FRAME_BYTES = HEADER_BYTES + 8 * Message.MAX_VALUES + Message.MAX_TEXT;
+
+	private BinaryCodec() {
+	}
+
+	/**
+	 * @return number of bytes the frame of a message takes
+	 */
+	public static int frameLength(Message message) {
+		return HEADER_BYTES + 8 * message.valueCount + message.textLength;
+	}
+
+	/**
+	 * Decodes the next frame if the buffer holds it completely.
+	 *
+	 * @param in
+	 *            buffer in read mode; advanced behind the frame if it was
+	 *            complete
+	 * @param message
+	 *            the decoded message
+	 * @return false if the frame is not complete yet
+	 * @throws ProtocolException
+	 *             if the frame is malformed
+	 */
+	public static boolean decode(ByteBuffer in, Message message) throws ProtocolException {
+		if (in.remaining() < 4) {
+			return false;
+		}
+		int length = in.getInt(in.position());
+		if (length < HEADER_BYTES - 4 || length > MAX_FRAME_BYTES - 4) {
+			throw new ProtocolException("Invalid frame length " + length);
+		}
+		if (in.remaining() < 4 + length) {
+			return false;
+		}
+		in.getInt();
+		message.type = in.get();
+		message.id = in.getInt();
+		int count = in.getShort();
+		int textLength = length - (HEADER_BYTES - 4) - 8 * count;
+		if (count < 0 || count > Message.MAX_VALUES || textLength < 0) {
+			throw new ProtocolException("Invalid value count " + count + " in frame of " + length + " bytes");
+		}
+		if (textLength > Message.MAX_TEXT) {
+			throw new ProtocolException("Text of " + textLength + " bytes exceeds " + Message.MAX_TEXT);
+		}
+		for (int i = 0; i < count; i++) {
+			message.values[i] = in.getDouble();
+		}
+		message.valueCount = count;
+		in.get(message.text, 0, textLength);
+		message.textLength = textLength;
+		return true;
+	}
+
+	/**
+	 * Encodes a message.
+	 *
+	 * @param message
+	 *            the message
+	 * @param out
+	 *            buffer in write mode with at least {@link #frameLength}
+	 *            bytes remaining
+	 */
+	public static void encode(Message message, ByteBuffer out) {
+		out.putInt(frameLength(message) - 4);
+		out.put((byte) message.type);
+		out.putInt(message.id);
+		out.putShort((short) message.valueCount);
+		for (int i = 0; i < message.valueCount; i++) {
+			out.putDouble(message.values[i]);
+		}
+		out.put(message.text, 0, message.textLength);
+	}
+}
@@ -0,0 +1,25 @@
+package myApplications.server;
+
+/**
+ * A client connected to a {@link NioServer}.
+ * <p>
+ * A {@link RequestHandler} that hands a request over to another thread keeps
+ * the client to answer it later, e.g. when a queued motion has finished.
+ */
+public interface Client {
+
+	/**
+	 * Sends a message to the client in the protocol it uses; may be called
+	 * from any thread and does not wait for the network.
+	 *
+	 * @param message
+	 *            the message, not modified
+	 * @return false if the client has disconnected
+	 */
+	boolean send(Message message);
+
+	/**
+	 * @return false once the client has disconnected
+	 */
+	boolean isOpen();
+}
@@ -0,0 +1,133 @@
+package myApplications.server;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded queue of requests the server hands to the thread that executes
+ * them in order, with the client that has to get the reply.
+ * <p>
+ * Clients pipeline requests: they send the next one without waiting for the
+ * reply of the previous one and match the replies by id. The queue counts
+ * the commands of every client that are not completed yet, so the server can
+ * queue a query behind the motions the same client sent before it instead of
+ * answering it at once. There must be one thread taking commands.
+ */
+public class CommandQueue {
+
+	/**
+	 * A queued request.
+	 */
+	public static class Command {
+		private final Client client;
+		private final Message request;
+		private final long queuedNanos;
+
+		Command(Client client, Message request) {
+			this.client = client;
+			this.request = new Message().copy(request);
+			queuedNanos = System.nanoTime();
+		}
+
+		public Client getClient() {
+			return client;
+		}
+
+		/**
+		 * @return copy of the request, owned by the command
+		 */
+		public Message getRequest() {
+			return request;
+		}
+
+		public long getQueuedNanos() {
+			return queuedNanos;
+		}
+	}
+
+	private final BlockingQueue<Command> commands;
+	private final Map<Client, Integer> pending = new HashMap<Client, Integer>();
+	private volatile boolean active;
+
+	/**
+	 * @param capacity
+	 *            number of commands queued at most
+	 */
+	public CommandQueue(int capacity) {
+		commands = new ArrayBlockingQueue<Command>(capacity);
+	}
+
+	/**
+	 * Marks whether a thread takes commands; set by that thread.
+	 */
+	public void setActive(boolean active) {
+		this.active = active;
+	}
+
+	public boolean isActive() {
+		return active;
+	}
+
+	/**
+	 * Queues a copy of a request.
+	 *
+	 * @return false if the queue is full
+	 */
+	public synchronized boolean offer(Client client, Message request) {
+		if (!commands.offer(new Command(client, request))) {
+			return false;
+		}
+		Integer count = pending.get(client);
+		pending.put(client, (count == null) ? 1 : count + 1);
+		return true;
+	}
+
+	/**
+	 * @return true if a command of the client is queued or not completed
+	 */
+	public synchronized boolean hasPending(Client client) {
+		return pending.containsKey(client);
+	}
+
+	/**
+	 * Takes the next command, waiting for it at most the given time.
+	 *
+	 * @return the command, null if none arrived
+	 */
+	public Command poll(long timeout, TimeUnit unit) throws InterruptedException {
+		return commands.poll(timeout, unit);
+	}
+
+	/**
+	 * Marks a command as completed after its reply was sent.
+	 */
+	public synchronized void complete(Command command) {
+		Integer count = pending.get(command.getClient());
+		if (count == null || count <= 1) {
+			pending.remove(command.getClient());
+		} else {
+			pending.put(command.getClient(), count - 1);
+		}
+	}
+
+	/**
+	 * Takes all queued commands; they still have to be completed.
+	 */
+	public List<Command> drain() {
+		List<Command> result = new ArrayList<Command>();
+		commands.drainTo(result);
+		return result;
+	}
+
+	/**
+	 * @return number of queued commands
+	 */
+	public int size() {
+		return commands.size();
+	}
+}
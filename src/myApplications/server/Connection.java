@@ -0,0 +1,287 @@
+package myApplications.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * State of one client connection of a {@link NioServer}: the channel, a read
+ * buffer collecting partial requests and a write buffer holding replies the
+ * socket has not taken yet.
+ * <p>
+ * The first byte a client sends selects the protocol of the connection: 0
+ * starts a frame of the {@link BinaryCodec}, anything else a line of the
+ * {@link TextCodec}. A subscribed connection also has a {@link FrameQueue}
+ * the publisher thread fills, and replies sent through {@link #send} by
+ * other threads wait in a queue until the selector thread takes them;
+ * everything else is used by the selector thread only.
+ */
+class Connection implements Client {
+	static final Charset CHARSET = Charset.forName("UTF-8");
+
+	private static final int INITIAL_BUFFER_BYTES = 4096;
+	private static final int MAX_REQUEST_BYTES = 64 * 1024;
+	private static final int MAX_PENDING_BYTES = 1024 * 1024;
+	private static final int MAX_STREAM_BACKLOG_BYTES = 64 * 1024;
+
+	private static final int UNKNOWN = 0;
+	private static final int TEXT = 1;
+	private static final int BINARY = 2;
+
+	private final NioServer server;
+	private final SocketChannel channel;
+	private SelectionKey key;
+	private volatile FrameQueue stream;
+	private final Queue<byte[]> sent = new ConcurrentLinkedQueue<byte[]>();
+	private volatile boolean open = true;
+	private ByteBuffer input = ByteBuffer.allocate(INITIAL_BUFFER_BYTES);
+	private ByteBuffer output = ByteBuffer.allocate(INITIAL_BUFFER_BYTES);
+	private volatile int mode = UNKNOWN;
+
+	// end of every pending reply in the output and the time its request was read
+	private long[] pendingEnd = new long[16];
+	private long[] pendingStart = new long[16];
+	private int pendingHead;
+	private int pendingCount;
+	private long outputFlushed;
+	private long outputQueued;
+
+	Connection(NioServer server, SocketChannel channel) {
+		this.server = server;
+		this.channel = channel;
+		output.flip();
+	}
+
+	SocketChannel getChannel() {
+		return channel;
+	}
+
+	SelectionKey getKey() {
+		return key;
+	}
+
+	void setKey(SelectionKey key) {
+		this.key = key;
+	}
+
+	/**
+	 * Starts or stops streaming to the connection.
+	 *
+	 * @param capacity
+	 *            number of frames buffered for the client, 0 to stop
+	 */
+	void setStream(int capacity) {
+		stream = (capacity > 0) ? new FrameQueue(capacity) : null;
+	}
+
+	/**
+	 * Queues a streamed frame; called by the publisher thread.
+	 *
+	 * @param binary
+	 *            the frame for binary clients
+	 * @param text
+	 *            the line for text clients
+	 * @return false if a frame was dropped
+	 */
+	boolean offerStream(byte[] binary, byte[] text) {
+		FrameQueue queue = stream;
+		return queue == null || queue.offer(mode == BINARY ? binary : text);
+	}
+
+	/**
+	 * Moves streamed frames into the output while the backlog of the socket
+	 * is small; the rest stays in the frame queue, which drops the oldest.
+	 */
+	void drainStream() {
+		FrameQueue queue = stream;
+		if (queue == null) {
+			return;
+		}
+		byte[] frame;
+		while (output.remaining() < MAX_STREAM_BACKLOG_BYTES && (frame = queue.poll()) != null) {
+			reserve(frame.length).put(frame);
+			output.flip();
+			outputQueued += frame.length;
+		}
+	}
+
+	@Override
+	public boolean send(Message message) {
+		if (!open) {
+			return false;
+		}
+		if (mode == BINARY) {
+			byte[] frame = new byte[BinaryCodec.frameLength(message)];
+			BinaryCodec.encode(message, ByteBuffer.wrap(frame));
+			sent.add(frame);
+		} else {
+			sent.add((TextCodec.encode(message) + "\n").getBytes(CHARSET));
+		}
+		server.wakeup(this);
+		return true;
+	}
+
+	@Override
+	public boolean isOpen() {
+		return open;
+	}
+
+	/**
+	 * Moves the messages other threads sent into the output.
+	 */
+	void drainSent() {
+		byte[] frame;
+		while ((frame = sent.poll()) != null) {
+			reserve(frame.length).put(frame);
+			output.flip();
+			outputQueued += frame.length;
+		}
+	}
+
+	/**
+	 * Reads what the socket has and handles every complete request.
+	 *
+	 * @param request
+	 *            message reused for the requests
+	 * @param reply
+	 *            message reused for the replies
+	 * @return false if the client closed the connection
+	 */
+	boolean read(Message request, Message reply) throws IOException {
+		int n = channel.read(input);
+		if (n < 0) {
+			return false;
+		}
+		long now = System.nanoTime();
+		input.flip();
+		if (mode == UNKNOWN && input.hasRemaining()) {
+			mode = (input.get(input.position()) == 0) ? BINARY : TEXT;
+		}
+		if (mode == BINARY) {
+			while (BinaryCodec.decode(input, request)) {
+				reply.set(Message.OK, request.id);
+				if (server.dispatch(this, request, reply)) {
+					queue(reply, now);
+				}
+			}
+		} else {
+			readLines(request, reply, now);
+		}
+		if (input.position() == 0 && input.limit() == input.capacity()) {
+			if (input.capacity() >= MAX_REQUEST_BYTES) {
+				throw new IOException("Request longer than " + MAX_REQUEST_BYTES + " bytes");
+			}
+			input = grow(input, 2 * input.capacity());
+		} else {
+			input.compact();
+		}
+		return true;
+	}
+
+	/**
+	 * Writes as much of the pending replies as the socket takes.
+	 *
+	 * @return true if all replies were written
+	 */
+	boolean write(LatencyHistogram latency) throws IOException {
+		outputFlushed += channel.write(output);
+		long now = System.nanoTime();
+		while (pendingCount > 0 && pendingEnd[pendingHead] <= outputFlushed) {
+			latency.record(now - pendingStart[pendingHead]);
+			pendingHead = (pendingHead + 1) % pendingEnd.length;
+			pendingCount--;
+		}
+		return !output.hasRemaining();
+	}
+
+	boolean hasPendingOutput() {
+		return output.hasRemaining();
+	}
+
+	void close() {
+		open = false;
+		try {
+			channel.close();
+		} catch (IOException e) {
+			// closed anyway
+		}
+	}
+
+	private void readLines(Message request, Message reply, long now) throws IOException {
+		int lineStart = input.position();
+		for (int i = input.position(); i < input.limit(); i++) {
+			if (input.get(i) == '\n') {
+				int end = (i > lineStart && input.get(i - 1) == '\r') ? i - 1 : i;
+				TextCodec.decode(new String(input.array(), lineStart, end - lineStart, CHARSET), request);
+				reply.set(Message.OK, request.id);
+				if (server.dispatch(this, request, reply)) {
+					queue(reply, now);
+				}
+				lineStart = i + 1;
+			}
+		}
+		input.position(lineStart);
+	}
+
+	// encodes a reply in the protocol of the connection behind the pending output
+	private void queue(Message reply, long requestNanos) throws IOException {
+		byte[] line = null;
+		int length;
+		if (mode == BINARY) {
+			length = BinaryCodec.frameLength(reply);
+		} else {
+			line = (TextCodec.encode(reply) + "\n").getBytes(CHARSET);
+			length = line.length;
+		}
+		if (output.remaining() + length > MAX_PENDING_BYTES) {
+			throw new IOException("Client does not read its replies");
+		}
+		if (line != null) {
+			reserve(length).put(line);
+		} else {
+			BinaryCodec.encode(reply, reserve(length));
+		}
+		output.flip();
+		outputQueued += length;
+
+		if (pendingCount == pendingEnd.length) {
+			pendingEnd = unwrap(pendingEnd);
+			pendingStart = unwrap(pendingStart);
+			pendingHead = 0;
+		}
+		int slot = (pendingHead + pendingCount) % pendingEnd.length;
+		pendingEnd[slot] = outputQueued;
+		pendingStart[slot] = requestNanos;
+		pendingCount++;
+	}
+
+	// output in write mode with room for the given number of bytes
+	private ByteBuffer reserve(int length) {
+		if (output.capacity() - output.remaining() < length) {
+			output = grow(output, Math.max(2 * output.capacity(), output.remaining() + length));
+		} else {
+			output.compact();
+		}
+		return output;
+	}
+
+	// copies the ring in order into an array twice as long
+	private long[] unwrap(long[] ring) {
+		long[] result = new long[2 * ring.length];
+		for (int i = 0; i < pendingCount; i++) {
+			result[i] = ring[(pendingHead + i) % ring.length];
+		}
+		return result;
+	}
+
+	// new buffer in write mode holding the remaining bytes of a buffer in read mode
+	private static ByteBuffer grow(ByteBuffer buffer, int capacity) {
+		ByteBuffer result = ByteBuffer.allocate(capacity);
+		result.put(buffer);
+		return result;
+	}
+}
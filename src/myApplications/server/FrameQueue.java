@@ -0,0 +1,51 @@
+package myApplications.server;
+
+/**
+ * Bounded queue of encoded frames streamed to one client.
+ * <p>
+ * When the client does not keep up, the oldest frame is dropped so the
+ * client gets the newest state once it reads again, and the publisher never
+ * waits for the network. The frames are shared between all clients and must
+ * not be modified.
+ */
+class FrameQueue {
+	private final byte[][] frames;
+	private int head;
+	private int count;
+
+	FrameQueue(int capacity) {
+		frames = new byte[capacity][];
+	}
+
+	/**
+	 * Appends a frame.
+	 *
+	 * @return false if the oldest frame was dropped to make room
+	 */
+	synchronized boolean offer(byte[] frame) {
+		boolean dropped = false;
+		if (count == frames.length) {
+			frames[head] = null;
+			head = (head + 1) % frames.length;
+			count--;
+			dropped = true;
+		}
+		frames[(head + count) % frames.length] = frame;
+		count++;
+		return !dropped;
+	}
+
+	/**
+	 * @return the oldest frame, null if the queue is empty
+	 */
+	synchronized byte[] poll() {
+		if (count == 0) {
+			return null;
+		}
+		byte[] frame = frames[head];
+		frames[head] = null;
+		head = (head + 1) % frames.length;
+		count--;
+		return frame;
+	}
+}
@@ -0,0 +1,134 @@
+package myApplications.server;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of latencies with logarithmic buckets.
+ * <p>
+ * Every power of two between 1 us and about 70 s is split into 8 buckets, so
+ * percentiles are accurate to about 10 %. Recording is lock-free and does not
+ * allocate; it can be called from several threads while another thread reads
+ * the statistics.
+ */
+public class LatencyHistogram {
+	private static final int SUB_BUCKET_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int OCTAVES = 27;
+	private static final long UNIT_NANOS = 1000;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(OCTAVES * SUB_BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong totalNanos = new AtomicLong();
+	private final AtomicLong maxNanos = new AtomicLong();
+
+	/**
+	 * Records a latency.
+	 *
+	 * @param nanos
+	 *            the latency (ns)
+	 */
+	public void record(long nanos) {
+		buckets.incrementAndGet(bucketOf(nanos));
+		count.incrementAndGet();
+		totalNanos.addAndGet(nanos);
+		long max = maxNanos.get();
+		while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+			max = maxNanos.get();
+		}
+	}
+
+	/**
+	 * Clears the histogram; recordings running concurrently may be lost.
+	 */
+	public void reset() {
+		for (int i = 0; i < buckets.length(); i++) {
+			buckets.set(i, 0);
+		}
+		count.set(0);
+		totalNanos.set(0);
+		maxNanos.set(0);
+	}
+
+	/**
+	 * Adds the recordings of another histogram.
+	 *
+	 * @param other
+	 *            the histogram to add
+	 */
+	public void add(LatencyHistogram other) {
+		for (int i = 0; i < buckets.length(); i++) {
+			buckets.addAndGet(i, other.buckets.get(i));
+		}
+		count.addAndGet(other.count.get());
+		totalNanos.addAndGet(other.totalNanos.get());
+		long max = maxNanos.get();
+		while (other.maxNanos.get() > max && !maxNanos.compareAndSet(max, other.maxNanos.get())) {
+			max = maxNanos.get();
+		}
+	}
+
+	public long getCount() {
+		return count.get();
+	}
+
+	public double getMeanNanos() {
+		long n = count.get();
+		return n > 0 ? (double) totalNanos.get() / n : 0.0;
+	}
+
+	public long getMaxNanos() {
+		return maxNanos.get();
+	}
+
+	/**
+	 * @param percentile
+	 *            the percentile, 0 to 100
+	 * @return upper bound of the bucket holding the percentile (ns), at most
+	 *         the maximum
+	 */
+	public long getPercentileNanos(double percentile) {
+		long n = count.get();
+		if (n == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(percentile / 100.0 * n);
+		long seen = 0;
+		for (int i = 0; i < buckets.length(); i++) {
+			seen += buckets.get(i);
+			if (seen >= rank) {
+				return Math.min(upperBoundOf(i), maxNanos.get());
+			}
+		}
+		return maxNanos.get();
+	}
+
+	/**
+	 * @return count, mean, median, 99th and 99.9th percentile and maximum
+	 */
+	@Override
+	public String toString() {
+		return String.format("%d samples, mean %.1f us, p50 %.1f us, p99 %.1f us, p99.9 %.1f us, max %.1f us",
+				getCount(), getMeanNanos() / 1e3, getPercentileNanos(50) / 1e3, getPercentileNanos(99) / 1e3,
+				getPercentileNanos(99.9) / 1e3, getMaxNanos() / 1e3);
+	}
+
+	private static int bucketOf(long nanos) {
+		long units = Math.max(nanos / UNIT_NANOS, 1);
+		int octave = 63 - Long.numberOfLeadingZeros(units);
+		if (octave >= OCTAVES) {
+			return OCTAVES * SUB_BUCKETS - 1;
+		}
+		// the bits below the leading one select the sub-bucket
+		int sub = (octave >= SUB_BUCKET_BITS) ? (int) (units >>> (octave - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1)
+				: (int) (units << (SUB_BUCKET_BITS - octave)) & (SUB_BUCKETS - 1);
+		return octave * SUB_BUCKETS + sub;
+	}
+
+	private static long upperBoundOf(int bucket) {
+		int octave = bucket / SUB_BUCKETS;
+		int sub = bucket % SUB_BUCKETS;
+		double units = Math.pow(2, octave) * (1.0 + (sub + 1.0) / SUB_BUCKETS);
+		return (long) (units * UNIT_NANOS);
+	}
+}
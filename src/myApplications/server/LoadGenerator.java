@@ -0,0 +1,436 @@
+package myApplications.server;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Load generator for the robot TCP server.
+ * <p>
+ * Opens many connections from one thread and replays a weighted mix of
+ * requests on each, with the binary or the text protocol, and reports the
+ * throughput and the latency percentiles of every request type from sending
+ * a request to receiving the reply with its id. Without a rate every
+ * connection keeps <code>window</code> requests in flight; with a rate,
+ * requests are due at fixed times and the latency is measured from the time
+ * a request was due, so a server that falls behind is not hidden by a
+ * client that waits for it.
+ * <p>
+ * Without a host, the generator starts a {@link NioServer} with a
+ * {@link StubRobotHandler} in the same process and publishes a stubbed
+ * state stream, so the server can be benchmarked on a workstation. With
+ * <code>serve=port</code> it only runs that stubbed server, for load from
+ * other machines. Run with
+ * <code>java myApplications.server.LoadGenerator [key=value ...]</code>:
+ * <ul>
+ * <li><code>host</code>, <code>port</code>: server to load, default a local
+ * stubbed server</li>
+ * <li><code>connections</code>: number of connections, default 10</li>
+ * <li><code>seconds</code>, <code>warmup</code>: measured time and warm-up
+ * time, default 10 and 2</li>
+ * <li><code>mix</code>: request types with weights, default
+ * <code>GET_JOINT_POSITION:4,JOINT_TARGET:4,PING:1,MOVE_JOINT:1</code></li>
+ * <li><code>window</code>: requests in flight per connection, default 4</li>
+ * <li><code>rate</code>: requests per second per connection, 0 (default)
+ * to send as fast as the window allows</li>
+ * <li><code>protocol</code>: <code>binary</code> (default) or
+ * <code>text</code></li>
+ * <li><code>subscribers</code>: connections subscribed to the state stream,
+ * default 0</li>
+ * <li><code>period</code>, <code>motion</code>: state period and motion
+ * time of the stubbed server in ms, default 10 and 50</li>
+ * </ul>
+ */
+public class LoadGenerator {
+	private static final int MAX_WINDOW = 1024;
+	// ids stay short enough for the text protocol and are a multiple of the window apart
+	private static final int ID_MASK = 0xFFFFFFF;
+	private static final int MAX_TYPES = 32;
+	private static final double[] JOINTS = { 0.1, 0.5, -0.1, -1.2, 0.05, 0.6, 0.3 };
+	private static final double[] POSE = { 500, 0, 600, 0, Math.PI, 0 };
+	private static final String COMMAND = "move to /P1 at 10%";
+
+	private final Map<String, String> options;
+	private final int connectionCount;
+	private final int window;
+	private final boolean binary;
+	private final long intervalNanos;
+	private final int[] schedule;
+	private final LatencyHistogram[] latency = new LatencyHistogram[MAX_TYPES];
+	private final long[] errors = new long[MAX_TYPES];
+	private long streamed;
+
+	/**
+	 * One connection of the generator.
+	 */
+	private class Load {
+		final SocketChannel channel;
+		final ByteBuffer in = ByteBuffer.allocate(BinaryCodec.MAX_FRAME_BYTES * 64);
+		final ByteBuffer out = ByteBuffer.allocate(BinaryCodec.MAX_FRAME_BYTES * MAX_WINDOW);
+		final long[] sentNanos = new long[MAX_WINDOW];
+		final int[] sentType = new int[MAX_WINDOW];
+		final Message request = new Message();
+		SelectionKey key;
+		int nextId;
+		int inFlight;
+		int next;
+		long dueNanos;
+
+		Load(SocketChannel channel, int offset) {
+			this.channel = channel;
+			next = offset;
+			out.flip();
+		}
+
+		// queues the requests that may be sent now
+		void send(long now) {
+			out.compact();
+			while (inFlight < window && (intervalNanos == 0 || dueNanos <= now)
+					&& out.remaining() >= BinaryCodec.MAX_FRAME_BYTES) {
+				int type = schedule[next++ % schedule.length];
+				int id = nextId;
+				nextId = (nextId + 1) & ID_MASK;
+				fill(request, type, id);
+				if (binary) {
+					BinaryCodec.encode(request, out);
+				} else {
+					out.put((TextCodec.encode(request) + "\n").getBytes(Connection.CHARSET));
+				}
+				sentNanos[id & (MAX_WINDOW - 1)] = (intervalNanos == 0) ? now : dueNanos;
+				sentType[id & (MAX_WINDOW - 1)] = type;
+				dueNanos += intervalNanos;
+				inFlight++;
+			}
+			out.flip();
+		}
+
+		void write() throws IOException {
+			channel.write(out);
+			key.interestOps(out.hasRemaining() ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+		}
+
+		void read(long now, Message reply) throws IOException {
+			if (channel.read(in) < 0) {
+				throw new EOFException("Server closed the connection");
+			}
+			in.flip();
+			if (binary) {
+				while (BinaryCodec.decode(in, reply)) {
+					received(reply, now);
+				}
+			} else {
+				int lineStart = in.position();
+				for (int i = in.position(); i < in.limit(); i++) {
+					if (in.get(i) == '\n') {
+						TextCodec.decode(new String(in.array(), lineStart, i - lineStart, Connection.CHARSET), reply);
+						received(reply, now);
+						lineStart = i + 1;
+					}
+				}
+				in.position(lineStart);
+			}
+			in.compact();
+		}
+
+		private void received(Message reply, long now) {
+			if (reply.getType() == Message.STATE) {
+				streamed++;
+				return;
+			}
+			int slot = reply.getId() & (MAX_WINDOW - 1);
+			int type = sentType[slot];
+			latency[type].record(now - sentNanos[slot]);
+			if (reply.getType() == Message.ERROR) {
+				errors[type]++;
+			}
+			inFlight--;
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		Map<String, String> options = new HashMap<String, String>();
+		for (String arg : args) {
+			int equals = arg.indexOf('=');
+			if (equals < 0) {
+				throw new IllegalArgumentException("Options are key=value, not " + arg);
+			}
+			options.put(arg.substring(0, equals), arg.substring(equals + 1));
+		}
+		long period = Long.parseLong(option(options, "period", "10"));
+		StubRobotHandler stub = new StubRobotHandler(Long.parseLong(option(options, "motion", "50")));
+		if (options.containsKey("serve")) {
+			NioServer server = new NioServer(Integer.parseInt(options.get("serve")), stub);
+			System.out.println("Stubbed robot server on port " + server.getPort());
+			startPublisher(server, stub, period);
+			server.run();
+			return;
+		}
+
+		NioServer server = null;
+		Thread serverThread = null;
+		if (!options.containsKey("host")) {
+			server = new NioServer(0, stub);
+			serverThread = new Thread(server, "StubRobotServer");
+			serverThread.start();
+			startPublisher(server, stub, period);
+			options.put("host", "localhost");
+			options.put("port", String.valueOf(server.getPort()));
+		}
+		try {
+			LoadGenerator generator = new LoadGenerator(options);
+			System.out.print(generator.run(server));
+		} finally {
+			if (server != null) {
+				server.stop();
+				serverThread.join();
+			}
+			stub.shutdown();
+		}
+	}
+
+	public LoadGenerator(Map<String, String> options) {
+		this.options = options;
+		connectionCount = Integer.parseInt(option(options, "connections", "10"));
+		window = Integer.parseInt(option(options, "window", "4"));
+		if (window < 1 || window >= MAX_WINDOW) {
+			throw new IllegalArgumentException("window must be 1 to " + (MAX_WINDOW - 1));
+		}
+		binary = !"text".equals(option(options, "protocol", "binary"));
+		double rate = Double.parseDouble(option(options, "rate", "0"));
+		intervalNanos = (rate > 0) ? (long) (1e9 / rate) : 0;
+		schedule = parseMix(option(options, "mix", "GET_JOINT_POSITION:4,JOINT_TARGET:4,PING:1,MOVE_JOINT:1"));
+		for (int type = 0; type < MAX_TYPES; type++) {
+			latency[type] = new LatencyHistogram();
+		}
+	}
+
+	/**
+	 * Runs the load and returns the report.
+	 *
+	 * @param server
+	 *            the local server whose latency is reported, null if remote
+	 */
+	public String run(NioServer server) throws IOException {
+		InetSocketAddress address = new InetSocketAddress(options.get("host"), Integer.parseInt(option(options,
+				"port", "30002")));
+		double seconds = Double.parseDouble(option(options, "seconds", "10"));
+		double warmup = Double.parseDouble(option(options, "warmup", "2"));
+		int subscribers = Integer.parseInt(option(options, "subscribers", "0"));
+
+		Selector selector = Selector.open();
+		List<Load> loads = new ArrayList<Load>();
+		Message reply = new Message();
+		try {
+			for (int i = 0; i < connectionCount; i++) {
+				SocketChannel channel = SocketChannel.open(address);
+				channel.configureBlocking(false);
+				channel.socket().setTcpNoDelay(true);
+				Load load = new Load(channel, i);
+				load.key = channel.register(selector, SelectionKey.OP_READ, load);
+				loads.add(load);
+				if (i < subscribers) {
+					subscribe(load);
+				}
+			}
+			long start = schedule(loads);
+			run(selector, loads, reply, start + (long) (warmup * 1e9));
+			for (LatencyHistogram histogram : latency) {
+				histogram.reset();
+			}
+			Arrays.fill(errors, 0);
+			streamed = 0;
+			if (server != null) {
+				server.getLatency().reset();
+			}
+			// a backlog of the warm-up does not count
+			start = schedule(loads);
+			run(selector, loads, reply, start + (long) (seconds * 1e9));
+			return report((System.nanoTime() - start) / 1e9, server);
+		} finally {
+			for (Load load : loads) {
+				load.channel.close();
+			}
+			selector.close();
+		}
+	}
+
+	private void run(Selector selector, List<Load> loads, Message reply, long end) throws IOException {
+		long now;
+		while ((now = System.nanoTime()) < end) {
+			for (Load load : loads) {
+				int before = load.out.remaining();
+				load.send(now);
+				if (load.out.remaining() > before) {
+					load.write();
+				}
+			}
+			long wait = (intervalNanos == 0) ? 1 : Math.max(1, TimeUnit.NANOSECONDS.toMillis(nextDue(loads) - now));
+			selector.select(Math.min(wait, 100));
+			now = System.nanoTime();
+			Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+			while (keys.hasNext()) {
+				SelectionKey key = keys.next();
+				keys.remove();
+				Load load = (Load) key.attachment();
+				if (key.isReadable()) {
+					load.read(now, reply);
+				}
+				if (key.isValid() && key.isWritable()) {
+					load.write();
+				}
+			}
+		}
+	}
+
+	// spreads the due times over the connections, starting now
+	private long schedule(List<Load> loads) {
+		long start = System.nanoTime();
+		for (int i = 0; i < loads.size(); i++) {
+			loads.get(i).dueNanos = start + (intervalNanos * i) / loads.size();
+		}
+		return start;
+	}
+
+	private long nextDue(List<Load> loads) {
+		long next = Long.MAX_VALUE;
+		for (Load load : loads) {
+			if (load.inFlight < window) {
+				next = Math.min(next, load.dueNanos);
+			}
+		}
+		return (next == Long.MAX_VALUE) ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100) : next;
+	}
+
+	private void subscribe(Load load) throws IOException {
+		Message request = new Message().set(Message.SUBSCRIBE, load.nextId++);
+		load.sentNanos[request.getId()] = System.nanoTime();
+		load.sentType[request.getId()] = Message.SUBSCRIBE;
+		load.inFlight++;
+		load.out.compact();
+		if (binary) {
+			BinaryCodec.encode(request, load.out);
+		} else {
+			load.out.put((TextCodec.encode(request) + "\n").getBytes(Connection.CHARSET));
+		}
+		load.out.flip();
+		load.write();
+	}
+
+	private String report(double seconds, NioServer server) {
+		long total = 0;
+		long totalErrors = 0;
+		StringBuilder types = new StringBuilder();
+		for (int type = 0; type < MAX_TYPES; type++) {
+			LatencyHistogram histogram = latency[type];
+			if (histogram.getCount() == 0) {
+				continue;
+			}
+			total += histogram.getCount();
+			totalErrors += errors[type];
+			types.append(String.format("\t%-22s %9.0f/s, %d errors, %s%n", Message.nameOf(type), histogram
+					.getCount() / seconds, errors[type], histogram));
+		}
+		StringBuilder report = new StringBuilder();
+		report.append(String.format("Load: %d connections, %s protocol, window %d, %s, %.1f s%n", connectionCount,
+				binary ? "binary" : "text", window, (intervalNanos == 0) ? "closed loop" : String.format(
+						"%.0f requests/s per connection", 1e9 / intervalNanos), seconds));
+		report.append(String.format("\ttotal %9.0f replies/s, %d errors, %.0f state frames/s%n", total / seconds,
+				totalErrors, streamed / seconds));
+		report.append(types);
+		if (server != null) {
+			report.append("\tserver: ").append(server.getLatency()).append('\n');
+		}
+		return report.toString();
+	}
+
+	// fills a request of a type with typical values
+	private static void fill(Message request, int type, int id) {
+		request.set(type, id);
+		switch (type) {
+		case Message.JOINT_TARGET:
+			request.addValues(JOINTS);
+			break;
+		case Message.MOVE_JOINT:
+			request.addValues(JOINTS).addValue(0.2);
+			break;
+		case Message.CARTESIAN_TARGET:
+		case Message.MOVE_CARTESIAN:
+			request.addValues(POSE);
+			break;
+		case Message.MOVE_BATCH:
+			request.addValue(MotionSegments.PTP).addValue(0.2).addValue(20).addValues(JOINTS);
+			request.addValue(MotionSegments.LIN).addValue(100).addValue(0).addValues(POSE);
+			break;
+		case Message.ECHO:
+			request.setText("load");
+			break;
+		case Message.COMMAND:
+			request.setText(COMMAND);
+			break;
+		default:
+			break;
+		}
+	}
+
+	// request types repeated by weight, in a fixed random order
+	private int[] parseMix(String mix) {
+		List<Integer> types = new ArrayList<Integer>();
+		for (String entry : mix.split(",")) {
+			String[] parts = entry.split(":");
+			int type = Message.typeOf(parts[0].trim());
+			if (type == 0) {
+				throw new IllegalArgumentException("Unknown request type " + parts[0]);
+			}
+			if (type == Message.ECHO && !binary) {
+				throw new IllegalArgumentException("Text echo replies have no id, use the binary protocol");
+			}
+			int weight = (parts.length > 1) ? Integer.parseInt(parts[1].trim()) : 1;
+			for (int i = 0; i < weight; i++) {
+				types.add(type);
+			}
+		}
+		Collections.shuffle(types, new Random(1));
+		int[] result = new int[types.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = types.get(i);
+		}
+		return result;
+	}
+
+	private static String option(Map<String, String> options, String key, String defaultValue) {
+		String value = options.get(key);
+		return (value != null) ? value : defaultValue;
+	}
+
+	private static void startPublisher(final NioServer server, final StubRobotHandler stub, final long periodMillis) {
+		Thread publisher = new Thread("StubRobotState") {
+			@Override
+			public void run() {
+				Message state = new Message();
+				long period = TimeUnit.MILLISECONDS.toNanos(periodMillis);
+				for (long next = System.nanoTime();; next += period) {
+					if (server.getSubscriberCount() > 0) {
+						server.publish(stub.sample().toState(state));
+					}
+					LockSupport.parkNanos(next + period - System.nanoTime());
+				}
+			}
+		};
+		publisher.setDaemon(true);
+		publisher.start();
+	}
+}
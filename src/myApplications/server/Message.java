@@ -0,0 +1,234 @@
+package myApplications.server;
+
+/**
+ * A request or reply of the robot TCP protocol.
+ * <p>
+ * A message has a type, an id chosen by the client and echoed in the reply,
+ * a list of doubles (joint positions, Cartesian coordinates) and an optional
+ * text. Messages are mutable and reused by the server, so decoding a request
+ * does not allocate.
+ * <p>
+ * Cartesian coordinates are x, y, z in mm and a, b, c in rad, like the frames
+ * of the RoboticsAPI.
+ */
+public class Message {
+	/** Request: reply with PONG. */
+	public static final int PING = 1;
+	/** Reply to PING. */
+	public static final int PONG = 2;
+	/** Request and reply with text only. */
+	public static final int ECHO = 3;
+	/** Reply: request accepted. */
+	public static final int OK = 4;
+	/** Reply: request rejected, the text holds the reason. */
+	public static final int ERROR = 5;
+	/** Request: reply with the measured joint positions. */
+	public static final int GET_JOINT_POSITION = 6;
+	/** Reply: joint positions (rad). */
+	public static final int JOINT_POSITION = 7;
+	/** Request: reply with the measured flange pose. */
+	public static final int GET_CARTESIAN_POSITION = 8;
+	/** Reply: flange pose x, y, z, a, b, c. */
+	public static final int CARTESIAN_POSITION = 9;
+	/** Request: joint target (rad). */
+	public static final int JOINT_TARGET = 10;
+	/** Request: Cartesian target x, y, z, a, b, c of the flange. */
+	public static final int CARTESIAN_TARGET = 11;
+	/** Request: stream STATE messages to this client. */
+	public static final int SUBSCRIBE = 12;
+	/** Request: stop the STATE messages. */
+	public static final int UNSUBSCRIBE = 13;
+	/**
+	 * Streamed: robot state with the sample number as id; values are the
+	 * sample time (s), joint positions (rad), flange pose x, y, z, a, b, c and
+	 * the external force (N) and torque (Nm) at the flange.
+	 */
+	public static final int STATE = 14;
+	/**
+	 * Request: queued PTP motion to a joint position (rad), optionally
+	 * followed by the relative joint velocity.
+	 */
+	public static final int MOVE_JOINT = 15;
+	/**
+	 * Request: queued LIN motion of the flange to x, y, z, a, b, c, optionally
+	 * followed by the Cartesian velocity (mm/s).
+	 */
+	public static final int MOVE_CARTESIAN = 16;
+	/** Reply: the queued motion with this id has finished. */
+	public static final int DONE = 17;
+	/**
+	 * Request: queued list of PTP, LIN and SPL segments executed as one
+	 * motion; see {@link MotionSegments}.
+	 */
+	public static final int MOVE_BATCH = 18;
+	/**
+	 * Request: queued motion given by the text, e.g.
+	 * <code>move to /P3 at 10%</code>; as a text line
+	 * <code>!COMMAND 5 move to /P3 at 10%</code>.
+	 */
+	public static final int COMMAND = 19;
+
+	private static final String[] NAMES = { null, "PING", "PONG", "ECHO", "OK", "ERROR", "GET_JOINT_POSITION",
+			"JOINT_POSITION", "GET_CARTESIAN_POSITION", "CARTESIAN_POSITION", "JOINT_TARGET", "CARTESIAN_TARGET",
+			"SUBSCRIBE", "UNSUBSCRIBE", "STATE", "MOVE_JOINT", "MOVE_CARTESIAN", "DONE", "MOVE_BATCH",
+			"COMMAND" };
+
+	/** Maximum number of values of a message. */
+	public static final int MAX_VALUES = 256;
+	/** Maximum length of the text of a message (bytes). */
+	public static final int MAX_TEXT = 4096;
+	/** Text the robot handlers put before the text of an echo reply. */
+	public static final String ECHO_PREFIX = "IIWA received msg: ";
+
+	int type;
+	int id;
+	final double[] values = new double[MAX_VALUES];
+	int valueCount;
+	final byte[] text = new byte[MAX_TEXT];
+	int textLength;
+
+	/**
+	 * Clears the message and sets type and id.
+	 *
+	 * @return this message
+	 */
+	public Message set(int type, int id) {
+		this.type = type;
+		this.id = id;
+		valueCount = 0;
+		textLength = 0;
+		return this;
+	}
+
+	public int getType() {
+		return type;
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public int getValueCount() {
+		return valueCount;
+	}
+
+	public double getValue(int index) {
+		return values[index];
+	}
+
+	/**
+	 * Copies values into an array.
+	 *
+	 * @return the number of values copied
+	 */
+	public int getValues(double[] destination) {
+		int n = Math.min(valueCount, destination.length);
+		System.arraycopy(values, 0, destination, 0, n);
+		return n;
+	}
+
+	public Message addValue(double value) {
+		values[valueCount++] = value;
+		return this;
+	}
+
+	public Message addValues(double[] source) {
+		System.arraycopy(source, 0, values, valueCount, source.length);
+		valueCount += source.length;
+		return this;
+	}
+
+	public int getTextLength() {
+		return textLength;
+	}
+
+	/**
+	 * @return the text; creates a string, for logging and error paths
+	 */
+	public String getText() {
+		return new String(text, 0, textLength, Connection.CHARSET);
+	}
+
+	/**
+	 * Sets the text, shortened to {@link #MAX_TEXT} bytes at a character
+	 * boundary.
+	 *
+	 * @return this message
+	 */
+	public Message setText(String value) {
+		byte[] bytes = value.getBytes(Connection.CHARSET);
+		textLength = fit(bytes, 0, bytes.length, MAX_TEXT);
+		System.arraycopy(bytes, 0, text, 0, textLength);
+		return this;
+	}
+
+	/**
+	 * Appends the text of another message without creating a string, shortened
+	 * at a character boundary if it does not fit.
+	 *
+	 * @return this message
+	 */
+	public Message appendText(Message other) {
+		int n = fit(other.text, 0, other.textLength, MAX_TEXT - textLength);
+		System.arraycopy(other.text, 0, text, textLength, n);
+		textLength += n;
+		return this;
+	}
+
+	/**
+	 * Copies another message into this one.
+	 *
+	 * @return this message
+	 */
+	public Message copy(Message other) {
+		set(other.type, other.id);
+		System.arraycopy(other.values, 0, values, 0, other.valueCount);
+		valueCount = other.valueCount;
+		appendText(other);
+		return this;
+	}
+
+	// number of bytes of the UTF-8 text that fit into space without splitting a character
+	private static int fit(byte[] bytes, int offset, int length, int space) {
+		if (length <= space) {
+			return length;
+		}
+		int n = space;
+		while (n > 0 && (bytes[offset + n] & 0xC0) == 0x80) {
+			// continuation byte, the character started before
+			n--;
+		}
+		return n;
+	}
+
+	/**
+	 * @return name of a message type, null if unknown
+	 */
+	public static String nameOf(int type) {
+		return (type > 0 && type < NAMES.length) ? NAMES[type] : null;
+	}
+
+	/**
+	 * @return type of a message name, 0 if unknown
+	 */
+	public static int typeOf(String name) {
+		for (int type = 1; type < NAMES.length; type++) {
+			if (NAMES[type].equalsIgnoreCase(name)) {
+				return type;
+			}
+		}
+		return 0;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder(String.valueOf(nameOf(type))).append(' ').append(id);
+		for (int i = 0; i < valueCount; i++) {
+			builder.append(' ').append(values[i]);
+		}
+		if (textLength > 0) {
+			builder.append(" \"").append(getText()).append('"');
+		}
+		return builder.toString();
+	}
+}
@@ -0,0 +1,88 @@
+package myApplications.server;
+
+/**
+ * Layout of the values of a {@link Message#MOVE_BATCH} request.
+ * <p>
+ * The values are a list of segments. Every segment starts with its kind,
+ * the velocity and the blending radius (mm, 0 to stop at the point),
+ * followed by the target: 7 joint positions (rad) for {@link #PTP}, the
+ * flange pose x, y, z, a, b, c for {@link #LIN} and {@link #SPL}. The
+ * velocity is relative for PTP and in mm/s for LIN and SPL; 0 selects the
+ * default. SPL segments can only be combined with LIN segments, into one
+ * spline.
+ */
+public final class MotionSegments {
+	/** Point-to-point motion to a joint position. */
+	public static final int PTP = 1;
+	/** Linear motion to a flange pose. */
+	public static final int LIN = 2;
+	/** Spline segment through a flange pose. */
+	public static final int SPL = 3;
+
+	/** Values before the target: kind, velocity, blending. */
+	public static final int HEADER = 3;
+
+	private static final int JOINT_COUNT = 7;
+	private static final int POSE_COUNT = 6;
+
+	private MotionSegments() {
+	}
+
+	/**
+	 * @return number of target values of a segment kind, 0 if unknown
+	 */
+	public static int targetCount(int kind) {
+		switch (kind) {
+		case PTP:
+			return JOINT_COUNT;
+		case LIN:
+		case SPL:
+			return POSE_COUNT;
+		default:
+			return 0;
+		}
+	}
+
+	/**
+	 * Checks the segments of a request.
+	 *
+	 * @return the reason the request is invalid, null if it is valid
+	 */
+	public static String check(Message request) {
+		int n = request.getValueCount();
+		if (n == 0) {
+			return "Batch has no segments";
+		}
+		for (int i = 0; i < n; i++) {
+			if (Double.isNaN(request.getValue(i)) || Double.isInfinite(request.getValue(i))) {
+				return "Batch value " + i + " is not finite";
+			}
+		}
+		boolean joint = false;
+		boolean spline = false;
+		for (int offset = 0; offset < n;) {
+			int kind = (int) request.getValue(offset);
+			int count = targetCount(kind);
+			if (count == 0 || kind != request.getValue(offset)) {
+				return "Unknown segment kind at value " + offset;
+			}
+			if (offset + HEADER + count > n) {
+				return "Segment at value " + offset + " is incomplete";
+			}
+			double velocity = request.getValue(offset + 1);
+			if (velocity < 0 || (kind == PTP && velocity > 1)) {
+				return "Velocity of segment at value " + offset + " out of range";
+			}
+			if (request.getValue(offset + 2) < 0) {
+				return "Blending of segment at value " + offset + " is negative";
+			}
+			joint |= kind == PTP;
+			spline |= kind == SPL;
+			offset += HEADER + count;
+		}
+		if (joint && spline) {
+			return "SPL segments cannot be combined with PTP segments";
+		}
+		return null;
+	}
+}
@@ -0,0 +1,370 @@
+package myApplications.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * TCP server that serves all clients from one thread with a selector.
+ * <p>
+ * Sockets are non-blocking; every connection keeps its own read and write
+ * buffer, so a client sending a request in pieces or reading its replies
+ * slowly does not hold up the others. The thread count stays constant no
+ * matter how many clients connect. Clients speak the binary protocol of
+ * {@link BinaryCodec} or, for debugging, the text protocol of
+ * {@link TextCodec}; both are decoded into the same {@link Message}s. The
+ * time from reading a request to handing its reply to the socket is recorded
+ * per request in {@link #getLatency()}.
+ * <p>
+ * Clients that send {@link Message#SUBSCRIBE} receive every message passed
+ * to {@link #publish}. A published message is encoded once and the same
+ * bytes are queued for every subscriber in a bounded queue that drops the
+ * oldest frame, so a slow subscriber loses frames but never delays the
+ * publisher or the other clients.
+ * <p>
+ * Requests carry an id and clients may send many before the first reply;
+ * every reply has the id of its request. A handler may keep the
+ * {@link Client} of a request and answer it later from another thread, so
+ * replies of queued requests arrive when they are done, not in the order of
+ * the requests.
+ * <p>
+ * Optionally the server also serves a {@link UdpEndpoint} on the same
+ * thread, for clients that prefer datagrams without retransmission delays.
+ * <p>
+ * The server does not depend on the RoboticsAPI, so it can also run on a
+ * workstation against a stubbed {@link RequestHandler}.
+ */
+public class NioServer implements Runnable {
+	private static final Logger LOGGER = Logger.getLogger(NioServer.class.getName());
+
+	/** Default number of published frames buffered per subscriber. */
+	public static final int DEFAULT_STREAM_CAPACITY = 64;
+
+	private final Selector selector;
+	private final ServerSocketChannel serverChannel;
+	private final RequestHandler handler;
+	private final LatencyHistogram latency = new LatencyHistogram();
+	private final Message request = new Message();
+	private final Message reply = new Message();
+
+	private final List<Connection> subscribers = new CopyOnWriteArrayList<Connection>();
+	private final Queue<Connection> sending = new ConcurrentLinkedQueue<Connection>();
+	private final AtomicBoolean outputPending = new AtomicBoolean();
+	private final AtomicLong publishedCount = new AtomicLong();
+	private final AtomicLong droppedCount = new AtomicLong();
+	private final int streamCapacity;
+	private UdpEndpoint udp;
+
+	private volatile boolean running = true;
+	private volatile int connectionCount;
+
+	/**
+	 * Opens the server socket with {@link #DEFAULT_STREAM_CAPACITY}.
+	 *
+	 * @param port
+	 *            TCP port, 0 for any free port
+	 * @param handler
+	 *            handler of the requests, called on the server thread
+	 * @throws IOException
+	 *             if the port cannot be opened
+	 */
+	public NioServer(int port, RequestHandler handler) throws IOException {
+		this(port, handler, DEFAULT_STREAM_CAPACITY);
+	}
+
+	/**
+	 * Opens the server socket; the clients are served once {@link #run()} is
+	 * called.
+	 *
+	 * @param port
+	 *            TCP port, 0 for any free port
+	 * @param handler
+	 *            handler of the requests, called on the server thread
+	 * @param streamCapacity
+	 *            number of published frames buffered per subscriber
+	 * @throws IOException
+	 *             if the port cannot be opened
+	 */
+	public NioServer(int port, RequestHandler handler, int streamCapacity) throws IOException {
+		this.handler = handler;
+		this.streamCapacity = streamCapacity;
+		selector = Selector.open();
+		serverChannel = ServerSocketChannel.open();
+		serverChannel.socket().setReuseAddress(true);
+		serverChannel.socket().bind(new InetSocketAddress(port));
+		serverChannel.configureBlocking(false);
+		serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+	}
+
+	/**
+	 * Serves the clients until {@link #stop()} is called; closes all sockets
+	 * before it returns.
+	 */
+	public void run() {
+		try {
+			while (running) {
+				selector.select();
+				if (outputPending.getAndSet(false)) {
+					drainStreams();
+					drainSent();
+				}
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					if (!key.isValid()) {
+						continue;
+					}
+					if (key.isAcceptable()) {
+						accept();
+					} else if (key.attachment() == udp) {
+						receiveUdp();
+					} else {
+						serve(key);
+					}
+				}
+			}
+		} catch (IOException e) {
+			LOGGER.severe("Server stopped: " + e.getMessage());
+		} finally {
+			for (SelectionKey key : selector.keys()) {
+				if (key.attachment() instanceof Connection) {
+					((Connection) key.attachment()).close();
+				}
+			}
+			if (udp != null) {
+				udp.close();
+			}
+			try {
+				serverChannel.close();
+				selector.close();
+			} catch (IOException e) {
+				// closed anyway
+			}
+		}
+	}
+
+	/**
+	 * Opens a UDP endpoint served by the same thread; must be called before
+	 * {@link #run()}.
+	 *
+	 * @param port
+	 *            UDP port, 0 for any free port
+	 * @return the endpoint
+	 * @throws IOException
+	 *             if the port cannot be opened
+	 */
+	public UdpEndpoint openUdp(int port) throws IOException {
+		udp = new UdpEndpoint(port, handler);
+		udp.register(selector);
+		return udp;
+	}
+
+	/**
+	 * @return the UDP endpoint, null if none was opened
+	 */
+	public UdpEndpoint getUdp() {
+		return udp;
+	}
+
+	/**
+	 * Makes {@link #run()} return; may be called from any thread.
+	 */
+	public void stop() {
+		running = false;
+		selector.wakeup();
+	}
+
+	/**
+	 * Streams a message to all subscribers, TCP and UDP; called by one
+	 * publisher thread. Does not wait for the network.
+	 *
+	 * @param message
+	 *            the message, not modified
+	 */
+	public void publish(Message message) {
+		// queue for TCP first, so the server thread writes while the datagrams are sent
+		if (!subscribers.isEmpty()) {
+			// encode once for all subscribers
+			byte[] binary = new byte[BinaryCodec.frameLength(message)];
+			BinaryCodec.encode(message, ByteBuffer.wrap(binary));
+			byte[] text = (TextCodec.encode(message) + "\n").getBytes(Connection.CHARSET);
+			for (Connection connection : subscribers) {
+				if (!connection.offerStream(binary, text)) {
+					droppedCount.incrementAndGet();
+				}
+			}
+			publishedCount.incrementAndGet();
+			if (!outputPending.getAndSet(true)) {
+				selector.wakeup();
+			}
+		}
+		if (udp != null) {
+			udp.publish(message);
+		}
+	}
+
+	/**
+	 * Makes the server thread write what another thread sent to a connection.
+	 */
+	void wakeup(Connection connection) {
+		sending.add(connection);
+		if (!outputPending.getAndSet(true)) {
+			selector.wakeup();
+		}
+	}
+
+	/**
+	 * @return number of TCP and UDP subscribers
+	 */
+	public int getSubscriberCount() {
+		return subscribers.size() + ((udp != null) ? udp.getSubscriberCount() : 0);
+	}
+
+	public long getPublishedCount() {
+		return publishedCount.get();
+	}
+
+	/**
+	 * @return number of frames dropped for subscribers that did not keep up
+	 */
+	public long getDroppedCount() {
+		return droppedCount.get();
+	}
+
+	public int getPort() {
+		return serverChannel.socket().getLocalPort();
+	}
+
+	public int getConnectionCount() {
+		return connectionCount;
+	}
+
+	/**
+	 * @return time from reading a request to writing its reply
+	 */
+	public LatencyHistogram getLatency() {
+		return latency;
+	}
+
+	private void accept() throws IOException {
+		SocketChannel channel = serverChannel.accept();
+		if (channel == null) {
+			return;
+		}
+		channel.configureBlocking(false);
+		channel.socket().setTcpNoDelay(true);
+		Connection connection = new Connection(this, channel);
+		connection.setKey(channel.register(selector, SelectionKey.OP_READ, connection));
+		connectionCount++;
+		LOGGER.info("connect from " + channel.socket().getRemoteSocketAddress());
+	}
+
+	/**
+	 * Handles subscriptions and passes all other requests to the handler.
+	 *
+	 * @return false if no reply is sent
+	 */
+	boolean dispatch(Connection connection, Message request, Message reply) {
+		switch (request.getType()) {
+		case Message.SUBSCRIBE:
+			connection.setStream(streamCapacity);
+			if (!subscribers.contains(connection)) {
+				subscribers.add(connection);
+			}
+			return true;
+		case Message.UNSUBSCRIBE:
+			subscribers.remove(connection);
+			connection.setStream(0);
+			return true;
+		default:
+			return handler.handle(connection, request, reply);
+		}
+	}
+
+	private void serve(SelectionKey key) {
+		Connection connection = (Connection) key.attachment();
+		try {
+			if (key.isReadable() && !connection.read(request, reply)) {
+				close(key, "client disconnected");
+				return;
+			}
+			if (key.isWritable()) {
+				// the socket took the backlog, streamed frames may follow
+				connection.drainStream();
+			}
+			flush(connection);
+		} catch (IOException e) {
+			close(key, e.getMessage());
+		} catch (RuntimeException e) {
+			// a bad request or a failing handler must not stop the other clients
+			LOGGER.log(Level.WARNING, "request failed", e);
+			close(key, e.toString());
+		}
+	}
+
+	private void drainStreams() {
+		for (Connection connection : subscribers) {
+			try {
+				connection.drainStream();
+				flush(connection);
+			} catch (IOException e) {
+				close(connection.getKey(), e.getMessage());
+			}
+		}
+	}
+
+	private void receiveUdp() {
+		try {
+			udp.receive();
+		} catch (IOException e) {
+			LOGGER.warning("UDP receive failed: " + e.getMessage());
+		}
+	}
+
+	private void drainSent() {
+		Connection connection;
+		while ((connection = sending.poll()) != null) {
+			if (!connection.isOpen()) {
+				continue;
+			}
+			try {
+				connection.drainSent();
+				flush(connection);
+			} catch (IOException e) {
+				close(connection.getKey(), e.getMessage());
+			}
+		}
+	}
+
+	// writes at once, waits for the socket only if it does not take everything
+	private void flush(Connection connection) throws IOException {
+		SelectionKey key = connection.getKey();
+		if (connection.hasPendingOutput() || (key.interestOps() & SelectionKey.OP_WRITE) != 0) {
+			boolean flushed = connection.write(latency);
+			key.interestOps(flushed ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+		}
+	}
+
+	private void close(SelectionKey key, String reason) {
+		Connection connection = (Connection) key.attachment();
+		LOGGER.info("disconnect " + connection.getChannel().socket().getRemoteSocketAddress() + ": " + reason);
+		subscribers.remove(connection);
+		key.cancel();
+		connection.close();
+		connectionCount--;
+	}
+}
@@ -0,0 +1,137 @@
+package myApplications.server;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Measures the messages per second one connection achieves with the binary
+ * and the text protocol of the {@link NioServer}.
+ * <p>
+ * The server runs locally with a handler that answers without a robot. The
+ * client alternates joint targets and joint position queries, once waiting
+ * for every reply before the next request and once with many requests in
+ * flight. Run with <code>java myApplications.server.ProtocolBenchmark
+ * [seconds per run]</code>.
+ */
+public class ProtocolBenchmark {
+	private static final double DEFAULT_SECONDS = 3.0;
+	private static final int[] WINDOWS = { 1, 64 };
+	private static final double[] TARGET = { 0.1, 0.5, -0.1, -1.2, 0.05, 0.6, 0.3 };
+
+	public static void main(String[] args) throws Exception {
+		double seconds = (args.length > 0) ? Double.valueOf(args[0]) : DEFAULT_SECONDS;
+		final NioServer server = new NioServer(0, new RequestHandler() {
+			@Override
+			public boolean handle(Client client, Message request, Message reply) {
+				if (request.getType() == Message.GET_JOINT_POSITION) {
+					reply.set(Message.JOINT_POSITION, request.getId()).addValues(TARGET);
+				} else if (request.getType() != Message.JOINT_TARGET) {
+					reply.set(Message.ERROR, request.getId());
+				}
+				return true;
+			}
+		});
+		Thread thread = new Thread(server, "ProtocolBenchmarkServer");
+		thread.start();
+
+		StringBuilder report = new StringBuilder("Protocol benchmark, one connection, joint targets and queries:\n");
+		try {
+			for (int window : WINDOWS) {
+				for (int pass = 0; pass < 2; pass++) {
+					boolean binary = pass == 0;
+					// warm up, then measure
+					run(server.getPort(), binary, window, seconds / 3);
+					server.getLatency().reset();
+					long[] result = run(server.getPort(), binary, window, seconds);
+					report.append(String.format("\t%-6s %2d in flight: %9.0f messages/s, %5.1f bytes/message, "
+							+ "server p50 %.1f us%n", binary ? "binary" : "text", window, result[0] / seconds,
+							(double) result[1] / result[0], server.getLatency().getPercentileNanos(50) / 1e3));
+				}
+			}
+		} finally {
+			server.stop();
+			thread.join();
+		}
+		System.out.print(report);
+	}
+
+	// returns the number of replies and the bytes sent and received
+	private static long[] run(int port, boolean binary, int window, double seconds) throws IOException {
+		SocketChannel channel = SocketChannel.open(new InetSocketAddress("localhost", port));
+		channel.socket().setTcpNoDelay(true);
+		ByteBuffer out = ByteBuffer.allocate(BinaryCodec.MAX_FRAME_BYTES * window);
+		ByteBuffer in = ByteBuffer.allocate(BinaryCodec.MAX_FRAME_BYTES * window);
+		Message request = new Message();
+		Message reply = new Message();
+		long replies = 0;
+		long bytes = 0;
+		int sent = 0;
+		int inFlight = 0;
+		long end = System.nanoTime() + (long) (seconds * 1e9);
+		try {
+			while (System.nanoTime() < end) {
+				out.clear();
+				for (; inFlight < window; inFlight++, sent++) {
+					if (sent % 2 == 0) {
+						request.set(Message.JOINT_TARGET, sent).addValues(TARGET);
+					} else {
+						request.set(Message.GET_JOINT_POSITION, sent);
+					}
+					if (binary) {
+						BinaryCodec.encode(request, out);
+					} else {
+						out.put((TextCodec.encode(request) + "\n").getBytes(Connection.CHARSET));
+					}
+				}
+				out.flip();
+				bytes += out.remaining();
+				while (out.hasRemaining()) {
+					channel.write(out);
+				}
+
+				// wait for at least one reply
+				int received = 0;
+				while (received == 0) {
+					int n = channel.read(in);
+					if (n < 0) {
+						throw new EOFException("Server closed the connection");
+					}
+					bytes += n;
+					in.flip();
+					received = binary ? decodeFrames(in, reply) : decodeLines(in, reply);
+					in.compact();
+				}
+				inFlight -= received;
+				replies += received;
+			}
+		} finally {
+			channel.close();
+		}
+		return new long[] { replies, bytes };
+	}
+
+	private static int decodeFrames(ByteBuffer in, Message reply) throws IOException {
+		int count = 0;
+		while (BinaryCodec.decode(in, reply)) {
+			count++;
+		}
+		return count;
+	}
+
+	private static int decodeLines(ByteBuffer in, Message reply) {
+		int count = 0;
+		int lineStart = in.position();
+		for (int i = in.position(); i < in.limit(); i++) {
+			if (in.get(i) == '\n') {
+				TextCodec.decode(new String(in.array(), lineStart, i - lineStart, Connection.CHARSET), reply);
+				lineStart = i + 1;
+				count++;
+			}
+		}
+		in.position(lineStart);
+		return count;
+	}
+}
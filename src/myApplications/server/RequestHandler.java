@@ -0,0 +1,27 @@
+package myApplications.server;
+
+/**
+ * Handles the requests of the clients of a {@link NioServer}.
+ * <p>
+ * The handler is called on the selector thread of the server, so it must not
+ * block; requests that take time have to be handed over to another thread,
+ * which answers them later through the {@link Client}. Request and reply are
+ * reused for the next request, so the handler must not keep references to
+ * them.
+ */
+public interface RequestHandler {
+
+	/**
+	 * Handles one request, binary or text.
+	 *
+	 * @param client
+	 *            the client that sent the request
+	 * @param request
+	 *            the request
+	 * @param reply
+	 *            the reply, preset to {@link Message#OK} with the id of the
+	 *            request
+	 * @return false if no reply is sent now
+	 */
+	boolean handle(Client client, Message request, Message reply);
+}
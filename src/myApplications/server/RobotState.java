@@ -0,0 +1,101 @@
+package myApplications.server;
+
+/**
+ * Immutable snapshot of the measured state of the robot.
+ * <p>
+ * A sampler reads the controller once per period and shares the snapshot
+ * with every reader, so any number of clients can ask for the state without
+ * querying the controller themselves. The arrays are copied on construction
+ * and never handed out, so a snapshot can be read from any thread.
+ */
+public final class RobotState {
+	private final int sample;
+	private final long nanos;
+	private final double time;
+	private final double[] joints;
+	private final double[] pose;
+	private final double[] force;
+	private final double[] torque;
+
+	/**
+	 * @param sample
+	 *            number of the sample
+	 * @param nanos
+	 *            <code>System.nanoTime()</code> of the sample
+	 * @param time
+	 *            time of the sample since the sampler started (s)
+	 * @param joints
+	 *            joint positions (rad)
+	 * @param pose
+	 *            flange pose x, y, z, a, b, c
+	 * @param force
+	 *            external force at the flange x, y, z (N)
+	 * @param torque
+	 *            external torque at the flange x, y, z (Nm)
+	 */
+	public RobotState(int sample, long nanos, double time, double[] joints, double[] pose, double[] force,
+			double[] torque) {
+		this.sample = sample;
+		this.nanos = nanos;
+		this.time = time;
+		this.joints = joints.clone();
+		this.pose = pose.clone();
+		this.force = force.clone();
+		this.torque = torque.clone();
+	}
+
+	public int getSample() {
+		return sample;
+	}
+
+	public long getNanos() {
+		return nanos;
+	}
+
+	/**
+	 * @return time since the sample was taken (ns)
+	 */
+	public long getAgeNanos() {
+		return System.nanoTime() - nanos;
+	}
+
+	public double getTime() {
+		return time;
+	}
+
+	public int getJointCount() {
+		return joints.length;
+	}
+
+	public double getJoint(int index) {
+		return joints[index];
+	}
+
+	/**
+	 * Appends the joint positions to a message.
+	 *
+	 * @return the message
+	 */
+	public Message addJoints(Message message) {
+		return message.addValues(joints);
+	}
+
+	/**
+	 * Appends the flange pose x, y, z, a, b, c to a message.
+	 *
+	 * @return the message
+	 */
+	public Message addPose(Message message) {
+		return message.addValues(pose);
+	}
+
+	/**
+	 * Fills a {@link Message#STATE} message with the snapshot.
+	 *
+	 * @return the message
+	 */
+	public Message toState(Message message) {
+		message.set(Message.STATE, sample).addValue(time).addValues(joints).addValues(pose);
+		return message.addValues(force).addValues(torque);
+	}
+}
@@ -0,0 +1,132 @@
+package myApplications.server;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Answers the requests of the robot protocol without a robot, so the
+ * {@link NioServer} can be load tested on a workstation.
+ * <p>
+ * Queries return a joint position that moves slowly, joint targets are
+ * checked and stored, and queued motions and commands are answered with
+ * <code>DONE</code> from another thread, like the robot applications do.
+ * Motions take a fixed time and run one after another, as on the robot, so
+ * a motion queued behind others is done only after them.
+ */
+public class StubRobotHandler implements RequestHandler {
+	private static final int JOINT_COUNT = 7;
+
+	private final long motionMillis;
+	private final ScheduledExecutorService motions;
+	private final long startNanos = System.nanoTime();
+	private final double[] wrench = new double[3];
+	private int sample;
+	private long busyUntilNanos;
+
+	/**
+	 * @param motionMillis
+	 *            time a queued motion takes (ms)
+	 */
+	public StubRobotHandler(long motionMillis) {
+		this.motionMillis = motionMillis;
+		motions = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "StubRobotMotions");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	@Override
+	public boolean handle(Client client, Message request, Message reply) {
+		int id = request.getId();
+		switch (request.getType()) {
+		case Message.PING:
+			reply.set(Message.PONG, id);
+			break;
+		case Message.ECHO:
+			reply.set(Message.ECHO, id).setText(Message.ECHO_PREFIX).appendText(request);
+			break;
+		case Message.GET_JOINT_POSITION:
+			reply.set(Message.JOINT_POSITION, id).addValues(currentJoints());
+			break;
+		case Message.GET_CARTESIAN_POSITION:
+			reply.set(Message.CARTESIAN_POSITION, id).addValues(currentPose());
+			break;
+		case Message.JOINT_TARGET:
+			if (request.getValueCount() != JOINT_COUNT) {
+				reply.set(Message.ERROR, id).setText("Joint target needs " + JOINT_COUNT + " values");
+			}
+			break;
+		case Message.MOVE_JOINT:
+		case Message.MOVE_CARTESIAN:
+		case Message.MOVE_BATCH:
+		case Message.COMMAND:
+			// the motion starts when the motions queued before it are done
+			long now = System.nanoTime();
+			busyUntilNanos = Math.max(now, busyUntilNanos) + TimeUnit.MILLISECONDS.toNanos(motionMillis);
+			motions.schedule(new Done(client, id), busyUntilNanos - now, TimeUnit.NANOSECONDS);
+			return false;
+		default:
+			reply.set(Message.ERROR, id).setText("Unknown request type " + request.getType());
+			break;
+		}
+		return true;
+	}
+
+	/**
+	 * @return a state sample for publishing; called by one publisher thread
+	 */
+	public RobotState sample() {
+		long nanos = System.nanoTime();
+		return new RobotState(sample++, nanos, (nanos - startNanos) / 1e9, currentJoints(), currentPose(), wrench,
+				wrench);
+	}
+
+	/**
+	 * Stops the motion thread.
+	 */
+	public void shutdown() {
+		motions.shutdownNow();
+	}
+
+	private double[] currentJoints() {
+		double t = (System.nanoTime() - startNanos) / 1e9;
+		double[] result = new double[JOINT_COUNT];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = 0.5 * Math.sin(0.1 * t + i);
+		}
+		return result;
+	}
+
+	private double[] currentPose() {
+		double t = (System.nanoTime() - startNanos) / 1e9;
+		double[] result = new double[6];
+		result[0] = 500 + 100 * Math.sin(0.1 * t);
+		result[2] = 600;
+		result[4] = Math.PI;
+		return result;
+	}
+
+	/**
+	 * Replies <code>DONE</code> when a queued motion is over.
+	 */
+	private static class Done implements Runnable {
+		private final Client client;
+		private final int id;
+
+		Done(Client client, int id) {
+			this.client = client;
+			this.id = id;
+		}
+
+		@Override
+		public void run() {
+			client.send(new Message().set(Message.DONE, id));
+		}
+	}
+}
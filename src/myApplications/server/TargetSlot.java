@@ -0,0 +1,109 @@
+package myApplications.server;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Holds the latest target streamed by a network client for a servo loop.
+ * <p>
+ * The slot is a triple buffer: the writer fills a private buffer and swaps
+ * it with the shared one in one atomic step, the reader swaps the shared
+ * buffer with its own if it holds a new target. Neither side blocks or
+ * allocates, and a target the reader has not taken yet is replaced by the
+ * next one instead of being queued, so the servo loop always moves towards
+ * the newest target. There must be one writer thread and one reader thread.
+ */
+public class TargetSlot {
+	private static final int INDEX_MASK = 0x3;
+	private static final int DIRTY = 0x4;
+
+	private final int size;
+	private final double[][] buffers;
+	private final long[] stamps = new long[3];
+	private final AtomicInteger shared = new AtomicInteger(0);
+	private int writeIndex = 1;
+	private int readIndex = 2;
+	private long takenStamp;
+
+	private volatile boolean active;
+	private volatile long publishedCount;
+	private volatile long supersededCount;
+
+	/**
+	 * @param size
+	 *            number of values of a target
+	 */
+	public TargetSlot(int size) {
+		this.size = size;
+		buffers = new double[3][size];
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Marks whether a servo loop takes targets; set by the reader.
+	 */
+	public void setActive(boolean active) {
+		this.active = active;
+	}
+
+	public boolean isActive() {
+		return active;
+	}
+
+	/**
+	 * Publishes a target; called by the writer thread.
+	 *
+	 * @param values
+	 *            the target, {@link #getSize()} values
+	 * @param stampNanos
+	 *            time the target was received, from {@link System#nanoTime()}
+	 */
+	public void publish(double[] values, long stampNanos) {
+		System.arraycopy(values, 0, buffers[writeIndex], 0, size);
+		stamps[writeIndex] = stampNanos;
+		int previous = shared.getAndSet(writeIndex | DIRTY);
+		writeIndex = previous & INDEX_MASK;
+		if ((previous & DIRTY) != 0) {
+			supersededCount++;
+		}
+		publishedCount++;
+	}
+
+	/**
+	 * Takes the latest target if there is a new one; called by the reader
+	 * thread.
+	 *
+	 * @param target
+	 *            receives the target
+	 * @return false if no target was published since the last call
+	 */
+	public boolean take(double[] target) {
+		if ((shared.get() & DIRTY) == 0) {
+			return false;
+		}
+		readIndex = shared.getAndSet(readIndex) & INDEX_MASK;
+		System.arraycopy(buffers[readIndex], 0, target, 0, size);
+		takenStamp = stamps[readIndex];
+		return true;
+	}
+
+	/**
+	 * @return receive time of the target taken last (ns)
+	 */
+	public long getTakenStamp() {
+		return takenStamp;
+	}
+
+	public long getPublishedCount() {
+		return publishedCount;
+	}
+
+	/**
+	 * @return number of targets replaced before the reader took them
+	 */
+	public long getSupersededCount() {
+		return supersededCount;
+	}
+}
@@ -0,0 +1,96 @@
+package myApplications.server;
+
+/**
+ * Text form of {@link Message}s for debugging with telnet or netcat.
+ * <p>
+ * A line starts with {@link #PREFIX} and the name of the message type,
+ * followed by the id, the values and an optional text, separated by blanks,
+ * e.g. <code>!JOINT_TARGET 7 0 0.5 0 -1.2 0 0.6 0</code>. Every other line
+ * is an {@link Message#ECHO} request with the line as text, even if it starts
+ * with a type name like <code>ping</code>, and echo replies are written as
+ * their bare text, as the server always did. Other replies start with the
+ * prefix, too, so a client can tell them from echoed text.
+ */
+public final class TextCodec {
+	/** First character of a line that is not echoed. */
+	public static final char PREFIX = '!';
+
+	private TextCodec() {
+	}
+
+	/**
+	 * Decodes a request line.
+	 *
+	 * @param line
+	 *            the line without terminator
+	 * @param message
+	 *            the decoded message
+	 */
+	public static void decode(String line, Message message) {
+		String trimmed = line.trim();
+		if (trimmed.length() < 2 || trimmed.charAt(0) != PREFIX) {
+			message.set(Message.ECHO, 0).setText(line);
+			return;
+		}
+		String[] tokens = trimmed.substring(1).split("\\s+");
+		int type = Message.typeOf(tokens[0]);
+		if (type == 0) {
+			message.set(Message.ECHO, 0).setText(line);
+			return;
+		}
+		int token = 1;
+		int id = 0;
+		if (tokens.length > 1 && isInteger(tokens[1])) {
+			id = Integer.parseInt(tokens[1]);
+			token++;
+		}
+		message.set(type, id);
+		for (; token < tokens.length && message.valueCount < Message.MAX_VALUES; token++) {
+			try {
+				message.addValue(Double.parseDouble(tokens[token]));
+			} catch (NumberFormatException e) {
+				break;
+			}
+		}
+		if (token < tokens.length) {
+			// the rest of the line is the text
+			StringBuilder text = new StringBuilder(tokens[token]);
+			for (token++; token < tokens.length; token++) {
+				text.append(' ').append(tokens[token]);
+			}
+			message.setText(text.toString());
+		}
+	}
+
+	/**
+	 * Encodes a reply line.
+	 *
+	 * @param message
+	 *            the message
+	 * @return the line without terminator
+	 */
+	public static String encode(Message message) {
+		if (message.type == Message.ECHO) {
+			return message.getText();
+		}
+		StringBuilder line = new StringBuilder().append(PREFIX).append(Message.nameOf(message.type));
+		line.append(' ').append(message.id);
+		for (int i = 0; i < message.valueCount; i++) {
+			line.append(' ').append(message.values[i]);
+		}
+		if (message.textLength > 0) {
+			line.append(' ').append(message.getText());
+		}
+		return line.toString();
+	}
+
+	private static boolean isInteger(String token) {
+		for (int i = 0; i < token.length(); i++) {
+			char c = token.charAt(i);
+			if ((c < '0' || c > '9') && !(i == 0 && c == '-' && token.length() > 1)) {
+				return false;
+			}
+		}
+		return token.length() > 0 && token.length() < 10;
+	}
+}
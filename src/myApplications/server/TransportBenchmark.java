@@ -0,0 +1,217 @@
+package myApplications.server;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Compares the delay of the TCP and the UDP path of the {@link NioServer}.
+ * <p>
+ * The server runs locally. A publisher thread streams <code>STATE</code>
+ * messages at a fixed period, first to one TCP subscriber only and then to
+ * one UDP subscriber only, so neither path pays for the other. Both record
+ * the time from the stamp the publisher writes into the first value to
+ * receiving; then a client streams joint targets
+ * over TCP and over UDP and the handler records the time from sending to
+ * handling. Loopback has no loss, so the numbers show the cost of each path
+ * in the server and the kernel, not retransmissions. Run with
+ * <code>java myApplications.server.TransportBenchmark [seconds per run]</code>.
+ */
+public class TransportBenchmark {
+	private static final double DEFAULT_SECONDS = 3.0;
+	private static final long PERIOD_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+	private static final int STATE_VALUES = 20;
+	private static final int JOINT_COUNT = 7;
+	private static final long START_NANOS = System.nanoTime();
+
+	public static void main(String[] args) throws Exception {
+		double seconds = (args.length > 0) ? Double.valueOf(args[0]) : DEFAULT_SECONDS;
+		final LatencyHistogram targetDelay = new LatencyHistogram();
+		final NioServer server = new NioServer(0, new RequestHandler() {
+			@Override
+			public boolean handle(Client client, Message request, Message reply) {
+				if (request.getType() == Message.JOINT_TARGET) {
+					targetDelay.record(System.nanoTime() - START_NANOS - (long) request.getValue(0));
+				}
+				return true;
+			}
+		});
+		UdpEndpoint udp = server.openUdp(0);
+		Thread thread = new Thread(server, "TransportBenchmarkServer");
+		thread.start();
+
+		StringBuilder report = new StringBuilder("Transport benchmark, loopback, period "
+				+ TimeUnit.NANOSECONDS.toMicros(PERIOD_NANOS) + " us:\n");
+		try {
+			for (int pass = 0; pass < 2; pass++) {
+				boolean tcp = pass == 0;
+				LatencyHistogram stateDelay = streamState(server, udp.getPort(), tcp, seconds);
+				report.append("\tstate  ").append(tcp ? "TCP: " : "UDP: ").append(stateDelay).append('\n');
+			}
+			for (int pass = 0; pass < 2; pass++) {
+				boolean tcp = pass == 0;
+				targetDelay.reset();
+				streamTargets(tcp ? server.getPort() : udp.getPort(), tcp, seconds);
+				report.append("\ttarget ").append(tcp ? "TCP: " : "UDP: ").append(targetDelay).append('\n');
+			}
+		} finally {
+			server.stop();
+			thread.join();
+		}
+		System.out.print(report);
+	}
+
+	// publishes state to one TCP or one UDP subscriber and returns its delay
+	private static LatencyHistogram streamState(NioServer server, int udpPort, boolean tcp, double seconds)
+			throws Exception {
+		final LatencyHistogram delay = new LatencyHistogram();
+		Message message = new Message();
+		ByteBuffer out = ByteBuffer.allocate(BinaryCodec.MAX_FRAME_BYTES);
+		Thread reader;
+		final SocketChannel stream;
+		final DatagramChannel datagrams;
+		if (tcp) {
+			stream = SocketChannel.open(new InetSocketAddress("localhost", server.getPort()));
+			stream.socket().setTcpNoDelay(true);
+			datagrams = null;
+			BinaryCodec.encode(message.set(Message.SUBSCRIBE, 0), out);
+			out.flip();
+			stream.write(out);
+			reader = new Thread("TcpSubscriber") {
+				@Override
+				public void run() {
+					ByteBuffer in = ByteBuffer.allocate(BinaryCodec.MAX_FRAME_BYTES * 64);
+					Message state = new Message();
+					try {
+						while (stream.read(in) >= 0) {
+							long now = System.nanoTime() - START_NANOS;
+							in.flip();
+							while (BinaryCodec.decode(in, state)) {
+								if (state.getType() == Message.STATE) {
+									delay.record(now - (long) state.getValue(0));
+								}
+							}
+							in.compact();
+						}
+					} catch (IOException e) {
+						// closed at the end of the run
+					}
+				}
+			};
+		} else {
+			stream = null;
+			datagrams = DatagramChannel.open();
+			datagrams.connect(new InetSocketAddress("localhost", udpPort));
+			UdpEndpoint.encode(message.set(Message.SUBSCRIBE, 0), 0, System.nanoTime(), out);
+			datagrams.write(out);
+			reader = new Thread("UdpSubscriber") {
+				@Override
+				public void run() {
+					ByteBuffer in = ByteBuffer.allocate(UdpEndpoint.HEADER_BYTES + 8 * Message.MAX_VALUES);
+					Message state = new Message();
+					try {
+						while (true) {
+							in.clear();
+							datagrams.receive(in);
+							long now = System.nanoTime() - START_NANOS;
+							in.flip();
+							if (UdpEndpoint.decode(in, state) && state.getType() == Message.STATE) {
+								delay.record(now - (long) state.getValue(0));
+							}
+						}
+					} catch (IOException e) {
+						// closed at the end of the run
+					}
+				}
+			};
+		}
+		while (server.getSubscriberCount() < 1) {
+			Thread.sleep(10);
+		}
+		reader.start();
+
+		// warm up, then measure
+		publish(server, message, seconds / 3);
+		Thread.sleep(100);
+		delay.reset();
+		publish(server, message, seconds);
+		Thread.sleep(100);
+		if (tcp) {
+			stream.close();
+		} else {
+			UdpEndpoint.encode(message.set(Message.UNSUBSCRIBE, 0), 1, System.nanoTime(), out);
+			datagrams.write(out);
+			datagrams.close();
+		}
+		reader.join();
+		while (server.getSubscriberCount() > 0) {
+			Thread.sleep(10);
+		}
+		return delay;
+	}
+
+	private static void publish(NioServer server, Message state, double seconds) {
+		long end = System.nanoTime() + (long) (seconds * 1e9);
+		for (long next = System.nanoTime(); next < end; next += PERIOD_NANOS) {
+			state.set(Message.STATE, 0).addValue(System.nanoTime() - START_NANOS);
+			for (int i = 1; i < STATE_VALUES; i++) {
+				state.addValue(0.1 * i);
+			}
+			server.publish(state);
+			LockSupport.parkNanos(next + PERIOD_NANOS - System.nanoTime());
+		}
+	}
+
+	// sends joint targets with the send time as first value
+	private static void streamTargets(int port, boolean tcp, double seconds) throws IOException {
+		SocketChannel stream = null;
+		DatagramChannel datagrams = null;
+		if (tcp) {
+			stream = SocketChannel.open(new InetSocketAddress("localhost", port));
+			stream.socket().setTcpNoDelay(true);
+		} else {
+			datagrams = DatagramChannel.open();
+			datagrams.connect(new InetSocketAddress("localhost", port));
+		}
+		Message target = new Message();
+		ByteBuffer out = ByteBuffer.allocate(BinaryCodec.MAX_FRAME_BYTES);
+		ByteBuffer in = ByteBuffer.allocate(BinaryCodec.MAX_FRAME_BYTES * 64);
+		long end = System.nanoTime() + (long) (seconds * 1e9);
+		try {
+			for (long sequence = 1, next = System.nanoTime(); next < end; sequence++, next += PERIOD_NANOS) {
+				target.set(Message.JOINT_TARGET, (int) sequence).addValue(System.nanoTime() - START_NANOS);
+				for (int i = 1; i < JOINT_COUNT; i++) {
+					target.addValue(0.1 * i);
+				}
+				if (tcp) {
+					out.clear();
+					BinaryCodec.encode(target, out);
+					out.flip();
+					while (out.hasRemaining()) {
+						stream.write(out);
+					}
+					// drop the OK replies
+					in.clear();
+					if (stream.read(in) < 0) {
+						throw new EOFException("Server closed the connection");
+					}
+				} else {
+					UdpEndpoint.encode(target, sequence, System.nanoTime(), out);
+					datagrams.write(out);
+				}
+				LockSupport.parkNanos(next + PERIOD_NANOS - System.nanoTime());
+			}
+		} finally {
+			if (tcp) {
+				stream.close();
+			} else {
+				datagrams.close();
+			}
+		}
+	}
+}
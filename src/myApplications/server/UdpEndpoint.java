@@ -0,0 +1,317 @@
+package myApplications.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * UDP endpoint of a {@link NioServer} for clients that prefer a late packet
+ * lost to a late packet delivered, like live dashboards and servo clients.
+ * <p>
+ * Every datagram has the same fixed layout: the int {@link #MAGIC}, the int
+ * message type, a long sequence number, a long time stamp
+ * (<code>System.nanoTime()</code> of the sender), the int number of values
+ * and the values as doubles. A client sends {@link Message#SUBSCRIBE} to
+ * receive every published message, e.g. {@link Message#STATE}, as a datagram
+ * and repeats it at least every {@link #SUBSCRIPTION_TIMEOUT_MILLIS} to stay
+ * subscribed. {@link Message#JOINT_TARGET} datagrams are passed to the
+ * {@link RequestHandler} like TCP requests; only error replies are sent
+ * back, as datagrams without text with the full 64 bit sequence number of
+ * the target.
+ * <p>
+ * Datagrams can be reordered, so every client numbers its datagrams. A
+ * target with a sequence number not greater than the last one of the same
+ * client is stale and dropped. A <code>SUBSCRIBE</code> only raises that
+ * limit, so a delayed or repeated one never lets an old target through; a
+ * client starts a new sequence only after being silent for the subscription
+ * timeout.
+ * <p>
+ * Receiving runs on the selector thread of the server; publishing sends
+ * directly from the publisher thread and drops the datagram if the socket
+ * buffer is full.
+ */
+public class UdpEndpoint {
+	/** First int of every datagram. */
+	public static final int MAGIC = 0x4C425231;
+	/** Bytes before the values. */
+	public static final int HEADER_BYTES = 28;
+	/** Subscriptions and sequences expire after this silence. */
+	public static final long SUBSCRIPTION_TIMEOUT_MILLIS = 5000;
+
+	private static final int MAX_DATAGRAM_BYTES = HEADER_BYTES + 8 * Message.MAX_VALUES;
+
+	private final DatagramChannel channel;
+	private final RequestHandler handler;
+	private final ByteBuffer input = ByteBuffer.allocate(MAX_DATAGRAM_BYTES);
+	private final ByteBuffer replyOutput = ByteBuffer.allocate(MAX_DATAGRAM_BYTES);
+	private final ByteBuffer stateOutput = ByteBuffer.allocate(MAX_DATAGRAM_BYTES);
+	private final Message request = new Message();
+	private final Message reply = new Message();
+	private final long timeout = TimeUnit.MILLISECONDS.toNanos(SUBSCRIPTION_TIMEOUT_MILLIS);
+
+	private final Map<SocketAddress, Peer> peers = new HashMap<SocketAddress, Peer>();
+	private final List<Peer> subscribers = new CopyOnWriteArrayList<Peer>();
+	private long publishedSequence;
+
+	private final AtomicLong receivedCount = new AtomicLong();
+	private final AtomicLong staleCount = new AtomicLong();
+	private final AtomicLong invalidCount = new AtomicLong();
+	private final AtomicLong sendDroppedCount = new AtomicLong();
+
+	/**
+	 * A client that sent datagrams; replies are sent as datagrams, too.
+	 */
+	private class Peer implements Client {
+		final SocketAddress address;
+		long lastSequence = -1;
+		volatile long requestSequence;
+		volatile long lastSeenNanos;
+
+		Peer(SocketAddress address) {
+			this.address = address;
+		}
+
+		@Override
+		public boolean send(Message message) {
+			synchronized (replyOutput) {
+				encode(message, sequenceOf(message), System.nanoTime(), replyOutput);
+				try {
+					channel.send(replyOutput, address);
+				} catch (IOException e) {
+					return false;
+				}
+			}
+			return isOpen();
+		}
+
+		// the id of a message holds only the low 32 bits of the full sequence
+		private long sequenceOf(Message message) {
+			long sequence = requestSequence;
+			return ((int) sequence == message.getId()) ? sequence : message.getId() & 0xFFFFFFFFL;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return channel.isOpen() && System.nanoTime() - lastSeenNanos <= timeout;
+		}
+	}
+
+	/**
+	 * Opens the UDP socket.
+	 *
+	 * @param port
+	 *            UDP port, 0 for any free port
+	 * @param handler
+	 *            handler of the joint targets, called on the selector thread
+	 * @throws IOException
+	 *             if the port cannot be opened
+	 */
+	UdpEndpoint(int port, RequestHandler handler) throws IOException {
+		this.handler = handler;
+		channel = DatagramChannel.open();
+		channel.socket().setReuseAddress(true);
+		channel.socket().bind(new InetSocketAddress(port));
+		channel.configureBlocking(false);
+	}
+
+	void register(Selector selector) throws IOException {
+		channel.register(selector, SelectionKey.OP_READ, this);
+	}
+
+	public int getPort() {
+		return channel.socket().getLocalPort();
+	}
+
+	public int getSubscriberCount() {
+		return subscribers.size();
+	}
+
+	public long getReceivedCount() {
+		return receivedCount.get();
+	}
+
+	/**
+	 * @return number of targets dropped because a newer one had arrived
+	 */
+	public long getStaleCount() {
+		return staleCount.get();
+	}
+
+	/**
+	 * @return number of datagrams without the fixed layout
+	 */
+	public long getInvalidCount() {
+		return invalidCount.get();
+	}
+
+	/**
+	 * @return number of published datagrams the socket did not take
+	 */
+	public long getSendDroppedCount() {
+		return sendDroppedCount.get();
+	}
+
+	/**
+	 * Encodes a message into a datagram.
+	 *
+	 * @param buffer
+	 *            buffer for the datagram, flipped for sending
+	 */
+	public static void encode(Message message, long sequence, long stampNanos, ByteBuffer buffer) {
+		buffer.clear();
+		buffer.putInt(MAGIC).putInt(message.type).putLong(sequence).putLong(stampNanos).putInt(message.valueCount);
+		for (int i = 0; i < message.valueCount; i++) {
+			buffer.putDouble(message.values[i]);
+		}
+		buffer.flip();
+	}
+
+	/**
+	 * Decodes a datagram; the low 32 bits of the sequence number become the id
+	 * of the message, use {@link #sequenceOf} for the full number.
+	 *
+	 * @return false if the datagram does not have the fixed layout
+	 */
+	public static boolean decode(ByteBuffer buffer, Message message) {
+		if (buffer.remaining() < HEADER_BYTES || buffer.getInt() != MAGIC) {
+			return false;
+		}
+		int type = buffer.getInt();
+		long sequence = buffer.getLong();
+		buffer.getLong();
+		int count = buffer.getInt();
+		if (count < 0 || count > Message.MAX_VALUES || buffer.remaining() != 8 * count) {
+			return false;
+		}
+		message.set(type, (int) sequence);
+		for (int i = 0; i < count; i++) {
+			message.addValue(buffer.getDouble());
+		}
+		return true;
+	}
+
+	/**
+	 * @return sequence number of an encoded datagram
+	 */
+	public static long sequenceOf(ByteBuffer datagram) {
+		return datagram.getLong(datagram.position() + 8);
+	}
+
+	/**
+	 * @return time stamp of an encoded datagram
+	 */
+	public static long stampOf(ByteBuffer datagram) {
+		return datagram.getLong(datagram.position() + 16);
+	}
+
+	/**
+	 * Sends a message to all subscribers; called by one publisher thread.
+	 */
+	void publish(Message message) {
+		if (subscribers.isEmpty()) {
+			return;
+		}
+		long now = System.nanoTime();
+		encode(message, publishedSequence++, now, stateOutput);
+		for (Peer peer : subscribers) {
+			if (now - peer.lastSeenNanos > timeout) {
+				subscribers.remove(peer);
+				continue;
+			}
+			try {
+				if (channel.send(stateOutput, peer.address) == 0) {
+					sendDroppedCount.incrementAndGet();
+				}
+			} catch (IOException e) {
+				sendDroppedCount.incrementAndGet();
+			}
+			stateOutput.rewind();
+		}
+	}
+
+	/**
+	 * Handles all datagrams the socket holds; called on the selector thread.
+	 */
+	void receive() throws IOException {
+		SocketAddress address;
+		while ((address = channel.receive(input)) != null) {
+			input.flip();
+			long now = System.nanoTime();
+			long sequence = (input.remaining() >= HEADER_BYTES) ? sequenceOf(input) : 0;
+			if (!decode(input, request)) {
+				invalidCount.incrementAndGet();
+			} else {
+				receivedCount.incrementAndGet();
+				handle(address, sequence, now);
+			}
+			input.clear();
+		}
+	}
+
+	void close() {
+		try {
+			channel.close();
+		} catch (IOException e) {
+			// closed anyway
+		}
+	}
+
+	private void handle(SocketAddress address, long sequence, long now) {
+		Peer peer = peers.get(address);
+		if (peer == null || now - peer.lastSeenNanos > timeout) {
+			if (peers.size() > 1024) {
+				expirePeers(now);
+			}
+			peer = new Peer(address);
+			peers.put(address, peer);
+		}
+		peer.lastSeenNanos = now;
+		// replies carry the full sequence of the request
+		peer.requestSequence = sequence;
+		switch (request.getType()) {
+		case Message.SUBSCRIBE:
+			if (sequence > peer.lastSequence) {
+				peer.lastSequence = sequence;
+			}
+			if (!subscribers.contains(peer)) {
+				subscribers.add(peer);
+			}
+			break;
+		case Message.UNSUBSCRIBE:
+			subscribers.remove(peer);
+			break;
+		case Message.JOINT_TARGET:
+			if (sequence <= peer.lastSequence) {
+				staleCount.incrementAndGet();
+				return;
+			}
+			peer.lastSequence = sequence;
+			reply.set(Message.OK, request.getId());
+			if (handler.handle(peer, request, reply) && reply.getType() == Message.ERROR) {
+				peer.send(reply);
+			}
+			break;
+		default:
+			peer.send(reply.set(Message.ERROR, request.getId()));
+			break;
+		}
+	}
+
+	private void expirePeers(long now) {
+		for (Peer peer : peers.values().toArray(new Peer[peers.size()])) {
+			if (now - peer.lastSeenNanos > timeout) {
+				peers.remove(peer.address);
+			}
+		}
+	}
+}